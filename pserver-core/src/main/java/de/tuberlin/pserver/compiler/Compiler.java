@@ -6,8 +6,12 @@ import de.tuberlin.pserver.dsl.state.annotations.GlobalObject;
 import de.tuberlin.pserver.dsl.transaction.TransactionController;
 import de.tuberlin.pserver.dsl.transaction.annotations.Transaction;
 import de.tuberlin.pserver.dsl.unit.annotations.Unit;
+import de.tuberlin.pserver.commons.utils.ParseUtils;
 import de.tuberlin.pserver.runtime.RuntimeContext;
+import de.tuberlin.pserver.runtime.state.matrix.PagedMatrix32F;
 import de.tuberlin.pserver.types.PServerTypeFactory;
+import de.tuberlin.pserver.types.matrix.annotations.Matrix;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import de.tuberlin.pserver.types.typeinfo.annotations.GlobalAccess;
 import de.tuberlin.pserver.types.typeinfo.annotations.Load;
@@ -86,8 +90,9 @@ public final class Compiler {
         for (final Field field : programClass.getDeclaredFields()) {
             for (final Annotation typeAn : field.getDeclaredAnnotations()) {
                 if (PServerTypeFactory.isSupportedType(typeAn.annotationType())) {
-                    DistributedTypeInfo instance =
-                            PServerTypeFactory.newInstance(runtimeContext.nodeID, allNodes, field.getType(), field.getName(), typeAn);
+                    DistributedTypeInfo instance = (typeAn instanceof Matrix && ((Matrix) typeAn).paged())
+                            ? newPagedMatrix(allNodes, field, (Matrix) typeAn)
+                            : PServerTypeFactory.newInstance(runtimeContext.nodeID, allNodes, field.getType(), field.getName(), typeAn);
                     programTable.addState(instance);
                     for (final Annotation an : field.getDeclaredAnnotations()) {
                         if (an instanceof Load) {
@@ -106,6 +111,15 @@ public final class Compiler {
         }
     }
 
+    // Paged matrices need the page pool of the node, they are not built by the PServerTypeFactory.
+    private DistributedTypeInfo newPagedMatrix(final int[] allNodes, final Field field, final Matrix annotation) {
+        if (field.getType() != Matrix32F.class && field.getType() != PagedMatrix32F.class)
+            throw new IllegalStateException("Paged matrix requires a Matrix32F field: " + field.getName());
+        final int[] nodes = "".equals(annotation.at()) ? allNodes : ParseUtils.parseNodeRanges(annotation.at());
+        return new PagedMatrix32F(runtimeContext.pagePool, runtimeContext.nodeID, nodes, field.getType(), field.getName(),
+                annotation.scheme(), annotation.rows(), annotation.cols());
+    }
+
     private void analyzeGlobalObjects() {
         for (final Field field : programClass.getDeclaredFields()) {
             for (final Annotation an : field.getDeclaredAnnotations()) {
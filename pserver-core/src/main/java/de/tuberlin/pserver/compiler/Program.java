@@ -6,6 +6,7 @@ import de.tuberlin.pserver.dsl.unit.controlflow.base.Body;
 import de.tuberlin.pserver.dsl.unit.controlflow.lifecycle.Lifecycle;
 import de.tuberlin.pserver.runtime.RuntimeManager;
 import de.tuberlin.pserver.runtime.core.events.EventDispatcher;
+import de.tuberlin.pserver.runtime.core.serializer.KryoFactory;
 import de.tuberlin.pserver.runtime.driver.ProgramContext;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.slf4j.Logger;
@@ -44,11 +45,19 @@ public abstract class Program extends EventDispatcher {
 
         this.programContext = Preconditions.checkNotNull(programContext);
 
+        registerTypes(KryoFactory.INSTANCE);
+
         this.runtimeManager = programContext.runtimeContext.runtimeManager;
 
         this.lifecycle = new Lifecycle(programContext);
     }
 
+    /**
+     * Hook to register application types with stable IDs (>= KryoFactory.USER_ID_BASE)
+     * before any state or message of this program is transferred.
+     */
+    protected void registerTypes(final KryoFactory kryoFactory) {}
+
     public void result(final Serializable... obj) {
         programContext.setResults(Arrays.asList(obj));
     }
@@ -4,11 +4,13 @@ package de.tuberlin.pserver.compiler;
 import com.google.common.base.Preconditions;
 import de.tuberlin.pserver.commons.utils.ParseUtils;
 import de.tuberlin.pserver.dsl.transaction.TransactionDefinition;
+import de.tuberlin.pserver.dsl.transaction.annotations.ReductionTopology;
 import de.tuberlin.pserver.dsl.transaction.annotations.Transaction;
 import de.tuberlin.pserver.dsl.transaction.annotations.TransactionType;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
@@ -36,6 +38,12 @@ public final class TransactionDescriptor {
 
     public long observerPeriod;
 
+    public final ReductionTopology topology;
+
+    public final int fanout;
+
+    public final boolean delta;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -47,9 +55,14 @@ public final class TransactionDescriptor {
                                  final TransactionType type,
                                  final boolean cacheRequestObject,
                                  final long observerPeriod,
+                                 final ReductionTopology topology,
+                                 final int fanout,
+                                 final boolean delta,
                                  final int nodeID,
                                  final ProgramTable programTable) {
 
+        Preconditions.checkArgument(fanout > 0);
+
         this.transactionName     = Preconditions.checkNotNull(transactionName);
         this.stateSrcObjectNames = new ArrayList<>(new HashSet<>(Preconditions.checkNotNull(stateSrcObjectNameList)));
         this.stateDstObjectNames = new ArrayList<>(new HashSet<>(Preconditions.checkNotNull(stateDstObjectNameList)));
@@ -57,8 +70,24 @@ public final class TransactionDescriptor {
         this.type                = Preconditions.checkNotNull(type);
         this.cacheRequestObject  = cacheRequestObject;
         this.observerPeriod      = observerPeriod;
+        this.topology            = Preconditions.checkNotNull(topology);
+        this.fanout              = topology == ReductionTopology.RING ? 1 : fanout;
+        this.delta               = delta;
         this.srcStateObjectNodes = programTable.getState(stateSrcObjectNames.get(stateSrcObjectNames.size() - 1)).nodes();
         this.dstStateObjectNodes = programTable.getState(stateDstObjectNames.get(stateDstObjectNames.size() - 1)).nodes();
+        if (type == TransactionType.PUSH && topology != ReductionTopology.DIRECT) {
+            // Pushes are reduced along the topology, there is nothing to reduce without a combiner.
+            if (definition.combinePhase == null)
+                throw new IllegalStateException("Push transaction " + transactionName + " needs a combine phase for the " + topology + " topology.");
+            final int[] srcNodes = srcStateObjectNodes.clone(), dstNodes = dstStateObjectNodes.clone();
+            Arrays.sort(srcNodes);
+            Arrays.sort(dstNodes);
+            if (!Arrays.equals(srcNodes, dstNodes))
+                throw new IllegalStateException("Push transaction " + transactionName + " needs the same source and destination nodes for the " + topology + " topology.");
+        }
+        // Combiners expect the matrices themselves, not the deltas shipped in their place.
+        if (delta && definition.combinePhase != null)
+            throw new IllegalStateException("Delta transaction " + transactionName + " can not have a combine phase.");
         definition.setTransactionName(transactionName);
     }
 
@@ -100,6 +129,9 @@ public final class TransactionDescriptor {
                 transaction.type(),
                 transaction.cache(),
                 transaction.observerPeriod(),
+                transaction.topology(),
+                transaction.fanout(),
+                transaction.delta(),
                 nodeID,
                 programTable
         );
@@ -4,6 +4,7 @@ package de.tuberlin.pserver.dsl.transaction;
 import com.google.common.base.Preconditions;
 import de.tuberlin.pserver.commons.utils.ParseUtils;
 import de.tuberlin.pserver.compiler.TransactionDescriptor;
+import de.tuberlin.pserver.dsl.transaction.annotations.ReductionTopology;
 import de.tuberlin.pserver.dsl.transaction.annotations.TransactionType;
 import de.tuberlin.pserver.runtime.driver.ProgramContext;
 
@@ -29,6 +30,12 @@ public final class TransactionBuilder {
 
     public long observerPeriod;
 
+    public ReductionTopology topology;
+
+    public int fanout;
+
+    public boolean delta;
+
     // ---------------------------------------------------
     // Constructor.
     // ---------------------------------------------------
@@ -52,6 +59,12 @@ public final class TransactionBuilder {
 
     public TransactionBuilder observerPeriod(final long observerPeriod) { this.observerPeriod = observerPeriod; return this; }
 
+    public TransactionBuilder topology(final ReductionTopology topology) { this.topology = topology; return this; }
+
+    public TransactionBuilder fanout(final int fanout) { this.fanout = fanout; return this; }
+
+    public TransactionBuilder delta(final boolean delta) { this.delta = delta; return this; }
+
     // ---------------------------------------------------
 
     public TransactionDefinition build(final String transactionName, final TransactionDefinition definition) {
@@ -63,6 +76,9 @@ public final class TransactionBuilder {
                 type,
                 cache,
                 observerPeriod,
+                topology,
+                fanout,
+                delta,
                 programContext.nodeID,
                 programContext.programTable
         );
@@ -77,5 +93,8 @@ public final class TransactionBuilder {
         this.type = TransactionType.PUSH;
         this.at = "";
         this.cache = false;
+        this.topology = ReductionTopology.DIRECT;
+        this.fanout = 2;
+        this.delta = false;
     }
 }
@@ -7,8 +7,10 @@ import de.tuberlin.pserver.dsl.transaction.executors.TransactionExecutor;
 import de.tuberlin.pserver.runtime.RuntimeContext;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 
 public final class TransactionController {
 
@@ -45,10 +47,24 @@ public final class TransactionController {
         activateTransactionObserver();
     }
 
+    // Commits come from user threads, they wait here while the lanes are full.
     public Object executeTransaction(final Object requestObject) throws Exception {
+        runtimeContext.laneExecutor.awaitCapacity();
         return transactionExecutor.execute(requestObject);
     }
 
+    public CompletableFuture<List<Object>> executeTransactionAsync(final Object requestObject) {
+        try {
+            runtimeContext.laneExecutor.awaitCapacity();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final CompletableFuture<List<Object>> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return transactionExecutor.executeAsync(requestObject);
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
@@ -3,6 +3,8 @@ package de.tuberlin.pserver.dsl.transaction;
 import com.google.common.base.Preconditions;
 import de.tuberlin.pserver.dsl.transaction.annotations.TransactionType;
 import de.tuberlin.pserver.runtime.driver.ProgramContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -15,6 +17,8 @@ public final class TransactionMng {
     // Fields.
     // ---------------------------------------------------
 
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionMng.class);
+
     private static ProgramContext programContext;
 
     private static TransactionBuilder transactionBuilder;
@@ -53,23 +57,24 @@ public final class TransactionMng {
     public static void asyncCommit(final TransactionDefinition transactionDefinition, final Object requestObject) throws Exception {
         // Only for pull transactions.
         if (programContext.programTable.getTransaction(transactionDefinition.getTransactionName()).type == TransactionType.PULL) {
-            new Thread(() -> {
-                try {
-                    Object result = commit(transactionDefinition);
-                    if (result != null) {
-                        synchronized (asyncTransactionResult) {
-                            List<Object> txnResults = asyncTransactionResult.get(transactionDefinition.getTransactionName());
-                            if (txnResults == null) {
-                                txnResults = new ArrayList<>();
-                                asyncTransactionResult.put(transactionDefinition.getTransactionName(), txnResults);
-                            }
-                            txnResults.add(result);
+            final String transactionName = transactionDefinition.getTransactionName();
+            final TransactionController controller = programContext.programTable.getTransactionController(transactionName);
+            Preconditions.checkState(controller != null);
+            controller.executeTransactionAsync(requestObject).thenAccept(result -> {
+                if (result != null) {
+                    synchronized (asyncTransactionResult) {
+                        List<Object> txnResults = asyncTransactionResult.get(transactionName);
+                        if (txnResults == null) {
+                            txnResults = new ArrayList<>();
+                            asyncTransactionResult.put(transactionName, txnResults);
                         }
+                        txnResults.add(result);
                     }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
                 }
-            }).start();
+            }).exceptionally(e -> {
+                LOG.error("Asynchronous commit of transaction " + transactionName + " failed.", e);
+                return null;
+            });
         } else
             commit(transactionDefinition, requestObject);
     }
@@ -2,14 +2,19 @@ package de.tuberlin.pserver.dsl.transaction.aggregators;
 
 
 import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.dsl.transaction.annotations.ReductionTopology;
 import de.tuberlin.pserver.runtime.RuntimeManager;
 import de.tuberlin.pserver.runtime.driver.ProgramContext;
 import de.tuberlin.pserver.runtime.events.MsgEventHandler;
+import de.tuberlin.pserver.runtime.parallel.CollectiveChannel;
+import de.tuberlin.pserver.runtime.parallel.ReductionTree;
 import de.tuberlin.pserver.runtime.parallel.shared.SharedVar;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Aggregator<T extends Serializable> {
 
@@ -21,11 +26,24 @@ public class Aggregator<T extends Serializable> {
 
     private static final int AGG_NODE_ID = 0;
 
+    private static final int DEFAULT_FANOUT = 2;
+
+    // Program store key of the per-program sequence of topology aggregations.
+    private static final String SEQUENCE_KEY = "__aggregator_sequence";
+
     static public interface AggregatorFunction<T> {
 
         public T apply(final List<T> partialAggs);
     }
 
+    // Splits partial aggregates into equally shaped chunks, the aggregator function is then applied per chunk.
+    static public interface ChunkFunction<T> {
+
+        public List<T> split(final T partialAgg, final int numChunks);
+
+        public T concat(final List<T> chunks);
+    }
+
     // ---------------------------------------------------
 
     private final ProgramContext pc;
@@ -36,12 +54,37 @@ public class Aggregator<T extends Serializable> {
 
     private final boolean symmetricAgg;
 
+    private final ReductionTopology topology;
+
+    private final int fanout;
+
+    private final ChunkFunction<T> chunkFunction;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
 
     public Aggregator(final ProgramContext pc, final T partialAgg) throws Exception { this(pc, partialAgg, true); }
     public Aggregator(final ProgramContext pc, final T partialAgg, final boolean symmetricAgg) throws Exception {
+        this(pc, partialAgg, symmetricAgg, ReductionTopology.DIRECT, DEFAULT_FANOUT, null);
+    }
+    public Aggregator(final ProgramContext pc, final T partialAgg, final ReductionTopology topology) throws Exception {
+        this(pc, partialAgg, true, topology, DEFAULT_FANOUT, null);
+    }
+    public Aggregator(final ProgramContext pc, final T partialAgg, final ReductionTopology topology, final int fanout) throws Exception {
+        this(pc, partialAgg, true, topology, fanout, null);
+    }
+    public Aggregator(final ProgramContext pc, final T partialAgg, final ChunkFunction<T> chunkFunction) throws Exception {
+        this(pc, partialAgg, true, ReductionTopology.RING, DEFAULT_FANOUT, chunkFunction);
+    }
+    private Aggregator(final ProgramContext pc,
+                       final T partialAgg,
+                       final boolean symmetricAgg,
+                       final ReductionTopology topology,
+                       final int fanout,
+                       final ChunkFunction<T> chunkFunction) throws Exception {
+
+        Preconditions.checkArgument(fanout > 0);
 
         this.pc = Preconditions.checkNotNull(pc);
 
@@ -49,6 +92,12 @@ public class Aggregator<T extends Serializable> {
 
         this.symmetricAgg = symmetricAgg;
 
+        this.topology = Preconditions.checkNotNull(topology);
+
+        this.fanout = fanout;
+
+        this.chunkFunction = chunkFunction;
+
         this.sharedGlobalAgg = new SharedVar<>(pc, partialAgg);
     }
 
@@ -56,8 +105,66 @@ public class Aggregator<T extends Serializable> {
     // Public Methods.
     // ---------------------------------------------------
 
+    /**
+     * For the TREE and RING topology the function is applied to partial results again and must
+     * therefore be associative, e.g. a sum, min or max.
+     */
     public T apply(final AggregatorFunction<T> function) throws Exception {
-        return symmetricAgg ? symmetric_apply(function) : asymmetric_apply(function);
+        switch (topology) {
+            case TREE:  return tree_apply(function);
+            case RING:  return chunkFunction != null ? chunked_ring_apply(function) : ring_apply(function);
+            default:    return symmetricAgg ? symmetric_apply(function) : asymmetric_apply(function);
+        }
+    }
+
+    // ---------------------------------------------------
+
+    public static ChunkFunction<float[]> floatArrayChunks() {
+        return new ChunkFunction<float[]>() {
+
+            @Override
+            public List<float[]> split(final float[] partialAgg, final int numChunks) {
+                final List<float[]> chunks = new ArrayList<>(numChunks);
+                for (int i = 0; i < numChunks; ++i)
+                    chunks.add(Arrays.copyOfRange(partialAgg, chunkStart(partialAgg.length, numChunks, i), chunkStart(partialAgg.length, numChunks, i + 1)));
+                return chunks;
+            }
+
+            @Override
+            public float[] concat(final List<float[]> chunks) {
+                final float[] agg = new float[chunks.stream().mapToInt(c -> c.length).sum()];
+                int offset = 0;
+                for (final float[] chunk : chunks) {
+                    System.arraycopy(chunk, 0, agg, offset, chunk.length);
+                    offset += chunk.length;
+                }
+                return agg;
+            }
+        };
+    }
+
+    public static ChunkFunction<double[]> doubleArrayChunks() {
+        return new ChunkFunction<double[]>() {
+
+            @Override
+            public List<double[]> split(final double[] partialAgg, final int numChunks) {
+                final List<double[]> chunks = new ArrayList<>(numChunks);
+                for (int i = 0; i < numChunks; ++i)
+                    chunks.add(Arrays.copyOfRange(partialAgg, chunkStart(partialAgg.length, numChunks, i), chunkStart(partialAgg.length, numChunks, i + 1)));
+                return chunks;
+            }
+
+            @Override
+            public double[] concat(final List<double[]> chunks) {
+                final double[] agg = new double[chunks.stream().mapToInt(c -> c.length).sum()];
+                int offset = 0;
+                for (final double[] chunk : chunks) {
+                    System.arraycopy(chunk, 0, agg, offset, chunk.length);
+                    offset += chunk.length;
+                }
+                return agg;
+            }
+        };
     }
 
     // ---------------------------------------------------
@@ -150,5 +257,142 @@ public class Aggregator<T extends Serializable> {
 
     // ---------------------------------------------------
 
+    // Reduces up a k-ary tree rooted at AGG_NODE_ID, then broadcasts the result down the tree.
+    @SuppressWarnings("unchecked")
+    private T tree_apply(final AggregatorFunction<T> function) throws Exception {
+
+        final CollectiveChannel channel = pc.runtimeContext.runtimeManager.getCollectiveChannel();
+
+        final ReductionTree tree = new ReductionTree(pc.runtimeContext.runtimeManager.getNodeIDs(), AGG_NODE_ID, fanout);
+
+        final long sequence = nextSequence();
+
+        final int nodeID = pc.runtimeContext.nodeID;
+
+        final List<T> partialAggs = new ArrayList<>();
+
+        partialAggs.add(partialAgg);
+
+        for (final int childNodeID : tree.children(nodeID))
+            partialAggs.add((T) channel.receive(aggPushUID(), sequence, 0, childNodeID));
+
+        T agg = function.apply(partialAggs);
+
+        if (tree.parent(nodeID) != -1) {
+
+            channel.send(aggPushUID(), sequence, 0, agg, tree.parent(nodeID));
+
+            agg = (T) channel.receive(aggPushUID(), sequence, 1, tree.parent(nodeID));
+        }
+
+        for (final int childNodeID : tree.children(nodeID))
+            channel.send(aggPushUID(), sequence, 1, agg, childNodeID);
+
+        return share(agg);
+    }
+
+    // ---------------------------------------------------
+
+    // Passes the accumulated aggregate once around the ring, then passes the result around.
+    @SuppressWarnings("unchecked")
+    private T ring_apply(final AggregatorFunction<T> function) throws Exception {
+
+        final CollectiveChannel channel = pc.runtimeContext.runtimeManager.getCollectiveChannel();
+
+        final long sequence = nextSequence();
+
+        final int n = pc.nodeDOP, nodeID = pc.runtimeContext.nodeID;
+
+        final int next = (nodeID + 1) % n, prev = (nodeID + n - 1) % n;
+
+        if (n == 1)
+            return share(function.apply(Arrays.asList(partialAgg)));
+
+        T agg = partialAgg;
+
+        if (nodeID > 0)
+            agg = function.apply(Arrays.asList((T) channel.receive(aggPushUID(), sequence, 0, prev), partialAgg));
+
+        if (nodeID < n - 1) {
+
+            channel.send(aggPushUID(), sequence, 0, agg, next);
+
+            agg = (T) channel.receive(aggPushUID(), sequence, 1, prev);
+        }
+
+        if (next != n - 1)
+            channel.send(aggPushUID(), sequence, 1, agg, next);
+
+        return share(agg);
+    }
+
+    // ---------------------------------------------------
+
+    // Ring all-reduce: reduce-scatter of n chunks in n - 1 steps, each node then owns one fully
+    // aggregated chunk, followed by an all-gather of the chunks in n - 1 steps. Every step sends
+    // one chunk to the next node while the previous node already sends the chunk of the next step.
+    @SuppressWarnings("unchecked")
+    private T chunked_ring_apply(final AggregatorFunction<T> function) throws Exception {
+
+        final CollectiveChannel channel = pc.runtimeContext.runtimeManager.getCollectiveChannel();
+
+        final long sequence = nextSequence();
+
+        final int n = pc.nodeDOP, nodeID = pc.runtimeContext.nodeID;
+
+        final int next = (nodeID + 1) % n, prev = (nodeID + n - 1) % n;
+
+        final List<T> chunks = new ArrayList<>(chunkFunction.split(partialAgg, n));
+
+        Preconditions.checkState(chunks.size() == n);
+
+        for (int step = 0; step < n - 1; ++step) {
+
+            channel.send(aggPushUID(), sequence, step, chunks.get(Math.floorMod(nodeID - step, n)), next);
+
+            final int chunk = Math.floorMod(nodeID - step - 1, n);
+
+            chunks.set(chunk, function.apply(Arrays.asList(chunks.get(chunk), (T) channel.receive(aggPushUID(), sequence, step, prev))));
+        }
+
+        for (int step = 0; step < n - 1; ++step) {
+
+            channel.send(aggPushUID(), sequence, n - 1 + step, chunks.get(Math.floorMod(nodeID + 1 - step, n)), next);
+
+            chunks.set(Math.floorMod(nodeID - step, n), (T) channel.receive(aggPushUID(), sequence, n - 1 + step, prev));
+        }
+
+        return share(chunkFunction.concat(chunks));
+    }
+
+    // ---------------------------------------------------
+
+    private T share(final T agg) throws Exception {
+
+        sharedGlobalAgg.set(agg);
+
+        final T resultAgg = sharedGlobalAgg.get();
+
+        sharedGlobalAgg.done();
+
+        return resultAgg;
+    }
+
+    // All nodes run the aggregations of a program in the same order, so the sequence matches across nodes.
+    private long nextSequence() {
+        synchronized (pc) {
+            AtomicLong sequence = pc.get(SEQUENCE_KEY);
+            if (sequence == null) {
+                sequence = new AtomicLong();
+                pc.put(SEQUENCE_KEY, sequence);
+            }
+            return sequence.getAndIncrement();
+        }
+    }
+
+    private static int chunkStart(final int length, final int numChunks, final int chunk) {
+        return (int) ((long) length * chunk / numChunks);
+    }
+
     private String aggPushUID() { return "agg"; }
 }
@@ -0,0 +1,18 @@
+package de.tuberlin.pserver.dsl.transaction.annotations;
+
+/**
+ * Communication pattern of aggregations and transactions. TREE and RING combine partial
+ * results on the way, so their combine (or aggregator) function must be associative and
+ * must accept partial results as input.
+ */
+public enum ReductionTopology {
+
+    // Every node talks to every involved node.
+    DIRECT,
+
+    // Reduce up a k-ary tree, then broadcast down the same tree.
+    TREE,
+
+    // Pass along a ring of the involved nodes, chunked if the values can be split.
+    RING,
+}
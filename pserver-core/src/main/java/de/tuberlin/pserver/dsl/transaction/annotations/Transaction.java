@@ -22,4 +22,17 @@ public @interface Transaction {
     public boolean cache() default false;
 
     public long observerPeriod() default -1;
+
+    // Routing of requests along a tree (or chain for RING) of the involved nodes. Pushes are combined
+    // along the tree, they need a combine phase and the same source and destination nodes. Pulls are
+    // only relayed with a combine phase. The combine phase then must be associative and commutative,
+    // and must not modify its inputs in place.
+    public ReductionTopology topology() default ReductionTopology.DIRECT;
+
+    public int fanout() default 2;
+
+    // Push only the dirty blocks of prepared DirtyTrackingMatrix32F objects, Apply then receives
+    // MatrixDelta32F objects in their place. Other prepared objects are pushed whole. Delta
+    // transactions can not have a combine phase.
+    public boolean delta() default false;
 }
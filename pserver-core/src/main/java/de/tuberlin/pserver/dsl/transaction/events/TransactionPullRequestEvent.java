@@ -15,6 +15,12 @@ public class TransactionPullRequestEvent extends TransactionEvent {
     // Fields.
     // ---------------------------------------------------
 
+    // Identifies the pull at the requesting node, echoed by the response.
+    public final long sequenceID;
+
+    // Requesting node, requests are relayed along the topology tree rooted there.
+    public final int originNodeID;
+
     public final Object requestObject;
 
     public final boolean cacheRequest;
@@ -25,14 +31,20 @@ public class TransactionPullRequestEvent extends TransactionEvent {
     // Constructors.
     // ---------------------------------------------------
 
-    public TransactionPullRequestEvent() { this(null, null, null, false); }
+    public TransactionPullRequestEvent() { this(null, -1, -1, null, null, false); }
     public TransactionPullRequestEvent(final String transactionName,
+                                       final long sequenceID,
+                                       final int originNodeID,
                                        final List<String> stateObjectNames,
                                        final Object requestObject,
                                        final boolean cacheRequest) {
 
         super(TRANSACTION_REQUEST + transactionName);
 
+        this.sequenceID = sequenceID;
+
+        this.originNodeID = originNodeID;
+
         this.stateObjectNames = stateObjectNames;
 
         this.requestObject = requestObject;
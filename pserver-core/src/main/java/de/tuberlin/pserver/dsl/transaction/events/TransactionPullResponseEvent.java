@@ -15,15 +15,21 @@ public class TransactionPullResponseEvent extends TransactionEvent {
     // Fields.
     // ---------------------------------------------------
 
+    public final long sequenceID;
+
+    public final int originNodeID;
+
     public final Map<String, Object> responseSrcStateObjects;
 
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
 
-    public TransactionPullResponseEvent() { this(null, null); }
-    public TransactionPullResponseEvent(final String transactionName, final Map<String, Object> responseSrcStateObjects) {
+    public TransactionPullResponseEvent() { this(null, -1, -1, null); }
+    public TransactionPullResponseEvent(final String transactionName, final long sequenceID, final int originNodeID, final Map<String, Object> responseSrcStateObjects) {
         super(TRANSACTION_RESPONSE + transactionName);
+        this.sequenceID = sequenceID;
+        this.originNodeID = originNodeID;
         this.responseSrcStateObjects = responseSrcStateObjects;
     }
 }
@@ -0,0 +1,52 @@
+package de.tuberlin.pserver.dsl.transaction.events;
+
+import java.util.List;
+
+
+public class TransactionPushReduceEvent extends TransactionEvent {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    // Partial result of a subtree, sent to the parent.
+    public static final String TRANSACTION_REDUCE_UP    = "transaction_push_reduce_up_";
+
+    // Partial result of all nodes outside of the subtree, sent to the child.
+    public static final String TRANSACTION_REDUCE_DOWN  = "transaction_push_reduce_down_";
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final long sequenceID;
+
+    public final int senderNodeID;
+
+    public final List<Object> requestObjects;
+
+    // Partial result per source state object.
+    public final List<Object> partials;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public TransactionPushReduceEvent() { this(null, -1, -1, null, null); }
+    public TransactionPushReduceEvent(final String type,
+                                      final long sequenceID,
+                                      final int senderNodeID,
+                                      final List<Object> requestObjects,
+                                      final List<Object> partials) {
+
+        super(type);
+
+        this.sequenceID = sequenceID;
+
+        this.senderNodeID = senderNodeID;
+
+        this.requestObjects = requestObjects;
+
+        this.partials = partials;
+    }
+}
@@ -15,6 +15,9 @@ public class TransactionPushRequestEvent extends TransactionEvent {
     // Fields.
     // ---------------------------------------------------
 
+    // Node that issued the push.
+    public final int originNodeID;
+
     public final Object requestObject;
 
     public final boolean cacheRequest;
@@ -27,8 +30,9 @@ public class TransactionPushRequestEvent extends TransactionEvent {
     // Constructors.
     // ---------------------------------------------------
 
-    public TransactionPushRequestEvent() { this(null, null, null, null, false); }
+    public TransactionPushRequestEvent() { this(null, -1, null, null, null, false); }
     public TransactionPushRequestEvent(final String transactionName,
+                                   final int originNodeID,
                                    final List<String> srcStateObjectNames,
                                    final List<Object> srcStateObjectsValues,
                                    final Object requestObject,
@@ -36,6 +40,8 @@ public class TransactionPushRequestEvent extends TransactionEvent {
 
         super(TRANSACTION_REQUEST + transactionName);
 
+        this.originNodeID = originNodeID;
+
         this.srcStateObjectNames = srcStateObjectNames;
 
         this.srcStateObjectsValues = srcStateObjectsValues;
@@ -2,19 +2,30 @@ package de.tuberlin.pserver.dsl.transaction.executors;
 
 import de.tuberlin.pserver.dsl.transaction.TransactionController;
 import de.tuberlin.pserver.dsl.transaction.TransactionDefinition;
+import de.tuberlin.pserver.dsl.transaction.annotations.ReductionTopology;
 import de.tuberlin.pserver.dsl.transaction.events.TransactionPullRequestEvent;
 import de.tuberlin.pserver.dsl.transaction.events.TransactionPullResponseEvent;
+import de.tuberlin.pserver.dsl.transaction.phases.IncrementalCombine;
 import de.tuberlin.pserver.dsl.transaction.phases.Prepare;
 import de.tuberlin.pserver.runtime.RuntimeContext;
+import de.tuberlin.pserver.runtime.parallel.ReductionTree;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
-
-// EXECUTOR ASSUMES NO CONCURRENT TRANSACTIONS OF SAME TYPE.
-// MUST BE ENFORCED BY TRANSACTION MANAGER!
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pulls of the same transaction may run concurrently, each pull is tagged with a sequence ID
+// and collects the responses of the source nodes separately. Applies to the same destination
+// state object are serialized by its serial lane in the lane executor. With a TREE or RING
+// topology and a combine phase, requests are relayed down a tree of the source nodes rooted at
+// the requesting node, and each source node combines its own state with the partial results of
+// its children before responding to its parent.
 
 public class PullTransactionExecutor extends TransactionExecutor {
 
@@ -22,25 +33,31 @@ public class PullTransactionExecutor extends TransactionExecutor {
     // Fields.
     // ---------------------------------------------------
 
-    private final Object monitor = new Object();
+    private static final Logger LOG = LoggerFactory.getLogger(PullTransactionExecutor.class);
 
     // ---------------------------------------------------
 
     private final TransactionDefinition transactionDefinition;
 
-    private final Map<String, List<Object>> collectedResponseSrcStateObjects = new HashMap<>();
-
     private final DistributedTypeInfo[] srcStateObjects;
 
     private final DistributedTypeInfo[] dstStateObjects;
 
     private final int[] txnSrcNodes;
 
-    private CountDownLatch responseLatch;
+    private final AtomicLong sequenceIDs = new AtomicLong();
+
+    private final Map<Long, PendingPull> pendingPulls = new ConcurrentHashMap<>();
+
+    private final Object combineLane = new Object();
 
-    private final Thread combinerThread;
+    // Whether requests and responses are relayed along the topology tree.
+    private final boolean isRelayed;
 
-    private Object requestObject;
+    // Relay trees over the source nodes by requesting node.
+    private final Map<Integer, ReductionTree> relayTrees = new ConcurrentHashMap<>();
+
+    private final Map<RelayKey, PendingRelay> pendingRelays = new ConcurrentHashMap<>();
 
     // ---------------------------------------------------
     // Constructors.
@@ -63,21 +80,8 @@ public class PullTransactionExecutor extends TransactionExecutor {
                 runtimeContext.nodeID
         );
 
-        this.responseLatch = new CountDownLatch(txnSrcNodes.length);
-
-        combinerThread = new Thread(() -> { // RUN COMBINER IN SEPARATE THREAD!
-            try {
-
-                for (String srcStateName : controller.getTransactionDescriptor().stateSrcObjectNames) {
-                    List<Object> srcStates = collectedResponseSrcStateObjects.get(srcStateName);
-                    Object combinedSrcStateObject = transactionDefinition.combinePhase.combine(Arrays.asList(requestObject), srcStates);
-                    collectedResponseSrcStateObjects.put(srcStateName, Arrays.asList(combinedSrcStateObject));
-                }
-
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
-        });
+        isRelayed = controller.getTransactionDescriptor().topology != ReductionTopology.DIRECT
+                && transactionDefinition.combinePhase != null;
 
         registerPullTransactionRequest();
         registerPullTransactionResponse();
@@ -111,60 +115,96 @@ public class PullTransactionExecutor extends TransactionExecutor {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public synchronized List<Object> execute(final Object requestObject) throws Exception {
+    public List<Object> execute(final Object requestObject) throws Exception {
+        try {
+            return executeAsync(requestObject).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 
-        if (txnSrcNodes.length == 0)
-            return null;
+    /**
+     * Issues the pull without waiting for the responses, so several pulls of this transaction
+     * can be in flight at once. Combine and apply phases run in the lane executor of the node
+     * when all responses arrived.
+     */
+    @Override
+    public CompletableFuture<List<Object>> executeAsync(final Object requestObject) {
 
-        collectedResponseSrcStateObjects.clear();
-        final List<Object> resultObjects = new ArrayList<>();
+        if (txnSrcNodes.length == 0)
+            return CompletableFuture.completedFuture(null);
 
-        { // Request...
+        return request(requestObject).thenCompose(responses -> complete(requestObject, responses));
+    }
 
-            final boolean cacheRequest = controller.getTransactionDescriptor().cacheRequestObject;
-            final TransactionPullRequestEvent request = new TransactionPullRequestEvent(
-                    transactionName,
-                    controller.getTransactionDescriptor().stateSrcObjectNames,
-                    requestObject,
-                    cacheRequest
-            );
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
 
-            runtimeContext.netManager.dispatchEventAt(txnSrcNodes, request);
-        }
+    private CompletableFuture<Map<String, List<Object>>> request(final Object requestObject) {
+        final long sequenceID = sequenceIDs.getAndIncrement();
+        final int[] requestNodes = isRelayed ? relayTree(runtimeContext.nodeID).children(runtimeContext.nodeID) : txnSrcNodes;
+        final PendingPull pull = new PendingPull(requestNodes.length);
+        pendingPulls.put(sequenceID, pull);
+
+        final TransactionPullRequestEvent request = new TransactionPullRequestEvent(
+                transactionName,
+                sequenceID,
+                runtimeContext.nodeID,
+                controller.getTransactionDescriptor().stateSrcObjectNames,
+                requestObject,
+                controller.getTransactionDescriptor().cacheRequestObject
+        );
 
-        { // Await Response...
+        runtimeContext.netManager.dispatchEventAt(requestNodes, request);
+        return pull.result;
+    }
 
-            responseLatch.await();
-            synchronized (monitor) {
-                responseLatch = new CountDownLatch(txnSrcNodes.length);
+    // Combines each source state in the parallel lane (incremental combiners already folded the
+    // responses on arrival), then applies to each destination state in its serial lane.
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<Object>> complete(final Object requestObject, final Map<String, List<Object>> responses) {
+        final List<String> srcStateObjectNames = controller.getTransactionDescriptor().stateSrcObjectNames;
+        final List<CompletableFuture<Object>> combined = new ArrayList<>();
+        if (transactionDefinition.combinePhase != null && !(transactionDefinition.combinePhase instanceof IncrementalCombine)) {
+            for (final String srcStateName : srcStateObjectNames) {
+                combined.add(runtimeContext.laneExecutor.submitParallel(() -> {
+                    final Object combinedSrcStateObject = transactionDefinition.combinePhase.combine(
+                            Arrays.asList(requestObject), responses.get(srcStateName));
+                    synchronized (responses) {
+                        responses.put(srcStateName, Arrays.asList(combinedSrcStateObject));
+                    }
+                    return combinedSrcStateObject;
+                }));
             }
         }
 
-        { // Response Handling...
-
-            // Wait until combiner thread is completed.
-            if (transactionDefinition.combinePhase != null) {
-                combinerThread.join();
-            }
-
+        return CompletableFuture.allOf(combined.toArray(new CompletableFuture[combined.size()])).thenCompose(ignored -> {
+            final List<CompletableFuture<Object>> applied = new ArrayList<>();
             for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i) {
-                resultObjects.add(
-                        transactionDefinition.applyPhase.apply(Arrays.asList(requestObject),
-                                collectedResponseSrcStateObjects.get(controller.getTransactionDescriptor().stateSrcObjectNames.get(i)),
-                                dstStateObjects[i]
-                        )
-                );
+                final DistributedTypeInfo dstStateObject = dstStateObjects[i];
+                final List<Object> srcStates;
+                synchronized (responses) {
+                    srcStates = responses.get(srcStateObjectNames.get(i));
+                }
+                applied.add(runtimeContext.laneExecutor.submitSerial(dstStateObject, () -> {
+                    dstStateObject.lock();
+                    try {
+                        return transactionDefinition.applyPhase.apply(Arrays.asList(requestObject), srcStates, dstStateObject);
+                    } finally {
+                        dstStateObject.unlock();
+                    }
+                }));
             }
-        }
-
-        return resultObjects;
+            return CompletableFuture.allOf(applied.toArray(new CompletableFuture[applied.size()])).thenApply(done -> {
+                final List<Object> resultObjects = new ArrayList<>();
+                for (final CompletableFuture<Object> result : applied)
+                    resultObjects.add(result.join());
+                return resultObjects;
+            });
+        });
     }
 
-    // ---------------------------------------------------
-    // Private Methods.
-    // ---------------------------------------------------
-
     @SuppressWarnings("unchecked")
     private void registerPullTransactionRequest() {
 
@@ -174,25 +214,32 @@ public class PullTransactionExecutor extends TransactionExecutor {
             runtimeContext.netManager.addEventListener(TransactionPullRequestEvent.TRANSACTION_REQUEST + transactionName, event -> {
                 final TransactionPullRequestEvent request = (TransactionPullRequestEvent) event;
 
-                try {
+                final PendingRelay relay = isRelayed ? relay(request) : null;
+
+                runtimeContext.laneExecutor.submitParallel(() -> {
 
                     final Map<String, Object> preparedOutputs = new HashMap<>();
                     for (int i = 0; i < request.stateObjectNames.size(); ++i) {
                         srcStateObjects[i].lock();
-                        final Prepare preparePhase = transactionDefinition.preparePhase;
-                        final Object prepareInput = request.getPayload() == null ? srcStateObjects[i] : request.requestObject;
-                        preparedOutputs.put(request.stateObjectNames.get(i), (preparePhase != null) ? preparePhase.prepare(request, prepareInput) : prepareInput);
-                        srcStateObjects[i].unlock();
+                        try {
+                            final Prepare preparePhase = transactionDefinition.preparePhase;
+                            final Object prepareInput = request.getPayload() == null ? srcStateObjects[i] : request.requestObject;
+                            preparedOutputs.put(request.stateObjectNames.get(i), (preparePhase != null) ? preparePhase.prepare(request, prepareInput) : prepareInput);
+                        } finally {
+                            srcStateObjects[i].unlock();
+                        }
                     }
 
-                    runtimeContext.netManager.dispatchEventAt(
-                            request.srcMachineID,
-                            new TransactionPullResponseEvent(transactionName, preparedOutputs)
-                    );
+                    if (relay != null)
+                        addRelayResponse(new RelayKey(request.originNodeID, request.sequenceID), relay, preparedOutputs);
+                    else
+                        respond(request.srcMachineID, request.sequenceID, request.originNodeID, preparedOutputs);
+                    return null;
 
-                } catch (Exception ex) {
-                    throw new IllegalStateException(ex);
-                }
+                }).exceptionally(t -> {
+                    LOG.error("Prepare phase of pull transaction " + transactionName + " failed.", t);
+                    return null;
+                });
             });
         }
     }
@@ -201,41 +248,199 @@ public class PullTransactionExecutor extends TransactionExecutor {
 
     private void registerPullTransactionResponse() {
 
-        // Register push request listener only at the associated destination nodes.
-        if (ArrayUtils.contains(controller.getTransactionDescriptor().dstStateObjectNodes, runtimeContext.nodeID)) {
-
-            AtomicInteger requestCounter = new AtomicInteger(0);
+        // Register push request listener only at the associated destination nodes, and at the
+        // source nodes which relay the responses of their children.
+        if (ArrayUtils.contains(controller.getTransactionDescriptor().dstStateObjectNodes, runtimeContext.nodeID)
+                || (isRelayed && ArrayUtils.contains(controller.getTransactionDescriptor().srcStateObjectNodes, runtimeContext.nodeID))) {
 
             runtimeContext.netManager.addEventListener(TransactionPullResponseEvent.TRANSACTION_RESPONSE + transactionName, event -> {
 
                 final TransactionPullResponseEvent responseEvent = (TransactionPullResponseEvent) event;
+                if (responseEvent.originNodeID != runtimeContext.nodeID) {
+                    final RelayKey key = new RelayKey(responseEvent.originNodeID, responseEvent.sequenceID);
+                    final PendingRelay relay = pendingRelays.get(key);
+                    if (relay == null)
+                        LOG.warn("Dropped relayed response of unknown pull " + responseEvent.sequenceID + " of transaction " + transactionName + ".");
+                    else
+                        addRelayResponse(key, relay, responseEvent.responseSrcStateObjects);
+                    return;
+                }
 
-                try {
+                final PendingPull pull = pendingPulls.get(responseEvent.sequenceID);
+                if (pull == null) {
+                    LOG.warn("Dropped response of unknown pull " + responseEvent.sequenceID + " of transaction " + transactionName + ".");
+                    return;
+                }
 
-                    for (int i = 0; i < controller.getTransactionDescriptor().stateSrcObjectNames.size(); ++i) {
-                        final String stateObjectName = controller.getTransactionDescriptor().stateSrcObjectNames.get(i);
-                        List<Object> li = collectedResponseSrcStateObjects.get(stateObjectName);
-                        if (li == null) {
-                            li = new ArrayList<>();
-                            collectedResponseSrcStateObjects.put(stateObjectName, li);
-                        }
-                        li.add(responseEvent.responseSrcStateObjects.get(stateObjectName));
-                    }
+                if (transactionDefinition.combinePhase instanceof IncrementalCombine) {
+                    foldResponse(pull, responseEvent);
+                    return;
+                }
 
-                    if (transactionDefinition.combinePhase != null) {
-                        if (requestCounter.incrementAndGet() == txnSrcNodes.length) {
-                            combinerThread.start();
-                        }
+                final boolean isComplete;
+                synchronized (pull) {
+                    for (final String stateObjectName : controller.getTransactionDescriptor().stateSrcObjectNames) {
+                        pull.responses.computeIfAbsent(stateObjectName, k -> new ArrayList<>())
+                                .add(responseEvent.responseSrcStateObjects.get(stateObjectName));
                     }
+                    isComplete = --pull.pendingResponses == 0;
+                }
 
-                    synchronized (monitor) {
-                        responseLatch.countDown();
-                    }
+                if (isComplete) {
+                    pendingPulls.remove(responseEvent.sequenceID);
+                    pull.result.complete(pull.responses);
+                }
+            });
+        }
+    }
+
+    private void respond(final UUID parentMachineID, final long sequenceID, final int originNodeID, final Map<String, Object> outputs) {
+        final TransactionPullResponseEvent response = new TransactionPullResponseEvent(transactionName, sequenceID, originNodeID, outputs);
+        response.stripeKey = transactionName;
+        runtimeContext.netManager.dispatchEventAt(parentMachineID, response);
+    }
+
+    // Forwards the request to the children of this node in the relay tree of the requesting node,
+    // returns null at the leaves of the tree, which respond directly.
+    private PendingRelay relay(final TransactionPullRequestEvent request) {
+        final int[] children = relayTree(request.originNodeID).children(runtimeContext.nodeID);
+        if (children.length == 0)
+            return null;
+        final PendingRelay relay = new PendingRelay(request.requestObject, request.srcMachineID, children.length + 1);
+        pendingRelays.put(new RelayKey(request.originNodeID, request.sequenceID), relay);
+        final TransactionPullRequestEvent relayed = new TransactionPullRequestEvent(
+                transactionName,
+                request.sequenceID,
+                request.originNodeID,
+                request.stateObjectNames,
+                request.requestObject,
+                request.cacheRequest
+        );
+        runtimeContext.netManager.dispatchEventAt(children, relayed);
+        return relay;
+    }
+
+    // Collects the own prepared state and the partial results of the children, the last one
+    // combines them and responds to the parent. Incremental combiners are finished at the root only.
+    @SuppressWarnings("unchecked")
+    private void addRelayResponse(final RelayKey key, final PendingRelay relay, final Map<String, Object> outputs) {
+        final boolean isComplete;
+        synchronized (relay) {
+            for (final String stateObjectName : controller.getTransactionDescriptor().stateSrcObjectNames)
+                relay.responses.computeIfAbsent(stateObjectName, k -> new ArrayList<>()).add(outputs.get(stateObjectName));
+            isComplete = --relay.pendingResponses == 0;
+        }
+        if (!isComplete)
+            return;
+        pendingRelays.remove(key);
+
+        runtimeContext.laneExecutor.submitParallel(() -> {
+            final Map<String, Object> combined = new HashMap<>();
+            for (final Map.Entry<String, List<Object>> e : relay.responses.entrySet()) {
+                if (transactionDefinition.combinePhase instanceof IncrementalCombine) {
+                    final IncrementalCombine combiner = (IncrementalCombine) transactionDefinition.combinePhase;
+                    Object partial = combiner.init();
+                    for (final Object incoming : e.getValue())
+                        partial = (partial == null) ? incoming : combiner.merge(partial, incoming);
+                    combined.put(e.getKey(), partial);
+                } else
+                    combined.put(e.getKey(), transactionDefinition.combinePhase.combine(Arrays.asList(relay.requestObject), e.getValue()));
+            }
+            respond(relay.parentMachineID, key.sequenceID, key.originNodeID, combined);
+            return null;
+        }).exceptionally(t -> {
+            LOG.error("Combine phase of relayed pull transaction " + transactionName + " failed.", t);
+            return null;
+        });
+    }
 
-                } catch(Exception ex) {
-                    throw new IllegalStateException(ex);
+    private ReductionTree relayTree(final int originNodeID) {
+        return relayTrees.computeIfAbsent(originNodeID, origin -> new ReductionTree(
+                controller.getTransactionDescriptor().srcStateObjectNodes,
+                origin,
+                controller.getTransactionDescriptor().fanout
+        ));
+    }
+
+    // Merges the response into the accumulators of the pull, merges of all pulls share one lane.
+    @SuppressWarnings("unchecked")
+    private void foldResponse(final PendingPull pull, final TransactionPullResponseEvent responseEvent) {
+        final IncrementalCombine combiner = (IncrementalCombine) transactionDefinition.combinePhase;
+        synchronized (pull) {
+            final boolean isComplete = --pull.pendingResponses == 0;
+            if (isComplete)
+                pendingPulls.remove(responseEvent.sequenceID);
+
+            // Submitted under the lock, so the finishing merge is queued after all others of the pull.
+            runtimeContext.laneExecutor.submitSerial(combineLane, () -> {
+                for (final String stateObjectName : controller.getTransactionDescriptor().stateSrcObjectNames) {
+                    final List<Object> accumulator = pull.responses.get(stateObjectName);
+                    final Object partial = (accumulator == null) ? combiner.init() : accumulator.get(0);
+                    final Object incoming = responseEvent.responseSrcStateObjects.get(stateObjectName);
+                    pull.responses.put(stateObjectName, Arrays.asList((partial == null) ? incoming : combiner.merge(partial, incoming)));
+                }
+                if (isComplete) {
+                    for (final Map.Entry<String, List<Object>> e : pull.responses.entrySet())
+                        e.setValue(Arrays.asList(combiner.finish(e.getValue().get(0))));
+                    pull.result.complete(pull.responses);
                 }
+                return null;
+            }).exceptionally(t -> {
+                pull.result.completeExceptionally(t);
+                return null;
             });
         }
     }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class PendingRelay {
+
+        final Map<String, List<Object>> responses = new HashMap<>();
+
+        final Object requestObject;
+
+        final UUID parentMachineID;
+
+        int pendingResponses;
+
+        PendingRelay(final Object requestObject, final UUID parentMachineID, final int numResponses) {
+            this.requestObject      = requestObject;
+            this.parentMachineID    = parentMachineID;
+            this.pendingResponses   = numResponses;
+        }
+    }
+
+    private static final class RelayKey {
+
+        final int originNodeID;
+
+        final long sequenceID;
+
+        RelayKey(final int originNodeID, final long sequenceID) {
+            this.originNodeID   = originNodeID;
+            this.sequenceID     = sequenceID;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof RelayKey && ((RelayKey) o).originNodeID == originNodeID && ((RelayKey) o).sequenceID == sequenceID;
+        }
+
+        @Override
+        public int hashCode() { return 31 * originNodeID + Long.hashCode(sequenceID); }
+    }
+
+    private static final class PendingPull {
+
+        final Map<String, List<Object>> responses = new HashMap<>();
+
+        final CompletableFuture<Map<String, List<Object>>> result = new CompletableFuture<>();
+
+        int pendingResponses;
+
+        PendingPull(final int numResponses) { this.pendingResponses = numResponses; }
+    }
 }
@@ -1,17 +1,33 @@
 package de.tuberlin.pserver.dsl.transaction.executors;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.primitives.Ints;
 import de.tuberlin.pserver.dsl.transaction.TransactionController;
 import de.tuberlin.pserver.dsl.transaction.TransactionDefinition;
+import de.tuberlin.pserver.dsl.transaction.annotations.ReductionTopology;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionPushReduceEvent;
 import de.tuberlin.pserver.dsl.transaction.events.TransactionPushRequestEvent;
+import de.tuberlin.pserver.dsl.transaction.phases.IncrementalCombine;
 import de.tuberlin.pserver.dsl.transaction.phases.Prepare;
 import de.tuberlin.pserver.runtime.RuntimeContext;
+import de.tuberlin.pserver.runtime.core.events.IEventHandler;
+import de.tuberlin.pserver.runtime.core.serializer.KryoFactory;
+import de.tuberlin.pserver.runtime.parallel.ReductionTree;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DirtyTrackingMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.MatrixDelta32F;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PushTransactionExecutor extends TransactionExecutor {
 
@@ -19,12 +35,26 @@ public class PushTransactionExecutor extends TransactionExecutor {
     // Fields.
     // ---------------------------------------------------
 
+    private static final Logger LOG = LoggerFactory.getLogger(PushTransactionExecutor.class);
+
+    private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(KryoFactory.INSTANCE::create);
+
     public final TransactionDefinition transactionDefinition;
 
     private final DistributedTypeInfo[] srcStateObjects;
 
     private final DistributedTypeInfo[] dstStateObjects;
 
+    private final Object combineLane = new Object();
+
+    // Tree (or chain for RING) over the nodes of the transaction, null for the DIRECT topology.
+    private final ReductionTree reductionTree;
+
+    private final Map<Long, PendingRound> pendingRounds = new ConcurrentHashMap<>();
+
+    // Sequence number of the next push of this node, a round combines the n-th push of all nodes.
+    private long nextRound;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -38,6 +68,9 @@ public class PushTransactionExecutor extends TransactionExecutor {
         this.srcStateObjects = new DistributedTypeInfo[numSrcStateObjects];
         final int numDstStateObjects = controller.getTransactionDescriptor().stateDstObjectNames.size();
         this.dstStateObjects = new DistributedTypeInfo[numDstStateObjects];
+        final int[] nodes = controller.getTransactionDescriptor().dstStateObjectNodes;
+        this.reductionTree = (controller.getTransactionDescriptor().topology == ReductionTopology.DIRECT) ? null
+                : new ReductionTree(nodes, Ints.min(nodes), controller.getTransactionDescriptor().fanout);
         registerPushTransactionRequest();
     }
 
@@ -91,20 +124,31 @@ public class PushTransactionExecutor extends TransactionExecutor {
         for (int i = 0; i < controller.getTransactionDescriptor().stateSrcObjectNames.size(); ++i) {
             srcStateObjects[i].lock();
             final Prepare preparePhase = transactionDefinition.preparePhase;
-            preparedSrcStateObjects.add((preparePhase != null) ? preparePhase.prepare(requestObject, srcStateObjects[i]) : srcStateObjects[i]);
+            final Object prepared = (preparePhase != null) ? preparePhase.prepare(requestObject, srcStateObjects[i]) : srcStateObjects[i];
+            // Encoded under the lock, the delta is a snapshot of the dirty blocks.
+            if (controller.getTransactionDescriptor().delta && prepared instanceof DirtyTrackingMatrix32F)
+                preparedSrcStateObjects.add(MatrixDelta32F.encode((DirtyTrackingMatrix32F) prepared));
+            else // Reduced values are combined later, so they are copied under the lock as well.
+                preparedSrcStateObjects.add(reductionTree != null ? copy(prepared) : prepared);
             srcStateObjects[i].unlock();
         }
 
+        if (reductionTree != null) {
+            final long sequenceID = nextRound++;
+            addPartial(sequenceID, pendingRound(sequenceID), runtimeContext.nodeID, Arrays.asList(requestObject), preparedSrcStateObjects);
+            return null;
+        }
+
         final TransactionPushRequestEvent request = new TransactionPushRequestEvent(
                 transactionName,
+                runtimeContext.nodeID,
                 controller.getTransactionDescriptor().stateDstObjectNames,
                 preparedSrcStateObjects,
                 requestObject,
                 controller.getTransactionDescriptor().cacheRequestObject
         );
-
+        request.stripeKey = transactionName;
         runtimeContext.netManager.dispatchEventAt(txnDstNodes, request);
-
         return null;
     }
 
@@ -112,65 +156,269 @@ public class PushTransactionExecutor extends TransactionExecutor {
     // Private Methods.
     // ---------------------------------------------------
 
+    @SuppressWarnings("unchecked")
     private void registerPushTransactionRequest() {
         // Register push request listener only at the associated destination nodes.
         if (ArrayUtils.contains(controller.getTransactionDescriptor().dstStateObjectNodes, runtimeContext.nodeID)) {
 
-            if (transactionDefinition.combinePhase != null) { // USE COMBINER -> synchronous
+            if (reductionTree != null) {
+                registerPushReduction();
+                return;
+            }
+
+            final IEventHandler handler;
+
+            if (transactionDefinition.combinePhase instanceof IncrementalCombine) { // FOLD EACH PUSH ON ARRIVAL
 
-                AtomicInteger requestIndex = new AtomicInteger(0);
-                int numRequests = controller.getTransactionDescriptor().srcStateObjectNodes.length - 1;
-                List<Object> srcStateObjects = new ArrayList<>(numRequests);
-                List<Object> srcRequestObjects = new ArrayList<>(numRequests);
+                final IncrementalCombine combiner = (IncrementalCombine) transactionDefinition.combinePhase;
+                final int numRequests = controller.getTransactionDescriptor().srcStateObjectNodes.length - 1;
+                final Object batchLock = new Object();
+                final CombineBatch[] batch = { new CombineBatch(numRequests) };
 
-                runtimeContext.netManager.addEventListener(TransactionPushRequestEvent.TRANSACTION_REQUEST + transactionName, event -> {
+                handler = event -> {
                     final TransactionPushRequestEvent request = (TransactionPushRequestEvent) event;
-                    srcStateObjects.addAll(request.srcStateObjectsValues);
-                    srcRequestObjects.add(request.requestObject);
-                    int requestCounter = requestIndex.incrementAndGet();
-
-                    System.out.println("NODE [" + runtimeContext.nodeID + "] RECEIVED " + requestCounter + " PUSH REQUESTS.");
-
-                    if (requestCounter == numRequests) {
-                        new Thread(() -> {
-                            try {
-                                Object combinedSrcStateObject = transactionDefinition.combinePhase.combine(srcRequestObjects, srcStateObjects);
-                                for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i) {
-                                    dstStateObjects[i].lock();
-                                    transactionDefinition.applyPhase.apply(srcRequestObjects,
-                                            Arrays.asList(combinedSrcStateObject),
-                                            dstStateObjects[i]
-                                    );
-                                    dstStateObjects[i].unlock();
-                                }
-                            } catch (Exception ex) {
-                                throw new IllegalStateException(ex);
+                    synchronized (batchLock) {
+                        final CombineBatch current = batch[0];
+                        current.requestObjects.add(request.requestObject);
+                        final boolean isLast = current.requestObjects.size() == numRequests;
+                        if (isLast)
+                            batch[0] = new CombineBatch(numRequests);
+
+                        // Merges of all batches share one lane, a batch is finished after its last merge.
+                        // Submitted under the lock, so the merges run in the order the requests were batched.
+                        runtimeContext.laneExecutor.submitSerial(combineLane, () -> {
+                            for (int i = 0; i < request.srcStateObjectsValues.size(); ++i) {
+                                if (current.partials.size() == i)
+                                    current.partials.add(combiner.init());
+                                final Object partial = current.partials.get(i);
+                                final Object incoming = request.srcStateObjectsValues.get(i);
+                                current.partials.set(i, (partial == null) ? incoming : combiner.merge(partial, incoming));
                             }
-                        }).start();
+                            if (isLast) {
+                                for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i)
+                                    apply(current.requestObjects, Arrays.asList(combiner.finish(current.partials.get(i))), dstStateObjects[i]);
+                            }
+                            return null;
+                        }).exceptionally(this::logFailure);
                     }
-                });
+                };
+
+            } else if (transactionDefinition.combinePhase != null) { // USE COMBINER -> one apply per batch of all source nodes
+
+                final int numRequests = controller.getTransactionDescriptor().srcStateObjectNodes.length - 1;
+                final Object batchLock = new Object();
+                final List<Object>[] batch = new List[] { new ArrayList<>(numRequests), new ArrayList<>(numRequests) };
+
+                handler = event -> {
+                    final TransactionPushRequestEvent request = (TransactionPushRequestEvent) event;
+                    final List<Object> srcStateObjects, srcRequestObjects;
+                    synchronized (batchLock) {
+                        batch[0].addAll(request.srcStateObjectsValues);
+                        batch[1].add(request.requestObject);
+                        if (batch[1].size() < numRequests)
+                            return;
+                        srcStateObjects = batch[0];
+                        srcRequestObjects = batch[1];
+                        batch[0] = new ArrayList<>(numRequests);
+                        batch[1] = new ArrayList<>(numRequests);
+                    }
+
+                    runtimeContext.laneExecutor.submitParallel(
+                            () -> transactionDefinition.combinePhase.combine(srcRequestObjects, srcStateObjects)
+                    ).thenAccept(combinedSrcStateObject -> {
+                        for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i)
+                            apply(srcRequestObjects, Arrays.asList(combinedSrcStateObject), dstStateObjects[i]);
+                    }).exceptionally(this::logFailure);
+                };
 
             } else {
 
-                runtimeContext.netManager.addEventListener(TransactionPushRequestEvent.TRANSACTION_REQUEST + transactionName, event -> {
-                        final TransactionPushRequestEvent request = (TransactionPushRequestEvent) event;
-                        final List<Object> preparedSrcStateObjects = request.srcStateObjectsValues;
-                        new Thread(() -> {
-                            try {
-                                for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i) {
-                                    dstStateObjects[i].lock();
-                                    transactionDefinition.applyPhase.apply(Arrays.asList(request.requestObject),
-                                            Arrays.asList(preparedSrcStateObjects.get(i)),
-                                            dstStateObjects[i]
-                                    );
-                                    dstStateObjects[i].unlock();
-                                }
-                            } catch (Exception ex) {
-                                throw new IllegalStateException(ex);
-                            }
-                        }).start();
-                });
+                handler = event -> {
+                    final TransactionPushRequestEvent request = (TransactionPushRequestEvent) event;
+                    final List<Object> preparedSrcStateObjects = request.srcStateObjectsValues;
+                    for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i)
+                        apply(Arrays.asList(request.requestObject), Arrays.asList(preparedSrcStateObjects.get(i)), dstStateObjects[i]);
+                };
             }
+
+            runtimeContext.netManager.addEventListener(TransactionPushRequestEvent.TRANSACTION_REQUEST + transactionName, handler);
         }
     }
+
+    // TREE and RING pushes reduce the n-th push of all nodes up the tree, then send every child
+    // the partial result of all nodes outside of its subtree. Each node applies the combination
+    // of all pushes but its own, as with the DIRECT topology, with 2 (n - 1) messages per round.
+    private void registerPushReduction() {
+        runtimeContext.netManager.addEventListener(TransactionPushReduceEvent.TRANSACTION_REDUCE_UP + transactionName, event -> {
+            final TransactionPushReduceEvent up = (TransactionPushReduceEvent) event;
+            addPartial(up.sequenceID, pendingRound(up.sequenceID), up.senderNodeID, up.requestObjects, up.partials);
+        });
+        runtimeContext.netManager.addEventListener(TransactionPushReduceEvent.TRANSACTION_REDUCE_DOWN + transactionName, event -> {
+            final TransactionPushReduceEvent down = (TransactionPushReduceEvent) event;
+            final PendingRound round = pendingRounds.remove(down.sequenceID);
+            if (round == null) {
+                LOG.warn("Dropped reduced push of unknown round " + down.sequenceID + " of transaction " + transactionName + ".");
+                return;
+            }
+            runtimeContext.laneExecutor.submitParallel(() -> {
+                reduceDown(down.sequenceID, round, down);
+                return null;
+            }).exceptionally(this::logFailure);
+        });
+    }
+
+    private PendingRound pendingRound(final long sequenceID) {
+        return pendingRounds.computeIfAbsent(sequenceID, k -> new PendingRound(reductionTree.children(runtimeContext.nodeID).length + 1));
+    }
+
+    // Collects the own values and the partial results of the children, the last one combines
+    // them and sends the result to the parent, the root starts the way down.
+    private void addPartial(final long sequenceID,
+                            final PendingRound round,
+                            final int nodeID,
+                            final List<Object> requestObjects,
+                            final List<Object> values) {
+        final boolean isComplete;
+        synchronized (round) {
+            round.requestObjects.put(nodeID, requestObjects);
+            round.values.put(nodeID, values);
+            isComplete = --round.pendingInputs == 0;
+        }
+        if (!isComplete)
+            return;
+
+        runtimeContext.laneExecutor.submitParallel(() -> {
+            final int parent = reductionTree.parent(runtimeContext.nodeID);
+            if (parent == -1) {
+                pendingRounds.remove(sequenceID);
+                reduceDown(sequenceID, round, null);
+            } else
+                send(TransactionPushReduceEvent.TRANSACTION_REDUCE_UP, sequenceID, parent, round, null, -1);
+            return null;
+        }).exceptionally(this::logFailure);
+    }
+
+    // Sends each child the combination of everything outside of its subtree and applies the
+    // combination of everything but the own values.
+    private void reduceDown(final long sequenceID, final PendingRound round, final TransactionPushReduceEvent outside) throws Exception {
+        for (final int child : reductionTree.children(runtimeContext.nodeID))
+            send(TransactionPushReduceEvent.TRANSACTION_REDUCE_DOWN, sequenceID, child, round, outside, child);
+
+        final List<Object> requestObjects = new ArrayList<>();
+        final List<List<Object>> inputs = new ArrayList<>();
+        gather(round, outside, runtimeContext.nodeID, requestObjects, inputs);
+        final List<Object> result = combine(requestObjects, inputs, true);
+        for (int i = 0; i < controller.getTransactionDescriptor().stateDstObjectNames.size(); ++i)
+            apply(requestObjects, Arrays.asList(result.get(i)), dstStateObjects[i]);
+    }
+
+    // Sends the combination of the outside partial and all inputs of the round but the excluded one.
+    private void send(final String type,
+                      final long sequenceID,
+                      final int nodeID,
+                      final PendingRound round,
+                      final TransactionPushReduceEvent outside,
+                      final int excludedNodeID) throws Exception {
+        final List<Object> requestObjects = new ArrayList<>();
+        final List<List<Object>> inputs = new ArrayList<>();
+        gather(round, outside, excludedNodeID, requestObjects, inputs);
+        final TransactionPushReduceEvent event = new TransactionPushReduceEvent(
+                type + transactionName,
+                sequenceID,
+                runtimeContext.nodeID,
+                requestObjects,
+                combine(requestObjects, inputs, false)
+        );
+        event.stripeKey = transactionName;
+        runtimeContext.netManager.dispatchEventAt(new int[] { nodeID }, event);
+    }
+
+    private static void gather(final PendingRound round,
+                               final TransactionPushReduceEvent outside,
+                               final int excludedNodeID,
+                               final List<Object> requestObjects,
+                               final List<List<Object>> inputs) {
+        if (outside != null) {
+            requestObjects.addAll(outside.requestObjects);
+            inputs.add(outside.partials);
+        }
+        for (final Map.Entry<Integer, List<Object>> e : round.values.entrySet()) {
+            if (e.getKey() != excludedNodeID) {
+                requestObjects.addAll(round.requestObjects.get(e.getKey()));
+                inputs.add(e.getValue());
+            }
+        }
+    }
+
+    // Combines the inputs per source state object. Incremental combiners are finished only before the apply.
+    @SuppressWarnings("unchecked")
+    private List<Object> combine(final List<Object> requestObjects, final List<List<Object>> inputs, final boolean finish) throws Exception {
+        final List<Object> combined = new ArrayList<>();
+        for (int i = 0; i < controller.getTransactionDescriptor().stateSrcObjectNames.size(); ++i) {
+            final List<Object> values = new ArrayList<>(inputs.size());
+            for (final List<Object> input : inputs)
+                values.add(input.get(i));
+            if (transactionDefinition.combinePhase instanceof IncrementalCombine) {
+                final IncrementalCombine combiner = (IncrementalCombine) transactionDefinition.combinePhase;
+                // Inputs are combined several times on the way down, merges must not update them in place.
+                Object partial = combiner.init();
+                for (final Object incoming : values)
+                    partial = (partial == null) ? copy(incoming) : combiner.merge(partial, incoming);
+                combined.add(finish ? combiner.finish(partial) : partial);
+            } else
+                combined.add(transactionDefinition.combinePhase.combine(requestObjects, values));
+        }
+        return combined;
+    }
+
+    private static Object copy(final Object value) {
+        final Kryo kryo = kryoThreadLocal.get();
+        final Output output = new Output(4096, -1);
+        kryo.writeClassAndObject(output, value);
+        return kryo.readClassAndObject(new Input(output.getBuffer(), 0, output.position()));
+    }
+
+    // Applies to the same state object queue in its serial lane.
+    @SuppressWarnings("unchecked")
+    private void apply(final List<Object> requestObjects, final List<Object> srcStateObjects, final DistributedTypeInfo dstStateObject) {
+        runtimeContext.laneExecutor.submitSerial(dstStateObject, () -> {
+            dstStateObject.lock();
+            try {
+                return transactionDefinition.applyPhase.apply(requestObjects, srcStateObjects, dstStateObject);
+            } finally {
+                dstStateObject.unlock();
+            }
+        }).exceptionally(this::logFailure);
+    }
+
+    private <T> T logFailure(final Throwable t) {
+        LOG.error("Push transaction " + transactionName + " failed at node " + runtimeContext.nodeID + ".", t);
+        return null;
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class CombineBatch {
+
+        final List<Object> requestObjects;
+
+        // Accumulator per source state object.
+        final List<Object> partials = new ArrayList<>();
+
+        CombineBatch(final int numRequests) { this.requestObjects = new ArrayList<>(numRequests); }
+    }
+
+    // Inputs of one round at a node by the node they come from, the own and one per child.
+    private static final class PendingRound {
+
+        final Map<Integer, List<Object>> requestObjects = new HashMap<>();
+
+        final Map<Integer, List<Object>> values = new HashMap<>();
+
+        int pendingInputs;
+
+        PendingRound(final int numInputs) { this.pendingInputs = numInputs; }
+    }
 }
@@ -6,6 +6,7 @@ import de.tuberlin.pserver.dsl.transaction.annotations.TransactionType;
 import de.tuberlin.pserver.runtime.RuntimeContext;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public abstract class TransactionExecutor {
@@ -42,6 +43,17 @@ public abstract class TransactionExecutor {
 
     public abstract List<Object> execute(final Object requestObject) throws Exception;
 
+    /** Executes the transaction without waiting for remote results, if the transaction type allows it. */
+    public CompletableFuture<List<Object>> executeAsync(final Object requestObject) {
+        final CompletableFuture<List<Object>> result = new CompletableFuture<>();
+        try {
+            result.complete(execute(requestObject));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     public abstract Object[] getSrcObjects();
 
     public abstract Object[] getDstObjects();
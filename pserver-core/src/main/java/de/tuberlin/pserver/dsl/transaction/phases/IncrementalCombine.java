@@ -0,0 +1,28 @@
+package de.tuberlin.pserver.dsl.transaction.phases;
+
+
+import java.util.List;
+
+/**
+ * Combine phase that folds each remote object into an accumulator as soon as it arrives,
+ * instead of buffering all remote objects until the last one arrived. Merges of one
+ * transaction run one after another, {@code merge} may update {@code partial} in place.
+ */
+public interface IncrementalCombine<T> extends Combine<T> {
+
+    /** @return the empty accumulator, or null to take the first remote object as accumulator. */
+    default public T init() throws Exception { return null; }
+
+    public T merge(final T partial, final T incoming) throws Exception;
+
+    default public T finish(final T partial) throws Exception { return partial; }
+
+    // ---------------------------------------------------
+
+    default public T combine(final List<Object> requestObj, final List<T> remoteObjects) throws Exception {
+        T partial = init();
+        for (final T incoming : remoteObjects)
+            partial = (partial == null) ? incoming : merge(partial, incoming);
+        return finish(partial);
+    }
+}
@@ -7,6 +7,8 @@ import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
 import de.tuberlin.pserver.runtime.core.network.NetManager;
 import de.tuberlin.pserver.runtime.dht.DHTManager;
 import de.tuberlin.pserver.runtime.filesystem.FileSystemManager;
+import de.tuberlin.pserver.runtime.memory.PagePool;
+import de.tuberlin.pserver.runtime.parallel.LaneExecutor;
 
 public final class RuntimeContext {
 
@@ -32,6 +34,10 @@ public final class RuntimeContext {
 
     public final InfrastructureManager infraManager;
 
+    public final LaneExecutor laneExecutor;
+
+    public final PagePool pagePool;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -44,7 +50,9 @@ public final class RuntimeContext {
                           final DHTManager dhtManager,
                           final FileSystemManager fileManager,
                           final RuntimeManager runtimeManager,
-                          final InfrastructureManager infraManager) {
+                          final InfrastructureManager infraManager,
+                          final LaneExecutor laneExecutor,
+                          final PagePool pagePool) {
 
         this.machine            = Preconditions.checkNotNull(machine);
         this.numOfNodes         = numOfNodes;
@@ -55,5 +63,7 @@ public final class RuntimeContext {
         this.fileManager        = Preconditions.checkNotNull(fileManager);
         this.runtimeManager     = Preconditions.checkNotNull(runtimeManager);
         this.infraManager       = Preconditions.checkNotNull(infraManager);
+        this.laneExecutor       = Preconditions.checkNotNull(laneExecutor);
+        this.pagePool           = Preconditions.checkNotNull(pagePool);
     }
 }
@@ -16,6 +16,7 @@ import de.tuberlin.pserver.runtime.driver.ProgramContext;
 import de.tuberlin.pserver.runtime.events.Handler;
 import de.tuberlin.pserver.runtime.events.MsgEventHandler;
 import de.tuberlin.pserver.runtime.filesystem.FileSystemManager;
+import de.tuberlin.pserver.runtime.parallel.CollectiveChannel;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -47,6 +48,8 @@ public final class RuntimeManager implements Deactivatable {
 
     private final DHTManager dhtManager;
 
+    private final CollectiveChannel collectiveChannel;
+
     // ---------------------------------------------------
     // Constructor.
     // ---------------------------------------------------
@@ -63,6 +66,8 @@ public final class RuntimeManager implements Deactivatable {
 
         this.nodeIDs        = IntStream.iterate(0, x -> x + 1).limit(infraManager.getMachines().size()).toArray();
         this.remoteNodeIDs  = ArrayUtils.removeElements(nodeIDs, infraManager.getNodeID());
+
+        this.collectiveChannel = new CollectiveChannel(netManager, infraManager.getNodeID());
     }
 
     public void clearContext() {
@@ -71,6 +76,7 @@ public final class RuntimeManager implements Deactivatable {
     }
 
     public void deactivate() {
+        collectiveChannel.deactivate();
         dhtManager.deactivate();
         fileManager.deactivate();
     }
@@ -83,6 +89,8 @@ public final class RuntimeManager implements Deactivatable {
 
     public int[] getRemoteNodeIDs() { return remoteNodeIDs; }
 
+    public CollectiveChannel getCollectiveChannel() { return collectiveChannel; }
+
     // ---------------------------------------------------
 
     public TransactionDefinition createTransaction(final ProgramContext programContext, final TransactionDescriptor descriptor) {
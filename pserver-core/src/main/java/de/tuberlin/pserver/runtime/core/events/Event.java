@@ -12,6 +12,17 @@ public class Event implements Serializable {
 
     public String type;
 
+    // Interned ID of the type (see EventTypeRegistry), resolved lazily on dispatch or set by the decoder.
+    public transient int typeID = EventTypeRegistry.UNKNOWN_TYPE;
+
+    // Events with the same ordering key are dispatched in order by the same dispatcher
+    // thread. Without key, the type is used (see EventDispatcher), the NetManager orders
+    // received events by their source peer instead. Not transferred, it only orders the
+    // dispatch on the node that sets it.
+    public transient Object orderingKey;
+
+    transient long enqueueTime;
+
     private Object payload;
 
     public final boolean isSticky;
@@ -5,11 +5,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispatches events to the listeners registered for their type, either synchronously in
+ * the calling thread or asynchronously by a number of dispatcher threads. In the latter
+ * case, each thread owns a shard (lock-free queue) and events are assigned to a shard by
+ * their shard key, by default their ordering key or, without key, their type. Hence, events
+ * of the same shard key are delivered in order, while other keys are dispatched in parallel.
+ */
 public class EventDispatcher implements IEventDispatcher {
 
     // ---------------------------------------------------
@@ -21,21 +31,33 @@ public class EventDispatcher implements IEventDispatcher {
         public static final String KILL_EVENT = "KILL_EVENT";
     }
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
 
     private static final Logger LOG = LoggerFactory.getLogger(EventDispatcher.class);
 
-    private final Map<String, List<IEventHandler>> listenerMap;
+    private static final EventTypeRegistry TYPES = EventTypeRegistry.INSTANCE;
+
+    // Listeners indexed by the interned event type ID, the table is replaced on write.
+    private volatile CopyOnWriteArrayList<IEventHandler>[] listenerTable;
+
+    // Dispatch statistics indexed by the interned event type ID, the table is replaced on write.
+    private volatile EventTypeStats[] statsTable;
 
     private final boolean useDispatchThread;
 
-    private final Thread dispatcherThread;
+    private final DispatchShard[] shards;
 
     private final AtomicBoolean isRunning;
 
-    private final BlockingQueue<Event> eventQueue;
+    private final AtomicInteger numActiveShards;
 
     private final Map<String,List<Event>> cachedEvents;
 
@@ -47,50 +69,25 @@ public class EventDispatcher implements IEventDispatcher {
         this(useDispatchThread, null);
     }
     public EventDispatcher(boolean useDispatchThread, String name) {
+        this(useDispatchThread ? 1 : 0, name);
+    }
+    public EventDispatcher(int numDispatchThreads, String name) {
+        Preconditions.checkArgument(numDispatchThreads >= 0);
 
-        this.listenerMap        = new ConcurrentHashMap<>();
+        this.listenerTable      = newListenerTable(0);
+        this.statsTable         = new EventTypeStats[0];
         this.cachedEvents       = new ConcurrentHashMap<>();
-        this.useDispatchThread  = useDispatchThread;
+        this.useDispatchThread  = numDispatchThreads > 0;
         this.isRunning          = new AtomicBoolean(useDispatchThread);
-        this.eventQueue         = useDispatchThread ? new LinkedBlockingQueue<>() : null;
+        this.numActiveShards    = new AtomicInteger(numDispatchThreads);
+        this.shards             = new DispatchShard[numDispatchThreads];
 
-        if (useDispatchThread) {
-            final Runnable runnable = new Runnable() {
-                @Override
-                public void run() {
-                    while (isRunning.get() || eventQueue.size() != 0) {
-                        try {
-                            final Event event = eventQueue.take();
-                            LOG.trace("Process event {} - events left in queue: {}", event.type, eventQueue.size());
-                            // Stop dispatching thread, if a poison pill was received.
-                            if (!event.type.equals(InternalEventTypes.KILL_EVENT)) {
-                                if (!dispatch(event)) {
-                                    if (event.isSticky) {
-                                        List<Event> events = cachedEvents.get(event.type);
-                                        if (events == null) {
-                                            events = new ArrayList<>();
-                                            cachedEvents.put(event.type, events);
-                                        }
-                                        events.add(event);
-                                    }
-                                }
-                            } else
-                                LOG.trace("kill dispatcher thread");
-                        } catch (InterruptedException e) {
-                            LOG.error(e.getLocalizedMessage(), e);
-                        }
-                    }
-                    removeAllEventListener();
-                }
-            };
-            this.dispatcherThread =
-                    name != null ? new Thread(runnable, name)
-                            : new Thread(runnable);
-
-            this.dispatcherThread.start();
-        } else {
-            this.dispatcherThread = null;
+        for (int i = 0; i < numDispatchThreads; ++i) {
+            final String threadName = name == null ? null : (numDispatchThreads == 1 ? name : name + "-" + i);
+            shards[i] = new DispatchShard(threadName);
         }
+        for (final DispatchShard shard : shards)
+            shard.thread.start();
     }
 
     // ---------------------------------------------------
@@ -99,7 +96,10 @@ public class EventDispatcher implements IEventDispatcher {
 
     @Override
     public int getNumOfQueuedEvents() {
-        return eventQueue.size();
+        int numEvents = 0;
+        for (final DispatchShard shard : shards)
+            numEvents += shard.queueDepth.get();
+        return numEvents;
     }
 
     @Override
@@ -112,10 +112,14 @@ public class EventDispatcher implements IEventDispatcher {
     public synchronized void addEventListener(final String type, final IEventHandler listener) {
         Preconditions.checkNotNull(type);
         Preconditions.checkNotNull(listener);
-        List<IEventHandler> listeners = listenerMap.get(type);
+        final int typeID = TYPES.intern(type);
+        CopyOnWriteArrayList<IEventHandler> listeners = getListeners(typeID);
         if (listeners == null) {
-            listeners = Collections.synchronizedList(new LinkedList<>());
-            listenerMap.put(type, listeners);
+            listeners = new CopyOnWriteArrayList<>();
+            final CopyOnWriteArrayList<IEventHandler>[] table = newListenerTable(Math.max(listenerTable.length, typeID + 1));
+            System.arraycopy(listenerTable, 0, table, 0, listenerTable.length);
+            table[typeID] = listeners;
+            listenerTable = table;
         }
         listeners.add(listener);
         if (cachedEvents.containsKey(type)) {
@@ -135,7 +139,7 @@ public class EventDispatcher implements IEventDispatcher {
     @Override
     public List<IEventHandler> getEventListener(final String type) {
         Preconditions.checkNotNull(type);
-        return listenerMap.get(type);
+        return getListeners(TYPES.lookup(type));
     }
 
     @Override
@@ -146,7 +150,7 @@ public class EventDispatcher implements IEventDispatcher {
     @Override
     public synchronized boolean removeEventListener(final String type, final IEventHandler listener) {
         boolean isRemoved = false;
-        List<IEventHandler> listeners = listenerMap.get(Preconditions.checkNotNull(type));
+        List<IEventHandler> listeners = getListeners(TYPES.lookup(Preconditions.checkNotNull(type)));
         //if (listener == null && listeners.size() > 1)
         //    throw new IllegalStateException();
         if (listeners != null && listeners.size() > 0) {
@@ -159,40 +163,47 @@ public class EventDispatcher implements IEventDispatcher {
 
     @Override
     public synchronized void removeAllEventListener() {
-        listenerMap.values().forEach(List<IEventHandler>::clear);
-        listenerMap.clear();
+        for (final List<IEventHandler> listeners : listenerTable)
+            if (listeners != null)
+                listeners.clear();
+        listenerTable = newListenerTable(0);
     }
 
     @Override
-    public synchronized void dispatchEvent(final Event event) {
+    public void dispatchEvent(final Event event) {
         Preconditions.checkNotNull(event);
-        if (useDispatchThread)
-            eventQueue.offer(event);
-        else {
-            if (!dispatch(event)) {
-                if (event.isSticky) {
-                    List<Event> events = cachedEvents.get(event.type);
-                    if (events == null) {
-                        events = new ArrayList<>();
-                        cachedEvents.put(event.type, events);
-                    }
-                    events.add(event);
-                }
-            }
+        if (event.typeID == EventTypeRegistry.UNKNOWN_TYPE)
+            event.typeID = TYPES.intern(event.type);
+        if (useDispatchThread) {
+            getStats(event.typeID).enqueued();
+            event.enqueueTime = System.nanoTime();
+            selectShard(event).offer(event);
+        } else {
+            dispatchOrCache(event);
         }
     }
 
     @Override
     public boolean hasEventListener(final String type) {
         Preconditions.checkNotNull(type);
-        return listenerMap.get(type) != null;
+        return getListeners(TYPES.lookup(type)) != null;
     }
 
     public void setName(String name) {
         Preconditions.checkNotNull(name);
-        if (useDispatchThread) {
-            this.dispatcherThread.setName(name);
-        }
+        for (int i = 0; i < shards.length; ++i)
+            shards[i].thread.setName(shards.length == 1 ? name : name + "-" + i);
+    }
+
+    /**
+     * @return the dispatch statistics of all event types dispatched so far.
+     */
+    public Map<String, EventTypeStats> getEventTypeStats() {
+        final Map<String, EventTypeStats> stats = new TreeMap<>();
+        for (final EventTypeStats s : statsTable)
+            if (s != null)
+                stats.put(s.type, s);
+        return stats;
     }
 
     @Override
@@ -200,8 +211,9 @@ public class EventDispatcher implements IEventDispatcher {
         if (useDispatchThread) {
             LOG.trace("Shutdown event dispatcher");
             isRunning.set(false);
-            // Feed the poison pill to the event dispatcher thread to terminate it.
-            eventQueue.add(new Event(InternalEventTypes.KILL_EVENT));
+            // Feed the poison pill to the event dispatcher threads to terminate them.
+            for (final DispatchShard shard : shards)
+                shard.offer(new Event(InternalEventTypes.KILL_EVENT));
         } else {
             removeAllEventListener();
         }
@@ -209,9 +221,9 @@ public class EventDispatcher implements IEventDispatcher {
 
     @Override
     public void joinDispatcherThread() {
-        if (useDispatchThread) {
+        for (final DispatchShard shard : shards) {
             try {
-                dispatcherThread.join();
+                shard.thread.join();
             } catch (InterruptedException e) {
                 LOG.error(e.getLocalizedMessage());
             }
@@ -219,18 +231,78 @@ public class EventDispatcher implements IEventDispatcher {
     }
 
     @Override
-    public Thread getDispatcherThread() { return dispatcherThread; }
+    public Thread getDispatcherThread() { return shards.length > 0 ? shards[0].thread : null; }
+
+    @Override
+    public List<Thread> getDispatcherThreads() {
+        final List<Thread> threads = new ArrayList<>();
+        for (final DispatchShard shard : shards)
+            threads.add(shard.thread);
+        return threads;
+    }
+
+    // ---------------------------------------------------
+    // Protected Methods.
+    // ---------------------------------------------------
+
+    /** @return the key of the events delivered in order, by default the ordering key or the type. */
+    protected Object shardKey(final Event event) {
+        return event.orderingKey != null ? event.orderingKey : event.type;
+    }
 
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
+    private CopyOnWriteArrayList<IEventHandler> getListeners(final int typeID) {
+        final CopyOnWriteArrayList<IEventHandler>[] table = listenerTable;
+        return typeID >= 0 && typeID < table.length ? table[typeID] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CopyOnWriteArrayList<IEventHandler>[] newListenerTable(final int size) {
+        return (CopyOnWriteArrayList<IEventHandler>[]) new CopyOnWriteArrayList[size];
+    }
+
+    private EventTypeStats getStats(final int typeID) {
+        final EventTypeStats[] table = statsTable;
+        final EventTypeStats stats = typeID < table.length ? table[typeID] : null;
+        return stats != null ? stats : createStats(typeID);
+    }
+
+    private synchronized EventTypeStats createStats(final int typeID) {
+        if (typeID < statsTable.length && statsTable[typeID] != null)
+            return statsTable[typeID];
+        final EventTypeStats[] table = Arrays.copyOf(statsTable, Math.max(statsTable.length, typeID + 1));
+        table[typeID] = new EventTypeStats(TYPES.name(typeID));
+        statsTable = table;
+        return table[typeID];
+    }
+
+    private DispatchShard selectShard(final Event event) {
+        if (shards.length == 1)
+            return shards[0];
+        return shards[(shardKey(event).hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    private void dispatchOrCache(final Event event) {
+        if (!dispatch(event) && event.isSticky) {
+            // Serialized with addEventListener, which replays the cached events.
+            synchronized (this) {
+                if (getListeners(event.typeID) != null)
+                    dispatch(event);
+                else
+                    cachedEvents.computeIfAbsent(event.type, t -> new ArrayList<>()).add(event);
+            }
+        }
+    }
+
     private boolean dispatch(final Event event) {
         Preconditions.checkNotNull(event);
         List<IEventHandler> listeners = null;
         int retryCount = 5;
         while (listeners == null && retryCount-- > 0) {
-            listeners = listenerMap.get(event.type);
+            listeners = getListeners(event.typeID);
             if (listeners == null) {
                 try {
                     Thread.sleep(5);
@@ -240,8 +312,8 @@ public class EventDispatcher implements IEventDispatcher {
             }
         }
         if (listeners != null) {
-            List<IEventHandler> l = new ArrayList<>(listeners);
-            for (final IEventHandler el : l) {
+            // Iterates over a snapshot of the listeners.
+            for (final IEventHandler el : listeners) {
                 try {
                     el.handleEvent(event);
                 } catch (Throwable t) {
@@ -256,4 +328,66 @@ public class EventDispatcher implements IEventDispatcher {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    // ---------------------------------------------------
+    // Dispatch Shard.
+    // ---------------------------------------------------
+
+    // Multiple producers, single consumer (the dispatcher thread of the shard).
+    private final class DispatchShard implements Runnable {
+
+        final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+
+        final AtomicInteger queueDepth = new AtomicInteger();
+
+        final Thread thread;
+
+        volatile boolean isWaiting;
+
+        DispatchShard(final String name) {
+            this.thread = name != null ? new Thread(this, name) : new Thread(this);
+        }
+
+        void offer(final Event event) {
+            queueDepth.incrementAndGet();
+            queue.offer(event);
+            if (isWaiting)
+                LockSupport.unpark(thread);
+        }
+
+        Event take() {
+            Event event;
+            while ((event = queue.poll()) == null) {
+                isWaiting = true;
+                if (queue.isEmpty())
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                isWaiting = false;
+            }
+            queueDepth.decrementAndGet();
+            return event;
+        }
+
+        @Override
+        public void run() {
+            while (isRunning.get() || !queue.isEmpty()) {
+                final Event event = take();
+                LOG.trace("Process event {} - events left in queue: {}", event.type, queueDepth.get());
+                // Stop dispatching thread, if a poison pill was received.
+                if (!event.type.equals(InternalEventTypes.KILL_EVENT)) {
+                    final long start = System.nanoTime();
+                    try {
+                        dispatchOrCache(event);
+                    } catch (Throwable t) {
+                        // Already logged, keep the shard alive.
+                    } finally {
+                        getStats(event.typeID).dispatched(start - event.enqueueTime, System.nanoTime() - start);
+                    }
+                } else
+                    LOG.trace("kill dispatcher thread");
+            }
+            // The last terminating shard cleans up.
+            if (numActiveShards.decrementAndGet() == 0)
+                removeAllEventListener();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.tuberlin.pserver.runtime.core.events;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide interning of event type strings to dense integer IDs. IDs are assigned in
+ * registration order and never reused, hence they can be used as array index for the
+ * listener lookup and as compact type tag on the wire (see NetEventTypeTable).
+ */
+public enum EventTypeRegistry {
+    INSTANCE;
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int UNKNOWN_TYPE = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final Map<String, Integer> typeIDs = new ConcurrentHashMap<>();
+
+    private volatile String[] typeNames = new String[INITIAL_CAPACITY];
+
+    private volatile int numTypes;
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public int intern(final String type) {
+        final Integer typeID = typeIDs.get(Preconditions.checkNotNull(type));
+        return typeID != null ? typeID : register(type);
+    }
+
+    public int lookup(final String type) {
+        final Integer typeID = typeIDs.get(Preconditions.checkNotNull(type));
+        return typeID != null ? typeID : UNKNOWN_TYPE;
+    }
+
+    public String name(final int typeID) {
+        Preconditions.checkElementIndex(typeID, numTypes);
+        return typeNames[typeID];
+    }
+
+    public int size() { return numTypes; }
+
+    /**
+     * @return all types registered so far, indexed by their ID.
+     */
+    public String[] snapshot() {
+        final int n = numTypes;
+        return Arrays.copyOf(typeNames, n);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private synchronized int register(final String type) {
+        final Integer typeID = typeIDs.get(type);
+        if (typeID != null)
+            return typeID;
+        final int newTypeID = numTypes;
+        if (newTypeID == typeNames.length)
+            typeNames = Arrays.copyOf(typeNames, newTypeID * 2);
+        typeNames[newTypeID] = type.intern();
+        numTypes = newTypeID + 1;
+        typeIDs.put(typeNames[newTypeID], newTypeID);
+        return newTypeID;
+    }
+}
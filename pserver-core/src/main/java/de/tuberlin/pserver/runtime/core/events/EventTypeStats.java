@@ -0,0 +1,117 @@
+package de.tuberlin.pserver.runtime.core.events;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dispatch statistics of one event type: current queue depth and log2 histograms (in ns)
+ * of the queueing delay and of the time spent in the listeners.
+ */
+public final class EventTypeStats {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int NUM_BUCKETS = 64;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final String type;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private final AtomicLong numDispatched = new AtomicLong();
+
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(NUM_BUCKETS);
+
+    private final AtomicLongArray serviceHistogram = new AtomicLongArray(NUM_BUCKETS);
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public EventTypeStats(final String type) { this.type = type; }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public int getQueueDepth() { return queueDepth.get(); }
+
+    public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+    public long getNumDispatched() { return numDispatched.get(); }
+
+    // Bucket i counts durations in [2^(i-1), 2^i) ns, bucket 0 counts 0 ns.
+    public long[] getWaitHistogram() { return toArray(waitHistogram); }
+
+    public long[] getServiceHistogram() { return toArray(serviceHistogram); }
+
+    public long getWaitPercentile(final double p) { return percentile(waitHistogram, p); }
+
+    public long getServicePercentile(final double p) { return percentile(serviceHistogram, p); }
+
+    @Override
+    public String toString() {
+        return type + " [dispatched = " + getNumDispatched()
+                + ", depth = " + getQueueDepth() + ", max depth = " + getMaxQueueDepth()
+                + ", wait p50/p99 = " + getWaitPercentile(0.5) + "/" + getWaitPercentile(0.99) + " ns"
+                + ", service p50/p99 = " + getServicePercentile(0.5) + "/" + getServicePercentile(0.99) + " ns]";
+    }
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    void enqueued() {
+        final int depth = queueDepth.incrementAndGet();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth));
+    }
+
+    void dispatched(final long waitNanos, final long serviceNanos) {
+        queueDepth.decrementAndGet();
+        numDispatched.incrementAndGet();
+        waitHistogram.incrementAndGet(bucket(waitNanos));
+        serviceHistogram.incrementAndGet(bucket(serviceNanos));
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static int bucket(final long nanos) {
+        return nanos <= 0 ? 0 : Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static long[] toArray(final AtomicLongArray histogram) {
+        final long[] values = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; ++i)
+            values[i] = histogram.get(i);
+        return values;
+    }
+
+    // Upper bound of the bucket that contains the percentile.
+    private static long percentile(final AtomicLongArray histogram, final double p) {
+        final long[] values = toArray(histogram);
+        long total = 0;
+        for (final long v : values)
+            total += v;
+        if (total == 0)
+            return 0;
+        final long rank = (long) Math.ceil(p * total);
+        long sum = 0;
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            sum += values[i];
+            if (sum >= rank)
+                return i == 0 ? 0 : 1L << Math.min(62, i);
+        }
+        return Long.MAX_VALUE;
+    }
+}
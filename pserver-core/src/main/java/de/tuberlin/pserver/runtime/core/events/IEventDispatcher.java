@@ -29,4 +29,6 @@ public interface IEventDispatcher extends Deactivatable {
     void joinDispatcherThread();
 
     Thread getDispatcherThread();
+
+    List<Thread> getDispatcherThreads();
 }
@@ -3,9 +3,11 @@ package de.tuberlin.pserver.runtime.core.infra;
 
 import com.google.common.base.Preconditions;
 import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.runtime.core.events.Event;
 import de.tuberlin.pserver.runtime.core.events.EventDispatcher;
 import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
 import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+import org.apache.zookeeper.Watcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,10 +26,18 @@ public final class InfrastructureManager extends EventDispatcher implements Deac
 
     private final MachineDescriptor machine;
 
+    // The machines currently registered.
     private final Map<UUID, MachineDescriptor> uidDescMap;
 
+    // Every machine that joined, indexed by its node ID. Append only, machines that left stay
+    // as tombstones, so the node IDs of the others never change.
     private final List<MachineDescriptor> machines;
 
+    private final Map<UUID, Integer> nodeIDs;
+
+    // The machines currently registered in the order of their node IDs, replaced on each change.
+    private volatile List<MachineDescriptor> members;
+
     private ZookeeperClient zookeeper;
 
     public final boolean isClient;
@@ -42,6 +52,8 @@ public final class InfrastructureManager extends EventDispatcher implements Deac
         this.machine    = Preconditions.checkNotNull(machine);
         this.uidDescMap = new ConcurrentHashMap<>();
         this.machines   = Collections.synchronizedList(new ArrayList<>());
+        this.nodeIDs    = new ConcurrentHashMap<>();
+        this.members    = Collections.emptyList();
         this.isClient   = isClient;
         uidDescMap.put(machine.machineID, machine);
     }
@@ -62,11 +74,10 @@ public final class InfrastructureManager extends EventDispatcher implements Deac
         try {
             zookeeper = new ZookeeperClient(zookeeperServer);
             zookeeper.initDirectories();
-            if (!isClient) {
+            if (!isClient)
                 zookeeper.store(ZookeeperClient.ZOOKEEPER_NODES + "/" + machine.machineID.toString(), machine);
-                machines.add(machine);
-            }
             loadMachines();
+            watchMachines();
         }
         catch (Exception e) {
             throw new IllegalStateException(e);
@@ -80,25 +91,31 @@ public final class InfrastructureManager extends EventDispatcher implements Deac
 
     public MachineDescriptor getMachine() { return Preconditions.checkNotNull(machine); }
 
-    public List<MachineDescriptor> getMachines() { return Collections.unmodifiableList(machines); }
+    /** @return the machines currently registered, in the order of their node IDs. */
+    public List<MachineDescriptor> getMachines() { return members; }
 
-    public int getNodeID() { return machines.indexOf(machine); }
+    public int getNodeID() { return getMachineIndex(machine); }
 
-    public int getMachineIndex(final MachineDescriptor machine) { return machines.indexOf(Preconditions.checkNotNull(machine)); }
+    /** @return the node ID of the machine, which it keeps after other machines joined or left. */
+    public int getMachineIndex(final MachineDescriptor machine) {
+        final Integer nodeID = nodeIDs.get(Preconditions.checkNotNull(machine).machineID);
+        return nodeID != null ? nodeID : -1;
+    }
 
     public int getNodeIDFromMachineUID(final UUID machineUID) {
-        Preconditions.checkNotNull(machineUID);
-        for (int i = 0; i < machines.size(); ++i) {
-            if (machines.get(i).machineID.equals(machineUID))
-                return i;
-        }
-        throw new IllegalStateException();
+        final Integer nodeID = nodeIDs.get(Preconditions.checkNotNull(machineUID));
+        if (nodeID == null)
+            throw new IllegalStateException();
+        return nodeID;
     }
 
+    /** @return the machine of the node ID, also if it left already. */
     public MachineDescriptor getMachine(final int machineIndex) {
-        if (machineIndex >= machines.size())
-            return null;
-        return machines.get(machineIndex);
+        synchronized (machines) {
+            if (machineIndex >= machines.size())
+                return null;
+            return machines.get(machineIndex);
+        }
     }
 
     public MachineDescriptor getMachine(UUID machineID) {
@@ -110,27 +127,85 @@ public final class InfrastructureManager extends EventDispatcher implements Deac
     private void loadMachines() {
         int requiredNumNodes = zookeeper.readNumNodes();
         LOG.debug("InfraManager at " + machine.machineID.toString().substring(0,2) + " needs to wait for " + requiredNumNodes + " nodes to register");
-        int registeredNumNodes;
-        while((registeredNumNodes = readMachinesAndProcess()) < requiredNumNodes) {
-            LOG.debug("InfraManager at " + machine.machineID.toString().substring(0,2) + " waits for " + (requiredNumNodes - registeredNumNodes) + " nodes to register");
+        List<String> machineList;
+        while((machineList = zookeeper.getChildrenForPath(ZookeeperClient.ZOOKEEPER_NODES)).size() < requiredNumNodes) {
+            LOG.debug("InfraManager at " + machine.machineID.toString().substring(0,2) + " waits for " + (requiredNumNodes - machineList.size()) + " nodes to register");
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) { }
         }
-        Collections.sort(machines);
+        synchronized (machines) {
+            appendMachines(toMachineIDs(machineList));
+            updateMembers();
+        }
     }
 
-    private int readMachinesAndProcess() {
-        final List<String> machineList = zookeeper.getChildrenForPath(ZookeeperClient.ZOOKEEPER_NODES);
-        for (final String machineIDStr : machineList) {
-            final UUID machineID = UUID.fromString(machineIDStr);
-            if (!uidDescMap.containsKey(machineID) && !machine.machineID.equals(machineID)) {
-                MachineDescriptor md = (MachineDescriptor) zookeeper.readBlocking(ZookeeperClient.ZOOKEEPER_NODES + "/" + machineIDStr);
-                uidDescMap.put(machineID, md);
-                machines.add(md);
+    // Keeps the machines in sync with the nodes registered in zookeeper after the start and
+    // signals each change with an IM_EVENT_NODE_ADDED or IM_EVENT_NODE_REMOVED event.
+    private void watchMachines() {
+        final List<String> machineList;
+        try {
+            machineList = zookeeper.getChildrenForPathAndWatch(ZookeeperClient.ZOOKEEPER_NODES, event -> {
+                if (event.getType() == Watcher.Event.EventType.NodeChildrenChanged)
+                    watchMachines();
+            });
+        } catch (IllegalStateException e) {
+            LOG.warn("Stopped watching the registered nodes: " + e.getMessage());
+            return;
+        }
+        final Set<UUID> registered = toMachineIDs(machineList);
+        final List<MachineDescriptor> added;
+        final List<MachineDescriptor> removed = new ArrayList<>();
+        synchronized (machines) {
+            added = appendMachines(registered);
+            for (final MachineDescriptor md : members) {
+                if (!registered.contains(md.machineID) && !md.equals(machine)) {
+                    uidDescMap.remove(md.machineID);
+                    removed.add(md);
+                }
             }
+            updateMembers();
+        }
+        for (final MachineDescriptor md : added)
+            dispatchEvent(new Event(ZookeeperClient.IM_EVENT_NODE_ADDED, md));
+        for (final MachineDescriptor md : removed)
+            dispatchEvent(new Event(ZookeeperClient.IM_EVENT_NODE_REMOVED, md));
+    }
+
+    // Gives the machines not known yet the next node IDs in the order they registered in
+    // zookeeper, so all nodes assign the same IDs. Must hold the machines lock.
+    private List<MachineDescriptor> appendMachines(final Set<UUID> machineIDs) {
+        final SortedMap<Long, MachineDescriptor> joined = new TreeMap<>();
+        for (final UUID machineID : machineIDs) {
+            if (nodeIDs.containsKey(machineID))
+                continue;
+            final String path = ZookeeperClient.ZOOKEEPER_NODES + "/" + machineID;
+            final long creationID = zookeeper.readCreationID(path);
+            if (creationID < 0)
+                continue; // Left again.
+            joined.put(creationID, machine.machineID.equals(machineID) ? machine : (MachineDescriptor) zookeeper.readBlocking(path));
         }
-        return machines.size();
+        for (final MachineDescriptor md : joined.values()) {
+            nodeIDs.put(md.machineID, machines.size());
+            machines.add(md);
+            uidDescMap.put(md.machineID, md);
+        }
+        return new ArrayList<>(joined.values());
+    }
+
+    // Must hold the machines lock.
+    private void updateMembers() {
+        final List<MachineDescriptor> live = new ArrayList<>();
+        for (final MachineDescriptor md : machines)
+            if (uidDescMap.containsKey(md.machineID))
+                live.add(md);
+        members = Collections.unmodifiableList(live);
     }
 
+    private static Set<UUID> toMachineIDs(final List<String> machineList) {
+        final Set<UUID> machineIDs = new HashSet<>();
+        for (final String machineIDStr : machineList)
+            machineIDs.add(UUID.fromString(machineIDStr));
+        return machineIDs;
+    }
 }
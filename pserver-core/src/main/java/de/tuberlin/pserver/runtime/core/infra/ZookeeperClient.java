@@ -193,6 +193,16 @@ public final class ZookeeperClient implements Deactivatable{
         return result;
     }
 
+    /** @return the ID of the transaction that created the path, -1 if it does not exist. */
+    public long readCreationID(final String path) {
+        try {
+            final Stat stat = curator.checkExists().forPath(path);
+            return stat != null ? stat.getCzxid() : -1;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public void store(final String path, final Object object) throws Exception {
         try {
             final ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
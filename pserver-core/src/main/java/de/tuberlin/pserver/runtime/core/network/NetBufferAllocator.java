@@ -1,6 +1,7 @@
 package de.tuberlin.pserver.runtime.core.network;
 
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
 
 
 /**
@@ -35,7 +36,8 @@ public final class NetBufferAllocator {
 
         int numHeapArena = 3; //(int) Math.min(minNumHeapArena, runtime.maxMemory() / chunkSize / 2 / 3);
 
-        int numDirectArena = 0;
+        // The Kryo codec serializes directly into direct buffers, so these must be pooled as well.
+        int numDirectArena = (int) Math.max(1, Math.min(minNumHeapArena, PlatformDependent.maxDirectMemory() / chunkSize / 2 / 3));
 
         return new PooledByteBufAllocator(numHeapArena, numDirectArena, pageSize, maxOrder);
     }
@@ -0,0 +1,60 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+
+/**
+ * Counterpart of {@link NetByteBufOutput}: reads primitive arrays in bulk through
+ * typed views of the (big endian) NIO buffer instead of element by element.
+ */
+public final class NetByteBufInput extends ByteBufferInput {
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public int[] readInts(final int length) throws KryoException {
+        require(length * Integer.BYTES);
+        final int[] array = new int[length];
+        niobuffer.asIntBuffer().get(array);
+        advance(length * Integer.BYTES);
+        return array;
+    }
+
+    @Override
+    public long[] readLongs(final int length) throws KryoException {
+        require(length * Long.BYTES);
+        final long[] array = new long[length];
+        niobuffer.asLongBuffer().get(array);
+        advance(length * Long.BYTES);
+        return array;
+    }
+
+    @Override
+    public float[] readFloats(final int length) throws KryoException {
+        require(length * Float.BYTES);
+        final float[] array = new float[length];
+        niobuffer.asFloatBuffer().get(array);
+        advance(length * Float.BYTES);
+        return array;
+    }
+
+    @Override
+    public double[] readDoubles(final int length) throws KryoException {
+        require(length * Double.BYTES);
+        final double[] array = new double[length];
+        niobuffer.asDoubleBuffer().get(array);
+        advance(length * Double.BYTES);
+        return array;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void advance(final int numBytes) {
+        position += numBytes;
+        niobuffer.position(position);
+    }
+}
@@ -0,0 +1,128 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Kryo output that serializes directly into the writable region of a netty {@link ByteBuf}.
+ *
+ * Kryo writes through a NIO view of the buffer memory, so nothing is staged in an intermediate
+ * array. When the view runs full, the underlying (pooled) ByteBuf is grown by netty and the view
+ * is re-mapped at the same position, hence there is no upper bound for the frame size.
+ *
+ * The view is kept in big endian order: the native order fast paths of the Kryo 3.0.1
+ * ByteBufferOutput do not advance the NIO buffer position and would corrupt the frame.
+ * Instead, primitive arrays are bulk copied through typed views of the NIO buffer.
+ */
+public final class NetByteBufOutput extends ByteBufferOutput {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private ByteBuf buf;
+
+    private int baseIndex;
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public void setByteBuf(final ByteBuf buf) {
+        this.buf = Preconditions.checkNotNull(buf);
+        Preconditions.checkState(buf.nioBufferCount() == 1, "Composite buffers are not supported.");
+        this.baseIndex = buf.writerIndex();
+        mapWritableRegion(0);
+    }
+
+    /**
+     * Commits the serialized bytes to the ByteBuf (advances its writer index)
+     * and detaches this output from it.
+     *
+     * @return the number of bytes written since {@link #setByteBuf(ByteBuf)}.
+     */
+    public int commit() {
+        Preconditions.checkState(buf != null);
+        final int length = position();
+        buf.writerIndex(baseIndex + length);
+        buf = null;
+        niobuffer = null;
+        return length;
+    }
+
+    /** Copies the remaining bytes of the given (e.g. direct) buffer into the frame. */
+    public void writeBytes(final ByteBuffer src) throws KryoException {
+        final int length = src.remaining();
+        require(length);
+        niobuffer.put(src.duplicate());
+        advance(length);
+    }
+
+    @Override
+    public void writeInts(final int[] object) throws KryoException {
+        require(object.length * Integer.BYTES);
+        niobuffer.asIntBuffer().put(object);
+        advance(object.length * Integer.BYTES);
+    }
+
+    @Override
+    public void writeLongs(final long[] object) throws KryoException {
+        require(object.length * Long.BYTES);
+        niobuffer.asLongBuffer().put(object);
+        advance(object.length * Long.BYTES);
+    }
+
+    @Override
+    public void writeFloats(final float[] object) throws KryoException {
+        require(object.length * Float.BYTES);
+        niobuffer.asFloatBuffer().put(object);
+        advance(object.length * Float.BYTES);
+    }
+
+    @Override
+    public void writeDoubles(final double[] object) throws KryoException {
+        require(object.length * Double.BYTES);
+        niobuffer.asDoubleBuffer().put(object);
+        advance(object.length * Double.BYTES);
+    }
+
+    // ---------------------------------------------------
+    // Protected Methods.
+    // ---------------------------------------------------
+
+    @Override
+    protected boolean require(final int required) throws KryoException {
+        if (capacity - position >= required)
+            return false;
+        try {
+            buf.writerIndex(baseIndex + position);
+            buf.ensureWritable(required);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer overflow. Max capacity: " + buf.maxCapacity() + ", required: " + required);
+        }
+        mapWritableRegion(position);
+        return true;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void advance(final int numBytes) {
+        position += numBytes;
+        niobuffer.position(position);
+    }
+
+    private void mapWritableRegion(final int pos) {
+        // For pooled buffers the NIO buffer is a view on the same memory (no copy).
+        final ByteBuffer view = buf.nioBuffer(baseIndex, buf.capacity() - baseIndex);
+        view.order(ByteOrder.BIG_ENDIAN);
+        view.position(pos);
+        setBuffer(view, buf.maxCapacity() - baseIndex);
+    }
+}
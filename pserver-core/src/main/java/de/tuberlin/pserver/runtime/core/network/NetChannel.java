@@ -1,9 +1,12 @@
 package de.tuberlin.pserver.runtime.core.network;
 
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NetChannel {
 
@@ -14,6 +17,10 @@ public class NetChannel {
         CHANNEL_OUT
     }
 
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
     public final MachineDescriptor descriptor;
 
     public final NetChannelType type;
@@ -22,26 +29,125 @@ public class NetChannel {
 
     public final Queue<Object> writeQueue;
 
-    public NetChannel(MachineDescriptor descriptor, NetChannelType type, Channel channel) {
-        this.descriptor = descriptor;
-        this.type       = type;
-        this.channel    = channel;
-        this.writeQueue = new ConcurrentLinkedQueue<>();
+    private final boolean batchingEnabled;
+
+    private final long flushDelayMicros;
+
+    private final Runnable writeTask = this::writePending;
+
+    // Frame compression and byte counters, null if the pipeline has no compression stage.
+    private final NetFrameCompression compression;
+
+    // Only accessed from the event loop of the channel.
+
+    private int pendingFrames;
+
+    private ScheduledFuture<?> flushTask;
+
+    // Flush statistics, without the flushes the encoder issues once flushBytes are encoded.
+
+    private final AtomicLong numFrames = new AtomicLong();
+
+    private final AtomicLong numFlushes = new AtomicLong();
+
+    private volatile int maxFramesPerFlush;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public NetChannel(MachineDescriptor descriptor, NetChannelType type, Channel channel, NetChannelConfig config) {
+        this(descriptor, type, channel, config, null);
+    }
+
+    public NetChannel(MachineDescriptor descriptor, NetChannelType type, Channel channel, NetChannelConfig config,
+                      NetFrameCompression compression) {
+        this.descriptor       = descriptor;
+        this.type             = type;
+        this.channel          = channel;
+        this.writeQueue       = new ConcurrentLinkedQueue<>();
+        this.batchingEnabled  = config.batchingEnabled;
+        this.flushDelayMicros = config.flushDelayMicros;
+        this.compression      = compression;
     }
 
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
     public void sendMsg(Object msg) {
         writeQueue.add(msg);
-        if (channel.isWritable()) {
-            channel.eventLoop().execute(() -> {
-                if (!writeQueue.isEmpty() && channel.isWritable()) {
-                    Object data = writeQueue.poll();
-                    channel.writeAndFlush(data, channel.voidPromise());
-                }
-            });
-        }
+        if (channel.isWritable())
+            channel.eventLoop().execute(writeTask);
+    }
+
+    public long getNumFrames() { return numFrames.get(); }
+
+    public long getNumFlushes() { return numFlushes.get(); }
+
+    public int getMaxFramesPerFlush() { return maxFramesPerFlush; }
+
+    public double getAvgFramesPerFlush() {
+        final long flushes = numFlushes.get();
+        return flushes == 0 ? 0.0 : (double) numFrames.get() / flushes;
     }
 
+    public NetFrameCompression getCompression() { return compression; }
+
     public String toString() {
         return channel.id().toString();
     }
-}
\ No newline at end of file
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    // Must be called from the event loop of the channel.
+    void writePending() {
+        if (!batchingEnabled) {
+            while (!writeQueue.isEmpty() && channel.isWritable()) {
+                channel.writeAndFlush(writeQueue.poll(), channel.voidPromise());
+                recordFlush(1);
+            }
+            return;
+        }
+
+        Object msg;
+        while (channel.isWritable() && (msg = writeQueue.poll()) != null) {
+            // The encoder flushes once flushBytes are encoded, the outbound buffer of the channel
+            // does not see frames still queued at an encoder running on its own executor group.
+            channel.write(msg, channel.voidPromise());
+            ++pendingFrames;
+        }
+
+        if (pendingFrames > 0) {
+            if (!channel.isWritable() || flushDelayMicros == 0)
+                flushPending();
+            else if (flushTask == null)
+                flushTask = channel.eventLoop().schedule(this::flushPending, flushDelayMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void flushPending() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pendingFrames > 0) {
+            channel.flush();
+            recordFlush(pendingFrames);
+            pendingFrames = 0;
+        }
+    }
+
+    private void recordFlush(final int frames) {
+        numFrames.addAndGet(frames);
+        numFlushes.incrementAndGet();
+        if (frames > maxFramesPerFlush)
+            maxFramesPerFlush = frames;
+    }
+}
@@ -1,5 +1,7 @@
 package de.tuberlin.pserver.runtime.core.network;
 
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.config.Config;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
@@ -66,18 +68,69 @@ public class NetChannelConfig {
 
     private final int writeBufferLowWatermark     = 8 * 1024;
 
+    // OUTBOUND BATCHING
+
+    public static final String BATCHING_ENABLED             = "global.net.batching.enabled";
+
+    public static final String BATCHING_FLUSH_BYTES         = "global.net.batching.flushBytes";
+
+    public static final String BATCHING_FLUSH_DELAY_MICROS  = "global.net.batching.flushDelayMicros";
+
+    // FRAME COMPRESSION
+
+    public static final String COMPRESSION_ENABLED          = "global.net.compression.enabled";
+
+    public static final String COMPRESSION_MIN_FRAME_BYTES  = "global.net.compression.minFrameBytes";
+
+    public static final String COMPRESSION_MAX_RATIO        = "global.net.compression.maxRatio";
+
+    public static final String COMPRESSION_SAMPLE_INTERVAL  = "global.net.compression.sampleInterval";
+
     // --------------------------------------------------
     // Fields.
     // --------------------------------------------------
 
     private final ByteBufAllocator allocator;
 
+    // When batching is enabled, a NetChannel only writes the messages of its queue and flushes
+    // them as one batch, either when the encoder serialized flushBytes of them or when
+    // flushDelayMicros elapsed after the first unflushed write. Note that pending bytes above
+    // the high watermark make the channel unwritable, which also forces a flush.
+
+    public final boolean batchingEnabled;
+
+    public final int flushBytes;
+
+    public final long flushDelayMicros;
+
+    // When compression is enabled on both ends of a connection, frames of at least
+    // compressionMinFrameBytes are LZ4 compressed as long as they shrink to compressionMaxRatio
+    // of their size; otherwise compression is suspended for compressionSampleInterval (doubling)
+    // large frames before the ratio is sampled again (see NetFrameCompression).
+
+    public final boolean compressionEnabled;
+
+    public final int compressionMinFrameBytes;
+
+    public final double compressionMaxRatio;
+
+    public final int compressionSampleInterval;
+
     // --------------------------------------------------
     // Constructor.
     // --------------------------------------------------
 
-    public NetChannelConfig(ByteBufAllocator allocator) {
-        this.allocator = allocator;
+    public NetChannelConfig(Config config, ByteBufAllocator allocator) {
+        this.allocator         = Preconditions.checkNotNull(allocator);
+        this.batchingEnabled   = config.hasPath(BATCHING_ENABLED) && config.getBoolean(BATCHING_ENABLED);
+        this.flushBytes        = config.hasPath(BATCHING_FLUSH_BYTES) ? config.getInt(BATCHING_FLUSH_BYTES) : writeBufferHighWatermark;
+        this.flushDelayMicros  = config.hasPath(BATCHING_FLUSH_DELAY_MICROS) ? config.getLong(BATCHING_FLUSH_DELAY_MICROS) : 50;
+        Preconditions.checkState(flushBytes > 0 && flushDelayMicros >= 0);
+        this.compressionEnabled        = config.hasPath(COMPRESSION_ENABLED) && config.getBoolean(COMPRESSION_ENABLED);
+        this.compressionMinFrameBytes  = config.hasPath(COMPRESSION_MIN_FRAME_BYTES) ? config.getInt(COMPRESSION_MIN_FRAME_BYTES) : 4096;
+        this.compressionMaxRatio       = config.hasPath(COMPRESSION_MAX_RATIO) ? config.getDouble(COMPRESSION_MAX_RATIO) : 0.8;
+        this.compressionSampleInterval = config.hasPath(COMPRESSION_SAMPLE_INTERVAL) ? config.getInt(COMPRESSION_SAMPLE_INTERVAL) : 16;
+        Preconditions.checkState(compressionMinFrameBytes >= 0 && compressionMaxRatio > 0 && compressionSampleInterval > 0);
     }
 
     // --------------------------------------------------
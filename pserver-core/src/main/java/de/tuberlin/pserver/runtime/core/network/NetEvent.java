@@ -24,11 +24,20 @@ public class NetEvent extends Event {
 
     public transient NetChannel netChannel;
 
-    //@GsonUtils.Exclude
-    public UUID srcMachineID;
+    // Set for bulk transfers, which are striped by this key over the bulk connections
+    // of a peer (same key, same connection). Events without key use the control lane.
+    public transient Object stripeKey;
 
-    //@GsonUtils.Exclude
-    public UUID dstMachineID;
+    // Sending node as index into the machines of the InfrastructureManager, -1 for clients.
+    // Written as var int into the header by the NetEventSerializer.
+    public int srcNodeIndex = -1;
+
+    // Not transferred, resolved by the receiver from srcNodeIndex (clients: the connection).
+    public transient UUID srcMachineID;
+
+    // Not transferred, the receiving machine.
+
+    public transient UUID dstMachineID;
 
     public NetEvent() { super(null, null); }
     public NetEvent(final String type, final boolean isSticky) { super(type, isSticky); }
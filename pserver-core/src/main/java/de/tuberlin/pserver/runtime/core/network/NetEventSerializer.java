@@ -0,0 +1,58 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import de.tuberlin.pserver.runtime.core.events.EventTypeRegistry;
+
+/**
+ * Default serializer of all NetEvents. The type string is replaced by a tag of the per
+ * connection {@link NetEventTypeTable}, followed by the sender's node index as var int; the
+ * remaining fields are written as usual. The destination machine is implied by the connection.
+ */
+public final class NetEventSerializer<T extends NetEvent> extends FieldSerializer<T> {
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public NetEventSerializer(final Kryo kryo, final Class<T> type) {
+        super(kryo, type);
+        removeField("type");
+        removeField("srcNodeIndex");
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public void write(final Kryo kryo, final Output output, final T event) {
+        final NetEventTypeTable.Sender sender = (NetEventTypeTable.Sender) kryo.getContext().get(NetEventTypeTable.SENDER_KEY);
+        NetEventTypeTable.write(output, sender, event.type, event.typeID);
+        output.writeVarInt(event.srcNodeIndex + 1, true);
+        super.write(kryo, output, event);
+    }
+
+    @Override
+    public T read(final Kryo kryo, final Input input, final Class<T> type) {
+        final NetEventTypeTable.Receiver receiver = (NetEventTypeTable.Receiver) kryo.getContext().get(NetEventTypeTable.RECEIVER_KEY);
+        final int typeID = NetEventTypeTable.read(input, receiver);
+        final int srcNodeIndex = input.readVarInt(true) - 1;
+        final T event = super.read(kryo, input, type);
+        event.typeID = typeID;
+        event.srcNodeIndex = srcNodeIndex;
+        event.type = typeID != EventTypeRegistry.UNKNOWN_TYPE ? EventTypeRegistry.INSTANCE.name(typeID) : null;
+        return event;
+    }
+
+    @Override
+    public T copy(final Kryo kryo, final T original) {
+        final T event = super.copy(kryo, original);
+        event.type = original.type;
+        event.typeID = original.typeID;
+        event.srcNodeIndex = original.srcNodeIndex;
+        return event;
+    }
+}
@@ -0,0 +1,136 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import de.tuberlin.pserver.runtime.core.events.EventTypeRegistry;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Per connection dictionary of event types. A type is written as var int tag of its
+ * (sender side) interned ID. The IDs known at connection setup are exchanged with the
+ * {@link NetHandshake}, types registered later are defined inline on their first use.
+ *
+ * Tags: 0 = null, 1 = literal string (no dictionary), 2 = definition (ID + string),
+ * >= 3 = reference to a defined ID.
+ */
+public final class NetEventTypeTable {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    static final String SENDER_KEY = "pserver.net.typeSender";
+
+    static final String RECEIVER_KEY = "pserver.net.typeReceiver";
+
+    private static final int TAG_NULL = 0;
+
+    private static final int TAG_LITERAL = 1;
+
+    private static final int TAG_DEFINITION = 2;
+
+    private static final int TAG_REFERENCE_BASE = 3;
+
+    private static final EventTypeRegistry TYPES = EventTypeRegistry.INSTANCE;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    private NetEventTypeTable() {}
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public static void write(final Output output, final Sender sender, final String type, final int typeID) {
+        if (type == null) {
+            output.writeVarInt(TAG_NULL, true);
+        } else if (sender == null) {
+            output.writeVarInt(TAG_LITERAL, true);
+            output.writeString(type);
+        } else {
+            sender.write(output, type, typeID != EventTypeRegistry.UNKNOWN_TYPE ? typeID : TYPES.intern(type));
+        }
+    }
+
+    /**
+     * @return the local interned ID of the type or UNKNOWN_TYPE for null.
+     */
+    public static int read(final Input input, final Receiver receiver) {
+        final int tag = input.readVarInt(true);
+        switch (tag) {
+            case TAG_NULL:
+                return EventTypeRegistry.UNKNOWN_TYPE;
+            case TAG_LITERAL:
+                return TYPES.intern(input.readString());
+            case TAG_DEFINITION: {
+                final int remoteID = input.readVarInt(true);
+                final int typeID = TYPES.intern(input.readString());
+                if (receiver != null)
+                    receiver.define(remoteID, typeID);
+                return typeID;
+            }
+            default:
+                if (receiver == null)
+                    throw new IllegalStateException("Event type reference without dictionary.");
+                return receiver.resolve(tag - TAG_REFERENCE_BASE);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /** Outbound side, owned by the encoder of a connection. */
+    public static final class Sender {
+
+        private final BitSet defined = new BitSet();
+
+        public void announce(final String[] types) {
+            if (types != null)
+                defined.set(0, types.length);
+        }
+
+        private void write(final Output output, final String type, final int typeID) {
+            if (defined.get(typeID)) {
+                output.writeVarInt(TAG_REFERENCE_BASE + typeID, true);
+            } else {
+                output.writeVarInt(TAG_DEFINITION, true);
+                output.writeVarInt(typeID, true);
+                output.writeString(type);
+                defined.set(typeID);
+            }
+        }
+    }
+
+    /** Inbound side, owned by the decoder of a connection. Maps remote to local type IDs. */
+    public static final class Receiver {
+
+        private int[] localIDs = new int[0];
+
+        public void announce(final String[] types) {
+            if (types != null)
+                for (int i = 0; i < types.length; ++i)
+                    define(i, TYPES.intern(types[i]));
+        }
+
+        private void define(final int remoteID, final int typeID) {
+            if (remoteID >= localIDs.length) {
+                final int size = localIDs.length;
+                localIDs = Arrays.copyOf(localIDs, Math.max(remoteID + 1, size * 2));
+                Arrays.fill(localIDs, size, localIDs.length, EventTypeRegistry.UNKNOWN_TYPE);
+            }
+            localIDs[remoteID] = typeID;
+        }
+
+        private int resolve(final int remoteID) {
+            final int typeID = remoteID < localIDs.length ? localIDs[remoteID] : EventTypeRegistry.UNKNOWN_TYPE;
+            if (typeID == EventTypeRegistry.UNKNOWN_TYPE)
+                throw new IllegalStateException("Undefined event type id: " + remoteID);
+            return typeID;
+        }
+    }
+}
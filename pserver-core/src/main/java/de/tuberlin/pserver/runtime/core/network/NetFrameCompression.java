@@ -0,0 +1,209 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LZ4 compression of the frames of one connection, shared by its frame encoder and decoder.
+ *
+ * Compression is negotiated in the handshake: frames are only compressed after the peer
+ * announced support. It is applied adaptively, frames below {@code minFrameBytes} are never
+ * compressed (e.g. small control events). For larger frames (e.g. matrix partitions or DHT
+ * segments) the achieved ratio is sampled per event type; if a frame does not shrink below
+ * {@code maxRatio}, the following large frames of its type are sent uncompressed and the skip
+ * interval doubles with each further bad sample. Serialized random floats, for instance, hardly compress at all
+ * (see LZ4CompressionBenchmark), so the CPU time is not spent on them.
+ *
+ * A compressed frame sets the high bit of the length field and is followed by the
+ * uncompressed length: [compressed length | FLAG][raw length][LZ4 block].
+ */
+public final class NetFrameCompression {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    static final int COMPRESSED_FLAG = 0x80000000;
+
+    static final int HEADER_SIZE = 8;
+
+    private static final int MAX_SKIP_SHIFT = 6;
+
+    // The JNI instance of lz4 1.3.0 ignores the array offset of sliced heap ByteBuffers.
+
+    private static final LZ4Compressor compressor = LZ4Factory.fastestJavaInstance().fastCompressor();
+
+    private static final LZ4FastDecompressor decompressor = LZ4Factory.fastestJavaInstance().fastDecompressor();
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final boolean enabled;
+
+    private final int minFrameBytes;
+
+    private final double maxRatio;
+
+    private final int sampleInterval;
+
+    private volatile boolean negotiated;
+
+    // Sampling state per event type (or message class), only accessed by the encoder.
+    private final Map<Object, Sampler> samplers = new HashMap<>();
+
+    // Byte counters, including the frame headers.
+
+    private final AtomicLong rawBytesOut = new AtomicLong();
+
+    private final AtomicLong wireBytesOut = new AtomicLong();
+
+    private final AtomicLong compressedFramesOut = new AtomicLong();
+
+    private final AtomicLong rawBytesIn = new AtomicLong();
+
+    private final AtomicLong wireBytesIn = new AtomicLong();
+
+    private final AtomicLong compressedFramesIn = new AtomicLong();
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public NetFrameCompression(final NetChannelConfig config) {
+        this(config.compressionEnabled, config.compressionMinFrameBytes,
+                config.compressionMaxRatio, config.compressionSampleInterval);
+    }
+
+    public NetFrameCompression(final boolean enabled, final int minFrameBytes, final double maxRatio, final int sampleInterval) {
+        this.enabled        = enabled;
+        this.minFrameBytes  = minFrameBytes;
+        this.maxRatio       = maxRatio;
+        this.sampleInterval = sampleInterval;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public boolean isEnabled() { return enabled; }
+
+    public boolean isNegotiated() { return negotiated; }
+
+    public long getRawBytesOut() { return rawBytesOut.get(); }
+
+    public long getWireBytesOut() { return wireBytesOut.get(); }
+
+    public long getCompressedFramesOut() { return compressedFramesOut.get(); }
+
+    public long getRawBytesIn() { return rawBytesIn.get(); }
+
+    public long getWireBytesIn() { return wireBytesIn.get(); }
+
+    public long getCompressedFramesIn() { return compressedFramesIn.get(); }
+
+    // Wire bytes per raw byte, 1.0 without compression.
+    public double getRatioOut() { return ratio(wireBytesOut.get(), rawBytesOut.get()); }
+
+    public double getRatioIn() { return ratio(wireBytesIn.get(), rawBytesIn.get()); }
+
+    @Override
+    public String toString() {
+        return "NetFrameCompression(negotiated = " + negotiated
+                + ", out = " + wireBytesOut.get() + "/" + rawBytesOut.get() + " bytes"
+                + ", in = " + wireBytesIn.get() + "/" + rawBytesIn.get() + " bytes)";
+    }
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    // Called with the handshake of the peer.
+    void negotiate(final boolean peerSupportsCompression) {
+        negotiated = enabled && peerSupportsCompression;
+    }
+
+    // Compresses the frame [startIdx, startIdx + 4 + len) of 'out' in place if worthwhile.
+    void encode(final ByteBufAllocator allocator, final Object msg, final ByteBuf out, final int startIdx, final int len) {
+        rawBytesOut.addAndGet(4 + len);
+        if (!negotiated || len < minFrameBytes) {
+            wireBytesOut.addAndGet(4 + len);
+            return;
+        }
+        final Sampler sampler = samplers.computeIfAbsent(
+                msg instanceof NetEvent ? ((NetEvent) msg).type : msg.getClass(), k -> new Sampler());
+        if (sampler.skip()) {
+            wireBytesOut.addAndGet(4 + len);
+            return;
+        }
+        final int maxCompressedLen = compressor.maxCompressedLength(len);
+        final ByteBuf compressed = allocator.directBuffer(maxCompressedLen);
+        try {
+            final int compressedLen = compressor.compress(out.nioBuffer(startIdx + 4, len), 0, len,
+                    compressed.nioBuffer(0, maxCompressedLen), 0, maxCompressedLen);
+            if (compressedLen + HEADER_SIZE > len * maxRatio) {
+                sampler.skipShift = Math.min(MAX_SKIP_SHIFT, sampler.skipShift + 1);
+                sampler.skipFrames = sampleInterval << (sampler.skipShift - 1);
+                wireBytesOut.addAndGet(4 + len);
+                return;
+            }
+            sampler.skipShift = 0;
+            out.writerIndex(startIdx);
+            out.writeInt(COMPRESSED_FLAG | compressedLen);
+            out.writeInt(len);
+            out.writeBytes(compressed, 0, compressedLen);
+            wireBytesOut.addAndGet(HEADER_SIZE + compressedLen);
+            compressedFramesOut.incrementAndGet();
+        } finally {
+            compressed.release();
+        }
+    }
+
+    // Decompresses the LZ4 block of a compressed frame into a buffer owned by the caller.
+    ByteBuf decode(final ByteBufAllocator allocator, final ByteBuf in, final int blockIdx, final int compressedLen, final int len) {
+        final ByteBuf frame = allocator.directBuffer(len);
+        decompressor.decompress(in.nioBuffer(blockIdx, compressedLen), 0, frame.nioBuffer(0, len), 0, len);
+        frame.writerIndex(len);
+        recordIn(HEADER_SIZE + compressedLen, 4 + len);
+        compressedFramesIn.incrementAndGet();
+        return frame;
+    }
+
+    void recordIn(final int wireBytes, final int rawBytes) {
+        wireBytesIn.addAndGet(wireBytes);
+        rawBytesIn.addAndGet(rawBytes);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static double ratio(final long wireBytes, final long rawBytes) {
+        return rawBytes == 0 ? 1.0 : (double) wireBytes / rawBytes;
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class Sampler {
+
+        int skipFrames;
+
+        int skipShift;
+
+        boolean skip() {
+            if (skipFrames == 0)
+                return false;
+            --skipFrames;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import java.io.Serializable;
+
+/**
+ * First object exchanged on a new connection. Identifies the connecting machine and
+ * the lane of the connection within the connections to that machine. Also carries the
+ * event types interned by the sender so far, indexed by ID (see NetEventTypeTable), and
+ * whether the sender accepts compressed frames (see NetFrameCompression).
+ */
+public final class NetHandshake implements Serializable {
+
+    private static final long serialVersionUID = -1L;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final MachineDescriptor machine;
+
+    public final int lane;
+
+    public final String[] eventTypes;
+
+    public final boolean compression;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public NetHandshake() { this(null, 0, null, false); }
+    public NetHandshake(final MachineDescriptor machine, final int lane, final String[] eventTypes) {
+        this(machine, lane, eventTypes, false);
+    }
+    public NetHandshake(final MachineDescriptor machine, final int lane, final String[] eventTypes, final boolean compression) {
+        this.machine = machine;
+        this.lane = lane;
+        this.eventTypes = eventTypes;
+        this.compression = compression;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "NetHandshake(" + machine + ", lane = " + lane + ", compression = " + compression + ")";
+    }
+}
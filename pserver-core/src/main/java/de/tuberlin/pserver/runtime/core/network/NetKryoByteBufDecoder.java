@@ -0,0 +1,124 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.Kryo;
+import de.tuberlin.pserver.runtime.core.serializer.KryoFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Zero-copy counterpart of {@link NetKryoByteBufEncoder}. A complete frame is deserialized
+ * through a NIO view of the cumulated inbound ByteBuf, no intermediate array is involved and
+ * frames of any size are supported. Compressed frames are decompressed into a pooled buffer
+ * first (see NetFrameCompression).
+ */
+public final class NetKryoByteBufDecoder extends ByteToMessageDecoder {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final ThreadLocal<Kryo> kryoThreadLocal = new ThreadLocal<Kryo>() {
+        @Override protected Kryo initialValue() {
+            return KryoFactory.INSTANCE.create();
+        }
+    };
+
+    private static final ThreadLocal<NetByteBufInput> inputThreadLocal = new ThreadLocal<NetByteBufInput>() {
+        @Override protected NetByteBufInput initialValue() {
+            return new NetByteBufInput();
+        }
+    };
+
+    // Event types defined by the peer on this connection.
+    private final NetEventTypeTable.Receiver typeReceiver = new NetEventTypeTable.Receiver();
+
+    private final NetFrameCompression compression;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public NetKryoByteBufDecoder() { this(null); }
+    public NetKryoByteBufDecoder(final NetFrameCompression compression) {
+        this.compression = compression;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public NetFrameCompression getCompression() { return compression; }
+
+    // ---------------------------------------------------
+    // Protected Methods.
+    // ---------------------------------------------------
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (in.readableBytes() < LENGTH_FIELD_SIZE)
+            return;
+
+        final int frameIdx = in.readerIndex();
+        final int header = in.getInt(frameIdx);
+        final Object object;
+        if ((header & NetFrameCompression.COMPRESSED_FLAG) != 0) {
+            if (compression == null)
+                throw new IllegalStateException("Compressed frame on a connection without compression.");
+            final int compressedLen = header & ~NetFrameCompression.COMPRESSED_FLAG;
+            if (in.readableBytes() < NetFrameCompression.HEADER_SIZE + compressedLen)
+                return;
+            final int len = in.getInt(frameIdx + LENGTH_FIELD_SIZE);
+            final ByteBuf frame = compression.decode(ctx.alloc(), in, frameIdx + NetFrameCompression.HEADER_SIZE, compressedLen, len);
+            try {
+                object = deserialize(frame.nioBuffer(0, len));
+            } finally {
+                frame.release();
+            }
+            in.skipBytes(NetFrameCompression.HEADER_SIZE + compressedLen);
+        } else {
+            final int len = header;
+            if (in.readableBytes() < LENGTH_FIELD_SIZE + len)
+                return;
+            object = deserialize(in.nioBuffer(frameIdx + LENGTH_FIELD_SIZE, len));
+            in.skipBytes(LENGTH_FIELD_SIZE + len);
+            if (compression != null)
+                compression.recordIn(LENGTH_FIELD_SIZE + len, LENGTH_FIELD_SIZE + len);
+        }
+        if (object instanceof NetHandshake) {
+            final NetHandshake handshake = (NetHandshake) object;
+            typeReceiver.announce(handshake.eventTypes);
+            if (compression != null)
+                compression.negotiate(handshake.compression);
+        }
+        out.add(object);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private Object deserialize(final ByteBuffer frame) {
+        frame.order(ByteOrder.BIG_ENDIAN);
+        final NetByteBufInput input = inputThreadLocal.get();
+        input.setBuffer(frame);
+        final Kryo kryo = kryoThreadLocal.get();
+        KryoFactory.INSTANCE.update(kryo);
+        kryo.getContext().put(NetEventTypeTable.RECEIVER_KEY, typeReceiver);
+        try {
+            return kryo.readClassAndObject(input);
+        } finally {
+            kryo.getContext().remove(NetEventTypeTable.RECEIVER_KEY);
+        }
+    }
+}
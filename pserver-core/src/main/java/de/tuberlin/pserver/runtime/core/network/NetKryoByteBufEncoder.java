@@ -0,0 +1,122 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.core.serializer.KryoFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Zero-copy Kryo encoder. Objects are serialized straight into the pooled (direct) outbound
+ * ByteBuf, prefixed by the frame length. In contrast to {@link NetKryoEncoder} no thread-local
+ * staging array is needed and the frame size is only bounded by the ByteBuf max capacity.
+ * Large frames may be LZ4 compressed afterwards (see NetFrameCompression).
+ * With a flush threshold, the encoder flushes as soon as the bytes it encoded since the
+ * last flush reach it. Only the encoder knows the serialized size of the batched messages,
+ * also if it runs on its own executor group instead of the event loop of the channel.
+ */
+public final class NetKryoByteBufEncoder extends MessageToByteEncoder<Object> {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int INITIAL_ENCODING_BUFFER = 8192; // one allocator page
+
+    private static final int LENGTH_PLACEHOLDER = 0;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final ThreadLocal<Kryo> kryoThreadLocal = new ThreadLocal<Kryo>() {
+        @Override protected Kryo initialValue() {
+            return KryoFactory.INSTANCE.create();
+        }
+    };
+
+    private static final ThreadLocal<NetByteBufOutput> outputThreadLocal = new ThreadLocal<NetByteBufOutput>() {
+        @Override protected NetByteBufOutput initialValue() {
+            return new NetByteBufOutput();
+        }
+    };
+
+    // Event types already defined on this connection.
+    private final NetEventTypeTable.Sender typeSender = new NetEventTypeTable.Sender();
+
+    private final NetFrameCompression compression;
+
+    // Flush threshold in encoded bytes, 0 if only explicit flushes are passed on.
+    private final int flushBytes;
+
+    // Only accessed from the executor of this encoder.
+    private long unflushedBytes;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public NetKryoByteBufEncoder() { this(null); }
+    public NetKryoByteBufEncoder(final NetFrameCompression compression) { this(compression, 0); }
+    public NetKryoByteBufEncoder(final NetFrameCompression compression, final int flushBytes) {
+        super(true);
+        Preconditions.checkArgument(flushBytes >= 0);
+        this.compression = compression;
+        this.flushBytes = flushBytes;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        super.write(ctx, msg, promise);
+        if (flushBytes > 0 && unflushedBytes >= flushBytes)
+            flush(ctx);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        unflushedBytes = 0;
+        ctx.flush();
+    }
+
+    // ---------------------------------------------------
+    // Protected Methods.
+    // ---------------------------------------------------
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) throws Exception {
+        return ctx.alloc().directBuffer(INITIAL_ENCODING_BUFFER);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+        final NetByteBufOutput output = outputThreadLocal.get();
+        try {
+            final int startIdx = out.writerIndex();
+            out.writeInt(LENGTH_PLACEHOLDER);
+            output.setByteBuf(out);
+            final Kryo kryo = kryoThreadLocal.get();
+            KryoFactory.INSTANCE.update(kryo);
+            kryo.getContext().put(NetEventTypeTable.SENDER_KEY, typeSender);
+            try {
+                kryo.writeClassAndObject(output, msg);
+            } finally {
+                kryo.getContext().remove(NetEventTypeTable.SENDER_KEY);
+            }
+            final int len = output.commit();
+            out.setInt(startIdx, len);
+            if (compression != null)
+                compression.encode(ctx.alloc(), msg, out, startIdx, len);
+            unflushedBytes += out.writerIndex() - startIdx;
+            if (msg instanceof NetHandshake)
+                typeSender.announce(((NetHandshake) msg).eventTypes);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
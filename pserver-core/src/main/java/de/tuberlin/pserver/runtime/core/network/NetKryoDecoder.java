@@ -11,6 +11,10 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
 
 
+/**
+ * Array staging Kryo decoder. Superseded by {@link NetKryoByteBufDecoder} in the network pipeline,
+ * kept as baseline for the codec micro benchmark.
+ */
 public class NetKryoDecoder extends ByteToMessageDecoder {
 
     private final static int DECODING_BUFFER =  1024 * 1024 * 20; // 20MB
@@ -9,6 +9,10 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 
+/**
+ * Array staging Kryo encoder. Superseded by {@link NetKryoByteBufEncoder} in the network pipeline,
+ * kept as baseline for the codec micro benchmark.
+ */
 public final class NetKryoEncoder extends MessageToByteEncoder<Object> {
 
     private final static int ENCODING_BUFFER =  1024 * 1024 * 200; // 200MB
@@ -1,7 +1,10 @@
 package de.tuberlin.pserver.runtime.core.network;
 
 import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.runtime.core.events.Event;
 import de.tuberlin.pserver.runtime.core.events.EventDispatcher;
+import de.tuberlin.pserver.runtime.core.events.EventTypeRegistry;
 import de.tuberlin.pserver.runtime.core.infra.InfrastructureManager;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
@@ -10,16 +13,18 @@ import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class NetManager extends EventDispatcher {
 
@@ -35,20 +40,45 @@ public final class NetManager extends EventDispatcher {
 
     public static final String ALL_CHANNELS = "broadcast_channels";
 
+    public static final String NET_TRANSPORT        = "global.net.transport";
+
+    public static final String NET_BOSS_THREADS     = "global.net.bossThreads";
+
+    public static final String NET_IO_THREADS       = "global.net.ioThreads";
+
+    public static final String NET_ENCODER_THREADS  = "global.net.encoderThreads";
+
+    public static final String NET_CONNECTIONS_PER_PEER = "global.net.connectionsPerPeer";
+
+    public static final String NET_DISPATCH_THREADS = "global.net.dispatchThreads";
+
+    // 0 lets netty choose, twice the number of cores.
+    public static final int DEFAULT_IO_THREADS = 0;
+
+    public static final int DEFAULT_DISPATCH_THREADS = 4;
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
 
+    private static final Logger LOG = LoggerFactory.getLogger(NetManager.class);
+
     private final InfrastructureManager infraManager;
 
     private final MachineDescriptor machine;
 
     private final NetChannelConfig  nettyChannelConfig;
 
+    private final NetTransport      transport;
+
     private final EventLoopGroup    bossGroup;
 
+    // Socket I/O and inbound decoding.
     private final EventLoopGroup    workerGroup;
 
+    // Outbound encoding, if null the encoder runs on the channel event loop.
+    private final EventExecutorGroup encoderGroup;
+
     private final ByteBufAllocator  nettyAllocator;
 
     private final ChannelGroup      outChannels;
@@ -57,16 +87,21 @@ public final class NetManager extends EventDispatcher {
 
     private final ChannelGroup      allChannels;
 
-    private final Map<MachineDescriptor, NetChannel> activeChannels;
+    // Lane 0 of each peer carries the control events, the others the striped bulk events.
+    private final Map<MachineDescriptor, NetLanes> activeChannels;
+
+    private final int numLanes;
 
     private final Object connectMutex = new Object();
 
+    private final Map<MachineDescriptor, Object> connectLocks = new ConcurrentHashMap<>();
+
     // ---------------------------------------------------
     // Constructor.
     // ---------------------------------------------------
 
-    public NetManager(InfrastructureManager infraManager, MachineDescriptor machine, int numThreads) {
-        super(true);
+    public NetManager(Config config, InfrastructureManager infraManager, MachineDescriptor machine) {
+        super(config.hasPath(NET_DISPATCH_THREADS) ? config.getInt(NET_DISPATCH_THREADS) : DEFAULT_DISPATCH_THREADS, null);
 
         //System.setProperty("io.netty.allocator.numHeapArenas", "0");
         //System.setProperty("io.netty.allocator.numDirectArenas", "32");
@@ -74,11 +109,19 @@ public final class NetManager extends EventDispatcher {
 
         this.infraManager       = Preconditions.checkNotNull(infraManager);
         this.machine            = Preconditions.checkNotNull(machine);
-        this.bossGroup          = new NioEventLoopGroup(1);
-        this.workerGroup        = new NioEventLoopGroup(numThreads);
+        final int numBossThreads    = config.hasPath(NET_BOSS_THREADS) ? config.getInt(NET_BOSS_THREADS) : 1;
+        final int numIOThreads      = config.hasPath(NET_IO_THREADS) ? config.getInt(NET_IO_THREADS) : DEFAULT_IO_THREADS;
+        final int numEncoderThreads = config.hasPath(NET_ENCODER_THREADS) ? config.getInt(NET_ENCODER_THREADS) : 0;
+
+        this.transport          = NetTransport.select(config.hasPath(NET_TRANSPORT) ? config.getString(NET_TRANSPORT) : "nio");
+        this.bossGroup          = transport.createEventLoopGroup(numBossThreads);
+        this.workerGroup        = transport.createEventLoopGroup(numIOThreads);
+        this.encoderGroup       = numEncoderThreads > 0 ? new DefaultEventExecutorGroup(numEncoderThreads) : null;
         this.nettyAllocator     = NetBufferAllocator.create(); // TODO: Change this!
-        this.nettyChannelConfig = new NetChannelConfig(nettyAllocator);
+        this.nettyChannelConfig = new NetChannelConfig(Preconditions.checkNotNull(config), nettyAllocator);
         this.activeChannels     = new ConcurrentHashMap<>();
+        this.numLanes           = config.hasPath(NET_CONNECTIONS_PER_PEER) ? config.getInt(NET_CONNECTIONS_PER_PEER) : 1;
+        Preconditions.checkState(numLanes > 0);
         this.outChannels        = new DefaultChannelGroup(OUT_CHANNELS, GlobalEventExecutor.INSTANCE);
         this.inChannels         = new DefaultChannelGroup(IN_CHANNELS,  GlobalEventExecutor.INSTANCE);
         this.allChannels        = new DefaultChannelGroup(ALL_CHANNELS, GlobalEventExecutor.INSTANCE);
@@ -94,18 +137,36 @@ public final class NetManager extends EventDispatcher {
         }
     }
 
+    // Events of one peer share a dispatcher thread, so they are handled in the order the peer sent them.
+    @Override
+    protected Object shardKey(final Event event) {
+        if (event instanceof NetEvent && ((NetEvent) event).srcMachineID != null)
+            return ((NetEvent) event).srcMachineID;
+        return super.shardKey(event);
+    }
+
     // ---------------------------------------------------
     // Public Methods.
     // ---------------------------------------------------
 
     public MachineDescriptor getMachineDescriptor() { return machine; }
 
-    public Collection<NetChannel> getActiveChannels() { return Collections.unmodifiableCollection(activeChannels.values()); }
+    public NetTransport getTransport() { return transport; }
+
+    /** @return the machine of a node index as sent in the event header, or null if unknown. */
+    public MachineDescriptor getMachine(final int nodeIndex) { return nodeIndex >= 0 ? infraManager.getMachine(nodeIndex) : null; }
+
+    public Collection<NetChannel> getActiveChannels() {
+        final List<NetChannel> channels = new ArrayList<>();
+        for (final NetLanes lanes : activeChannels.values())
+            lanes.collect(channels);
+        return Collections.unmodifiableList(channels);
+    }
 
     public void start() throws Exception {
         ServerBootstrap srvBootstrap = new ServerBootstrap();
         srvBootstrap.group(bossGroup, workerGroup);
-        srvBootstrap.channel(NioServerSocketChannel.class);
+        srvBootstrap.channel(transport.serverChannelClass());
         srvBootstrap.option(ChannelOption.ALLOCATOR, nettyAllocator);
         srvBootstrap.childOption(ChannelOption.ALLOCATOR, nettyAllocator);
         srvBootstrap.handler(new LoggingHandler(LogLevel.INFO));
@@ -126,19 +187,34 @@ public final class NetManager extends EventDispatcher {
         closeAllChannels();
         bossGroup.shutdownGracefully().sync();
         workerGroup.shutdownGracefully().sync();
+        if (encoderGroup != null)
+            encoderGroup.shutdownGracefully().sync();
     }
 
     public NetChannel connect(MachineDescriptor descriptor) {
+        // Concurrent connects to the same peer open its lanes once. Not the connectMutex, the
+        // event loops take that one while registering channels this thread waits for.
+        synchronized (connectLocks.computeIfAbsent(descriptor, md -> new Object())) {
+            final NetLanes lanes;
+            synchronized (connectMutex) {
+                lanes = activeChannels.get(descriptor);
+                if (lanes != null && lanes.isComplete())
+                    return lanes.get(NetLanes.CONTROL_LANE);
+            }
 
-        synchronized (connectMutex) {
-            if (activeChannels.containsKey(descriptor))
-                return activeChannels.get(descriptor);
+            for (int lane = 0; lane < numLanes; ++lane) {
+                if (lanes == null || lanes.get(lane) == null)
+                    connect(descriptor, lane);
+            }
+            return activeChannels.get(descriptor).get(NetLanes.CONTROL_LANE);
         }
+    }
 
+    private void connect(MachineDescriptor descriptor, int lane) {
         try {
             Bootstrap cliBootstrap = new Bootstrap();
             cliBootstrap.group(workerGroup);
-            cliBootstrap.channel(NioSocketChannel.class);
+            cliBootstrap.channel(transport.clientChannelClass());
             cliBootstrap.option(ChannelOption.ALLOCATOR, nettyAllocator);
             cliBootstrap.handler(new ChannelInitializer<SocketChannel>() {
 
@@ -161,7 +237,7 @@ public final class NetManager extends EventDispatcher {
                 // Connection attempt was not successful.
                 throw new IllegalStateException(channelFuture.cause());
             } else {
-                return registerNetChannel(descriptor, channelFuture.channel(), NetChannel.NetChannelType.CHANNEL_OUT);
+                registerNetChannel(descriptor, lane, channelFuture.channel(), NetChannel.NetChannelType.CHANNEL_OUT);
             }
 
         } catch(Exception e) {
@@ -188,7 +264,8 @@ public final class NetManager extends EventDispatcher {
         for (;;) {
             boolean isConnected = true;
             for (MachineDescriptor nd : in) {
-                if (!activeChannels.containsKey(nd)) {
+                final NetLanes lanes = activeChannels.get(nd);
+                if (lanes == null || !lanes.isComplete()) {
                     isConnected = false;
                     break;
                 }
@@ -214,7 +291,8 @@ public final class NetManager extends EventDispatcher {
 
     public void dispatchEventAt(UUID machineID, NetEvent event) { dispatchEventAt(infraManager.getMachine(machineID), event); }
     public void dispatchEventAt(MachineDescriptor netDescriptor, NetEvent event) {
-        NetChannel netChannel = activeChannels.get(Preconditions.checkNotNull(netDescriptor));
+        final NetLanes lanes = activeChannels.get(Preconditions.checkNotNull(netDescriptor));
+        final NetChannel netChannel = lanes != null ? lanes.select(event) : null;
         if (netChannel == null) {
             if (netDescriptor.equals(machine)) {
                 event.netChannel    = null;
@@ -228,6 +306,7 @@ public final class NetManager extends EventDispatcher {
         event.netChannel    = netChannel;
         event.dstMachineID  = netDescriptor.machineID;
         event.srcMachineID  = machine.machineID;
+        event.srcNodeIndex  = infraManager.getNodeID();
         netChannel.sendMsg(event);
     }
 
@@ -243,11 +322,10 @@ public final class NetManager extends EventDispatcher {
     // ---------------------------------------------------
 
     private void defineServerPipeline(ChannelPipeline pipeline) {
+        final NetFrameCompression compression = new NetFrameCompression(nettyChannelConfig);
+        addEncoder(pipeline, compression);
         pipeline.addLast(
-                //new Lz4FrameEncoder(true),
-                //new Lz4FrameDecoder(true),
-                new NetKryoEncoder(),
-                new NetKryoDecoder(),
+                new NetKryoByteBufDecoder(compression),
                 //new ObjectEncoder(),
                 //new ObjectDecoder(Integer.MAX_VALUE, ClassResolvers.cacheDisabled(getClass().getClassLoader())),
                 new NetHandshakeRequestHandler(),
@@ -256,11 +334,10 @@ public final class NetManager extends EventDispatcher {
     }
 
     private void defineClientPipeline(ChannelPipeline pipeline) {
+        final NetFrameCompression compression = new NetFrameCompression(nettyChannelConfig);
+        addEncoder(pipeline, compression);
         pipeline.addLast(
-                //new Lz4FrameEncoder(true),
-                //new Lz4FrameDecoder(true),
-                new NetKryoEncoder(),
-                new NetKryoDecoder(),
+                new NetKryoByteBufDecoder(compression),
                 //new ObjectEncoder(),
                 //new ObjectDecoder(Integer.MAX_VALUE, ClassResolvers.cacheDisabled(getClass().getClassLoader())),
                 new NetHandshakeResponseHandler(),
@@ -268,22 +345,28 @@ public final class NetManager extends EventDispatcher {
         );
     }
 
-    private NetChannel registerNetChannel(MachineDescriptor descriptor, Channel channel,  NetChannel.NetChannelType type) {
+    private void addEncoder(ChannelPipeline pipeline, NetFrameCompression compression) {
+        // Batches are flushed by size in the encoder, see NetChannel.
+        final int flushBytes = nettyChannelConfig.batchingEnabled ? nettyChannelConfig.flushBytes : 0;
+        if (encoderGroup != null)
+            pipeline.addLast(encoderGroup, new NetKryoByteBufEncoder(compression, flushBytes));
+        else
+            pipeline.addLast(new NetKryoByteBufEncoder(compression, flushBytes));
+    }
+
+    private NetChannel registerNetChannel(MachineDescriptor descriptor, int lane, Channel channel,  NetChannel.NetChannelType type) {
         NetChannel netChannel;
 
+        final NetFrameCompression compression = channel.pipeline().get(NetKryoByteBufDecoder.class).getCompression();
+        netChannel = new NetChannel(descriptor, type, channel, nettyChannelConfig, compression);
         synchronized (connectMutex) {
-            if (activeChannels.containsKey(descriptor)) {
-
-                if (type == NetChannel.NetChannelType.CHANNEL_IN)
-                    System.out.println("ALREADY CONNECTED ======> PRODUCE MEMORY LEAK!!!!!!");
-                    //channel.close();
-                return activeChannels.get(descriptor);
-            }
+            final NetLanes lanes = activeChannels.computeIfAbsent(descriptor, md -> new NetLanes(numLanes));
+            // Both peers connected at the same time: the lane keeps the first channel, the
+            // duplicate is still bound and answered below, so events sent on it are delivered.
+            if (lanes.get(lane) == null)
+                lanes.set(lane, netChannel);
         }
 
-        netChannel = new NetChannel(descriptor, type, channel);
-        activeChannels.put(descriptor, netChannel);
-
         boolean channelGroupRegistration = false;
         if (type == NetChannel.NetChannelType.CHANNEL_IN)
             channelGroupRegistration = inChannels.add(channel);
@@ -299,11 +382,13 @@ public final class NetManager extends EventDispatcher {
                 channel.pipeline().context(NetMessageHandler.class).handler();
         msgReadHandler.setNetChannel(netChannel);
 
-        // Send net descriptor as handshake object.
+        // Send net descriptor and lane as handshake object.
+        final String[] eventTypes = EventTypeRegistry.INSTANCE.snapshot();
+        final boolean compressionEnabled = nettyChannelConfig.compressionEnabled;
         if (type == NetChannel.NetChannelType.CHANNEL_OUT)
-            netChannel.channel.writeAndFlush(machine, netChannel.channel.voidPromise());
+            netChannel.channel.writeAndFlush(new NetHandshake(machine, lane, eventTypes, compressionEnabled), netChannel.channel.voidPromise());
         else
-            netChannel.channel.writeAndFlush(descriptor, netChannel.channel.voidPromise());
+            netChannel.channel.writeAndFlush(new NetHandshake(descriptor, lane, eventTypes, compressionEnabled), netChannel.channel.voidPromise());
 
         return netChannel;
     }
@@ -316,8 +401,9 @@ public final class NetManager extends EventDispatcher {
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) {
-            if (msg instanceof MachineDescriptor) {
-                registerNetChannel((MachineDescriptor) msg, ctx.channel(), NetChannel.NetChannelType.CHANNEL_IN);
+            if (msg instanceof NetHandshake) {
+                final NetHandshake handshake = (NetHandshake) msg;
+                registerNetChannel(handshake.machine, handshake.lane, ctx.channel(), NetChannel.NetChannelType.CHANNEL_IN);
                 ctx.pipeline().remove(this);
             } else
                 throw new IllegalStateException("Wrong handshake protocol. msg = " + msg);
@@ -328,10 +414,50 @@ public final class NetManager extends EventDispatcher {
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) {
-            if (msg instanceof MachineDescriptor && msg.equals(machine))
+            if (msg instanceof NetHandshake && ((NetHandshake) msg).machine.equals(machine))
                 ctx.pipeline().remove(this);
             else
                 throw new IllegalStateException("Wrong handshake protocol. msg = " + msg);
         }
     }
+
+    // ---------------------------------------------------
+    // Connection Lanes.
+    // ---------------------------------------------------
+
+    private static final class NetLanes {
+
+        static final int CONTROL_LANE = 0;
+
+        private final AtomicReferenceArray<NetChannel> channels;
+
+        NetLanes(final int numLanes) { this.channels = new AtomicReferenceArray<>(numLanes); }
+
+        NetChannel get(final int lane) { return channels.get(lane); }
+
+        void set(final int lane, final NetChannel channel) { channels.set(lane, channel); }
+
+        boolean isComplete() {
+            for (int i = 0; i < channels.length(); ++i)
+                if (channels.get(i) == null)
+                    return false;
+            return true;
+        }
+
+        void collect(final List<NetChannel> result) {
+            for (int i = 0; i < channels.length(); ++i)
+                if (channels.get(i) != null)
+                    result.add(channels.get(i));
+        }
+
+        NetChannel select(final NetEvent event) {
+            final int numBulkLanes = channels.length() - 1;
+            if (event.stripeKey != null && numBulkLanes > 0) {
+                final NetChannel channel = channels.get(1 + (event.stripeKey.hashCode() & Integer.MAX_VALUE) % numBulkLanes);
+                if (channel != null)
+                    return channel;
+            }
+            return channels.get(CONTROL_LANE);
+        }
+    }
 }
@@ -32,15 +32,20 @@ public final class NetMessageHandler extends SimpleChannelInboundHandler<Object>
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof NetEvent) {
+            if (netChannel == null)
+                throw new IllegalStateException("Event received before the handshake of the channel.");
             NetEvent event = (NetEvent)msg;
             event.netChannel = netChannel;
+            final MachineDescriptor src = netManager.getMachine(event.srcNodeIndex);
+            event.srcMachineID = (src != null) ? src.machineID : netChannel.descriptor.machineID;
+            event.dstMachineID = netManager.getMachineDescriptor().machineID;
             netManager.dispatchEvent(event);
         }
     }
 
     @Override
     public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-        writeIfPossible();
+        netChannel.writePending();
     }
 
     @Override
@@ -48,13 +53,4 @@ public final class NetMessageHandler extends SimpleChannelInboundHandler<Object>
         cause.printStackTrace();
         ctx.close();
     }
-
-    private void writeIfPossible() {
-        while (!netChannel.writeQueue.isEmpty() && netChannel.channel.isWritable()) {
-            netChannel.channel.writeAndFlush(
-                    netChannel.writeQueue.poll(),
-                    netChannel.channel.voidPromise()
-            );
-        }
-    }
 }
\ No newline at end of file
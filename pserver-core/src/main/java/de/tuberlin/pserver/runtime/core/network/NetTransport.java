@@ -0,0 +1,54 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Socket transport of the NetManager. The native epoll transport (Linux only) avoids the
+ * selector overhead and garbage of NIO; it is used only if the native library can be loaded.
+ */
+public enum NetTransport {
+
+    NIO {
+        @Override public EventLoopGroup createEventLoopGroup(int numThreads) { return new NioEventLoopGroup(numThreads); }
+        @Override public Class<? extends ServerChannel> serverChannelClass() { return NioServerSocketChannel.class; }
+        @Override public Class<? extends Channel> clientChannelClass() { return NioSocketChannel.class; }
+    },
+
+    EPOLL {
+        @Override public EventLoopGroup createEventLoopGroup(int numThreads) { return new EpollEventLoopGroup(numThreads); }
+        @Override public Class<? extends ServerChannel> serverChannelClass() { return EpollServerSocketChannel.class; }
+        @Override public Class<? extends Channel> clientChannelClass() { return EpollSocketChannel.class; }
+    };
+
+    private static final Logger LOG = LoggerFactory.getLogger(NetTransport.class);
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public abstract EventLoopGroup createEventLoopGroup(int numThreads);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends Channel> clientChannelClass();
+
+    public static NetTransport select(final String name) {
+        final NetTransport transport = NetTransport.valueOf(name.toUpperCase());
+        if (transport == EPOLL && !Epoll.isAvailable()) {
+            LOG.warn("Native epoll transport not available, falling back to NIO.", Epoll.unavailabilityCause());
+            return NIO;
+        }
+        return transport;
+    }
+}
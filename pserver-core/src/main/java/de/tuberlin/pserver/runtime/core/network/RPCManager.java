@@ -2,6 +2,8 @@ package de.tuberlin.pserver.runtime.core.network;
 
 import com.google.common.base.Preconditions;
 import de.tuberlin.pserver.runtime.core.events.EventHandler;
+import de.tuberlin.pserver.runtime.core.remoteobj.MethodTable;
+import de.tuberlin.pserver.runtime.core.remoteobj.RemoteCallTable;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,14 +12,11 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 public final class RPCManager {
 
@@ -29,16 +28,16 @@ public final class RPCManager {
 
         private static final String RPC_REQUEST_EVENT = "rpc_request_event";
 
-        public final UUID callUID;
+        public final long callID;
 
         public final RPCManager.MethodSignature methodSignature;
 
-        public RPCCallerRequestEvent() { this(null, null); }
-        public RPCCallerRequestEvent(final UUID callUID,
+        public RPCCallerRequestEvent() { this(-1, null); }
+        public RPCCallerRequestEvent(final long callID,
                                      final RPCManager.MethodSignature methodSignature) {
 
             super(RPC_REQUEST_EVENT);
-            this.callUID = callUID;
+            this.callID = callID;
             this.methodSignature = methodSignature;
         }
     }
@@ -49,21 +48,29 @@ public final class RPCManager {
 
         private static final String RPC_RESPONSE_EVENT = "rpc_response_event";
 
-        public final UUID callUID;
+        public final long callID;
 
         public final Object result;
 
-        public RPCCalleeResponseEvent() { this(null, null); }
-        public RPCCalleeResponseEvent(final UUID callUID,
+        public RPCCalleeResponseEvent() { this(-1, null); }
+        public RPCCalleeResponseEvent(final long callID,
                                       final Object result) {
 
             super(RPC_RESPONSE_EVENT);
-            this.callUID = callUID;
+            this.callID = callID;
             this.result = result;
         }
     }
 
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int MAX_CALLS_IN_FLIGHT = 1024;
+
+    private static final long RESPONSE_TIMEOUT = 150000; // in ms
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
@@ -76,6 +83,8 @@ public final class RPCManager {
 
     private final ProtocolCalleeProxy calleeProxy;
 
+    private final RemoteCallTable callTable;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -85,7 +94,9 @@ public final class RPCManager {
 
         this.netManager = netManager;
 
-        this.cachedProxies = new HashMap<>();
+        this.cachedProxies = new ConcurrentHashMap<>();
+
+        this.callTable = new RemoteCallTable(MAX_CALLS_IN_FLIGHT, RESPONSE_TIMEOUT, false);
 
         final RPCEventHandler rpcEventHandler = new RPCEventHandler();
 
@@ -111,12 +122,8 @@ public final class RPCManager {
         Preconditions.checkNotNull(protocolInterface);
         Preconditions.checkNotNull(dstMachine);
         final Pair<Class<?>, UUID> proxyKey =  (Pair)Pair.of(protocolInterface, dstMachine.machineID);
-        T proxy = (T) cachedProxies.get(proxyKey);
-        if (proxy == null) {
-            proxy = ProtocolCallerProxy.createProtocolProxy(150000, dstMachine.machineID, protocolInterface, netManager);
-            cachedProxies.put(proxyKey, proxy);
-        }
-        return proxy;
+        return (T) cachedProxies.computeIfAbsent(proxyKey, k ->
+                ProtocolCallerProxy.createProtocolProxy(callTable, dstMachine.machineID, protocolInterface, netManager));
     }
 
     // ---------------------------------------------------
@@ -129,62 +136,43 @@ public final class RPCManager {
 
         public final String className;
 
-        public final String methodName;
-
-        public final Class<?>[] argumentTypes;
+        public final int methodID;
 
         public final Object[] arguments;
 
-        public final Class<?> returnType;
-
-        public MethodSignature() { this(null, null, null, null, null); }
-        public MethodSignature(String className, String methodName, Class<?>[] argumentTypes, Object[] arguments, Class<?> returnType) {
+        public MethodSignature() { this(null, 0, null); }
+        public MethodSignature(String className, int methodID, Object[] arguments) {
             this.className = className;
-            this.methodName = methodName;
-            if (arguments != null) {
-                this.argumentTypes = argumentTypes;
-                this.arguments = arguments;
-            } else {
-                this.argumentTypes = null;
-                this.arguments = null;
-            }
-            this.returnType = returnType;
+            this.methodID = methodID;
+            this.arguments = arguments;
         }
     }
 
     // -----------------------------------------------------------------------------------------
 
-    @SuppressWarnings("unused")
     private static final class ProtocolCallerProxy implements InvocationHandler {
 
-        private final long responseTimeout; // 5000; // in ms
+        private final RemoteCallTable callTable;
 
         private final UUID dstMachineID;
 
         private final NetManager netManager;
 
-        private final static Map<UUID, CountDownLatch> callerTable = Collections.synchronizedMap(new HashMap<UUID, CountDownLatch>());
-
-        private final static Map<UUID, Object> callerResultTable = Collections.synchronizedMap(new HashMap<UUID, Object>());
-
-        public ProtocolCallerProxy(long responseTimeout, final UUID dstMachineID, final NetManager netManager) {
-            Preconditions.checkNotNull(dstMachineID);
-            Preconditions.checkNotNull(netManager);
-
-            this.responseTimeout = responseTimeout;
+        public ProtocolCallerProxy(final RemoteCallTable callTable, final UUID dstMachineID, final NetManager netManager) {
+            this.callTable = Preconditions.checkNotNull(callTable);
 
-            this.dstMachineID = dstMachineID;
+            this.dstMachineID = Preconditions.checkNotNull(dstMachineID);
 
-            this.netManager = netManager;
+            this.netManager = Preconditions.checkNotNull(netManager);
         }
 
         @SuppressWarnings("unchecked")
-        public static <T> T createProtocolProxy(final long responseTimeout,
+        public static <T> T createProtocolProxy(final RemoteCallTable callTable,
                                                 final UUID dstMachineID,
                                                 final Class<T> protocolInterface,
                                                 final NetManager netManager) {
 
-            final ProtocolCallerProxy pc = new ProtocolCallerProxy(responseTimeout, dstMachineID, netManager);
+            final ProtocolCallerProxy pc = new ProtocolCallerProxy(callTable, dstMachineID, netManager);
             return (T) Proxy.newProxyInstance(protocolInterface.getClassLoader(), new Class[]{protocolInterface}, pc);
         }
 
@@ -202,56 +190,17 @@ public final class RPCManager {
                 }
             }
 
+            final Class<?> protocolInterface = method.getDeclaringClass();
+
             final MethodSignature methodInfo =
-                    new MethodSignature(method.getDeclaringClass().getSimpleName(),
-                            method.getName(),
-                            method.getParameterTypes(),
-                            methodArguments,
-                            method.getReturnType());
+                    new MethodSignature(protocolInterface.getSimpleName(),
+                            MethodTable.of(protocolInterface).getMethodID(method),
+                            methodArguments);
 
             // every remote call is identified by a unique id. The id is used to
             // resolve the associated response from remote site.
-            final UUID callUID = UUID.randomUUID();
-            final CountDownLatch cdl = new CountDownLatch(1);
-            callerTable.put(callUID, cdl);
-
-            // push to server...
-            netManager.dispatchEventAt(dstMachineID, new RPCCallerRequestEvent(callUID, methodInfo));
-
-            try {
-                if (responseTimeout > 0) {
-                    // block the caller thread until we get some response...
-                    // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                    cdl.await(responseTimeout, TimeUnit.MILLISECONDS);
-                } else {
-                    cdl.await();
-                }
-            } catch (InterruptedException e) {
-                LOG.info(e.getLocalizedMessage());
-            }
-
-            // if is no result hasFree, then a response time-out happened...
-            if (!callerResultTable.containsKey(callUID))
-                throw new IllegalStateException("no result of remote call " + callUID + " hasFree");
-
-            // result is allowed to be null -> void as return primitiveType.
-            final Object result = callerResultTable.get(callUID);
-            // clean up our tables.
-            callerResultTable.remove(callUID);
-            callerTable.remove(callUID);
-
-            // TODO: should we pass a crashed call to the caller?
-            if (result instanceof Throwable)
-                throw new IllegalStateException((Throwable) result);
-
-            return result;
-        }
-
-        public static void notifyCaller(final UUID callUID, final Object result) {
-            Preconditions.checkNotNull(callUID);
-            callerResultTable.put(callUID, result);
-            final CountDownLatch cdl = callerTable.get(callUID);
-            cdl.countDown();
+            return callTable.invoke(method, callID ->
+                    netManager.dispatchEventAt(dstMachineID, new RPCCallerRequestEvent(callID, methodInfo)));
         }
     }
 
@@ -259,27 +208,27 @@ public final class RPCManager {
 
     private final class ProtocolCalleeProxy {
 
-        private final Map<String, Object> calleeTable = new HashMap<>();
+        private final Map<String, Pair<Object, MethodTable>> calleeTable = new ConcurrentHashMap<>();
 
         public void registerProtocol(final Object protocolImplementation, final Class<?> protocolInterface) {
-            calleeTable.put(protocolInterface.getSimpleName(), protocolImplementation);
+            calleeTable.put(protocolInterface.getSimpleName(), Pair.of(protocolImplementation, MethodTable.of(protocolInterface)));
         }
 
-        public RPCCalleeResponseEvent callMethod(final UUID callUID, final MethodSignature methodInfo) {
-            Preconditions.checkNotNull(callUID);
+        public RPCCalleeResponseEvent callMethod(final long callID, final MethodSignature methodInfo) {
             Preconditions.checkNotNull(methodInfo);
-            final Object protocolImplementation = calleeTable.get(methodInfo.className);
-            if (protocolImplementation == null) {
-                return new RPCCalleeResponseEvent(callUID, new IllegalStateException("found no protocol implementation"));
+            final Pair<Object, MethodTable> protocol = calleeTable.get(methodInfo.className);
+            if (protocol == null) {
+                return new RPCCalleeResponseEvent(callID, new IllegalStateException("found no protocol implementation"));
+            }
+            final Method method = protocol.getRight().getMethod(methodInfo.methodID);
+            if (method == null) {
+                return new RPCCalleeResponseEvent(callID, new IllegalStateException("found no method " + methodInfo.methodID));
             }
-            // Maybe we could do some caching of method signatures
-            // on the callee site for frequent repeated calls...
             try {
-                final Method method = protocolImplementation.getClass().getMethod(methodInfo.methodName, methodInfo.argumentTypes);
-                final Object result = method.invoke(protocolImplementation, methodInfo.arguments);
-                return new RPCCalleeResponseEvent(callUID, result);
+                final Object result = method.invoke(protocol.getLeft(), methodInfo.arguments);
+                return new RPCCalleeResponseEvent(callID, result);
             } catch (Exception e) {
-                return new RPCCalleeResponseEvent(callUID, e);
+                return new RPCCalleeResponseEvent(callID, e);
             }
         }
     }
@@ -297,7 +246,7 @@ public final class RPCManager {
                 @Override
                 public void run() {
                     final RPCCalleeResponseEvent calleeMsg =
-                            calleeProxy.callMethod(event.callUID, event.methodSignature);
+                            calleeProxy.callMethod(event.callID, event.methodSignature);
                     netManager.dispatchEventAt(event.srcMachineID, calleeMsg);
                 }
             });
@@ -305,7 +254,7 @@ public final class RPCManager {
 
         @Handle(event = RPCCalleeResponseEvent.class)
         private void handleRPCResponse(final RPCCalleeResponseEvent event) {
-            ProtocolCallerProxy.notifyCaller(event.callUID, event.result);
+            callTable.complete(event.callID, event.result);
         }
     }
 }
@@ -5,11 +5,6 @@ import de.tuberlin.pserver.runtime.core.network.NetManager;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class GlobalObject<T> extends EventDispatcher {
 
@@ -17,7 +12,7 @@ public class GlobalObject<T> extends EventDispatcher {
     // Fields.
     // ---------------------------------------------------
 
-    private final Map<Integer, Method> globalMethods;
+    private final MethodTable globalMethods;
 
     // ---------------------------------------------------
     // Constructors.
@@ -26,18 +21,11 @@ public class GlobalObject<T> extends EventDispatcher {
     public GlobalObject(NetManager netManager, T instance, String globalObjectName) {
         super(true);
 
-        this.globalMethods = new HashMap<>();
-        List<Method> methods = Arrays.asList(Object.class.getMethods());
-        //methods.addAll(Arrays.asList(EventDispatcher.class.getMethods()));
-        for (Method method : instance.getClass().getMethods()) {
-            if (!methods.contains(method) && !Modifier.isStatic(method.getModifiers())) {
-                globalMethods.put(MethodInvocationMsg.getMethodID(method), method);
-            }
-        }
+        this.globalMethods = MethodTable.of(instance.getClass());
 
         netManager.addEventListener(MethodInvocationMsg.METHOD_INVOCATION_EVENT + "_" + globalObjectName , (event) -> {
             MethodInvocationMsg mim = (MethodInvocationMsg) event;
-            Method calledMethod = globalMethods.get(mim.methodID);
+            Method calledMethod = globalMethods.getMethod(mim.methodID);
             Object res = null;
 
             if (calledMethod == null)
@@ -6,15 +6,18 @@ import de.tuberlin.pserver.runtime.core.network.NetManager;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 
 public final class GlobalObjectProxy implements InvocationHandler {
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int MAX_CALLS_IN_FLIGHT = 1024;
+
+    private static final long RESPONSE_TIMEOUT = 5000; // in ms
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
@@ -25,9 +28,9 @@ public final class GlobalObjectProxy implements InvocationHandler {
 
     private final NetManager netManager;
 
-    private final Map<UUID, CountDownLatch> requestLatches;
+    private final MethodTable methodTable;
 
-    private final Map<UUID, Object> resultObjects;
+    private final RemoteCallTable callTable;
 
     private final String globalObjectName;
 
@@ -43,56 +46,30 @@ public final class GlobalObjectProxy implements InvocationHandler {
         this.netManager = netManager;
         this.remoteNetDescriptor = remoteNetDescriptor;
         this.classType = classType;
-        this.requestLatches = new ConcurrentHashMap<>();
-        this.resultObjects = new ConcurrentHashMap<>();
+        this.methodTable = MethodTable.of(classType);
+        this.callTable = new RemoteCallTable(MAX_CALLS_IN_FLIGHT, RESPONSE_TIMEOUT, false);
         this.globalObjectName = globalObjectName;
 
         netManager.addEventListener(MethodInvocationMsg.METHOD_INVOCATION_EVENT + "_" + globalObjectName, (event) -> {
             MethodInvocationMsg mim = (MethodInvocationMsg)event;
-            if (mim.classID == classType.hashCode() && requestLatches.containsKey(mim.callID)) {
-                CountDownLatch cdl = requestLatches.remove(mim.callID);
-                if (mim.result != null)
-                    resultObjects.put(mim.callID, mim.result);
-                cdl.countDown();
-            }
+            if (mim.classID == classType.hashCode())
+                callTable.complete(mim.callID, mim.result);
         });
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
-        UUID callID = UUID.randomUUID();
-
-        CountDownLatch cdl = new CountDownLatch(1);
-        requestLatches.put(callID, cdl);
-        MethodInvocationMsg invokeMsg = new MethodInvocationMsg(
-                globalObjectName,
-                callID,
-                classType.hashCode(),
-                MethodInvocationMsg.getMethodID(method),
-                arguments,
-                null
+        final int methodID = methodTable.getMethodID(method);
+        return callTable.invoke(method, callID ->
+                netManager.dispatchEventAt(remoteNetDescriptor, new MethodInvocationMsg(
+                        globalObjectName,
+                        callID,
+                        classType.hashCode(),
+                        methodID,
+                        arguments,
+                        null
+                ))
         );
-
-        netManager.dispatchEventAt(remoteNetDescriptor, invokeMsg);
-
-        long responseTimeout = 5000;
-        try {
-            if (responseTimeout > 0) {
-                // block the caller thread until we get some response...
-                // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                cdl.await(responseTimeout, TimeUnit.MILLISECONDS);
-            } else {
-                cdl.await();
-            }
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
-        }
-
-        Object res = resultObjects.remove(callID);
-        if (res instanceof Throwable)
-            throw new IllegalStateException((Throwable) res);
-
-        return res;
     }
 
     @SuppressWarnings("unchecked")
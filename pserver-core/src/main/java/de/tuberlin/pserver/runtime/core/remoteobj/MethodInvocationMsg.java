@@ -3,7 +3,6 @@ package de.tuberlin.pserver.runtime.core.remoteobj;
 import de.tuberlin.pserver.runtime.core.network.NetEvent;
 
 import java.lang.reflect.Method;
-import java.util.UUID;
 
 
 public final class MethodInvocationMsg extends NetEvent {
@@ -18,7 +17,7 @@ public final class MethodInvocationMsg extends NetEvent {
     // Fields.
     // ---------------------------------------------------
 
-    public final UUID callID;
+    public final long callID;
 
     public final int classID;
 
@@ -32,8 +31,8 @@ public final class MethodInvocationMsg extends NetEvent {
     // Constructors.
     // ---------------------------------------------------
 
-    public MethodInvocationMsg() { this(null, null, -1, -1, null, null); }
-    public MethodInvocationMsg(String globalObjectName, UUID callID, int classID, int methodID, Object[] arguments, Object result) {
+    public MethodInvocationMsg() { this(null, -1, -1, -1, null, null); }
+    public MethodInvocationMsg(String globalObjectName, long callID, int classID, int methodID, Object[] arguments, Object result) {
         super(METHOD_INVOCATION_EVENT + "_" + globalObjectName);
         this.callID = callID;
         this.classID = classID;
@@ -43,11 +42,6 @@ public final class MethodInvocationMsg extends NetEvent {
     }
 
     public static int getMethodID(Method method) {
-        StringBuilder strBuilder = new StringBuilder();
-        strBuilder.append(method.getName());
-        for (Class<?> cl : method.getParameterTypes()) {
-            strBuilder.append(cl.getSimpleName());
-        }
-        return strBuilder.toString().hashCode();
+        return MethodTable.of(method.getDeclaringClass()).getMethodID(method);
     }
 }
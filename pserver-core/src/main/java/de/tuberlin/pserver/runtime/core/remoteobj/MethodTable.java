@@ -0,0 +1,75 @@
+package de.tuberlin.pserver.runtime.core.remoteobj;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Method IDs of a class, resolved once per class. The ID is a hash of the method name and
+ * fully qualified parameter types, hence the same for an interface and its implementations on
+ * all nodes. Classes with two methods of the same ID are rejected.
+ */
+public final class MethodTable {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final ClassValue<MethodTable> TABLES = new ClassValue<MethodTable>() {
+        @Override protected MethodTable computeValue(final Class<?> type) { return new MethodTable(type); }
+    };
+
+    private final Map<Method, Integer> methodIDs;
+
+    private final Map<Integer, Method> methods;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    private MethodTable(final Class<?> type) {
+        this.methodIDs = new HashMap<>();
+        this.methods = new HashMap<>();
+        final List<Method> objectMethods = Arrays.asList(Object.class.getMethods());
+        for (final Method method : type.getMethods()) {
+            if (!objectMethods.contains(method) && !Modifier.isStatic(method.getModifiers())) {
+                final int methodID = computeMethodID(method);
+                methodIDs.put(method, methodID);
+                final Method previous = methods.put(methodID, method);
+                if (previous != null) {
+                    // Bridge and covariant copies of one method share its ID, the declared method wins.
+                    if (!previous.getName().equals(method.getName())
+                            || !Arrays.equals(previous.getParameterTypes(), method.getParameterTypes()))
+                        throw new IllegalStateException("Methods " + previous + " and " + method + " of " + type.getName() + " have the same ID " + methodID + ".");
+                    if (method.isBridge())
+                        methods.put(methodID, previous);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public static MethodTable of(final Class<?> type) { return TABLES.get(type); }
+
+    public int getMethodID(final Method method) {
+        final Integer methodID = methodIDs.get(method);
+        return methodID != null ? methodID : computeMethodID(method);
+    }
+
+    public Method getMethod(final int methodID) { return methods.get(methodID); }
+
+    public static int computeMethodID(final Method method) {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append(method.getName()).append('(');
+        for (Class<?> cl : method.getParameterTypes()) {
+            strBuilder.append(cl.getName()).append(',');
+        }
+        return strBuilder.append(')').toString().hashCode();
+    }
+}
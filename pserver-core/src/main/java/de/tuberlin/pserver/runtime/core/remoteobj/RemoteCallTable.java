@@ -0,0 +1,227 @@
+package de.tuberlin.pserver.runtime.core.remoteobj;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.hashtable.NonBlockingHashMapLong;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Shared caller side of the remote invocation proxies (RPC protocols, global objects and
+ * global state matrices). Calls are identified by sequential long IDs and their results
+ * are delivered through CompletableFutures.
+ *
+ * Calls are pipelined: the caller blocks only for calls whose result it needs. With
+ * {@code pipelineVoidCalls} set, void calls return immediately; a failure of such a call
+ * is thrown by the next call through the same table. The number of calls in flight is
+ * bounded by {@code maxInFlight}. A call without response within {@code responseTimeout}
+ * fails with a TimeoutException and frees its slot, also if nobody waits for it.
+ */
+public final class RemoteCallTable {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final AtomicLong callIDs = new AtomicLong();
+
+    // Expires the calls of all tables.
+    private static final ScheduledThreadPoolExecutor timeouts;
+
+    static {
+        timeouts = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread t = new Thread(r, "remote-call-timeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    private final NonBlockingHashMapLong<CompletableFuture<Object>> pendingCalls;
+
+    private final Semaphore inFlight;
+
+    private final long responseTimeout; // in ms
+
+    private final boolean pipelineVoidCalls;
+
+    private volatile Throwable deferredError;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public RemoteCallTable(final int maxInFlight, final long responseTimeout, final boolean pipelineVoidCalls) {
+        Preconditions.checkArgument(maxInFlight > 0);
+        this.pendingCalls       = new NonBlockingHashMapLong<>();
+        this.inFlight           = new Semaphore(maxInFlight);
+        this.responseTimeout    = responseTimeout;
+        this.pipelineVoidCalls  = pipelineVoidCalls;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Issues a remote call of the given method. The request is sent by {@code sender},
+     * which receives the call ID to put into the request message.
+     *
+     * @return the result, the default value of the return type if the call is issued
+     *         via {@link RemoteCalls#async} or if it is a pipelined void call.
+     */
+    public Object invoke(final Method method, final LongConsumer sender) {
+        return invoke(method, sender, null);
+    }
+
+    /**
+     * Issues a remote call whose received result is passed through {@code transform}
+     * (e.g. to merge it with locally cached data) before it is returned.
+     */
+    public Object invoke(final Method method, final LongConsumer sender, final Function<Object, Object> transform) {
+        throwDeferredError();
+        final long callID = callIDs.incrementAndGet();
+        final CompletableFuture<Object> call = register(callID);
+        try {
+            sender.accept(callID);
+        } catch (RuntimeException e) {
+            complete(callID, e);
+            throw e;
+        }
+        final CompletableFuture<Object> result = transform != null ? call.thenApply(transform) : call;
+        return deliver(method, result, callID);
+    }
+
+    /**
+     * Issues one remote call per sender, e.g. one per node owning a part of the accessed data,
+     * and returns their results merged by {@code merge}, in the order of the senders. Each call
+     * counts against the in-flight bound and expires on its own.
+     */
+    public Object invoke(final Method method, final LongConsumer[] senders, final Function<Object[], Object> merge) {
+        throwDeferredError();
+        final long[] ids = new long[senders.length];
+        final CompletableFuture<?>[] calls = new CompletableFuture<?>[senders.length];
+        for (int i = 0; i < senders.length; ++i) {
+            ids[i] = callIDs.incrementAndGet();
+            calls[i] = register(ids[i]);
+            try {
+                senders[i].accept(ids[i]);
+            } catch (RuntimeException e) {
+                complete(ids[i], e);
+                throw e;
+            }
+        }
+        final CompletableFuture<Object> result = CompletableFuture.allOf(calls).thenApply(v -> {
+            final Object[] results = new Object[calls.length];
+            for (int i = 0; i < calls.length; ++i)
+                results[i] = calls[i].join();
+            return merge.apply(results);
+        });
+        return deliver(method, result, ids);
+    }
+
+    /**
+     * Completes a pending call with the received result (a Throwable is treated as failure).
+     *
+     * @return false if there is no pending call with this ID.
+     */
+    public boolean complete(final long callID, final Object result) {
+        final CompletableFuture<Object> call = pendingCalls.remove(callID);
+        if (call == null)
+            return false;
+        inFlight.release();
+        if (result instanceof Throwable)
+            call.completeExceptionally((Throwable) result);
+        else
+            call.complete(result);
+        return true;
+    }
+
+    public int getNumPendingCalls() { return pendingCalls.size(); }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private CompletableFuture<Object> register(final long callID) {
+        try {
+            if (!inFlight.tryAcquire(responseTimeout > 0 ? responseTimeout : Long.MAX_VALUE, TimeUnit.MILLISECONDS))
+                throw new IllegalStateException("Too many pending remote calls: " + pendingCalls.size());
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        final CompletableFuture<Object> call = new CompletableFuture<>();
+        pendingCalls.put(callID, call);
+        if (responseTimeout > 0) {
+            final ScheduledFuture<?> timeout = timeouts.schedule(
+                    () -> complete(callID, new TimeoutException("No result of remote call " + callID + " available.")),
+                    responseTimeout, TimeUnit.MILLISECONDS);
+            call.whenComplete((r, t) -> timeout.cancel(false));
+        }
+        return call;
+    }
+
+    private Object deliver(final Method method, final CompletableFuture<Object> result, final long... callIDs) {
+        if (RemoteCalls.capture(result))
+            return defaultValue(method.getReturnType());
+        if (pipelineVoidCalls && method.getReturnType() == void.class) {
+            result.whenComplete((r, t) -> { if (t != null) deferredError = t; });
+            return null;
+        }
+        return await(result, callIDs);
+    }
+
+    private Object await(final CompletableFuture<Object> result, final long... callIDs) {
+        try {
+            return responseTimeout > 0 ? result.get(responseTimeout, TimeUnit.MILLISECONDS) : result.get();
+        } catch (TimeoutException e) {
+            for (final long callID : callIDs) {
+                if (pendingCalls.remove(callID) != null)
+                    inFlight.release();
+            }
+            throw new IllegalStateException("No result of remote call " + Arrays.toString(callIDs) + " available.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void throwDeferredError() {
+        final Throwable error = deferredError;
+        if (error != null) {
+            deferredError = null;
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (!type.isPrimitive() || type == void.class)
+            return null;
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return (char) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == short.class)
+            return (short) 0;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        if (type == float.class)
+            return 0f;
+        return 0d;
+    }
+}
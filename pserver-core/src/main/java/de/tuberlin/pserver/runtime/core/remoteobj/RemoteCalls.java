@@ -0,0 +1,99 @@
+package de.tuberlin.pserver.runtime.core.remoteobj;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous invocation of remote proxies. The remote call issued inside the lambda
+ * does not block, its result is returned as future instead:
+ *
+ * <pre>
+ *     final CompletableFuture&lt;Float&gt; value = RemoteCalls.async(() -&gt; matrix.get(row, col));
+ * </pre>
+ *
+ * This allows to pipeline many calls to the same remote object without waiting a round
+ * trip per call.
+ */
+public final class RemoteCalls {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final ThreadLocal<Capture> captures = new ThreadLocal<Capture>() {
+        @Override protected Capture initialValue() { return new Capture(); }
+    };
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    private RemoteCalls() {}
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> async(final Supplier<T> call) {
+        return (CompletableFuture<T>) captureCall(call::get);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CompletableFuture<Void> async(final Runnable call) {
+        return (CompletableFuture<Void>) captureCall(call);
+    }
+
+    /**
+     * Returns the result of a proxy call that is served locally (e.g. from a cache)
+     * without a remote call. Within {@link #async} the value becomes the completed future.
+     */
+    public static <T> T completed(final T value) {
+        capture(CompletableFuture.completedFuture(value));
+        return value;
+    }
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    // Called by the RemoteCallTable, true if the call was issued within async(...).
+    static boolean capture(final CompletableFuture<Object> result) {
+        final Capture capture = captures.get();
+        if (!capture.isActive || capture.result != null)
+            return false;
+        capture.result = result;
+        return true;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static CompletableFuture<?> captureCall(final Runnable call) {
+        final Capture capture = captures.get();
+        Preconditions.checkState(!capture.isActive, "Nested async calls are not supported.");
+        capture.isActive = true;
+        try {
+            call.run();
+            Preconditions.checkState(capture.result != null, "No remote call issued.");
+            return capture.result;
+        } finally {
+            capture.isActive = false;
+            capture.result = null;
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class Capture {
+
+        boolean isActive;
+
+        CompletableFuture<Object> result;
+    }
+}
@@ -0,0 +1,122 @@
+package de.tuberlin.pserver.runtime.core.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Primitive array serializers that write the elements with fixed width in one bulk
+ * operation (Output#writeFloats etc.) instead of the variable length encoding of the
+ * Kryo default serializers. The length is written as var int, 0 marks null.
+ */
+public final class BulkArraySerializers {
+
+    private static final int NULL = 0;
+
+    private BulkArraySerializers() {}
+
+    // ---------------------------------------------------
+
+    public static final class IntArraySerializer extends Serializer<int[]> {
+
+        public IntArraySerializer() { setAcceptsNull(true); }
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final int[] object) {
+            if (object == null) {
+                output.writeVarInt(NULL, true);
+                return;
+            }
+            output.writeVarInt(object.length + 1, true);
+            output.writeInts(object);
+        }
+
+        @Override
+        public int[] read(final Kryo kryo, final Input input, final Class<int[]> type) {
+            final int length = input.readVarInt(true);
+            return length == NULL ? null : input.readInts(length - 1);
+        }
+
+        @Override
+        public int[] copy(final Kryo kryo, final int[] original) { return original.clone(); }
+    }
+
+    // ---------------------------------------------------
+
+    public static final class LongArraySerializer extends Serializer<long[]> {
+
+        public LongArraySerializer() { setAcceptsNull(true); }
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final long[] object) {
+            if (object == null) {
+                output.writeVarInt(NULL, true);
+                return;
+            }
+            output.writeVarInt(object.length + 1, true);
+            output.writeLongs(object);
+        }
+
+        @Override
+        public long[] read(final Kryo kryo, final Input input, final Class<long[]> type) {
+            final int length = input.readVarInt(true);
+            return length == NULL ? null : input.readLongs(length - 1);
+        }
+
+        @Override
+        public long[] copy(final Kryo kryo, final long[] original) { return original.clone(); }
+    }
+
+    // ---------------------------------------------------
+
+    public static final class FloatArraySerializer extends Serializer<float[]> {
+
+        public FloatArraySerializer() { setAcceptsNull(true); }
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final float[] object) {
+            if (object == null) {
+                output.writeVarInt(NULL, true);
+                return;
+            }
+            output.writeVarInt(object.length + 1, true);
+            output.writeFloats(object);
+        }
+
+        @Override
+        public float[] read(final Kryo kryo, final Input input, final Class<float[]> type) {
+            final int length = input.readVarInt(true);
+            return length == NULL ? null : input.readFloats(length - 1);
+        }
+
+        @Override
+        public float[] copy(final Kryo kryo, final float[] original) { return original.clone(); }
+    }
+
+    // ---------------------------------------------------
+
+    public static final class DoubleArraySerializer extends Serializer<double[]> {
+
+        public DoubleArraySerializer() { setAcceptsNull(true); }
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final double[] object) {
+            if (object == null) {
+                output.writeVarInt(NULL, true);
+                return;
+            }
+            output.writeVarInt(object.length + 1, true);
+            output.writeDoubles(object);
+        }
+
+        @Override
+        public double[] read(final Kryo kryo, final Input input, final Class<double[]> type) {
+            final int length = input.readVarInt(true);
+            return length == NULL ? null : input.readDoubles(length - 1);
+        }
+
+        @Override
+        public double[] copy(final Kryo kryo, final double[] original) { return original.clone(); }
+    }
+}
@@ -0,0 +1,110 @@
+package de.tuberlin.pserver.runtime.core.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.core.network.NetByteBufOutput;
+import de.tuberlin.pserver.runtime.dht.types.AbstractBufferedDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.OffHeapDHTObject;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Serializers for DHT values and segments backed by off-heap memory. Within the network
+ * encoder the memory is copied straight into the outbound ByteBuf (see NetByteBufOutput),
+ * other outputs are fed in chunks. On the receiving side segments become heap segments.
+ */
+public final class DHTSerializers {
+
+    private static final int COPY_CHUNK_SIZE = 8192;
+
+    private DHTSerializers() {}
+
+    // ---------------------------------------------------
+
+    public static final class SegmentSerializer extends Serializer<AbstractBufferedDHTObject.Segment> {
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final AbstractBufferedDHTObject.Segment segment) {
+            output.writeVarInt(segment.segmentIndex, true);
+            output.writeVarInt(segment.size(), true);
+            if (segment.isView()) {
+                // The view must not be freed while it is copied.
+                final AbstractBufferedDHTObject owner = segment.getOwner();
+                synchronized (owner.lock) {
+                    Preconditions.checkState(!owner.isFreed(), "Segment of a freed DHT value.");
+                    writeBuffer(output, segment.asByteBuffer());
+                }
+            } else
+                output.writeBytes(segment.data);
+        }
+
+        @Override
+        public AbstractBufferedDHTObject.Segment read(final Kryo kryo, final Input input, final Class<AbstractBufferedDHTObject.Segment> type) {
+            final int segmentIndex = input.readVarInt(true);
+            return new AbstractBufferedDHTObject.Segment(segmentIndex, input.readBytes(input.readVarInt(true)));
+        }
+    }
+
+    // ---------------------------------------------------
+
+    public static final class OffHeapDHTObjectSerializer extends Serializer<OffHeapDHTObject> {
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final OffHeapDHTObject value) {
+            output.writeInt(value.getPartitionSize());
+            kryo.writeObjectOrNull(output, value.getInternalUID(), UUID.class);
+            kryo.writeClassAndObject(output, value.getValueMetadata());
+            synchronized (value.lock) {
+                final boolean hasMemory = !value.isFreed() && value.isAllocated();
+                output.writeBoolean(hasMemory);
+                if (hasMemory)
+                    writeBuffer(output, value.getMemory());
+            }
+        }
+
+        @Override
+        public OffHeapDHTObject read(final Kryo kryo, final Input input, final Class<OffHeapDHTObject> type) {
+            final int partitionSize = input.readInt();
+            final UUID internalUID = kryo.readObjectOrNull(input, UUID.class);
+            final Serializable valueMetadata = (Serializable) kryo.readClassAndObject(input);
+            final boolean hasMemory = input.readBoolean();
+            final OffHeapDHTObject value = new OffHeapDHTObject(partitionSize, hasMemory);
+            if (internalUID != null)
+                value.setInternalUID(internalUID);
+            if (valueMetadata != null)
+                value.setValueMetadata(valueMetadata);
+            if (hasMemory)
+                readBuffer(input, value.getMemory());
+            return value;
+        }
+    }
+
+    // ---------------------------------------------------
+
+    private static void writeBuffer(final Output output, final ByteBuffer src) {
+        if (output instanceof NetByteBufOutput) {
+            ((NetByteBufOutput) output).writeBytes(src);
+            return;
+        }
+        final byte[] chunk = new byte[Math.min(COPY_CHUNK_SIZE, src.remaining())];
+        while (src.hasRemaining()) {
+            final int length = Math.min(chunk.length, src.remaining());
+            src.get(chunk, 0, length);
+            output.writeBytes(chunk, 0, length);
+        }
+    }
+
+    private static void readBuffer(final Input input, final ByteBuffer dst) {
+        final byte[] chunk = new byte[Math.min(COPY_CHUNK_SIZE, dst.remaining())];
+        while (dst.hasRemaining()) {
+            final int length = Math.min(chunk.length, dst.remaining());
+            input.readBytes(chunk, 0, length);
+            dst.put(chunk, 0, length);
+        }
+    }
+}
@@ -2,24 +2,164 @@ package de.tuberlin.pserver.runtime.core.serializer;
 
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.DefaultSerializers;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.google.common.base.Preconditions;
 import de.javakaffee.kryoserializers.*;
 import de.javakaffee.kryoserializers.guava.ImmutableListSerializer;
 import de.javakaffee.kryoserializers.guava.ImmutableMapSerializer;
 import de.javakaffee.kryoserializers.guava.ImmutableMultimapSerializer;
 import de.javakaffee.kryoserializers.guava.ImmutableSetSerializer;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionEvent;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionPullRequestEvent;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionPullResponseEvent;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionPushReduceEvent;
+import de.tuberlin.pserver.dsl.transaction.events.TransactionPushRequestEvent;
+import de.tuberlin.pserver.runtime.core.events.Event;
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+import de.tuberlin.pserver.runtime.core.network.NetEvent;
+import de.tuberlin.pserver.runtime.core.network.NetEventSerializer;
+import de.tuberlin.pserver.runtime.core.network.NetHandshake;
+import de.tuberlin.pserver.runtime.core.network.RPCManager;
+import de.tuberlin.pserver.runtime.core.remoteobj.MethodInvocationMsg;
+import de.tuberlin.pserver.runtime.dht.DHTKey;
+import de.tuberlin.pserver.runtime.dht.types.AbstractBufferedDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.ByteBufferedDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.EmbeddedDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.OffHeapDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.SegmentDelta;
+import de.tuberlin.pserver.runtime.events.ProgramFailureEvent;
+import de.tuberlin.pserver.runtime.events.ProgramResultEvent;
+import de.tuberlin.pserver.runtime.events.ProgramSubmissionEvent;
+import de.tuberlin.pserver.runtime.filesystem.FilePartitionEvent;
+import de.tuberlin.pserver.runtime.memory.ManagedBuffer;
+import de.tuberlin.pserver.runtime.parallel.CollectiveChannel;
+import de.tuberlin.pserver.runtime.state.matrix.PagedMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DirtyTrackingMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.MatrixDelta32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.CSRMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.SparseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.partitioner.*;
+import de.tuberlin.pserver.types.typeinfo.properties.DistScheme;
+import de.tuberlin.pserver.types.typeinfo.properties.FileFormat;
+import de.tuberlin.pserver.types.typeinfo.properties.InputDescriptor;
+import gnu.trove.map.hash.TLongFloatHashMap;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.objenesis.strategy.StdInstantiatorStrategy;
 
 import java.lang.reflect.InvocationHandler;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.GregorianCalendar;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public enum KryoFactory {
     INSTANCE;
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int RUNTIME_ID_BASE = 200;
+
+    public static final int USER_ID_BASE = 1000;
+
+    // Registered classes are written as var int ID instead of their fully qualified name.
+    // APPEND ONLY! The position of a class in this table determines its ID on the wire.
+    private static final Class<?>[] RUNTIME_TYPES = {
+            // Primitive arrays and JDK/commons types.
+            int[].class,
+            long[].class,
+            float[].class,
+            double[].class,
+            byte[].class,
+            Object[].class,
+            Class.class,
+            Class[].class,
+            ArrayList.class,
+            HashMap.class,
+            TreeMap.class,
+            HashSet.class,
+            ImmutablePair.class,
+            ImmutableTriple.class,
+            // Network and runtime events.
+            MachineDescriptor.class,
+            NetHandshake.class,
+            Event.class,
+            NetEvent.class,
+            RPCManager.RPCCallerRequestEvent.class,
+            RPCManager.RPCCalleeResponseEvent.class,
+            RPCManager.MethodSignature.class,
+            MethodInvocationMsg.class,
+            TransactionEvent.class,
+            TransactionPushRequestEvent.class,
+            TransactionPullRequestEvent.class,
+            TransactionPullResponseEvent.class,
+            FilePartitionEvent.class,
+            ProgramSubmissionEvent.class,
+            ProgramResultEvent.class,
+            ProgramFailureEvent.class,
+            // DHT.
+            DHTKey.class,
+            DHTKey.DistributionMode.class,
+            DHTKey.PartitionDescriptor.class,
+            AbstractBufferedDHTObject.Segment.class,
+            AbstractBufferedDHTObject.Segment[].class,
+            ByteBufferedDHTObject.class,
+            EmbeddedDHTObject.class,
+            ManagedBuffer.class,
+            // State types.
+            DistScheme.class,
+            FileFormat.class,
+            FileFormat.ValueType.class,
+            InputDescriptor.class,
+            MatrixPartitionShape.class,
+            NoPartitioner.class,
+            MatrixRowPartitioner.class,
+            MatrixColumnPartitioner.class,
+            MatrixBlockPartitioner.class,
+            MatrixVirtualRowPartitioner.class,
+            TLongFloatHashMap.class,
+            DenseMatrix32F.class,
+            CSRMatrix32F.class,
+            SparseMatrix32F.class,
+            // Off-heap DHT values.
+            OffHeapDHTObject.class,
+            // Backup replicas of DHT partitions.
+            MachineDescriptor[].class,
+            // Delta puts of DHT segments.
+            SegmentDelta.class,
+            SegmentDelta[].class,
+            SegmentDelta.Mode.class,
+            // Collective operations.
+            CollectiveChannel.CollectiveEvent.class,
+            // Delta pushes of dirty-tracked matrices.
+            DirtyTrackingMatrix32F.class,
+            MatrixDelta32F.class,
+            // Paged matrices, received as dense matrices.
+            PagedMatrix32F.class,
+            // Tree and ring reductions of push transactions.
+            TransactionPushReduceEvent.class,
+    };
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final List<UserRegistration> userRegistrations = new CopyOnWriteArrayList<>();
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
     public Kryo create() {
-        Kryo kryo = new Kryo();
+        PServerKryo kryo = new PServerKryo();
+        // Types without no-arg constructor (e.g. ImmutablePair) are created via Objenesis.
+        kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
         kryo.register(Arrays.asList("").getClass(), new ArraysAsListSerializer());
         kryo.register(Collections.EMPTY_LIST.getClass(), new CollectionsEmptyListSerializer());
         kryo.register(Collections.EMPTY_MAP.getClass(), new DefaultSerializers.CollectionsEmptyMapSerializer());
@@ -37,6 +177,142 @@ public enum KryoFactory {
         ImmutableSetSerializer.registerSerializers(kryo);
         ImmutableMapSerializer.registerSerializers(kryo);
         ImmutableMultimapSerializer.registerSerializers(kryo);
+        kryo.addDefaultSerializer(NetEvent.class, NetEventSerializer.class);
+        registerRuntimeTypes(kryo);
+        update(kryo);
         return kryo;
     }
+
+    /**
+     * Applies the user registrations that were added after the given Kryo instance
+     * was created. Called by the network codecs before each message.
+     */
+    public void update(final Kryo kryo) {
+        if (!(kryo instanceof PServerKryo))
+            return;
+        final PServerKryo pserverKryo = (PServerKryo) kryo;
+        while (pserverKryo.numUserRegistrations < userRegistrations.size()) {
+            final UserRegistration r = userRegistrations.get(pserverKryo.numUserRegistrations++);
+            if (r.serializer != null)
+                kryo.register(r.type, r.serializer, r.id);
+            else
+                kryo.register(r.type, r.id);
+        }
+    }
+
+    /**
+     * Registers a user type with a fixed ID (>= USER_ID_BASE). The registration must be
+     * the same on all nodes and done before the first instance of the type is transferred,
+     * e.g. in {@code Program#registerTypes}.
+     */
+    public void register(final Class<?> type, final int id) { register(type, null, id); }
+    public synchronized void register(final Class<?> type, final Serializer<?> serializer, final int id) {
+        Preconditions.checkNotNull(type);
+        Preconditions.checkArgument(id >= USER_ID_BASE, "User type IDs must be >= " + USER_ID_BASE + ".");
+        for (final UserRegistration r : userRegistrations) {
+            if (r.id == id && r.type == type)
+                return;
+            if (r.id == id || r.type == type)
+                throw new IllegalStateException("Conflicting registration: " + type.getName()
+                        + " [" + id + "] and " + r.type.getName() + " [" + r.id + "].");
+        }
+        userRegistrations.add(new UserRegistration(type, serializer, id));
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void registerRuntimeTypes(final Kryo kryo) {
+        for (int i = 0; i < RUNTIME_TYPES.length; ++i) {
+            final Registration r = kryo.getRegistration(RUNTIME_ID_BASE + i);
+            Preconditions.checkState(r == null || r.getType() == RUNTIME_TYPES[i]);
+            kryo.register(RUNTIME_TYPES[i], RUNTIME_ID_BASE + i);
+        }
+
+        // Fixed width bulk serializers for the primitive arrays.
+        final Serializer<int[]> intArraySerializer = new BulkArraySerializers.IntArraySerializer();
+        final Serializer<float[]> floatArraySerializer = new BulkArraySerializers.FloatArraySerializer();
+        kryo.register(int[].class, intArraySerializer);
+        kryo.register(long[].class, new BulkArraySerializers.LongArraySerializer());
+        kryo.register(float[].class, floatArraySerializer);
+        kryo.register(double[].class, new BulkArraySerializers.DoubleArraySerializer());
+
+        // Matrices: meta data field by field, the payload arrays in bulk and without class info.
+        final TLongFloatMapSerializer mapSerializer = new TLongFloatMapSerializer();
+        kryo.register(TLongFloatHashMap.class, mapSerializer);
+
+        final FieldSerializer<DenseMatrix32F> denseSerializer = new FieldSerializer<>(kryo, DenseMatrix32F.class);
+        denseSerializer.getField("data").setClass(float[].class, floatArraySerializer);
+        kryo.register(DenseMatrix32F.class, denseSerializer);
+        kryo.register(PagedMatrix32F.class, new PagedMatrixSerializer(denseSerializer));
+
+        final FieldSerializer<DirtyTrackingMatrix32F> dirtyTrackingSerializer = new FieldSerializer<>(kryo, DirtyTrackingMatrix32F.class);
+        dirtyTrackingSerializer.getField("data").setClass(float[].class, floatArraySerializer);
+        kryo.register(DirtyTrackingMatrix32F.class, dirtyTrackingSerializer);
+
+        final FieldSerializer<MatrixDelta32F> deltaSerializer = new FieldSerializer<>(kryo, MatrixDelta32F.class);
+        deltaSerializer.getField("blocks").setClass(int[].class, intArraySerializer);
+        deltaSerializer.getField("values").setClass(float[].class, floatArraySerializer);
+        kryo.register(MatrixDelta32F.class, deltaSerializer);
+
+        final FieldSerializer<CSRMatrix32F> csrSerializer = new FieldSerializer<>(kryo, CSRMatrix32F.class);
+        csrSerializer.getField("colArr").setClass(int[].class, intArraySerializer);
+        csrSerializer.getField("rowPtrArr").setClass(int[].class, intArraySerializer);
+        csrSerializer.getField("valueArr").setClass(float[].class, floatArraySerializer);
+        csrSerializer.removeField("executorService"); // re-created by the no-arg constructor.
+        kryo.register(CSRMatrix32F.class, csrSerializer);
+
+        final FieldSerializer<SparseMatrix32F> sparseSerializer = new FieldSerializer<>(kryo, SparseMatrix32F.class);
+        sparseSerializer.getField("data").setClass(TLongFloatHashMap.class, mapSerializer);
+        kryo.register(SparseMatrix32F.class, sparseSerializer);
+
+        // DHT segments and off-heap values, copied from/to their memory without staging.
+        kryo.register(AbstractBufferedDHTObject.Segment.class, new DHTSerializers.SegmentSerializer());
+        kryo.register(OffHeapDHTObject.class, new DHTSerializers.OffHeapDHTObjectSerializer());
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class PServerKryo extends Kryo {
+
+        private int numUserRegistrations;
+    }
+
+    // The pages of a paged matrix are local to its node, it is shipped as a dense copy.
+    private static final class PagedMatrixSerializer extends Serializer<Object> {
+
+        private final FieldSerializer<DenseMatrix32F> denseSerializer;
+
+        PagedMatrixSerializer(final FieldSerializer<DenseMatrix32F> denseSerializer) {
+            this.denseSerializer = denseSerializer;
+        }
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final Object matrix) {
+            denseSerializer.write(kryo, output, ((PagedMatrix32F) matrix).toDense());
+        }
+
+        @Override
+        public Object read(final Kryo kryo, final Input input, final Class<Object> type) {
+            return denseSerializer.read(kryo, input, DenseMatrix32F.class);
+        }
+    }
+
+    private static final class UserRegistration {
+
+        final Class<?> type;
+
+        final Serializer<?> serializer;
+
+        final int id;
+
+        UserRegistration(final Class<?> type, final Serializer<?> serializer, final int id) {
+            this.type = type;
+            this.serializer = serializer;
+            this.id = id;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package de.tuberlin.pserver.runtime.core.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongFloatMap;
+import gnu.trove.map.hash.TLongFloatHashMap;
+
+/**
+ * Writes the keys and values of a trove long->float map as two bulk arrays
+ * (used by the SparseMatrix32F).
+ */
+public final class TLongFloatMapSerializer extends Serializer<TLongFloatMap> {
+
+    @Override
+    public void write(final Kryo kryo, final Output output, final TLongFloatMap map) {
+        output.writeLong(map.getNoEntryKey());
+        output.writeFloat(map.getNoEntryValue());
+        output.writeVarInt(map.size(), true);
+        // keys() and values() iterate the slots of the hash map in the same order.
+        output.writeLongs(map.keys());
+        output.writeFloats(map.values());
+    }
+
+    @Override
+    public TLongFloatMap read(final Kryo kryo, final Input input, final Class<TLongFloatMap> type) {
+        final long noEntryKey = input.readLong();
+        final float noEntryValue = input.readFloat();
+        final int size = input.readVarInt(true);
+        final long[] keys = input.readLongs(size);
+        final float[] values = input.readFloats(size);
+        final TLongFloatMap map = new TLongFloatHashMap(size, Constants.DEFAULT_LOAD_FACTOR, noEntryKey, noEntryValue);
+        for (int i = 0; i < size; ++i)
+            map.put(keys[i], values[i]);
+        return map;
+    }
+
+    @Override
+    public TLongFloatMap copy(final Kryo kryo, final TLongFloatMap original) {
+        final TLongFloatMap map = new TLongFloatHashMap(original.size(), Constants.DEFAULT_LOAD_FACTOR,
+                original.getNoEntryKey(), original.getNoEntryValue());
+        map.putAll(original);
+        return map;
+    }
+}
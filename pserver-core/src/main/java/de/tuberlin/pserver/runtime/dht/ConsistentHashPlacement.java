@@ -0,0 +1,117 @@
+package de.tuberlin.pserver.runtime.dht;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Consistent hashing with virtual nodes. Every machine owns {@code virtualNodes} points on
+ * a 64-bit ring, derived from its machine ID, and a key is stored on the owner of the first
+ * point at or after the hash of its UID. Adding or removing a machine only relocates the keys
+ * of the ring intervals it gains or loses, roughly 1/n of all keys.
+ */
+public final class ConsistentHashPlacement implements DHTPlacementStrategy {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final int virtualNodes;
+
+    private volatile Ring ring = new Ring(new long[0], new MachineDescriptor[0]);
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public ConsistentHashPlacement() { this(DEFAULT_VIRTUAL_NODES); }
+    public ConsistentHashPlacement(final int virtualNodes) {
+        Preconditions.checkArgument(virtualNodes > 0);
+        this.virtualNodes = virtualNodes;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public void setMachines(final List<MachineDescriptor> machines) {
+        Preconditions.checkNotNull(machines);
+        final int numPoints = machines.size() * virtualNodes;
+        final long[] points = new long[numPoints];
+        final MachineDescriptor[] owners = new MachineDescriptor[numPoints];
+        // Sort the (point, machine) pairs by point.
+        final Integer[] order = new Integer[numPoints];
+        for (int m = 0; m < machines.size(); ++m) {
+            final UUID machineID = machines.get(m).machineID;
+            for (int v = 0; v < virtualNodes; ++v) {
+                points[m * virtualNodes + v] = mix64(machineID.getMostSignificantBits()
+                        ^ mix64(machineID.getLeastSignificantBits() + (v + 1) * GOLDEN_GAMMA));
+                order[m * virtualNodes + v] = m * virtualNodes + v;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(points[a], points[b]));
+        final long[] sortedPoints = new long[numPoints];
+        for (int i = 0; i < numPoints; ++i) {
+            final int j = order[i];
+            sortedPoints[i] = points[j];
+            owners[i] = machines.get(j / virtualNodes);
+        }
+        ring = new Ring(sortedPoints, owners);
+    }
+
+    @Override
+    public MachineDescriptor select(final UUID internalUID) {
+        final Ring ring = this.ring;
+        Preconditions.checkState(ring.points.length > 0, "No DHT nodes.");
+        final long hash = hash(Preconditions.checkNotNull(internalUID));
+        int i = Arrays.binarySearch(ring.points, hash);
+        if (i < 0)
+            i = -i - 1;
+        return ring.owners[i == ring.points.length ? 0 : i];
+    }
+
+    public int getVirtualNodes() { return virtualNodes; }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static long hash(final UUID uid) {
+        return mix64(uid.getMostSignificantBits() ^ mix64(uid.getLeastSignificantBits()));
+    }
+
+    // Finalizer of SplitMix64, spreads similar inputs over the whole ring.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class Ring {
+
+        final long[] points;
+
+        final MachineDescriptor[] owners;
+
+        Ring(final long[] points, final MachineDescriptor[] owners) {
+            this.points  = points;
+            this.owners  = owners;
+        }
+    }
+}
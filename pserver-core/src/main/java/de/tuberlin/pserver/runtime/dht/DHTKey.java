@@ -1,6 +1,7 @@
 package de.tuberlin.pserver.runtime.dht;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
 import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
 import de.tuberlin.pserver.runtime.dht.types.ByteBufferedDHTObject;
 
@@ -43,6 +44,12 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
 
         public final MachineDescriptor machine;
 
+        // Machines holding backup replicas of the partition and their node IDs.
+
+        public final MachineDescriptor[] backups;
+
+        public final int[] backupIndices;
+
         public PartitionDescriptor() { this(0, 0, 0, 0, 0, 0, null); }
         public PartitionDescriptor(final int partitionIndex,
                                    final int partitionSize,
@@ -52,6 +59,20 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
                                    final int segmentSize,
                                    final MachineDescriptor machine) {
 
+            this(partitionIndex, partitionSize, globalOffset, segmentBaseIndex, numberOfSegments, segmentSize, machine,
+                    new MachineDescriptor[0], new int[0]);
+        }
+
+        public PartitionDescriptor(final int partitionIndex,
+                                   final int partitionSize,
+                                   final long globalOffset,
+                                   final int segmentBaseIndex,
+                                   final int numberOfSegments,
+                                   final int segmentSize,
+                                   final MachineDescriptor machine,
+                                   final MachineDescriptor[] backups,
+                                   final int[] backupIndices) {
+
             //Preconditions.checkArgument(partitionIndex >= 0);
             //Preconditions.checkArgument(partitionSize > 0);
             //Preconditions.checkArgument(globalOffset >= 0);
@@ -65,6 +86,19 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
             this.numberOfSegments   = numberOfSegments;
             this.segmentSize        = segmentSize;
             this.machine            = machine;
+            this.backups            = Preconditions.checkNotNull(backups);
+            this.backupIndices      = Preconditions.checkNotNull(backupIndices);
+            Preconditions.checkArgument(backups.length == backupIndices.length);
+        }
+
+        public PartitionDescriptor withMachine(final MachineDescriptor machine) {
+            return new PartitionDescriptor(partitionIndex, partitionSize, globalOffset, segmentBaseIndex,
+                    numberOfSegments, segmentSize, machine, backups, backupIndices);
+        }
+
+        public PartitionDescriptor withBackups(final MachineDescriptor[] backups, final int[] backupIndices) {
+            return new PartitionDescriptor(partitionIndex, partitionSize, globalOffset, segmentBaseIndex,
+                    numberOfSegments, segmentSize, machine, backups, backupIndices);
         }
     }
 
@@ -82,6 +116,15 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
 
     private final Map<Integer,PartitionDescriptor> partitionDirectory;
 
+    // Placement hints, they take precedence over the placement strategy of the DHT.
+
+    private UUID colocatedKeyUID;
+
+    private UUID pinnedMachineID;
+
+    // Number of copies of each partition (primary and backups).
+    private int replicationFactor = 1;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -108,8 +151,15 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
     // Public Methods.
     // ---------------------------------------------------
 
+    // The partition stored on the given node, either as primary or as backup replica.
     public PartitionDescriptor getPartitionDescriptor(final int nodeID) {
-        return partitionDirectory.get(nodeID);
+        final PartitionDescriptor pd = partitionDirectory.get(nodeID);
+        if (pd != null || replicationFactor == 1)
+            return pd;
+        for (final PartitionDescriptor p : partitionDirectory.values())
+            if (Ints.contains(p.backupIndices, nodeID))
+                return p;
+        return null;
     }
 
     public void addPartitionDirectoryEntry(final int index, final PartitionDescriptor pd) {
@@ -121,10 +171,61 @@ public class DHTKey implements Serializable, Comparable<DHTKey> {
         return Collections.unmodifiableMap(partitionDirectory);
     }
 
+    // Returns a copy of this key with the partition moved to another machine,
+    // the directory index follows the machine index.
+    public DHTKey relocatePartition(final int index, final int newIndex, final MachineDescriptor machine) {
+        final PartitionDescriptor pd = partitionDirectory.get(index);
+        Preconditions.checkState(pd != null);
+        final DHTKey key = new DHTKey(internalUID, name, partitionDirectory, distributionMode);
+        key.colocatedKeyUID = colocatedKeyUID;
+        key.pinnedMachineID = pinnedMachineID;
+        key.replicationFactor = replicationFactor;
+        key.partitionDirectory.remove(index);
+        key.addPartitionDirectoryEntry(newIndex, pd.withMachine(Preconditions.checkNotNull(machine)));
+        return key;
+    }
+
+    /** Stores the value on the same node as the value of the given key. */
+    public DHTKey colocateWith(final DHTKey key) {
+        Preconditions.checkState(partitionDirectory.isEmpty(), "Key is already placed.");
+        this.colocatedKeyUID = Preconditions.checkNotNull(key).internalUID;
+        this.pinnedMachineID = null;
+        return this;
+    }
+
+    /** Stores the value on the given node, it is never moved by a rebalancing. */
+    public DHTKey pinTo(final MachineDescriptor machine) {
+        Preconditions.checkState(partitionDirectory.isEmpty(), "Key is already placed.");
+        this.pinnedMachineID = Preconditions.checkNotNull(machine).machineID;
+        this.colocatedKeyUID = null;
+        return this;
+    }
+
+    /**
+     * Keeps {@code replicationFactor - 1} backup replicas of each partition on other nodes.
+     * Segment puts are applied at the primary and propagated asynchronously to the backups.
+     */
+    public DHTKey replicate(final int replicationFactor) {
+        Preconditions.checkArgument(replicationFactor >= 1);
+        Preconditions.checkState(partitionDirectory.isEmpty(), "Key is already placed.");
+        this.replicationFactor = replicationFactor;
+        return this;
+    }
+
+    public int getReplicationFactor() { return replicationFactor; }
+
+    public UUID getColocatedKeyUID() { return colocatedKeyUID; }
+
+    public UUID getPinnedMachineID() { return pinnedMachineID; }
+
     public MachineDescriptor getDHTNodeFromSegmentIndex(final int segmentIndex) {
+        return getPartitionFromSegmentIndex(segmentIndex).machine;
+    }
+
+    public PartitionDescriptor getPartitionFromSegmentIndex(final int segmentIndex) {
         for (final PartitionDescriptor pd : partitionDirectory.values())
             if (segmentIndex >= pd.segmentBaseIndex && segmentIndex <  pd.segmentBaseIndex + pd.numberOfSegments)
-                return pd.machine;
+                return pd;
         throw new IllegalStateException();
     }
 
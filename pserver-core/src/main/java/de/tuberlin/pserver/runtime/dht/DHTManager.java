@@ -2,29 +2,33 @@ package de.tuberlin.pserver.runtime.dht;
 
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
-import de.tuberlin.pserver.commons.compression.Compressor;
 import de.tuberlin.pserver.commons.hashtable.NonBlockingHashMap;
+import de.tuberlin.pserver.commons.hashtable.NonBlockingHashMapLong;
 import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.diagnostics.MetricsReporter;
 import de.tuberlin.pserver.runtime.core.events.Event;
 import de.tuberlin.pserver.runtime.core.events.EventDispatcher;
 import de.tuberlin.pserver.runtime.core.events.IEventHandler;
 import de.tuberlin.pserver.runtime.core.infra.InfrastructureManager;
+import de.tuberlin.pserver.runtime.core.infra.ZookeeperClient;
 import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
 import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
 import de.tuberlin.pserver.runtime.core.network.NetEvent;
 import de.tuberlin.pserver.runtime.core.network.NetManager;
 import de.tuberlin.pserver.runtime.dht.types.AbstractBufferedDHTObject;
+import de.tuberlin.pserver.runtime.dht.types.SegmentDelta;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public final class DHTManager extends EventDispatcher implements Deactivatable {
 
@@ -36,6 +40,14 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     public static final String DHT_EVENT_PUT_SEGMENTS               = "dht_event_put_segments";
 
+    public static final String DHT_EVENT_REPLICATE_SEGMENTS         = "dht_event_replicate_segments";
+
+    public static final String DHT_EVENT_PUT_DELTAS                 = "dht_event_put_deltas";
+
+    public static final String DHT_EVENT_REPLICATE_DELTAS           = "dht_event_replicate_deltas";
+
+    public static final String DHT_EVENT_PUT_RESPONSE               = "dht_event_put_response";
+
     public static final String DHT_EVENT_GET_VALUE_REQUEST          = "dht_event_get_value_request";
 
     public static final String DHT_EVENT_GET_VALUE_RESPONSE         = "dht_event_get_value_response";
@@ -44,83 +56,472 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     public static final String DHT_EVENT_GET_SEGMENTS_RESPONSE      = "dht_event_get_segments_response";
 
+    public static final String DHT_EVENT_GET_MODIFIED_REQUEST       = "dht_event_get_modified_request";
+
+    public static final String DHT_EVENT_GET_MODIFIED_RESPONSE      = "dht_event_get_modified_response";
+
     public static final String DHT_EVENT_DELETE                     = "dht_event_delete";
 
     public static final String DHT_EVENT_ADD_KEY_TO_DIRECTORY       = "dht_event_add_key_to_directory";
 
     public static final String DHT_EVENT_REMOVE_KEY_FROM_DIRECTORY  = "dht_event_remove_key_from_directory";
 
+    public static final String DHT_EVENT_LOOKUP_KEY_REQUEST         = "dht_event_lookup_key_request";
+
+    public static final String DHT_EVENT_LOOKUP_KEY_RESPONSE        = "dht_event_lookup_key_response";
+
+    public static final String DHT_EVENT_INVALIDATE_KEY             = "dht_event_invalidate_key";
+
+    // ---------------------------------------------------
+    // Config Keys.
+    // ---------------------------------------------------
+
+    public static final String PLACEMENT_CONFIG_KEY                 = "global.dht.placement";
+
+    public static final String VIRTUAL_NODES_CONFIG_KEY             = "global.dht.virtualNodes";
+
+    public static final String DIRECTORY_CONFIG_KEY                 = "global.dht.directory";
+
+    public static final String DIRECTORY_CACHE_SIZE_CONFIG_KEY      = "global.dht.directoryCacheSize";
+
+    public static final String METRICS_CONFIG_KEY                   = "global.dht.metrics";
+
+    public static final String METRICS_TOP_K_CONFIG_KEY             = "global.dht.metricsTopK";
+
+    // ---------------------------------------------------
+    // Conditional Gets.
+    // ---------------------------------------------------
+
+    /** Result of a conditional get, see {@link #getIfModified(DHTKey, long[])}. */
+    public static final class ModifiedSegments {
+
+        // Version of each partition the segments correspond to, in the order of the partitions.
+        public final long[] versions;
+
+        public final AbstractBufferedDHTObject.Segment[] segments;
+
+        public ModifiedSegments(final long[] versions, final AbstractBufferedDHTObject.Segment[] segments) {
+            this.versions   = Preconditions.checkNotNull(versions);
+            this.segments   = Preconditions.checkNotNull(segments);
+        }
+
+        public boolean isModified() { return segments.length > 0; }
+    }
+
+    // ---------------------------------------------------
+    // Replica Selection.
+    // ---------------------------------------------------
+
+    /** The replica a read of a replicated key is sent to. A local replica is always preferred. */
+    public enum ReplicaSelection {
+
+        PRIMARY,
+
+        // A replica chosen by the node ID, spreads the readers of a hot key over its replicas.
+        NEAREST,
+
+        // The replica with the fewest requests of this node in flight.
+        LEAST_LOADED
+    }
+
+    // ---------------------------------------------------
+    // Load Statistics.
+    // ---------------------------------------------------
+
+    public static final class NodeLoad {
+
+        public final MachineDescriptor machine;
+
+        public final int numPartitions;
+
+        public final long numBytes;
+
+        public NodeLoad(final MachineDescriptor machine, final int numPartitions, final long numBytes) {
+            this.machine        = machine;
+            this.numPartitions  = numPartitions;
+            this.numBytes       = numBytes;
+        }
+
+        @Override
+        public String toString() { return "NodeLoad(partitions = " + numPartitions + ", bytes = " + numBytes + ")"; }
+    }
+
     // ---------------------------------------------------
     // Inner Classes.
     // ---------------------------------------------------
 
+    /**
+     * Directory of all keys. In the "replicated" mode every key is broadcast to and stored
+     * on all nodes. In the "sharded" mode a key is only registered at its home nodes, found
+     * by hashing its UID (UID lookups) and its name (name lookups). Other nodes resolve keys
+     * on demand and keep them in a bounded LRU cache; a home node pushes invalidations only
+     * to the nodes that looked the key up. Keys of locally stored partitions are always known.
+     * When DHT nodes join or leave, the homes are rebuilt from the current nodes: entries move
+     * to their new homes, the nodes storing the keys of a home that left register them again.
+     */
     private final class GlobalKeyDirectory {
 
         // ---------------------------------------------------
 
         private final class DHTAddKeyToDirectoryHandler implements IEventHandler {
-            @Override public void handleEvent(final Event e) { put((DHTKey)e.getPayload()); }
+            @Override public void handleEvent(final Event e) {
+                final DHTKey key = (DHTKey)e.getPayload();
+                put(key);
+                if (isSharded)
+                    addCacher(key.internalUID, ((NetEvent) e).srcMachineID);
+            }
         }
 
         private final class DHTRemoveKeyToDirectoryHandler implements IEventHandler {
             @Override public void handleEvent(final Event e) { remove((DHTKey)e.getPayload()); }
         }
 
+        private final class DHTLookupKeyRequestHandler implements IEventHandler {
+            @Override public void handleEvent(final Event e) {
+                final NetEvent event = (NetEvent) e;
+                @SuppressWarnings("unchecked")
+                final Pair<Long,Object> request = (Pair<Long,Object>) event.getPayload();
+                final DHTKey[] keys;
+                if (request.getRight() instanceof UUID) {
+                    DHTKey key = uidKeyDirectory.get((UUID) request.getRight());
+                    if (key == null)
+                        key = strayKeys.get((UUID) request.getRight());
+                    keys = key != null ? new DHTKey[] { key } : new DHTKey[0];
+                } else {
+                    final String name = (String) request.getRight();
+                    final Map<UUID,DHTKey> k = keyDirectory.get(name);
+                    final List<DHTKey> named = k != null ? new ArrayList<>(k.values()) : new ArrayList<>();
+                    for (final DHTKey key : strayKeys.values())
+                        if (name.equals(key.name) && !named.contains(key))
+                            named.add(key);
+                    keys = named.toArray(new DHTKey[named.size()]);
+                }
+                for (final DHTKey key : keys)
+                    addCacher(key.internalUID, event.srcMachineID);
+                final NetEvent e1 = new NetEvent(DHT_EVENT_LOOKUP_KEY_RESPONSE);
+                e1.setPayload(Pair.of(request.getLeft(), keys));
+                netManager.dispatchEventAt(event.srcMachineID, e1);
+            }
+        }
+
+        private final class DHTLookupKeyResponseHandler implements IEventHandler {
+            @Override public void handleEvent(final Event e) {
+                @SuppressWarnings("unchecked")
+                final Pair<Long,DHTKey[]> response = (Pair<Long,DHTKey[]>) e.getPayload();
+                completeRequest(response.getLeft(), response.getRight());
+            }
+        }
+
+        private final class DHTInvalidateKeyHandler implements IEventHandler {
+            @Override public void handleEvent(final Event e) { cache.remove((UUID) e.getPayload()); }
+        }
+
         // ---------------------------------------------------
 
+        private final boolean isSharded;
+
+        // Replicated: all keys. Sharded: the keys this node is UID home of.
         private final Map<UUID, DHTKey> uidKeyDirectory;
 
+        // Replicated: all keys. Sharded: the keys this node is name home of.
         private final Map<String,Map<UUID,DHTKey>> keyDirectory;
 
+        // Sharded only.
+
+        private final Map<UUID, DHTKey> storedKeys;
+
+        private final Map<UUID, DHTKey> cache;
+
+        private final Map<UUID, Set<UUID>> cachers;
+
+        // Keys sent by a node whose homes differ from the homes of this node, e.g. it saw a
+        // join or leave earlier. They answer lookups and are placed when the homes are updated.
+        private final Map<UUID, DHTKey> strayKeys;
+
+        // Home of each lookup in flight.
+        private final NonBlockingHashMapLong<MachineDescriptor> pendingLookups;
+
+        private final ConsistentHashPlacement homes;
+
         // ---------------------------------------------------
 
-        public GlobalKeyDirectory() {
+        public GlobalKeyDirectory(final boolean isSharded, final int cacheSize) {
+            this.isSharded = isSharded;
             this.uidKeyDirectory = new NonBlockingHashMap<>();
             this.keyDirectory = new NonBlockingHashMap<>();
+            this.storedKeys = new NonBlockingHashMap<>();
+            this.cache = Collections.synchronizedMap(new LinkedHashMap<UUID, DHTKey>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<UUID, DHTKey> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+            this.cachers = new NonBlockingHashMap<>();
+            this.strayKeys = new NonBlockingHashMap<>();
+            this.pendingLookups = new NonBlockingHashMapLong<>();
+            // Independent of the data placement, so the homes stay fixed when values are moved.
+            this.homes = new ConsistentHashPlacement();
+            homes.setMachines(infraManager.getMachines());
+            infraManager.addEventListener(new String[] {ZookeeperClient.IM_EVENT_NODE_ADDED, ZookeeperClient.IM_EVENT_NODE_REMOVED},
+                    this::updateHomes);
             netManager.addEventListener(DHT_EVENT_ADD_KEY_TO_DIRECTORY, new DHTAddKeyToDirectoryHandler());
             netManager.addEventListener(DHT_EVENT_REMOVE_KEY_FROM_DIRECTORY, new DHTRemoveKeyToDirectoryHandler());
+            if (isSharded) {
+                netManager.addEventListener(DHT_EVENT_LOOKUP_KEY_REQUEST, new DHTLookupKeyRequestHandler());
+                netManager.addEventListener(DHT_EVENT_LOOKUP_KEY_RESPONSE, new DHTLookupKeyResponseHandler());
+                netManager.addEventListener(DHT_EVENT_INVALIDATE_KEY, new DHTInvalidateKeyHandler());
+            }
         }
 
         // ---------------------------------------------------
 
         public void put(final DHTKey key) {
-            Map<UUID,DHTKey> keys = keyDirectory.get(Preconditions.checkNotNull(key.name));
-            if (keys == null) {
-                keys = new NonBlockingHashMap<>();
-                keyDirectory.put(key.name, keys);
+            boolean isHome = false;
+            if (!isSharded || isLocal(nameHome(key.name))) {
+                Map<UUID,DHTKey> keys = keyDirectory.get(Preconditions.checkNotNull(key.name));
+                if (keys == null) {
+                    keys = new NonBlockingHashMap<>();
+                    keyDirectory.put(key.name, keys);
+                }
+                keys.put(key.internalUID, key);
+                isHome = true;
+            }
+            if (!isSharded || isLocal(homes.select(key.internalUID))) {
+                uidKeyDirectory.put(key.internalUID, key);
+                isHome = true;
+            }
+            if (isSharded) {
+                if (isHome)
+                    strayKeys.remove(key.internalUID);
+                else
+                    strayKeys.put(key.internalUID, key);
+                invalidate(key.internalUID);
             }
-            keys.put(key.internalUID, key);
-            uidKeyDirectory.put(key.internalUID, key);
         }
 
         public void globalPut(final DHTKey key) {
-            put(key);
-            final NetEvent event = new NetEvent(DHT_EVENT_ADD_KEY_TO_DIRECTORY);
-            event.setPayload(key);
-            netManager.broadcastEvent(event);
+            if (!isSharded) {
+                put(key);
+                final NetEvent event = new NetEvent(DHT_EVENT_ADD_KEY_TO_DIRECTORY);
+                event.setPayload(key);
+                event.stripeKey = key.internalUID;
+                netManager.broadcastEvent(event);
+                return;
+            }
+            cache.put(key.internalUID, key);
+            for (final MachineDescriptor home : homesOf(key)) {
+                if (isLocal(home))
+                    put(key);
+                else
+                    putAt(home, key);
+            }
         }
 
-        public Set<DHTKey> get(final String name) { return new HashSet<>(keyDirectory.get(name).values()); }
+        // Registers the key of a partition stored on this node.
+        public void putStored(final DHTKey key) {
+            if (isSharded)
+                storedKeys.put(key.internalUID, key);
+        }
+
+        public void removeStored(final DHTKey key) {
+            if (isSharded)
+                storedKeys.remove(key.internalUID);
+        }
 
-        public DHTKey get(final UUID uid) { return uidKeyDirectory.get(uid); }
+        public Set<DHTKey> get(final String name) {
+            final MachineDescriptor home = isSharded ? nameHome(name) : null;
+            if (!isSharded || isLocal(home)) {
+                final Map<UUID,DHTKey> keys = keyDirectory.get(name);
+                return keys != null ? new HashSet<>(keys.values()) : new HashSet<>();
+            }
+            final DHTKey[] keys = lookup(home, name);
+            for (final DHTKey key : keys)
+                cache.put(key.internalUID, key);
+            return new HashSet<>(Arrays.asList(keys));
+        }
+
+        // May block for a lookup at the home node, use getLocal(...) in event handlers.
+        public DHTKey get(final UUID uid) {
+            final DHTKey key = getLocal(uid);
+            if (key != null || !isSharded)
+                return key;
+            final DHTKey[] keys = lookup(homes.select(uid), uid);
+            if (keys.length == 0)
+                return null;
+            cache.put(uid, keys[0]);
+            return keys[0];
+        }
+
+        public DHTKey getLocal(final UUID uid) {
+            if (!isSharded)
+                return uidKeyDirectory.get(uid);
+            DHTKey key = storedKeys.get(uid);
+            if (key == null)
+                key = uidKeyDirectory.get(uid);
+            return key != null ? key : cache.get(uid);
+        }
 
+        // The keys registered on this node (in the sharded mode the keys it is name home of).
+        public List<DHTKey> keys() {
+            final List<DHTKey> keys = new ArrayList<>();
+            for (final Map<UUID,DHTKey> k : keyDirectory.values())
+                keys.addAll(k.values());
+            return keys;
+        }
+
+        // Requests on the key that are still in flight fail afterwards, as on any deleted key.
         public void remove(final DHTKey key) {
             final Map<UUID,DHTKey> keys = keyDirectory.get(Preconditions.checkNotNull(key.name));
-            Preconditions.checkState(keys != null);
-            final DHTKey k = keys.get(key.internalUID);
-            Preconditions.checkState(k != null);
-            keys.remove(k);
+            if (keys != null)
+                keys.remove(key.internalUID);
+            uidKeyDirectory.remove(key.internalUID);
+            if (isSharded) {
+                strayKeys.remove(key.internalUID);
+                invalidate(key.internalUID);
+            }
         }
 
         public void globalRemove(final DHTKey key) {
-            remove(key);
-            final NetEvent event = new NetEvent(DHT_EVENT_REMOVE_KEY_FROM_DIRECTORY);
-            event.setPayload(key);
-            netManager.broadcastEvent(event);
+            if (!isSharded) {
+                remove(key);
+                final NetEvent event = new NetEvent(DHT_EVENT_REMOVE_KEY_FROM_DIRECTORY);
+                event.setPayload(key);
+                event.stripeKey = key.internalUID;
+                netManager.broadcastEvent(event);
+                return;
+            }
+            cache.remove(key.internalUID);
+            for (final MachineDescriptor home : homesOf(key)) {
+                if (isLocal(home))
+                    remove(key);
+                else {
+                    final NetEvent event = new NetEvent(DHT_EVENT_REMOVE_KEY_FROM_DIRECTORY);
+                    event.setPayload(key);
+                    event.stripeKey = key.internalUID;
+                    netManager.dispatchEventAt(home, event);
+                }
+            }
         }
 
+        public int getNumberOfCachedKeys() { return cache.size(); }
+
         public void clearContext() {
             keyDirectory.clear();
+            uidKeyDirectory.clear();
+            storedKeys.clear();
+            cache.clear();
+            cachers.clear();
+            strayKeys.clear();
+        }
+
+        /**
+         * Rebuilds the homes from the current DHT nodes after a node joined or left. Entries
+         * this node is no longer home of move to their new homes. The entries of a home that
+         * left are lost with it; the nodes storing the keys register them again, lookups in
+         * flight at it fail at once instead of waiting for the response timeout.
+         */
+        public void updateHomes(final Event event) {
+            homes.setMachines(infraManager.getMachines());
+            if (!isSharded)
+                return;
+            if (ZookeeperClient.IM_EVENT_NODE_REMOVED.equals(event.type)) {
+                final MachineDescriptor left = (MachineDescriptor) event.getPayload();
+                for (final Map.Entry<Long, MachineDescriptor> lookup : pendingLookups.entrySet())
+                    if (lookup.getValue().equals(left))
+                        failRequest(lookup.getKey(), homeLeft(left));
+            }
+            for (final Map<UUID,DHTKey> keys : keyDirectory.values()) {
+                for (final DHTKey key : keys.values()) {
+                    final MachineDescriptor home = nameHome(key.name);
+                    if (!isLocal(home) && keys.remove(key.internalUID) != null)
+                        putAt(home, key);
+                }
+            }
+            for (final DHTKey key : uidKeyDirectory.values()) {
+                final MachineDescriptor home = homes.select(key.internalUID);
+                if (!isLocal(home) && uidKeyDirectory.remove(key.internalUID) != null)
+                    putAt(home, key);
+            }
+            for (final DHTKey key : strayKeys.values()) {
+                if (strayKeys.remove(key.internalUID) == null)
+                    continue;
+                for (final MachineDescriptor home : homesOf(key)) {
+                    if (isLocal(home))
+                        put(key);
+                    else
+                        putAt(home, key);
+                }
+            }
+            // Also repairs registrations sent while the homes of sender and home differed.
+            for (final DHTKey key : storedKeys.values())
+                globalPut(key);
+        }
+
+        // ---------------------------------------------------
+
+        private MachineDescriptor nameHome(final String name) {
+            return homes.select(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private Set<MachineDescriptor> homesOf(final DHTKey key) {
+            final Set<MachineDescriptor> homesOfKey = new HashSet<>();
+            homesOfKey.add(homes.select(key.internalUID));
+            homesOfKey.add(nameHome(key.name));
+            return homesOfKey;
+        }
+
+        private DHTKey[] lookup(final MachineDescriptor home, final Object uidOrName) {
+            final long requestID = requestIDs.incrementAndGet();
+            final CompletableFuture<DHTKey[]> request = registerRequest(requestID);
+            pendingLookups.put(requestID, home);
+            request.whenComplete((r, t) -> pendingLookups.remove(requestID));
+            // Registered before the check, so a home leaving afterwards fails it in updateHomes.
+            if (!infraManager.getMachines().contains(home))
+                failRequest(requestID, homeLeft(home));
+            else {
+                final NetEvent event = new NetEvent(DHT_EVENT_LOOKUP_KEY_REQUEST);
+                event.setPayload(Pair.of(requestID, uidOrName));
+                netManager.dispatchEventAt(home, event);
+            }
+            return await(request, RESPONSE_TIMEOUT);
+        }
+
+        private void putAt(final MachineDescriptor home, final DHTKey key) {
+            final NetEvent event = new NetEvent(DHT_EVENT_ADD_KEY_TO_DIRECTORY);
+            event.setPayload(key);
+            event.stripeKey = key.internalUID;
+            netManager.dispatchEventAt(home, event);
+        }
+
+        private IllegalStateException homeLeft(final MachineDescriptor home) {
+            return new IllegalStateException("Home " + home + " of the DHT key directory left.");
+        }
+
+        private void addCacher(final UUID uid, final UUID machineID) {
+            if (machineID == null || infraManager.getMachine().machineID.equals(machineID))
+                return;
+            Set<UUID> machines = cachers.get(uid);
+            if (machines == null) {
+                final Set<UUID> newMachines = ConcurrentHashMap.newKeySet();
+                machines = cachers.putIfAbsent(uid, newMachines);
+                if (machines == null)
+                    machines = newMachines;
+            }
+            machines.add(machineID);
+        }
+
+        private void invalidate(final UUID uid) {
+            final Set<UUID> machines = cachers.remove(uid);
+            if (machines == null)
+                return;
+            for (final UUID machineID : machines) {
+                final MachineDescriptor machine = infraManager.getMachine(machineID);
+                if (machine == null)
+                    continue;
+                final NetEvent event = new NetEvent(DHT_EVENT_INVALIDATE_KEY);
+                event.setPayload(uid);
+                netManager.dispatchEventAt(machine, event);
+            }
         }
     }
 
@@ -132,6 +533,9 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     private static long RESPONSE_TIMEOUT = 55000; // in ms
 
+    // Max. number of co-location hints followed to place a key.
+    private static final int MAX_COLOCATION_HOPS = 8;
+
     private static final Object globalDHTMutex = new Object();
 
     //private static final AtomicReference<DHTManager> globalDHTInstance = new AtomicReference<>(null);
@@ -144,8 +548,6 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     private final NetManager netManager;
 
-    private final Compressor.CompressionType compressionType;
-
     private final Map<DHTKey,AbstractBufferedDHTObject> store;
 
     //private final Map<DHTKey,DHTObject> lstore;
@@ -160,11 +562,35 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
 
-    private final Map<UUID,CountDownLatch> requestTable = new NonBlockingHashMap<>();
+    // Pending remote get requests, completed by the response handlers.
+    private final NonBlockingHashMapLong<CompletableFuture<Object>> pendingRequests = new NonBlockingHashMapLong<>();
+
+    private final AtomicLong requestIDs = new AtomicLong();
+
+    private final ScheduledThreadPoolExecutor timeoutScheduler;
+
+    // ---------------------------------------
+
+    // Highest version of each replicated partition seen or written by this node, by key UID and
+    // partition index. Bounds the staleness of replica reads.
+    private final Map<Pair<UUID, Integer>, Long> observedVersions = new NonBlockingHashMap<>();
+
+    // Remote requests in flight per machine ID.
+    private final Map<UUID, AtomicInteger> inFlightRequests = new NonBlockingHashMap<>();
 
-    private final Map<UUID,AbstractBufferedDHTObject> responseValueTable = new NonBlockingHashMap<>();
+    // ---------------------------------------
+
+    private volatile DHTPlacementStrategy placement;
+
+    private final Object placementMutex = new Object();
+
+    // Values moved away from this node by a migration, with their new node. Requests for them
+    // that race with the move are forwarded there.
+    private final Map<UUID, MachineDescriptor> movedValues = new NonBlockingHashMap<>();
+
+    // ---------------------------------------
 
-    private final Map<UUID,AbstractBufferedDHTObject.Segment[]> responseSegmentsTable = new NonBlockingHashMap<>();
+    private final DHTMetrics metrics;
 
     // ---------------------------------------------------
     // Constructors.
@@ -188,18 +614,46 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
         this.store          = new NonBlockingHashMap<>();
         //this.lstore         = new NonBlockingHashMap<>();
 
-        this.compressionType = Compressor.CompressionType.NO_COMPRESSION;
+        this.placement = createPlacementStrategy(config);
+        placement.setMachines(infraManager.getMachines());
+
+        this.timeoutScheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "DHT-TIMEOUT-THREAD");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
 
         // Register DHT events.
         netManager.addEventListener(DHT_EVENT_PUT_VALUE, new DHTPutValueHandler());
         netManager.addEventListener(DHT_EVENT_PUT_SEGMENTS, new DHTPutSegmentsHandler());
+        netManager.addEventListener(DHT_EVENT_REPLICATE_SEGMENTS, new DHTReplicateSegmentsHandler());
+        netManager.addEventListener(DHT_EVENT_PUT_DELTAS, new DHTPutDeltasHandler());
+        netManager.addEventListener(DHT_EVENT_REPLICATE_DELTAS, new DHTReplicateDeltasHandler());
+        netManager.addEventListener(DHT_EVENT_PUT_RESPONSE, new DHTPutResponseHandler());
         netManager.addEventListener(DHT_EVENT_GET_VALUE_REQUEST, new DHTGetValueRequestHandler());
         netManager.addEventListener(DHT_EVENT_GET_VALUE_RESPONSE, new DHTGetValueResponseHandler());
         netManager.addEventListener(DHT_EVENT_GET_SEGMENTS_REQUEST, new DHTGetSegmentsRequestHandler());
         netManager.addEventListener(DHT_EVENT_GET_SEGMENTS_RESPONSE, new DHTGetSegmentsResponseHandler());
+        netManager.addEventListener(DHT_EVENT_GET_MODIFIED_REQUEST, new DHTGetModifiedRequestHandler());
+        netManager.addEventListener(DHT_EVENT_GET_MODIFIED_RESPONSE, new DHTGetModifiedResponseHandler());
         netManager.addEventListener(DHT_EVENT_DELETE, new DHTDeleteHandler());
 
-        globalKeyDirectory = new GlobalKeyDirectory();
+        // Move the values whose placement changed when nodes join or leave.
+        infraManager.addEventListener(new String[] {ZookeeperClient.IM_EVENT_NODE_ADDED, ZookeeperClient.IM_EVENT_NODE_REMOVED},
+                event -> rebalance());
+
+        final String directoryMode = config.hasPath(DIRECTORY_CONFIG_KEY) ? config.getString(DIRECTORY_CONFIG_KEY) : "replicated";
+        Preconditions.checkState(directoryMode.equals("replicated") || directoryMode.equals("sharded"),
+                "Unknown DHT directory mode: " + directoryMode);
+        globalKeyDirectory = new GlobalKeyDirectory(directoryMode.equals("sharded"),
+                config.hasPath(DIRECTORY_CACHE_SIZE_CONFIG_KEY) ? config.getInt(DIRECTORY_CACHE_SIZE_CONFIG_KEY) : 100000);
+
+        this.metrics = new DHTMetrics("dht@" + nodeID,
+                !config.hasPath(METRICS_CONFIG_KEY) || config.getBoolean(METRICS_CONFIG_KEY),
+                config.hasPath(METRICS_TOP_K_CONFIG_KEY) ? config.getInt(METRICS_TOP_K_CONFIG_KEY) : DHTMetrics.DEFAULT_TOP_K);
+        if (metrics.enabled)
+            MetricsReporter.register(metrics);
     }
 
     //public static DHTManager getInstance() { return Preconditions.checkNotNull(globalDHTInstance.get()); }
@@ -207,11 +661,15 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     public void clearContext() {
         globalKeyDirectory.clearContext();
+        for (final AbstractBufferedDHTObject value : store.values())
+            value.free();
         store.clear();
     }
 
     @Override
     public void deactivate() {
+        MetricsReporter.unregister(metrics);
+        timeoutScheduler.shutdownNow();
         super.deactivate();
     }
 
@@ -232,12 +690,63 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
         @Override
         public void handleEvent(final Event e) {
             @SuppressWarnings("unchecked")
-            final Pair<DHTKey,AbstractBufferedDHTObject.Segment[]> request = (Pair<DHTKey,AbstractBufferedDHTObject.Segment[]>)e.getPayload();
+            final Triple<Long,DHTKey,AbstractBufferedDHTObject.Segment[]> request = (Triple<Long,DHTKey,AbstractBufferedDHTObject.Segment[]>)e.getPayload();
             // Local put.
-            final DHTKey key = globalKeyDirectory.get(request.getLeft().internalUID);
-            final AbstractBufferedDHTObject value = __get(key);
-            value.putSegments(request.getValue(), nodeID);
-            logDHTAction(key, DHTAction.PUT_SEGMENT);
+            final DHTKey key = globalKeyDirectory.getLocal(request.getMiddle().internalUID);
+            acknowledgePut((NetEvent) e, request.getLeft(), key, putLocalSegments(key, request.getRight()));
+        }
+    }
+
+    // Applies the segment puts propagated by the primary to a backup replica.
+    private final class DHTReplicateSegmentsHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Triple<DHTKey,AbstractBufferedDHTObject.Segment[],Long> request = (Triple<DHTKey,AbstractBufferedDHTObject.Segment[],Long>)e.getPayload();
+            final DHTKey key = globalKeyDirectory.getLocal(request.getLeft().internalUID);
+            // Replicated values are not migrated, so the replica must be stored here.
+            Preconditions.checkState(withStoredValue(key, value -> {
+                value.putSegments(request.getMiddle(), nodeID);
+                value.markModified(segmentIndices(request.getMiddle()), request.getRight(), nodeID);
+                value.updateVersion(request.getRight());
+            }), "No replica of DHT key %s on %s.", key, infraManager.getMachine());
+            logDHTAction(key, DHTAction.PUT_SEGMENT, sizeOf(request.getMiddle()));
+        }
+    }
+
+    private final class DHTPutDeltasHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Triple<Long,DHTKey,SegmentDelta[]> request = (Triple<Long,DHTKey,SegmentDelta[]>)e.getPayload();
+            final DHTKey key = globalKeyDirectory.getLocal(request.getMiddle().internalUID);
+            acknowledgePut((NetEvent) e, request.getLeft(), key, putLocalDeltas(key, request.getRight()));
+        }
+    }
+
+    // The version a primary assigned to an acknowledged put.
+    private final class DHTPutResponseHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Pair<Long,Long> response = (Pair<Long,Long>) e.getPayload();
+            completeRequest(response.getLeft(), response.getRight());
+        }
+    }
+
+    // Applies the deltas propagated by the primary to a backup replica.
+    private final class DHTReplicateDeltasHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Triple<DHTKey,SegmentDelta[],Long> request = (Triple<DHTKey,SegmentDelta[],Long>)e.getPayload();
+            final DHTKey key = globalKeyDirectory.getLocal(request.getLeft().internalUID);
+            Preconditions.checkState(withStoredValue(key, value -> {
+                value.applyDeltas(request.getMiddle(), nodeID);
+                value.markModified(segmentIndices(request.getMiddle()), request.getRight(), nodeID);
+                value.updateVersion(request.getRight());
+            }), "No replica of DHT key %s on %s.", key, infraManager.getMachine());
+            logDHTAction(key, DHTAction.PUT_SEGMENT, sizeOf(request.getMiddle()));
         }
     }
 
@@ -247,15 +756,16 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
             executor.execute(() -> {
                 final NetEvent event = (NetEvent) e;
                 @SuppressWarnings("unchecked")
-                final Pair<UUID,DHTKey> request = (Pair<UUID,DHTKey>) event.getPayload();
-                final DHTKey key = globalKeyDirectory.get(request.getRight().internalUID);
+                final Pair<Long,DHTKey> request = (Pair<Long,DHTKey>) event.getPayload();
+                final DHTKey key = globalKeyDirectory.getLocal(request.getRight().internalUID);
                 Preconditions.checkState(key != null);
-                final AbstractBufferedDHTObject value = __get(key);
-                //value.compress(); // TODO: Compression!
-                final NetEvent e1 = new NetEvent(DHT_EVENT_GET_VALUE_RESPONSE);
-                e1.setPayload(Pair.of(request.getKey(), value));
-                netManager.dispatchEventAt(event.srcMachineID, e1);
-                logDHTAction(key, DHTAction.GET_VALUE);
+                getLocalValue(key).thenAccept(response -> {
+                    // The value is compressed with its frame if the channel negotiated compression.
+                    final NetEvent e1 = new NetEvent(DHT_EVENT_GET_VALUE_RESPONSE);
+                    e1.setPayload(Triple.of(request.getKey(), response.getKey(), response.getValue()));
+                    e1.stripeKey = key.internalUID;
+                    netManager.dispatchEventAt(event.srcMachineID, e1);
+                });
             });
         }
     }
@@ -263,57 +773,88 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
     private final class DHTGetValueResponseHandler implements IEventHandler {
         @Override
         public void handleEvent(final Event e) {
-            executor.execute(() -> {
-                @SuppressWarnings("unchecked")
-                final Pair<UUID,AbstractBufferedDHTObject> response = (Pair<UUID,AbstractBufferedDHTObject>) e.getPayload();
-                final AbstractBufferedDHTObject value = response.getValue();
-                //value.decompress(); // TODO: Decompression!
-                responseValueTable.put(response.getKey(), value);
-                requestTable.remove(response.getKey()).countDown();
-            });
+            @SuppressWarnings("unchecked")
+            final Triple<Long,AbstractBufferedDHTObject,Long> response = (Triple<Long,AbstractBufferedDHTObject,Long>) e.getPayload();
+            completeRequest(response.getLeft(), Pair.of(response.getMiddle(), response.getRight()));
         }
     }
 
+    // Serves the segment requests of several keys at once, answered with one message.
     private final class DHTGetSegmentsRequestHandler implements IEventHandler {
         @Override
         public void handleEvent(final Event e) {
             executor.execute(() -> {
                 final NetEvent event = (NetEvent) e;
                 @SuppressWarnings("unchecked")
-                final Triple<UUID,DHTKey,int[]> segmentsRequest = (Triple<UUID,DHTKey,int[]>) event.getPayload();
-                final DHTKey key = globalKeyDirectory.get(segmentsRequest.getMiddle().internalUID);
-                final AbstractBufferedDHTObject.Segment[] segments = __get(segmentsRequest.getMiddle()).getSegments(segmentsRequest.getRight(), nodeID);
-                final NetEvent e1 = new NetEvent(DHT_EVENT_GET_SEGMENTS_RESPONSE);
-                e1.setPayload(Pair.of(segmentsRequest.getLeft(), segments));
-                netManager.dispatchEventAt(event.srcMachineID, e1);
-                logDHTAction(key, DHTAction.GET_SEGMENT);
+                final Triple<Long,DHTKey[],int[][]> segmentsRequest = (Triple<Long,DHTKey[],int[][]>) event.getPayload();
+                final DHTKey[] keys = segmentsRequest.getMiddle();
+                final AbstractBufferedDHTObject.Segment[][] segments = new AbstractBufferedDHTObject.Segment[keys.length][];
+                final long[] versions = new long[keys.length];
+                final List<CompletableFuture<?>> requests = new ArrayList<>();
+                for (int i = 0; i < keys.length; ++i) {
+                    final int index = i;
+                    requests.add(getLocalSegments(keys[i], segmentsRequest.getRight()[i], false).thenAccept(response -> {
+                        segments[index] = response.getKey();
+                        versions[index] = response.getValue();
+                    }));
+                }
+                allOf(requests).thenRun(() -> {
+                    final NetEvent e1 = new NetEvent(DHT_EVENT_GET_SEGMENTS_RESPONSE);
+                    e1.setPayload(Triple.of(segmentsRequest.getLeft(), segments, versions));
+                    e1.stripeKey = keys[0].internalUID;
+                    netManager.dispatchEventAt(event.srcMachineID, e1);
+                });
             });
         }
     }
 
     private final class DHTGetSegmentsResponseHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Triple<Long,AbstractBufferedDHTObject.Segment[][],long[]> response = (Triple<Long,AbstractBufferedDHTObject.Segment[][],long[]>) e.getPayload();
+            completeRequest(response.getLeft(), Pair.of(response.getMiddle(), response.getRight()));
+        }
+    }
+
+    private final class DHTGetModifiedRequestHandler implements IEventHandler {
         @Override
         public void handleEvent(final Event e) {
             executor.execute(() -> {
+                final NetEvent event = (NetEvent) e;
                 @SuppressWarnings("unchecked")
-                final Pair<UUID,AbstractBufferedDHTObject.Segment[]> response = (Pair<UUID,AbstractBufferedDHTObject.Segment[]>) e.getPayload();
-                responseSegmentsTable.put(response.getKey(), response.getValue());
-                requestTable.remove(response.getKey()).countDown();
+                final Triple<Long,DHTKey,Long> request = (Triple<Long,DHTKey,Long>) event.getPayload();
+                getLocalModified(request.getMiddle(), request.getRight(), false).thenAccept(modified -> {
+                    final NetEvent e1 = new NetEvent(DHT_EVENT_GET_MODIFIED_RESPONSE);
+                    e1.setPayload(Triple.of(request.getLeft(), modified.getKey(), modified.getValue()));
+                    e1.stripeKey = request.getMiddle().internalUID;
+                    netManager.dispatchEventAt(event.srcMachineID, e1);
+                });
             });
         }
     }
 
+    private final class DHTGetModifiedResponseHandler implements IEventHandler {
+        @Override
+        public void handleEvent(final Event e) {
+            @SuppressWarnings("unchecked")
+            final Triple<Long,AbstractBufferedDHTObject.Segment[],Long> response = (Triple<Long,AbstractBufferedDHTObject.Segment[],Long>) e.getPayload();
+            completeRequest(response.getLeft(), Pair.of(response.getMiddle(), response.getRight()));
+        }
+    }
+
     private final class DHTDeleteHandler implements IEventHandler {
         @Override
         public void handleEvent(final Event e) {
             executor.execute(() -> {
                 final NetEvent event = (NetEvent)e;
-                final DHTKey key = globalKeyDirectory.get(((DHTKey) event.getPayload()).internalUID);
+                final DHTKey payload = (DHTKey) event.getPayload();
+                // The directory entry may already be removed by the directory broadcast.
+                final DHTKey local = globalKeyDirectory.getLocal(payload.internalUID);
+                final DHTKey key = local != null ? local : payload;
                 // Local delete.
                 globalKeyDirectory.remove(key);
-                if (__remove(key) == null)
-                    throw new IllegalStateException();
-                logDHTAction(key, DHTAction.DELETE_VALUE);
+                deleteLocal(key);
             });
         }
     }
@@ -339,10 +880,18 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
      */
     public DHTKey put(final DHTKey key, final AbstractBufferedDHTObject vals) { return put(key, new AbstractBufferedDHTObject[] {vals}, AbstractBufferedDHTObject.DEFAULT_SEGMENT_SIZE); }
     public DHTKey put(final DHTKey key, final AbstractBufferedDHTObject[] vals) { return put(key, vals, AbstractBufferedDHTObject.DEFAULT_SEGMENT_SIZE); }
-    public DHTKey put(final DHTKey key, final AbstractBufferedDHTObject[] vals, int segmentSize) {
+    public DHTKey put(final DHTKey key, final AbstractBufferedDHTObject[] vals, int segmentSize) { return await(putAsync(key, vals, segmentSize)); }
+
+    /**
+     * Non-blocking put. Remote puts are not acknowledged, the returned future completes
+     * once all value partitions are stored locally or handed to the network.
+     */
+    public CompletableFuture<DHTKey> putAsync(final DHTKey key, final AbstractBufferedDHTObject vals) { return putAsync(key, new AbstractBufferedDHTObject[] {vals}, AbstractBufferedDHTObject.DEFAULT_SEGMENT_SIZE); }
+    public CompletableFuture<DHTKey> putAsync(final DHTKey key, final AbstractBufferedDHTObject[] vals, int segmentSize) {
+        final long startNanos = System.nanoTime();
 
         if ((key.getPartitionDirectory() == null || key.getPartitionDirectory().size() == 0)
-                && globalKeyDirectory.get(key.internalUID) == null) {
+                && globalKeyDirectory.getLocal(key.internalUID) == null) {
 
             // Select the machine where the value or the first value partition is stored.
             final MachineDescriptor primaryMachine = selectMachineForKey(key);
@@ -360,7 +909,7 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
                             primaryMachine                              // The machine where the partition is stored.
                     );
             // Add descriptor to the keys' partition directory.
-            key.addPartitionDirectoryEntry(nodeID, ppd);
+            key.addPartitionDirectoryEntry(infraManager.getMachineIndex(primaryMachine), ppd);
 
             // At the moment we does not allow local storage of multiple values...
             if (vals.length > 1 && key.distributionMode == DHTKey.DistributionMode.LOCAL)
@@ -397,36 +946,49 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
                 }
             }
 
+            if (key.getReplicationFactor() > 1 && key.distributionMode == DHTKey.DistributionMode.DISTRIBUTED)
+                assignBackups(key);
+
             globalKeyDirectory.globalPut(key);
         }
 
-        // Iterate over the partition directory and distribute
-        // the value partitions to their assigned machines.
-        final Iterator<DHTKey.PartitionDescriptor> it = key.getPartitionDirectory().values().iterator();
-        for (int i = 0; i < key.getPartitionDirectory().size(); ++i) {
-            final DHTKey.PartitionDescriptor pd = it.next();
-            if (isLocal(pd.machine)) {
-                localPut(key, vals[i]);
-            } else {
-                // Remote put.
-                final NetEvent e = new NetEvent(DHT_EVENT_PUT_VALUE);
-                e.setPayload(Pair.of(key, vals[i]));
-                netManager.dispatchEventAt(pd.machine, e);
+        // Iterate over the partition directory and distribute the value
+        // partitions to their assigned machines and backup replicas.
+        for (final DHTKey.PartitionDescriptor pd : key.getPartitionDirectory().values()) {
+            for (final MachineDescriptor replica : ArrayUtils.add(pd.backups, 0, pd.machine)) {
+                if (isLocal(replica)) {
+                    localPut(key, vals[pd.partitionIndex]);
+                } else {
+                    // Remote put.
+                    final NetEvent e = new NetEvent(DHT_EVENT_PUT_VALUE);
+                    e.setPayload(Pair.of(key, vals[pd.partitionIndex]));
+                    e.stripeKey = key.internalUID;
+                    netManager.dispatchEventAt(replica, e);
+                }
             }
         }
 
-        return key;
+        return timed(DHTMetrics.Operation.PUT_VALUE, startNanos, CompletableFuture.completedFuture(key));
     }
 
     private void localPut(final DHTKey key, final AbstractBufferedDHTObject val) {
         // Set the key for the value partition.
         val.setInternalUID(key.internalUID);
         val.setKey(key);
+        globalKeyDirectory.putStored(key);
         // Allocate memory for the value.
         if (!val.isAllocated())
             val.allocateMemory(nodeID);
+        // A replaced value counts as modification of all its segments.
+        final AbstractBufferedDHTObject previous = store.get(key);
+        if (previous != null && previous != val) {
+            val.updateVersion(previous.getVersion() + 1);
+            val.markAllModified(val.getVersion(), nodeID);
+        }
         __put(key, val);
-        logDHTAction(key, DHTAction.PUT_VALUE);
+        // A value moved back to this node is served here again.
+        movedValues.remove(key.internalUID);
+        logDHTAction(key, DHTAction.PUT_VALUE, val.getPartitionSize());
     }
 
     /**
@@ -435,8 +997,18 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
      * @param segment Updated segments of a value object.
      */
     public void put(final DHTKey key, final AbstractBufferedDHTObject.Segment segment) { put(key, new AbstractBufferedDHTObject.Segment[] { segment }); }
-    public void put(final DHTKey key, final AbstractBufferedDHTObject.Segment[] segments) {
-        Preconditions.checkNotNull(key);
+    public void put(final DHTKey key, final AbstractBufferedDHTObject.Segment[] segments) { await(putAsync(key, segments)); }
+
+    /**
+     * Non-blocking segment put, one message per storing node. The puts are applied at the
+     * primary replica and propagated from there to the backups. Puts on replicated partitions
+     * are acknowledged with the version the primary assigned, which this node then observes, so
+     * its later replica reads see its own writes. Other remote puts are not acknowledged, the
+     * returned future completes once all segments are handed over.
+     */
+    public CompletableFuture<Void> putAsync(final DHTKey k, final AbstractBufferedDHTObject.Segment[] segments) {
+        final long startNanos = System.nanoTime();
+        final DHTKey key = currentKey(Preconditions.checkNotNull(k));
         Preconditions.checkNotNull(segments);
         // Group all segments according to their storage locations/dhtManager at.
         final Map<MachineDescriptor, List<AbstractBufferedDHTObject.Segment>> putRequests = new HashMap<>();
@@ -450,24 +1022,64 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
             segmentsToPut.add(segment);
         }
         // Iterate over the grouped segments and push them to their storage locations.
-        // Internally we span multiple threads to parallelize the put requests.
+        final List<CompletableFuture<?>> acks = new ArrayList<>();
         for (final Map.Entry<MachineDescriptor, List<AbstractBufferedDHTObject.Segment>> e : putRequests.entrySet()) {
             final AbstractBufferedDHTObject.Segment[] segs = new AbstractBufferedDHTObject.Segment[e.getValue().size()];
             e.getValue().toArray(segs);
+            final DHTKey.PartitionDescriptor pd = key.getPartitionFromSegmentIndex(segs[0].segmentIndex);
             if (isLocal(e.getKey())) {
                 // Local put.
-                final AbstractBufferedDHTObject value = __get(key);
-                value.putSegments(segs, nodeID);
-                logDHTAction(key, DHTAction.PUT_SEGMENT);
+                observeVersion(key, pd, putLocalSegments(key, segs));
             } else {
                 // Remote put.
-                executor.submit(() -> {
-                    final NetEvent event = new NetEvent(DHT_EVENT_PUT_SEGMENTS);
-                    event.setPayload(Pair.of(key, segs));
-                    netManager.dispatchEventAt(e.getKey(), event);
-                });
+                acks.add(putAt(key, pd, DHT_EVENT_PUT_SEGMENTS, segs));
+            }
+        }
+        return timed(DHTMetrics.Operation.PUT_SEGMENTS, startNanos, allOf(acks));
+    }
+
+    /**
+     * Put sparse segment updates, applied in place by the storing nodes, see {@link SegmentDelta}.
+     * Cheaper than a segment put if only a few values of a segment changed.
+     */
+    public void put(final DHTKey key, final SegmentDelta[] deltas) { await(putAsync(key, deltas)); }
+
+    /**
+     * Non-blocking delta put, one message per storing node. Like segment puts, deltas are
+     * propagated from the primary to the backup replicas and only acknowledged for replicated
+     * partitions.
+     */
+    public CompletableFuture<Void> putAsync(final DHTKey k, final SegmentDelta[] deltas) {
+        final long startNanos = System.nanoTime();
+        final DHTKey key = currentKey(Preconditions.checkNotNull(k));
+        Preconditions.checkNotNull(deltas);
+        // Group all deltas according to their storage locations.
+        final Map<MachineDescriptor, List<SegmentDelta>> putRequests = new HashMap<>();
+        for (final SegmentDelta delta : deltas) {
+            if (!delta.isEmpty())
+                putRequests.computeIfAbsent(key.getDHTNodeFromSegmentIndex(delta.segmentIndex), md -> new ArrayList<>()).add(delta);
+        }
+        final List<CompletableFuture<?>> acks = new ArrayList<>();
+        for (final Map.Entry<MachineDescriptor, List<SegmentDelta>> e : putRequests.entrySet()) {
+            final SegmentDelta[] ds = e.getValue().toArray(new SegmentDelta[e.getValue().size()]);
+            final DHTKey.PartitionDescriptor pd = key.getPartitionFromSegmentIndex(ds[0].segmentIndex);
+            if (isLocal(e.getKey())) {
+                // Local put.
+                observeVersion(key, pd, putLocalDeltas(key, ds));
+            } else {
+                // Remote put.
+                acks.add(putAt(key, pd, DHT_EVENT_PUT_DELTAS, ds));
             }
         }
+        return timed(DHTMetrics.Operation.PUT_SEGMENTS, startNanos, allOf(acks));
+    }
+
+    /**
+     * Atomically adds the values to the floats at the given float indices of a segment at its
+     * storing node, without a read-modify-write round trip.
+     */
+    public CompletableFuture<Void> accumulate(final DHTKey key, final int segmentIndex, final int[] floatIndices, final float[] values) {
+        return putAsync(key, new SegmentDelta[] { SegmentDelta.accumulate(segmentIndex, floatIndices, values) });
     }
 
     // ---------------------------------------------------
@@ -477,131 +1089,166 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
      * @param key The key that is associated with the value object.
      * @return The gathered <Code>Value</Code> partitions.
      */
-    public AbstractBufferedDHTObject[] get(final DHTKey key) {
-        Preconditions.checkNotNull(key);
+    public AbstractBufferedDHTObject[] get(final DHTKey key) { return await(getAsync(key)); }
+
+    /**
+     * Non-blocking get, the returned future is completed by the response handler once
+     * all value partitions are gathered.
+     */
+    public CompletableFuture<AbstractBufferedDHTObject[]> getAsync(final DHTKey k) { return getAsync(k, ReplicaSelection.PRIMARY, 0); }
+
+    /**
+     * Non-blocking get that may read the partitions of a replicated key from a backup. A replica
+     * that is more than {@code maxStaleness} versions behind the highest version this node has
+     * observed is not used, the partition is re-read from its primary instead.
+     */
+    public CompletableFuture<AbstractBufferedDHTObject[]> getAsync(final DHTKey k, final ReplicaSelection selection, final long maxStaleness) {
+        final long startNanos = System.nanoTime();
+        final DHTKey key = currentKey(Preconditions.checkNotNull(k));
+        Preconditions.checkNotNull(selection);
+        Preconditions.checkArgument(maxStaleness >= 0);
         final int numberOfPartitions = key.getPartitionDirectory().size();
         final AbstractBufferedDHTObject[] values = new AbstractBufferedDHTObject[numberOfPartitions];
-        final CountDownLatch operationCompleteLatch = new CountDownLatch(numberOfPartitions);
+        final List<CompletableFuture<?>> remoteRequests = new ArrayList<>();
         // Iterate over keys' partition directory and request all partitions.
-        // Internally we span multiple threads to parallelize the value requests.
         for (final Map.Entry<Integer,DHTKey.PartitionDescriptor> entry : key.getPartitionDirectory().entrySet()) {
             final DHTKey.PartitionDescriptor pd = entry.getValue();
-            if (isLocal(pd.machine)) {
-                values[pd.partitionIndex] = __get(key);
-                logDHTAction(key, DHTAction.GET_VALUE);
-                operationCompleteLatch.countDown();
+            final MachineDescriptor replica = selectReplica(pd, selection);
+            if (isLocal(replica) && isLocal(pd.machine)) {
+                remoteRequests.add(getLocalValue(key).thenAccept(response -> values[pd.partitionIndex] = response.getKey()));
             } else {
-                executor.submit(() -> {
-                    values[pd.partitionIndex] = getRemoteValueBlocking(pd.machine, key);
-                    operationCompleteLatch.countDown();
-                });
+                remoteRequests.add(getValueAt(key, replica)
+                        .thenCompose(response -> replica.equals(pd.machine) || !isStale(key, pd, response.getValue(), maxStaleness)
+                                ? CompletableFuture.completedFuture(response)
+                                : getValueAt(key, pd.machine))
+                        .thenAccept(response -> {
+                            observeVersion(key, pd, response.getValue());
+                            values[pd.partitionIndex] = response.getKey();
+                        }));
             }
         }
-        try {
-            // Wait until all value partitions are collected from remote at.
-            operationCompleteLatch.await();
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
-        }
-        return values;
-    }
-
-    private AbstractBufferedDHTObject getRemoteValueBlocking(final MachineDescriptor machine, final DHTKey key) {
-        final CountDownLatch cdl = new CountDownLatch(1);
-        final UUID requestID = UUID.randomUUID();
-        requestTable.put(requestID, cdl);
-        final NetEvent e = new NetEvent(DHT_EVENT_GET_VALUE_REQUEST);
-        e.setPayload(Pair.of(requestID, key));
-        netManager.dispatchEventAt(machine, e);
-        try {
-            if (RESPONSE_TIMEOUT > 0) {
-                // block the caller thread until we get some response...
-                // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                cdl.await(RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
-            } else
-                cdl.await();
-        } catch (InterruptedException ie) {
-            throw new IllegalStateException(ie);
-        }
-        return responseValueTable.remove(requestID);
+        return timed(DHTMetrics.Operation.GET_VALUE, startNanos, allOf(remoteRequests).thenApply(v -> values));
     }
 
     // The returned segment array order does correspond to order in segmentIndices.
     public AbstractBufferedDHTObject.Segment[] get(final DHTKey key, final int segmentIndex) { return get(key, new int[] { segmentIndex }); }
-    public AbstractBufferedDHTObject.Segment[] get(final DHTKey key, final int[] segmentIndices) {
+    public AbstractBufferedDHTObject.Segment[] get(final DHTKey key, final int[] segmentIndices) { return await(getSegmentsAsync(key, segmentIndices)); }
+
+    public CompletableFuture<AbstractBufferedDHTObject.Segment[]> getSegmentsAsync(final DHTKey key, final int[] segmentIndices) {
         Preconditions.checkNotNull(key);
         Preconditions.checkNotNull(segmentIndices);
-        final AbstractBufferedDHTObject.Segment[] segments = new AbstractBufferedDHTObject.Segment[segmentIndices.length];
+        return getSegmentsAsync(Collections.singletonMap(key, segmentIndices)).thenApply(segments -> segments.get(key));
+    }
+
+    /**
+     * Non-blocking segment get for several keys. The requests of all keys to the same node
+     * are batched into one message. The segment arrays of the result correspond in order
+     * to the requested segment indices of their key.
+     */
+    public CompletableFuture<Map<DHTKey, AbstractBufferedDHTObject.Segment[]>> getSegmentsAsync(final Map<DHTKey, int[]> segmentRequests) {
+        return getSegmentsAsync(segmentRequests, ReplicaSelection.PRIMARY, 0);
+    }
+
+    /**
+     * Non-blocking segment get that may read replicated keys from a backup, see
+     * {@link #getAsync(DHTKey, ReplicaSelection, long)} for the staleness bound.
+     */
+    public CompletableFuture<Map<DHTKey, AbstractBufferedDHTObject.Segment[]>> getSegmentsAsync(final Map<DHTKey, int[]> segmentRequests,
+                                                                                                final ReplicaSelection selection,
+                                                                                                final long maxStaleness) {
+        final long startNanos = System.nanoTime();
+        Preconditions.checkNotNull(segmentRequests);
+        Preconditions.checkNotNull(selection);
+        Preconditions.checkArgument(maxStaleness >= 0);
+        final Map<DHTKey, AbstractBufferedDHTObject.Segment[]> result = new HashMap<>();
         // Build all requests and group them according to the dhtManager at.
-        final Map<MachineDescriptor, List<Integer>> requests = new HashMap<>();
-        for (final int segmentIndex : segmentIndices) {
-            final MachineDescriptor md = key.getDHTNodeFromSegmentIndex(segmentIndex);
-            List<Integer> requestedSegmentIndices = requests.get(md);
-            if (requestedSegmentIndices == null) {
-                requestedSegmentIndices = new ArrayList<>();
-                requests.put(md, requestedSegmentIndices);
-            }
-            requestedSegmentIndices.add(segmentIndex);
-        }
-        // Iterate over keys' partition directory and request all segments.
-        // Internally we span multiple threads to parallelize the collecting process.
-        final CountDownLatch operationCompleteLatch = new CountDownLatch(requests.size());
-        for (final Map.Entry<MachineDescriptor, List<Integer>> e : requests.entrySet()) {
-            if (isLocal(e.getKey())) {
-                final AbstractBufferedDHTObject.Segment[] localSegments = __get(key).getSegments(Ints.toArray(e.getValue()), nodeID);
-                for (final AbstractBufferedDHTObject.Segment localSegment : localSegments) {
-                    final int index = ArrayUtils.indexOf(segmentIndices, localSegment.segmentIndex);
-                    segments[index] = localSegment;
+        final Map<MachineDescriptor, Map<DHTKey, List<Integer>>> requests = new HashMap<>();
+        final Map<DHTKey, DHTKey> currentKeys = new HashMap<>();
+        for (final Map.Entry<DHTKey, int[]> request : segmentRequests.entrySet()) {
+            final DHTKey key = request.getKey();
+            final DHTKey currentKey = currentKey(key);
+            currentKeys.put(key, currentKey);
+            result.put(key, new AbstractBufferedDHTObject.Segment[request.getValue().length]);
+            for (final int segmentIndex : request.getValue()) {
+                final MachineDescriptor md = selectReplica(currentKey.getPartitionFromSegmentIndex(segmentIndex), selection);
+                requests.computeIfAbsent(md, k -> new HashMap<>())
+                        .computeIfAbsent(key, k -> new ArrayList<>())
+                        .add(segmentIndex);
+            }
+        }
+        // Serve local segments directly and send one request per remote node.
+        final List<CompletableFuture<?>> remoteRequests = new ArrayList<>();
+        for (final Map.Entry<MachineDescriptor, Map<DHTKey, List<Integer>>> e : requests.entrySet()) {
+            final MachineDescriptor md = e.getKey();
+            final DHTKey[] keys = e.getValue().keySet().toArray(new DHTKey[e.getValue().size()]);
+            final int[][] indices = new int[keys.length][];
+            for (int i = 0; i < keys.length; ++i)
+                indices[i] = Ints.toArray(e.getValue().get(keys[i]));
+            if (isLocal(md)) {
+                for (int i = 0; i < keys.length; ++i) {
+                    final DHTKey key = keys[i];
+                    final int[] keyIndices = indices[i];
+                    remoteRequests.add(getLocalSegments(key, keyIndices, true)
+                            .thenCompose(response -> fromPrimaryIfStale(currentKeys.get(key), md, keyIndices, response.getKey(), response.getValue(), maxStaleness))
+                            .thenAccept(placeInto(result, segmentRequests, key)));
                 }
-                logDHTAction(key, DHTAction.GET_SEGMENT);
-                operationCompleteLatch.countDown();
             } else {
-                executor.submit(() -> {
-                    final AbstractBufferedDHTObject.Segment[] remoteSegments = getRemoteSegmentsBlocking(e.getKey(), key, Ints.toArray(e.getValue()));
-                    for (final AbstractBufferedDHTObject.Segment remoteSegment : remoteSegments) {
-                        final int index = ArrayUtils.indexOf(segmentIndices, remoteSegment.segmentIndex);
-                        segments[index] = remoteSegment;
-                    }
-                    operationCompleteLatch.countDown();
-                });
+                remoteRequests.add(getSegmentsAt(md, keys, indices).thenCompose(response -> {
+                    final List<CompletableFuture<?>> placements = new ArrayList<>();
+                    for (int i = 0; i < keys.length; ++i)
+                        placements.add(fromPrimaryIfStale(currentKeys.get(keys[i]), md, indices[i], response.getKey()[i], response.getValue()[i], maxStaleness)
+                                .thenAccept(placeInto(result, segmentRequests, keys[i])));
+                    return allOf(placements);
+                }));
             }
         }
-        try {
-            // Wait until all segments are collected from remote at.
-            operationCompleteLatch.await();
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
-        }
-        return segments;
+        return timed(DHTMetrics.Operation.GET_SEGMENTS, startNanos, allOf(remoteRequests).thenApply(v -> result));
     }
 
-    private AbstractBufferedDHTObject.Segment[] getRemoteSegmentsBlocking(final MachineDescriptor machine, final DHTKey key, final int[] segmentIndices) {
-        final CountDownLatch cdl = new CountDownLatch(1);
-        final UUID requestID = UUID.randomUUID();
-        requestTable.put(requestID, cdl);
-        final NetEvent event = new NetEvent(DHT_EVENT_GET_SEGMENTS_REQUEST);
-        event.setPayload(Triple.of(requestID, key, segmentIndices));
-        netManager.dispatchEventAt(machine, event);
-        try {
-            if (RESPONSE_TIMEOUT > 0) {
-                // block the caller thread until we get some response...
-                // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                cdl.await(RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
-            } else
-                cdl.await();
-        } catch (InterruptedException ie) {
-            throw new IllegalStateException(ie);
+    /**
+     * Conditional get: returns only the segments modified since the known partition versions,
+     * an unmodified result if nothing changed. Pass {@link ModifiedSegments#versions} of the
+     * previous result as known versions, or null to get all segments.
+     */
+    public ModifiedSegments getIfModified(final DHTKey key, final long[] knownVersions) { return await(getIfModifiedAsync(key, knownVersions)); }
+
+    public CompletableFuture<ModifiedSegments> getIfModifiedAsync(final DHTKey k, final long[] knownVersions) {
+        final long startNanos = System.nanoTime();
+        final DHTKey key = currentKey(Preconditions.checkNotNull(k));
+        final int numberOfPartitions = key.getPartitionDirectory().size();
+        Preconditions.checkArgument(knownVersions == null || knownVersions.length == numberOfPartitions);
+        final long[] versions = new long[numberOfPartitions];
+        final AbstractBufferedDHTObject.Segment[][] segments = new AbstractBufferedDHTObject.Segment[numberOfPartitions][];
+        final List<CompletableFuture<?>> remoteRequests = new ArrayList<>();
+        for (final DHTKey.PartitionDescriptor pd : key.getPartitionDirectory().values()) {
+            final long knownVersion = knownVersions != null ? knownVersions[pd.partitionIndex] : -1;
+            final CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[],Long>> request;
+            if (isLocal(pd.machine))
+                request = getLocalModified(key, knownVersion, true);
+            else
+                request = getModifiedAt(key, pd.machine, knownVersion);
+            remoteRequests.add(request.thenAccept(modified -> {
+                segments[pd.partitionIndex] = modified.getKey();
+                versions[pd.partitionIndex] = modified.getValue();
+            }));
         }
-        return responseSegmentsTable.remove(requestID);
+        return timed(DHTMetrics.Operation.GET_SEGMENTS, startNanos, allOf(remoteRequests).thenApply(v -> {
+            final List<AbstractBufferedDHTObject.Segment> modified = new ArrayList<>();
+            for (final AbstractBufferedDHTObject.Segment[] s : segments)
+                modified.addAll(Arrays.asList(s));
+            return new ModifiedSegments(versions, modified.toArray(new AbstractBufferedDHTObject.Segment[modified.size()]));
+        }));
     }
 
     // ---------------------------------------------------
 
     /**
      * Delete a <code>Value</code> object (and associated partitions) in the dhtManager.
+     * The memory of the partitions is freed (see {@link AbstractBufferedDHTObject#free()}).
      * @param key The key that is associated with the value object.
      */
     public void delete(final DHTKey key) {
+        final long startNanos = System.nanoTime();
         //final Key k = keyDirectory.get(key.internalUID);
         final DHTKey k = globalKeyDirectory.get(key.internalUID);
         // At the moment we need a key with all the distribution metadata.
@@ -609,19 +1256,22 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
         // Iterate over keys' partition directory and either push
         // delete messages to remote partitions or delete locally.
         for (final DHTKey.PartitionDescriptor pd : k.getPartitionDirectory().values())
-            if (isLocal(pd.machine)) {
-                // Local delete.
-                if (/*keyDirectory.remove(key.internalUID) == null ||*/ __remove(key) == null)
-                    throw new IllegalStateException();
-                logDHTAction(key, DHTAction.DELETE_VALUE);
-            } else {
-                // Remote delete.
-                final NetEvent e = new NetEvent(DHT_EVENT_DELETE);
-                e.setPayload(key);
-                netManager.dispatchEventAt(pd.machine, e);
+            for (final MachineDescriptor replica : ArrayUtils.add(pd.backups, 0, pd.machine)) {
+                if (isLocal(replica)) {
+                    deleteLocal(key);
+                } else {
+                    // Remote delete.
+                    final NetEvent e = new NetEvent(DHT_EVENT_DELETE);
+                    e.setPayload(key);
+                    e.stripeKey = key.internalUID;
+                    netManager.dispatchEventAt(replica, e);
+                }
             }
+        for (final DHTKey.PartitionDescriptor pd : k.getPartitionDirectory().values())
+            observedVersions.remove(Pair.of(k.internalUID, pd.partitionIndex));
 
         globalKeyDirectory.globalRemove(key);
+        metrics.recordLatency(DHTMetrics.Operation.DELETE, startNanos);
     }
 
     // ---------------------------------------------------
@@ -630,10 +1280,19 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     public DHTKey getKey(final UUID internalID) { return globalKeyDirectory.get(Preconditions.checkNotNull(internalID)); }
 
+    /** @return the partition of the key this node is primary of, null if none. */
+    public DHTKey.PartitionDescriptor getLocalPartition(final DHTKey key) {
+        final DHTKey.PartitionDescriptor pd = currentKey(Preconditions.checkNotNull(key)).getPartitionDescriptor(nodeID);
+        return pd != null && isLocal(pd.machine) ? pd : null;
+    }
+
     // ---------------------------------------------------
 
+    // Null if no value is stored for the key, e.g. because it was moved by a migration.
     public AbstractBufferedDHTObject __get(final DHTKey key) {
         final AbstractBufferedDHTObject value = store.get(key);
+        if (value == null)
+            return null;
         synchronized (value.lock) {
             return value;
         }
@@ -647,6 +1306,8 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     public AbstractBufferedDHTObject __remove(final DHTKey key) {
         final AbstractBufferedDHTObject value = store.remove(key);
+        if (value == null)
+            return null;
         synchronized (value.lock) {
             return value;
         }
@@ -663,18 +1324,96 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
     // ---------------------------------------------------
 
     public UUID createLocalUID() {
-        int id; UUID uid;
+        UUID uid;
         do {
             uid = UUID.randomUUID();
-            id = (uid.hashCode() & Integer.MAX_VALUE) % infraManager.getMachines().size();
-        } while (id != infraManager.getNodeID());
+        } while (!isLocal(placement.select(uid)));
         return uid;
     }
 
+    // Local keys are pinned, they stay on this node when the placement changes.
     public DHTKey createLocalKey(final String name) {
         final UUID localUID = createLocalUID();
         final DHTKey key = DHTKey.newKey(localUID, name, DHTKey.DistributionMode.DISTRIBUTED);
-        return key;
+        return key.pinTo(infraManager.getMachine());
+    }
+
+    // ---------------------------------------------------
+
+    public DHTPlacementStrategy getPlacementStrategy() { return placement; }
+
+    public DHTMetrics getMetrics() { return metrics; }
+
+    /**
+     * Replaces the placement strategy. Values stored on this node that are placed elsewhere
+     * by the new strategy are migrated in the background, see {@link #rebalance()}.
+     */
+    public CompletableFuture<Integer> setPlacementStrategy(final DHTPlacementStrategy strategy) {
+        Preconditions.checkNotNull(strategy);
+        synchronized (placementMutex) {
+            strategy.setMachines(infraManager.getMachines());
+            placement = strategy;
+        }
+        return rebalance();
+    }
+
+    /**
+     * Updates the placement to the current DHT nodes and moves the values stored on this
+     * node whose placement changed to their new node. Only single partition values that are
+     * neither pinned nor local are moved; with consistent hashing these are the values of
+     * the ring intervals this node lost. Each node rebalances its own values; it is triggered
+     * when DHT nodes join or leave. Requests that reach this node while or after a value is
+     * moved are forwarded to its new node. The returned future yields the number of moved values.
+     */
+    public CompletableFuture<Integer> rebalance() {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (placementMutex) {
+                placement.setMachines(infraManager.getMachines());
+                int numMoved = 0;
+                for (final DHTKey storedKey : new ArrayList<>(store.keySet())) {
+                    final DHTKey key = globalKeyDirectory.getLocal(storedKey.internalUID);
+                    if (key == null || key.distributionMode != DHTKey.DistributionMode.DISTRIBUTED
+                            || key.getPinnedMachineID() != null || key.getPartitionDirectory().size() != 1)
+                        continue;
+                    final Map.Entry<Integer,DHTKey.PartitionDescriptor> entry =
+                            key.getPartitionDirectory().entrySet().iterator().next();
+                    // Replicated partitions keep their replica set.
+                    if (entry.getValue().backups.length > 0)
+                        continue;
+                    final MachineDescriptor target = selectMachineForKey(key);
+                    if (!isLocal(entry.getValue().machine) || isLocal(target))
+                        continue;
+                    if (migrate(key, entry.getKey(), target))
+                        ++numMoved;
+                }
+                LOG.info("Moved " + numMoved + " DHT values from " + infraManager.getMachine() + " => " + getLoadStatistics());
+                return numMoved;
+            }
+        }, executor);
+    }
+
+    /**
+     * @return the number of value partitions and their bytes per DHT node, in the order of
+     * the nodes. Computed from the global key directory of this node, with a sharded
+     * directory only from the keys this node is name home of.
+     */
+    public List<NodeLoad> getLoadStatistics() {
+        final List<MachineDescriptor> machines = infraManager.getMachines();
+        final int[] numPartitions = new int[machines.size()];
+        final long[] numBytes = new long[machines.size()];
+        for (final DHTKey key : globalKeyDirectory.keys()) {
+            for (final DHTKey.PartitionDescriptor pd : key.getPartitionDirectory().values()) {
+                final int index = machines.indexOf(pd.machine);
+                if (index < 0)
+                    continue;
+                ++numPartitions[index];
+                numBytes[index] += pd.partitionSize;
+            }
+        }
+        final List<NodeLoad> load = new ArrayList<>(machines.size());
+        for (int i = 0; i < machines.size(); ++i)
+            load.add(new NodeLoad(machines.get(i), numPartitions[i], numBytes[i]));
+        return load;
     }
 
     // ---------------------------------------------------
@@ -683,42 +1422,514 @@ public final class DHTManager extends EventDispatcher implements Deactivatable {
 
     private enum DHTAction {
 
-        PUT_VALUE,
+        PUT_VALUE(DHTMetrics.Operation.PUT_VALUE),
+
+        PUT_SEGMENT(DHTMetrics.Operation.PUT_SEGMENTS),
 
-        PUT_SEGMENT,
+        GET_VALUE(DHTMetrics.Operation.GET_VALUE),
 
-        GET_VALUE,
+        GET_SEGMENT(DHTMetrics.Operation.GET_SEGMENTS),
 
-        GET_SEGMENT,
+        DELETE_VALUE(DHTMetrics.Operation.DELETE);
 
-        DELETE_VALUE;
+        final DHTMetrics.Operation operation;
+
+        DHTAction(final DHTMetrics.Operation operation) { this.operation = operation; }
     }
 
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
+    private static DHTPlacementStrategy createPlacementStrategy(final Config config) {
+        final String type = config.hasPath(PLACEMENT_CONFIG_KEY) ? config.getString(PLACEMENT_CONFIG_KEY) : "consistentHash";
+        switch (type) {
+            case "consistentHash":
+                return new ConsistentHashPlacement(config.hasPath(VIRTUAL_NODES_CONFIG_KEY)
+                        ? config.getInt(VIRTUAL_NODES_CONFIG_KEY) : ConsistentHashPlacement.DEFAULT_VIRTUAL_NODES);
+            case "modulo":
+                return new ModuloPlacement();
+            default:
+                throw new IllegalStateException("Unknown DHT placement: " + type);
+        }
+    }
+
     private MachineDescriptor selectMachineForKey(final DHTKey key) {
         if (key.distributionMode == DHTKey.DistributionMode.DISTRIBUTED)
-            return selectMachineForKey(key.internalUID);
+            return selectMachineForKey(key, 0);
         else
             return netManager.getMachineDescriptor();
     }
 
-    private MachineDescriptor selectMachineForKey(final UUID internalUID) {
-        Preconditions.checkNotNull(internalUID);
-        // Compute (simple hash partitioning) the partitionIndex
-        // of the machine where to store the entry.
-        final int machineIndex = (internalUID.hashCode() & Integer.MAX_VALUE) % infraManager.getMachines().size();
-        return infraManager.getMachines().get(machineIndex);
+    // Resolves the placement hints, co-located keys follow the placement of their target key.
+    private MachineDescriptor selectMachineForKey(final DHTKey key, final int hops) {
+        if (key.getPinnedMachineID() != null) {
+            for (final MachineDescriptor machine : infraManager.getMachines())
+                if (machine.machineID.equals(key.getPinnedMachineID()))
+                    return machine;
+            throw new IllegalStateException("Pinned machine of key " + key + " is not a DHT node.");
+        }
+        if (key.getColocatedKeyUID() != null) {
+            final DHTKey target = globalKeyDirectory.get(key.getColocatedKeyUID());
+            if (target != null && hops < MAX_COLOCATION_HOPS)
+                return selectMachineForKey(target, hops + 1);
+            return placement.select(key.getColocatedKeyUID());
+        }
+        return placement.select(key.internalUID);
+    }
+
+    // Moves a locally stored value to its new node and announces the new location.
+    private boolean migrate(final DHTKey key, final int index, final MachineDescriptor target) {
+        final DHTKey movedKey = key.relocatePartition(index, infraManager.getMachineIndex(target), target);
+        final AbstractBufferedDHTObject value = store.get(key);
+        if (value == null)
+            return false;
+        synchronized (value.lock) {
+            if (store.get(key) != value)
+                return false;
+            // Fences the key: requests waiting for the lock find the value removed (see withStoredValue)
+            // and are forwarded like later ones, behind the value on the same lane.
+            movedValues.put(key.internalUID, target);
+            store.remove(key);
+            final NetEvent e = new NetEvent(DHT_EVENT_PUT_VALUE);
+            e.setPayload(Pair.of(movedKey, value));
+            e.stripeKey = key.internalUID;
+            netManager.dispatchEventAt(target, e);
+        }
+        globalKeyDirectory.globalPut(movedKey);
+        // Not freed, the value may still be serialized by the network. Its memory is released by the GC.
+        globalKeyDirectory.removeStored(key);
+        return true;
+    }
+
+    /**
+     * Runs the action on the value stored for the key while holding its lock. Returns false
+     * without running it if no value is stored, also if a migration moved the value while
+     * the caller waited for the lock.
+     */
+    private boolean withStoredValue(final DHTKey key, final Consumer<AbstractBufferedDHTObject> action) {
+        final AbstractBufferedDHTObject value = store.get(key);
+        if (value == null)
+            return false;
+        synchronized (value.lock) {
+            if (store.get(key) != value)
+                return false;
+            action.accept(value);
+            return true;
+        }
+    }
+
+    // The node a value was moved to by a migration.
+    private MachineDescriptor movedTo(final DHTKey key) {
+        final MachineDescriptor target = movedValues.get(key.internalUID);
+        if (target == null)
+            throw new IllegalStateException("No value of DHT key " + key + " on " + infraManager.getMachine() + ".");
+        return target;
+    }
+
+    // Forwards an update of a value moved by a migration, after the value on the same lane.
+    private void forwardToMoved(final DHTKey key, final String type, final Object payload) {
+        final NetEvent e = new NetEvent(type);
+        e.setPayload(payload);
+        e.stripeKey = key.internalUID;
+        netManager.dispatchEventAt(movedTo(key), e);
+    }
+
+    private void deleteLocal(final DHTKey key) {
+        final AbstractBufferedDHTObject value = __remove(key);
+        if (value == null) {
+            forwardToMoved(key, DHT_EVENT_DELETE, key);
+            movedValues.remove(key.internalUID);
+            return;
+        }
+        globalKeyDirectory.removeStored(key);
+        value.free();
+        logDHTAction(key, DHTAction.DELETE_VALUE, 0);
+    }
+
+    // Keys held by callers may predate a migration, the directory has the current locations.
+    private DHTKey currentKey(final DHTKey key) {
+        final DHTKey current = globalKeyDirectory.getLocal(key.internalUID);
+        return current != null ? current : key;
+    }
+
+    /**
+     * Assigns {@code replicationFactor - 1} backups to every partition of the key, the machines
+     * following the primary in the machine list that store no other partition of the key. With
+     * too few machines a partition gets less backups.
+     */
+    private void assignBackups(final DHTKey key) {
+        final List<MachineDescriptor> machines = infraManager.getMachines();
+        final Set<MachineDescriptor> used = new HashSet<>();
+        for (final DHTKey.PartitionDescriptor pd : key.getPartitionDirectory().values())
+            used.add(pd.machine);
+        for (final Map.Entry<Integer,DHTKey.PartitionDescriptor> entry : new ArrayList<>(key.getPartitionDirectory().entrySet())) {
+            final DHTKey.PartitionDescriptor pd = entry.getValue();
+            final int primaryIndex = machines.indexOf(pd.machine);
+            final List<MachineDescriptor> backups = new ArrayList<>();
+            final List<Integer> backupIndices = new ArrayList<>();
+            for (int i = 1; i < machines.size() && backups.size() < key.getReplicationFactor() - 1; ++i) {
+                final int index = (primaryIndex + i) % machines.size();
+                final MachineDescriptor md = machines.get(index);
+                if (used.add(md)) {
+                    backups.add(md);
+                    backupIndices.add(infraManager.getMachineIndex(md));
+                }
+            }
+            if (backups.size() < key.getReplicationFactor() - 1)
+                LOG.warn("Partition " + pd.partitionIndex + " of DHT key '" + key.name + "' has only " + backups.size() + " backups.");
+            key.addPartitionDirectoryEntry(entry.getKey(), pd.withBackups(backups.toArray(new MachineDescriptor[backups.size()]), Ints.toArray(backupIndices)));
+        }
+    }
+
+    // Applies segment puts at the primary replica and forwards them to the backups.
+    // Returns the new version of the partition, -1 if the value moved and the puts were forwarded.
+    private long putLocalSegments(final DHTKey key, final AbstractBufferedDHTObject.Segment[] segments) {
+        final long[] version = new long[1];
+        if (!withStoredValue(key, value -> {
+            value.putSegments(segments, nodeID);
+            version[0] = value.advanceVersion();
+            value.markModified(segmentIndices(segments), version[0], nodeID);
+        })) {
+            // Replicated values are not migrated, so acknowledged puts are never forwarded.
+            forwardToMoved(key, DHT_EVENT_PUT_SEGMENTS, Triple.of(0L, key, segments));
+            return -1;
+        }
+        logDHTAction(key, DHTAction.PUT_SEGMENT, sizeOf(segments));
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        if (pd == null || !isLocal(pd.machine))
+            return version[0];
+        for (final MachineDescriptor backup : pd.backups) {
+            final NetEvent e = new NetEvent(DHT_EVENT_REPLICATE_SEGMENTS);
+            e.setPayload(Triple.of(key, segments, version[0]));
+            e.stripeKey = key.internalUID;
+            netManager.dispatchEventAt(backup, e);
+        }
+        return version[0];
+    }
+
+    // Applies deltas at the primary replica and forwards them to the backups.
+    // Returns the new version of the partition, -1 if the value moved and the deltas were forwarded.
+    private long putLocalDeltas(final DHTKey key, final SegmentDelta[] deltas) {
+        final long[] version = new long[1];
+        if (!withStoredValue(key, value -> {
+            value.applyDeltas(deltas, nodeID);
+            version[0] = value.advanceVersion();
+            value.markModified(segmentIndices(deltas), version[0], nodeID);
+        })) {
+            forwardToMoved(key, DHT_EVENT_PUT_DELTAS, Triple.of(0L, key, deltas));
+            return -1;
+        }
+        logDHTAction(key, DHTAction.PUT_SEGMENT, sizeOf(deltas));
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        if (pd == null || !isLocal(pd.machine))
+            return version[0];
+        for (final MachineDescriptor backup : pd.backups) {
+            final NetEvent e = new NetEvent(DHT_EVENT_REPLICATE_DELTAS);
+            e.setPayload(Triple.of(key, deltas, version[0]));
+            e.stripeKey = key.internalUID;
+            netManager.dispatchEventAt(backup, e);
+        }
+        return version[0];
+    }
+
+    // Segments of the local partition modified after the known version, and the current version.
+    // Views on off-heap memory are copied if they are handed to the caller instead of the network.
+    private CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[],Long>> getLocalModified(final DHTKey key,
+                                                                                            final long knownVersion,
+                                                                                            final boolean copyViews) {
+        final List<Pair<AbstractBufferedDHTObject.Segment[],Long>> result = new ArrayList<>(1);
+        if (!withStoredValue(key, value -> {
+            final int[] modified = value.getModifiedSegmentIndices(knownVersion, nodeID);
+            final AbstractBufferedDHTObject.Segment[] segments = modified.length > 0
+                    ? getSegments(value, modified, copyViews)
+                    : new AbstractBufferedDHTObject.Segment[0];
+            logDHTAction(key, DHTAction.GET_SEGMENT, sizeOf(segments));
+            result.add(Pair.of(segments, value.getVersion()));
+        }))
+            return getModifiedAt(key, movedTo(key), knownVersion);
+        return CompletableFuture.completedFuture(result.get(0));
+    }
+
+    // The local value partition with its version, read from the new node if it was moved.
+    private CompletableFuture<Pair<AbstractBufferedDHTObject,Long>> getLocalValue(final DHTKey key) {
+        final List<Pair<AbstractBufferedDHTObject,Long>> result = new ArrayList<>(1);
+        if (!withStoredValue(key, value -> {
+            logDHTAction(key, DHTAction.GET_VALUE, value.getPartitionSize());
+            result.add(Pair.of(value, value.getVersion()));
+        }))
+            return getValueAt(key, movedTo(key));
+        return CompletableFuture.completedFuture(result.get(0));
+    }
+
+    // Segments of the local partition with its version, read from the new node if it was moved.
+    // Views on off-heap memory are copied if they are handed to the caller instead of the network.
+    private CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[],Long>> getLocalSegments(final DHTKey key,
+                                                                                            final int[] segmentIndices,
+                                                                                            final boolean copyViews) {
+        final List<Pair<AbstractBufferedDHTObject.Segment[],Long>> result = new ArrayList<>(1);
+        if (!withStoredValue(key, value -> {
+            final AbstractBufferedDHTObject.Segment[] segments = getSegments(value, segmentIndices, copyViews);
+            logDHTAction(key, DHTAction.GET_SEGMENT, sizeOf(segments));
+            result.add(Pair.of(segments, value.getVersion()));
+        }))
+            return getSegmentsAt(movedTo(key), new DHTKey[] {key}, new int[][] {segmentIndices})
+                    .thenApply(response -> Pair.of(response.getKey()[0], response.getValue()[0]));
+        return CompletableFuture.completedFuture(result.get(0));
+    }
+
+    private CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[],Long>> getModifiedAt(final DHTKey key,
+                                                                                         final MachineDescriptor md,
+                                                                                         final long knownVersion) {
+        final long requestID = requestIDs.incrementAndGet();
+        final CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[],Long>> request = trackRequest(md, registerRequest(requestID));
+        final NetEvent e = new NetEvent(DHT_EVENT_GET_MODIFIED_REQUEST);
+        e.setPayload(Triple.of(requestID, key, knownVersion));
+        e.stripeKey = key.internalUID;
+        netManager.dispatchEventAt(md, e);
+        return request;
+    }
+
+    // Requests segments of several keys stored on one node with one message.
+    private CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[][],long[]>> getSegmentsAt(final MachineDescriptor md,
+                                                                                             final DHTKey[] keys,
+                                                                                             final int[][] indices) {
+        final long requestID = requestIDs.incrementAndGet();
+        final CompletableFuture<Pair<AbstractBufferedDHTObject.Segment[][],long[]>> request = trackRequest(md, registerRequest(requestID));
+        final NetEvent event = new NetEvent(DHT_EVENT_GET_SEGMENTS_REQUEST);
+        event.setPayload(Triple.of(requestID, keys, indices));
+        // On the lane of the first key, so a request forwarded after a migration follows the value.
+        event.stripeKey = keys[0].internalUID;
+        netManager.dispatchEventAt(md, event);
+        return request;
+    }
+
+    // Copies are taken under the value lock, so they are one consistent snapshot of the segments.
+    private AbstractBufferedDHTObject.Segment[] getSegments(final AbstractBufferedDHTObject value,
+                                                            final int[] segmentIndices,
+                                                            final boolean copyViews) {
+        synchronized (value.lock) {
+            final AbstractBufferedDHTObject.Segment[] segments = value.getSegments(segmentIndices, nodeID);
+            if (copyViews) {
+                for (int i = 0; i < segments.length; ++i)
+                    segments[i] = segments[i].copy();
+            }
+            return segments;
+        }
+    }
+
+    private static long sizeOf(final AbstractBufferedDHTObject.Segment[] segments) {
+        long size = 0;
+        for (final AbstractBufferedDHTObject.Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    private static long sizeOf(final SegmentDelta[] deltas) {
+        long size = 0;
+        for (final SegmentDelta delta : deltas)
+            size += delta.payloadSize();
+        return size;
+    }
+
+    private <T> CompletableFuture<T> timed(final DHTMetrics.Operation op, final long startNanos, final CompletableFuture<T> request) {
+        if (metrics.enabled)
+            request.whenComplete((r, t) -> metrics.recordLatency(op, startNanos));
+        return request;
+    }
+
+    private static int[] segmentIndices(final AbstractBufferedDHTObject.Segment[] segments) {
+        final int[] indices = new int[segments.length];
+        for (int i = 0; i < segments.length; ++i)
+            indices[i] = segments[i].segmentIndex;
+        return indices;
+    }
+
+    private static int[] segmentIndices(final SegmentDelta[] deltas) {
+        final int[] indices = new int[deltas.length];
+        for (int i = 0; i < deltas.length; ++i)
+            indices[i] = deltas[i].segmentIndex;
+        return indices;
+    }
+
+    private MachineDescriptor selectReplica(final DHTKey.PartitionDescriptor pd, final ReplicaSelection selection) {
+        if (pd.backups.length == 0 || selection == ReplicaSelection.PRIMARY)
+            return pd.machine;
+        final MachineDescriptor[] replicas = ArrayUtils.add(pd.backups, 0, pd.machine);
+        for (final MachineDescriptor replica : replicas)
+            if (isLocal(replica))
+                return replica;
+        if (selection == ReplicaSelection.NEAREST)
+            return replicas[nodeID % replicas.length];
+        MachineDescriptor leastLoaded = replicas[0];
+        for (final MachineDescriptor replica : replicas)
+            if (inFlight(replica).get() < inFlight(leastLoaded).get())
+                leastLoaded = replica;
+        return leastLoaded;
+    }
+
+    // Sends puts to the primary of the partition, puts on replicated partitions are acknowledged.
+    private CompletableFuture<Void> putAt(final DHTKey key, final DHTKey.PartitionDescriptor pd, final String type, final Object puts) {
+        final boolean acknowledged = pd.backups.length > 0;
+        final long requestID = acknowledged ? requestIDs.incrementAndGet() : 0;
+        final CompletableFuture<Long> ack = acknowledged
+                ? trackRequest(pd.machine, registerRequest(requestID))
+                : CompletableFuture.completedFuture(-1L);
+        final NetEvent e = new NetEvent(type);
+        e.setPayload(Triple.of(requestID, key, puts));
+        e.stripeKey = key.internalUID;
+        netManager.dispatchEventAt(pd.machine, e);
+        return ack.thenAccept(version -> observeVersion(key, pd, version));
+    }
+
+    private void acknowledgePut(final NetEvent event, final long requestID, final DHTKey key, final long version) {
+        if (requestID == 0)
+            return;
+        final NetEvent e = new NetEvent(DHT_EVENT_PUT_RESPONSE);
+        e.setPayload(Pair.of(requestID, version));
+        e.stripeKey = key.internalUID;
+        netManager.dispatchEventAt(event.srcMachineID, e);
+    }
+
+    // Requests a whole value partition with its version.
+    private CompletableFuture<Pair<AbstractBufferedDHTObject, Long>> getValueAt(final DHTKey key, final MachineDescriptor md) {
+        if (isLocal(md))
+            return getLocalValue(key);
+        final long requestID = requestIDs.incrementAndGet();
+        final CompletableFuture<Pair<AbstractBufferedDHTObject, Long>> request = trackRequest(md, registerRequest(requestID));
+        final NetEvent e = new NetEvent(DHT_EVENT_GET_VALUE_REQUEST);
+        e.setPayload(Pair.of(requestID, key));
+        e.stripeKey = key.internalUID;
+        netManager.dispatchEventAt(md, e);
+        return request;
+    }
+
+    // Re-reads the segments from the primary if the replica that served them is too stale.
+    private CompletableFuture<AbstractBufferedDHTObject.Segment[]> fromPrimaryIfStale(final DHTKey key,
+                                                                                      final MachineDescriptor replica,
+                                                                                      final int[] segmentIndices,
+                                                                                      final AbstractBufferedDHTObject.Segment[] segments,
+                                                                                      final long version,
+                                                                                      final long maxStaleness) {
+        final DHTKey.PartitionDescriptor pd = key.getPartitionFromSegmentIndex(segmentIndices[0]);
+        if (replica.equals(pd.machine) || !isStale(key, pd, version, maxStaleness)) {
+            observeVersion(key, pd, version);
+            return CompletableFuture.completedFuture(segments);
+        }
+        return getSegmentsAsync(Collections.singletonMap(key, segmentIndices)).thenApply(s -> s.get(key));
+    }
+
+    private Consumer<AbstractBufferedDHTObject.Segment[]> placeInto(final Map<DHTKey, AbstractBufferedDHTObject.Segment[]> result,
+                                                                                       final Map<DHTKey, int[]> segmentRequests,
+                                                                                       final DHTKey key) {
+        return segments -> {
+            synchronized (result) {
+                placeSegments(result.get(key), segmentRequests.get(key), segments);
+            }
+        };
+    }
+
+    private boolean isStale(final DHTKey key, final DHTKey.PartitionDescriptor pd, final long version, final long maxStaleness) {
+        final Long observed = observedVersions.get(Pair.of(key.internalUID, pd.partitionIndex));
+        return observed != null && version < observed - maxStaleness;
+    }
+
+    // Only the versions of replicated partitions are tracked.
+    private void observeVersion(final DHTKey key, final DHTKey.PartitionDescriptor pd, final long version) {
+        if (pd.backups.length > 0 && version >= 0)
+            observedVersions.merge(Pair.of(key.internalUID, pd.partitionIndex), version, Math::max);
+    }
+
+    private AtomicInteger inFlight(final MachineDescriptor md) {
+        return inFlightRequests.computeIfAbsent(md.machineID, k -> new AtomicInteger());
+    }
+
+    private <T> CompletableFuture<T> trackRequest(final MachineDescriptor md, final CompletableFuture<T> request) {
+        final AtomicInteger inFlight = inFlight(md);
+        inFlight.incrementAndGet();
+        request.whenComplete((r, t) -> inFlight.decrementAndGet());
+        return request;
+    }
+
+    private <T> CompletableFuture<T> registerRequest(final long requestID) {
+        final CompletableFuture<Object> request = new CompletableFuture<>();
+        pendingRequests.put(requestID, request);
+        if (RESPONSE_TIMEOUT > 0) {
+            final ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+                if (pendingRequests.remove(requestID) != null)
+                    request.completeExceptionally(new TimeoutException("No response for DHT request " + requestID + "."));
+            }, RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            request.whenComplete((r, t) -> timeout.cancel(false));
+        }
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<T> typedRequest = (CompletableFuture<T>) (CompletableFuture<?>) request;
+        return typedRequest;
+    }
+
+    private void failRequest(final long requestID, final Throwable cause) {
+        final CompletableFuture<Object> request = pendingRequests.remove(requestID);
+        if (request != null)
+            request.completeExceptionally(cause);
+    }
+
+    private void completeRequest(final long requestID, final Object response) {
+        final CompletableFuture<Object> request = pendingRequests.remove(requestID);
+        if (request != null)
+            request.complete(response);
+        else
+            LOG.warn("Response to unknown or timed out DHT request " + requestID + ".");
+    }
+
+    private static CompletableFuture<Void> allOf(final List<CompletableFuture<?>> requests) {
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]));
+    }
+
+    // Places the segments at the positions of their index in the requested segment indices.
+    private static void placeSegments(final AbstractBufferedDHTObject.Segment[] result,
+                                      final int[] segmentIndices,
+                                      final AbstractBufferedDHTObject.Segment[] segments) {
+        for (final AbstractBufferedDHTObject.Segment segment : segments) {
+            final int index = ArrayUtils.indexOf(segmentIndices, segment.segmentIndex);
+            result[index] = segment;
+        }
+    }
+
+    private static <T> T await(final CompletableFuture<T> request) {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Bounded independently of the timeout scheduler, a timeout <= 0 waits without bound.
+    private static <T> T await(final CompletableFuture<T> request, final long timeoutMillis) {
+        if (timeoutMillis <= 0)
+            return await(request);
+        try {
+            return request.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            request.completeExceptionally(e);
+            throw new IllegalStateException(e);
+        }
     }
 
     private boolean isLocal(final MachineDescriptor machine) {
         return infraManager.getMachine().machineID.equals(Preconditions.checkNotNull(machine).machineID);
     }
 
-    private void logDHTAction(final DHTKey key, final DHTAction action) {
+    private void logDHTAction(final DHTKey key, final DHTAction action, final long bytes) {
+        metrics.recordAccess(key, action.operation, bytes);
+        if (!LOG.isDebugEnabled())
+            return;
+        final DHTKey.PartitionDescriptor pd = currentKey(key).getPartitionDescriptor(nodeID);
         LOG.debug(action + " ON " + infraManager.getMachine() + " => KEY = "
-                + key.internalUID + " | " + "PARTITION = " + key.getPartitionDescriptor(nodeID).partitionIndex);
+                + key.internalUID + " | " + "PARTITION = " + (pd != null ? pd.partitionIndex : "?"));
     }
 }
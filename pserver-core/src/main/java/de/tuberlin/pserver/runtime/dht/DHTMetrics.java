@@ -0,0 +1,168 @@
+package de.tuberlin.pserver.runtime.dht;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.diagnostics.LatencyHistogram;
+import de.tuberlin.pserver.diagnostics.MetricsSource;
+import de.tuberlin.pserver.diagnostics.TopKSketch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of a {@link DHTManager}. Per operation type it counts the accesses served by
+ * this node and their bytes, and records the latency of the requests issued by this node
+ * (including the wait for remote responses). The most frequently served keys are tracked by
+ * a top-k sketch. All counters are striped, recording does not contend between threads.
+ */
+public final class DHTMetrics implements MetricsSource {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int DEFAULT_TOP_K = 16;
+
+    public enum Operation {
+
+        PUT_VALUE,
+
+        PUT_SEGMENTS,
+
+        GET_VALUE,
+
+        GET_SEGMENTS,
+
+        DELETE
+    }
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final boolean enabled;
+
+    private final String name;
+
+    private final OperationStats[] stats = new OperationStats[Operation.values().length];
+
+    private final TopKSketch<DHTKey> hotKeys;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public DHTMetrics(final String name, final boolean enabled, final int topK) {
+        this.name       = Preconditions.checkNotNull(name);
+        this.enabled    = enabled;
+        this.hotKeys    = new TopKSketch<>(topK);
+        for (final Operation op : Operation.values())
+            stats[op.ordinal()] = new OperationStats();
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /** Records an access to a value partition served by this node. */
+    public void recordAccess(final DHTKey key, final Operation op, final long bytes) {
+        if (!enabled)
+            return;
+        final OperationStats s = stats[op.ordinal()];
+        s.numServed.increment();
+        s.bytesServed.add(bytes);
+        hotKeys.add(key);
+    }
+
+    /** Records the latency of a request issued by this node, from the call until the result is complete. */
+    public void recordLatency(final Operation op, final long startNanos) {
+        if (enabled)
+            stats[op.ordinal()].latency.record(System.nanoTime() - startNanos);
+    }
+
+    public long getNumServed(final Operation op) { return stats[op.ordinal()].numServed.sum(); }
+
+    public long getBytesServed(final Operation op) { return stats[op.ordinal()].bytesServed.sum(); }
+
+    public LatencyHistogram getLatency(final Operation op) { return stats[op.ordinal()].latency; }
+
+    /** @return the most frequently served keys with their estimated number of accesses. */
+    public List<HotKey> getHotKeys() {
+        final List<HotKey> result = new ArrayList<>();
+        for (final Map.Entry<DHTKey, Long> e : hotKeys.getTopK())
+            result.add(new HotKey(e.getKey().internalUID, e.getKey().name, e.getValue()));
+        return result;
+    }
+
+    public void reset() {
+        for (final OperationStats s : stats) {
+            s.numServed.reset();
+            s.bytesServed.reset();
+            s.latency.reset();
+        }
+        hotKeys.reset();
+    }
+
+    // ---------------------------------------------------
+
+    @Override
+    public String getMetricsName() { return name; }
+
+    @Override
+    public Object getMetricsSnapshot() {
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (final Operation op : Operation.values())
+            snapshot.put(op.name(), new OperationSnapshot(stats[op.ordinal()]));
+        snapshot.put("hotKeys", getHotKeys());
+        return snapshot;
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class OperationStats {
+
+        final LongAdder numServed = new LongAdder();
+
+        final LongAdder bytesServed = new LongAdder();
+
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private static final class OperationSnapshot {
+
+        final long numServed;
+
+        final long bytesServed;
+
+        final LatencyHistogram.Snapshot latency;
+
+        OperationSnapshot(final OperationStats stats) {
+            this.numServed      = stats.numServed.sum();
+            this.bytesServed    = stats.bytesServed.sum();
+            this.latency        = stats.latency.snapshot();
+        }
+    }
+
+    public static final class HotKey {
+
+        public final UUID internalUID;
+
+        public final String name;
+
+        public final long accesses;
+
+        public HotKey(final UUID internalUID, final String name, final long accesses) {
+            this.internalUID    = internalUID;
+            this.name           = name;
+            this.accesses       = accesses;
+        }
+
+        @Override
+        public String toString() { return "HotKey(" + name + " [" + internalUID + "], accesses = " + accesses + ")"; }
+    }
+}
@@ -0,0 +1,19 @@
+package de.tuberlin.pserver.runtime.dht;
+
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps the internal UID of a key to the DHT node storing its (first) value partition.
+ * The mapping must only depend on the UID and the set of machines, so that all nodes
+ * agree on it without coordination.
+ */
+public interface DHTPlacementStrategy {
+
+    /** Rebuilds the placement for the given machines. */
+    void setMachines(final List<MachineDescriptor> machines);
+
+    MachineDescriptor select(final UUID internalUID);
+}
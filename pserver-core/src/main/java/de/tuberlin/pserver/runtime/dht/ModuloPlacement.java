@@ -0,0 +1,37 @@
+package de.tuberlin.pserver.runtime.dht;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Simple hash partitioning over the machine list. Adding or removing a machine relocates
+ * almost all keys, use {@link ConsistentHashPlacement} if the cluster changes.
+ */
+public final class ModuloPlacement implements DHTPlacementStrategy {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private volatile List<MachineDescriptor> machines = new ArrayList<>();
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public void setMachines(final List<MachineDescriptor> machines) {
+        this.machines = new ArrayList<>(Preconditions.checkNotNull(machines));
+    }
+
+    @Override
+    public MachineDescriptor select(final UUID internalUID) {
+        final List<MachineDescriptor> machines = this.machines;
+        Preconditions.checkState(!machines.isEmpty(), "No DHT nodes.");
+        return machines.get((Preconditions.checkNotNull(internalUID).hashCode() & Integer.MAX_VALUE) % machines.size());
+    }
+}
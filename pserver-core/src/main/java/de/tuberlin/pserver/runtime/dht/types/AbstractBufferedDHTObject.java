@@ -1,11 +1,20 @@
 package de.tuberlin.pserver.runtime.dht.types;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import de.tuberlin.pserver.runtime.dht.DHTKey;
 import de.tuberlin.pserver.runtime.dht.DHTObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public abstract class AbstractBufferedDHTObject extends DHTObject {
 
@@ -13,17 +22,62 @@ public abstract class AbstractBufferedDHTObject extends DHTObject {
     // Inner Classes.
     // ---------------------------------------------------
 
+    /**
+     * A segment of a value partition. Either a heap copy ({@link #data}) or a view on the
+     * memory of an off-heap value ({@link #isView()}), e.g. handed out by {@link OffHeapDHTObject}.
+     * Views are written to the network without an intermediate copy and are received as heap
+     * segments. A view is only valid until its value is freed, local gets of the DHT return
+     * copies (see {@link #copy()}).
+     */
     public static final class Segment implements Serializable {
 
         public final int segmentIndex;
 
         public final byte[] data;
 
+        private final transient ByteBuffer view;
+
+        private final transient AbstractBufferedDHTObject owner;
+
         public Segment(final int segmentIndex,
                        final byte[] data) {
 
             this.segmentIndex = segmentIndex;
             this.data = Preconditions.checkNotNull(data);
+            this.view = null;
+            this.owner = null;
+        }
+
+        public Segment(final int segmentIndex,
+                       final ByteBuffer view,
+                       final AbstractBufferedDHTObject owner) {
+
+            this.segmentIndex = segmentIndex;
+            this.data = null;
+            this.view = Preconditions.checkNotNull(view);
+            this.owner = Preconditions.checkNotNull(owner);
+        }
+
+        public boolean isView() { return view != null; }
+
+        public int size() { return view != null ? view.remaining() : data.length; }
+
+        /** @return the segment content, positioned at 0. Writes to a view change the value. */
+        public ByteBuffer asByteBuffer() { return view != null ? view.duplicate() : ByteBuffer.wrap(data); }
+
+        /** @return the value a view belongs to, null for heap segments. */
+        public AbstractBufferedDHTObject getOwner() { return owner; }
+
+        /** @return a heap copy of a view, heap segments are returned as they are. */
+        public Segment copy() {
+            if (view == null)
+                return this;
+            synchronized (owner.lock) {
+                Preconditions.checkState(!owner.isFreed(), "Segment of a freed DHT value.");
+                final byte[] data = new byte[view.remaining()];
+                view.duplicate().get(data);
+                return new Segment(segmentIndex, data);
+            }
         }
     }
 
@@ -47,6 +101,9 @@ public abstract class AbstractBufferedDHTObject extends DHTObject {
 
     private static final long serialVersionUID = -1;
 
+    private static final AtomicLongFieldUpdater<AbstractBufferedDHTObject> versionUpdater =
+            AtomicLongFieldUpdater.newUpdater(AbstractBufferedDHTObject.class, "version");
+
     protected final boolean allocateMemory;
 
     protected final int partitionSize;
@@ -55,6 +112,12 @@ public abstract class AbstractBufferedDHTObject extends DHTObject {
 
     public transient final Object lock = new Object();
 
+    // Number of segment puts applied at the primary, followed by the backup replicas.
+    private transient volatile long version;
+
+    // Version of the last put per segment of this partition, null until the first put.
+    private transient long[] segmentVersions;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -81,6 +144,90 @@ public abstract class AbstractBufferedDHTObject extends DHTObject {
 
     public abstract void putSegments(final Segment[] segments, final int nodeID);
 
+    /**
+     * Applies the deltas in place, atomically with respect to other segment accesses of this
+     * value. Read-modify-writes the touched segments, values handing out segment views are
+     * updated without copies.
+     */
+    public void applyDeltas(final SegmentDelta[] deltas, final int nodeID) {
+        Preconditions.checkNotNull(deltas);
+        final int[] segmentIndices = new int[deltas.length];
+        for (int i = 0; i < deltas.length; ++i)
+            segmentIndices[i] = deltas[i].segmentIndex;
+        synchronized (lock) {
+            final Segment[] segments = getSegments(segmentIndices, nodeID);
+            final Map<Integer, Segment> touched = new HashMap<>();
+            for (int i = 0; i < deltas.length; ++i) {
+                // Deltas of the same segment are applied to the first copy of it.
+                Segment segment = touched.get(segments[i].segmentIndex);
+                if (segment == null) {
+                    segment = segments[i];
+                    touched.put(segment.segmentIndex, segment);
+                }
+                deltas[i].apply(segment.asByteBuffer());
+            }
+            final List<Segment> copies = new ArrayList<>();
+            for (final Segment segment : touched.values())
+                if (!segment.isView())
+                    copies.add(segment);
+            if (!copies.isEmpty())
+                putSegments(copies.toArray(new Segment[copies.size()]), nodeID);
+        }
+    }
+
+    // ---------------------------------------------------
+
+    /** Releases the memory of this value, called when the value is deleted from the DHT. */
+    public void free() {}
+
+    public boolean isFreed() { return false; }
+
+    // ---------------------------------------------------
+
+    public long getVersion() { return version; }
+
+    public long advanceVersion() { return versionUpdater.incrementAndGet(this); }
+
+    public void updateVersion(final long newVersion) {
+        long v;
+        do {
+            v = version;
+        } while (v < newVersion && !versionUpdater.compareAndSet(this, v, newVersion));
+    }
+
+    /** Records that the segments were modified by the put with the given version. */
+    public void markModified(final int[] segmentIndices, final long version, final int nodeID) {
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        synchronized (lock) {
+            if (segmentVersions == null)
+                segmentVersions = new long[pd.numberOfSegments];
+            for (final int segmentIndex : segmentIndices)
+                segmentVersions[segmentIndex - pd.segmentBaseIndex] = Math.max(segmentVersions[segmentIndex - pd.segmentBaseIndex], version);
+        }
+    }
+
+    public void markAllModified(final long version, final int nodeID) {
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        synchronized (lock) {
+            segmentVersions = new long[pd.numberOfSegments];
+            Arrays.fill(segmentVersions, version);
+        }
+    }
+
+    /** @return the indices of the segments modified after the given version, all for a negative version. */
+    public int[] getModifiedSegmentIndices(final long sinceVersion, final int nodeID) {
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        synchronized (lock) {
+            if (sinceVersion >= version)
+                return new int[0];
+            final List<Integer> modified = new ArrayList<>();
+            for (int i = 0; i < pd.numberOfSegments; ++i)
+                if (sinceVersion < 0 || (segmentVersions != null && segmentVersions[i] > sinceVersion))
+                    modified.add(pd.segmentBaseIndex + i);
+            return Ints.toArray(modified);
+        }
+    }
+
     // ---------------------------------------------------
 
     public boolean isAllocated() { return allocateMemory; }
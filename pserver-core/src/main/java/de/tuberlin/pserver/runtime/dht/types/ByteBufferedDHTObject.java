@@ -66,7 +66,7 @@ public class ByteBufferedDHTObject extends AbstractBufferedDHTObject {
         final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
         for (final Segment segment : segments) {
             final int normalizedIndex = segment.segmentIndex - pd.segmentBaseIndex;
-            System.arraycopy(segment.data, 0, buffer.getRawData(), normalizedIndex * pd.segmentSize, pd.segmentSize);
+            segment.asByteBuffer().get(buffer.getRawData(), normalizedIndex * pd.segmentSize, pd.segmentSize);
         }
     }
 
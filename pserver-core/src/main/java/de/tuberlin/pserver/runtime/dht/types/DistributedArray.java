@@ -0,0 +1,425 @@
+package de.tuberlin.pserver.runtime.dht.types;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import de.tuberlin.pserver.runtime.dht.DHTKey;
+import de.tuberlin.pserver.runtime.dht.DHTManager;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Fixed-length array of a primitive element type, partitioned over the DHT nodes and addressed
+ * by global element index. Each node stores one contiguous range of elements in an
+ * {@link OffHeapDHTObject}. Elements are stored big-endian and never straddle segments.
+ * Reads fetch the covering segments. Writes ship only the written elements as
+ * {@link SegmentDelta}s, which the storing node applies in place. The local partition can
+ * be accessed through a view without any copy. Writes through a view bypass the DHT, so
+ * they are neither versioned nor replicated.
+ */
+public final class DistributedArray {
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public enum ElementType {
+
+        FLOAT(Float.BYTES),
+
+        DOUBLE(Double.BYTES),
+
+        INT(Integer.BYTES),
+
+        LONG(Long.BYTES);
+
+        public final int size;
+
+        ElementType(final int size) { this.size = size; }
+    }
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int SEGMENT_SIZE = AbstractBufferedDHTObject.DEFAULT_SEGMENT_SIZE;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final DHTKey key;
+
+    public final ElementType elementType;
+
+    public final long length;
+
+    private final DHTManager dhtManager;
+
+    private final int elementsPerSegment;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    private DistributedArray(final DHTManager dhtManager, final DHTKey key, final ElementType elementType, final long length) {
+        this.dhtManager         = Preconditions.checkNotNull(dhtManager);
+        this.key                = Preconditions.checkNotNull(key);
+        this.elementType        = Preconditions.checkNotNull(elementType);
+        this.length             = length;
+        this.elementsPerSegment = SEGMENT_SIZE / elementType.size;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Allocates a zero-initialized array, split into one partition per DHT node (fewer for
+     * small arrays). Must be called on one node only, the others {@link #open} the array.
+     */
+    public static DistributedArray create(final DHTManager dhtManager, final String name, final ElementType elementType, final long length) {
+        Preconditions.checkArgument(length > 0);
+        final long numSegments = (length * elementType.size + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        final int numPartitions = (int) Math.min(dhtManager.getNumberOfDHTNodes(), numSegments);
+        final long segmentsPerPartition = (numSegments + numPartitions - 1) / numPartitions;
+        Preconditions.checkArgument(segmentsPerPartition * SEGMENT_SIZE <= Integer.MAX_VALUE, "Array too large for the DHT nodes.");
+        final List<OffHeapDHTObject> partitions = new ArrayList<>();
+        for (long remaining = numSegments; remaining > 0; remaining -= segmentsPerPartition)
+            partitions.add(new OffHeapDHTObject((int) (Math.min(segmentsPerPartition, remaining) * SEGMENT_SIZE), false));
+        final DHTKey key = DHTKey.newKey(UUID.randomUUID(), Preconditions.checkNotNull(name), DHTKey.DistributionMode.DISTRIBUTED);
+        dhtManager.put(key, partitions.toArray(new AbstractBufferedDHTObject[partitions.size()]));
+        return new DistributedArray(dhtManager, key, elementType, length);
+    }
+
+    /** Opens an array created on another node. Element type and length must match the creation. */
+    public static DistributedArray open(final DHTManager dhtManager, final String name, final ElementType elementType, final long length) {
+        final Set<DHTKey> keys = dhtManager.getKey(Preconditions.checkNotNull(name));
+        Preconditions.checkState(keys != null && keys.size() == 1, "No unique distributed array '" + name + "'.");
+        final DistributedArray array = new DistributedArray(dhtManager, keys.iterator().next(), elementType, length);
+        long capacity = 0;
+        for (final DHTKey.PartitionDescriptor pd : array.key.getPartitionDirectory().values())
+            capacity += pd.partitionSize;
+        Preconditions.checkState(capacity == ((length * elementType.size + SEGMENT_SIZE - 1) / SEGMENT_SIZE) * SEGMENT_SIZE,
+                "Distributed array '" + name + "' has a different size.");
+        return array;
+    }
+
+    public void delete() { dhtManager.delete(key); }
+
+    // ---------------------------------------------------
+    // Bulk Access.
+    // ---------------------------------------------------
+
+    /** @return the elements [from, from + count), positioned at 0. */
+    public CompletableFuture<ByteBuffer> getRangeAsync(final long from, final int count) {
+        checkRange(from, count);
+        final ByteBuffer result = ByteBuffer.allocate(count * elementType.size);
+        if (count == 0)
+            return CompletableFuture.completedFuture(result);
+        final long begin = from * elementType.size, end = (from + count) * elementType.size;
+        final int firstSegment = (int) (begin / SEGMENT_SIZE), lastSegment = (int) ((end - 1) / SEGMENT_SIZE);
+        final int[] segmentIndices = new int[lastSegment - firstSegment + 1];
+        for (int i = 0; i < segmentIndices.length; ++i)
+            segmentIndices[i] = firstSegment + i;
+        return dhtManager.getSegmentsAsync(key, segmentIndices).thenApply(segments -> {
+            for (final AbstractBufferedDHTObject.Segment segment : segments) {
+                final long segmentBegin = (long) segment.segmentIndex * SEGMENT_SIZE;
+                final ByteBuffer src = segment.asByteBuffer();
+                src.limit((int) (Math.min(end, segmentBegin + SEGMENT_SIZE) - segmentBegin));
+                src.position((int) (Math.max(begin, segmentBegin) - segmentBegin));
+                result.position((int) (Math.max(begin, segmentBegin) - begin));
+                result.put(src);
+            }
+            result.clear();
+            return result;
+        });
+    }
+
+    /** Writes the elements in {@code values} to [from, from + values.remaining() / element size). */
+    public CompletableFuture<Void> putRangeAsync(final long from, final ByteBuffer values) {
+        Preconditions.checkArgument(values.remaining() % elementType.size == 0);
+        final int count = values.remaining() / elementType.size;
+        checkRange(from, count);
+        final ByteBuffer src = values.duplicate();
+        final List<SegmentDelta> deltas = new ArrayList<>();
+        long element = from;
+        while (src.hasRemaining()) {
+            final int segmentIndex = (int) (element / elementsPerSegment);
+            final int offset = (int) (element % elementsPerSegment) * elementType.size;
+            final byte[] run = new byte[Math.min(SEGMENT_SIZE - offset, src.remaining())];
+            src.get(run);
+            deltas.add(SegmentDelta.overwrite(segmentIndex, new int[] { offset }, new int[] { run.length }, run));
+            element += run.length / elementType.size;
+        }
+        return dhtManager.putAsync(key, deltas.toArray(new SegmentDelta[deltas.size()]));
+    }
+
+    /** @return the elements at the given indices, in their order, positioned at 0. */
+    public CompletableFuture<ByteBuffer> gatherAsync(final long[] indices) {
+        final Map<Integer, List<Integer>> positions = groupBySegment(indices);
+        final int[] segmentIndices = Ints.toArray(positions.keySet());
+        return dhtManager.getSegmentsAsync(key, segmentIndices).thenApply(segments -> {
+            final ByteBuffer result = ByteBuffer.allocate(indices.length * elementType.size);
+            for (final AbstractBufferedDHTObject.Segment segment : segments) {
+                final ByteBuffer src = segment.asByteBuffer();
+                for (final int i : positions.get(segment.segmentIndex)) {
+                    final int offset = (int) (indices[i] % elementsPerSegment) * elementType.size;
+                    src.limit(offset + elementType.size).position(offset);
+                    result.position(i * elementType.size);
+                    result.put(src);
+                    src.clear();
+                }
+            }
+            result.clear();
+            return result;
+        });
+    }
+
+    /** Writes the i-th element of {@code values} to the element at {@code indices[i]}. */
+    public CompletableFuture<Void> scatterAsync(final long[] indices, final ByteBuffer values) {
+        Preconditions.checkArgument(values.remaining() == indices.length * elementType.size);
+        final ByteBuffer src = values.duplicate();
+        final Map<Integer, List<Integer>> positions = groupBySegment(indices);
+        final SegmentDelta[] deltas = new SegmentDelta[positions.size()];
+        int d = 0;
+        for (final Map.Entry<Integer, List<Integer>> e : positions.entrySet()) {
+            final int n = e.getValue().size();
+            final int[] offsets = new int[n], lengths = new int[n];
+            final byte[] data = new byte[n * elementType.size];
+            for (int j = 0; j < n; ++j) {
+                final int i = e.getValue().get(j);
+                offsets[j] = (int) (indices[i] % elementsPerSegment) * elementType.size;
+                lengths[j] = elementType.size;
+                src.position(values.position() + i * elementType.size);
+                src.get(data, j * elementType.size, elementType.size);
+            }
+            deltas[d++] = SegmentDelta.overwrite(e.getKey(), offsets, lengths, data);
+        }
+        return dhtManager.putAsync(key, deltas);
+    }
+
+    /** Atomically adds {@code values[i]} to the float element at {@code indices[i]} at its storing node. */
+    public CompletableFuture<Void> scatterAddAsync(final long[] indices, final float[] values) {
+        Preconditions.checkState(elementType == ElementType.FLOAT);
+        Preconditions.checkArgument(indices.length == values.length);
+        final Map<Integer, List<Integer>> positions = groupBySegment(indices);
+        final SegmentDelta[] deltas = new SegmentDelta[positions.size()];
+        int d = 0;
+        for (final Map.Entry<Integer, List<Integer>> e : positions.entrySet()) {
+            final int n = e.getValue().size();
+            final int[] floatIndices = new int[n];
+            final float[] deltaValues = new float[n];
+            for (int j = 0; j < n; ++j) {
+                final int i = e.getValue().get(j);
+                floatIndices[j] = (int) (indices[i] % elementsPerSegment);
+                deltaValues[j] = values[i];
+            }
+            deltas[d++] = SegmentDelta.accumulate(e.getKey(), floatIndices, deltaValues);
+        }
+        return dhtManager.putAsync(key, deltas);
+    }
+
+    // ---------------------------------------------------
+    // Typed Access.
+    // ---------------------------------------------------
+
+    public float[] getFloats(final long from, final int count) {
+        checkType(ElementType.FLOAT);
+        final float[] values = new float[count];
+        await(getRangeAsync(from, count)).asFloatBuffer().get(values);
+        return values;
+    }
+
+    public void putFloats(final long from, final float[] values) {
+        checkType(ElementType.FLOAT);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES);
+        buffer.asFloatBuffer().put(values);
+        await(putRangeAsync(from, buffer));
+    }
+
+    public float[] gatherFloats(final long[] indices) {
+        checkType(ElementType.FLOAT);
+        final float[] values = new float[indices.length];
+        await(gatherAsync(indices)).asFloatBuffer().get(values);
+        return values;
+    }
+
+    public void scatterFloats(final long[] indices, final float[] values) {
+        checkType(ElementType.FLOAT);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES);
+        buffer.asFloatBuffer().put(values);
+        await(scatterAsync(indices, buffer));
+    }
+
+    // ---------------------------------------------------
+
+    public double[] getDoubles(final long from, final int count) {
+        checkType(ElementType.DOUBLE);
+        final double[] values = new double[count];
+        await(getRangeAsync(from, count)).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    public void putDoubles(final long from, final double[] values) {
+        checkType(ElementType.DOUBLE);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(values);
+        await(putRangeAsync(from, buffer));
+    }
+
+    public double[] gatherDoubles(final long[] indices) {
+        checkType(ElementType.DOUBLE);
+        final double[] values = new double[indices.length];
+        await(gatherAsync(indices)).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    public void scatterDoubles(final long[] indices, final double[] values) {
+        checkType(ElementType.DOUBLE);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(values);
+        await(scatterAsync(indices, buffer));
+    }
+
+    // ---------------------------------------------------
+
+    public int[] getInts(final long from, final int count) {
+        checkType(ElementType.INT);
+        final int[] values = new int[count];
+        await(getRangeAsync(from, count)).asIntBuffer().get(values);
+        return values;
+    }
+
+    public void putInts(final long from, final int[] values) {
+        checkType(ElementType.INT);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        buffer.asIntBuffer().put(values);
+        await(putRangeAsync(from, buffer));
+    }
+
+    public int[] gatherInts(final long[] indices) {
+        checkType(ElementType.INT);
+        final int[] values = new int[indices.length];
+        await(gatherAsync(indices)).asIntBuffer().get(values);
+        return values;
+    }
+
+    public void scatterInts(final long[] indices, final int[] values) {
+        checkType(ElementType.INT);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        buffer.asIntBuffer().put(values);
+        await(scatterAsync(indices, buffer));
+    }
+
+    // ---------------------------------------------------
+
+    public long[] getLongs(final long from, final int count) {
+        checkType(ElementType.LONG);
+        final long[] values = new long[count];
+        await(getRangeAsync(from, count)).asLongBuffer().get(values);
+        return values;
+    }
+
+    public void putLongs(final long from, final long[] values) {
+        checkType(ElementType.LONG);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        await(putRangeAsync(from, buffer));
+    }
+
+    public long[] gatherLongs(final long[] indices) {
+        checkType(ElementType.LONG);
+        final long[] values = new long[indices.length];
+        await(gatherAsync(indices)).asLongBuffer().get(values);
+        return values;
+    }
+
+    public void scatterLongs(final long[] indices, final long[] values) {
+        checkType(ElementType.LONG);
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        await(scatterAsync(indices, buffer));
+    }
+
+    // ---------------------------------------------------
+    // Local Partition.
+    // ---------------------------------------------------
+
+    public boolean hasLocalPartition() { return localPartition() != null; }
+
+    /** @return the global index of the first element of the local partition. */
+    public long getLocalFrom() {
+        return Preconditions.checkNotNull(localPartition(), "No local partition.").globalOffset / elementType.size;
+    }
+
+    /** @return the number of elements of the local partition, without the padding of the last partition. */
+    public int getLocalLength() {
+        final DHTKey.PartitionDescriptor pd = Preconditions.checkNotNull(localPartition(), "No local partition.");
+        return (int) Math.min(pd.partitionSize / elementType.size, length - getLocalFrom());
+    }
+
+    /** @return a view on the memory of the local partition, element 0 is {@link #getLocalFrom()}. */
+    public ByteBuffer getLocalBuffer() {
+        Preconditions.checkState(hasLocalPartition(), "No local partition.");
+        final OffHeapDHTObject value = (OffHeapDHTObject) dhtManager.__get(key);
+        Preconditions.checkState(value != null, "The local partition was moved to another node.");
+        final ByteBuffer memory = value.getMemory();
+        memory.limit(getLocalLength() * elementType.size);
+        return memory.slice();
+    }
+
+    public FloatBuffer localFloats() { checkType(ElementType.FLOAT); return getLocalBuffer().asFloatBuffer(); }
+
+    public DoubleBuffer localDoubles() { checkType(ElementType.DOUBLE); return getLocalBuffer().asDoubleBuffer(); }
+
+    public IntBuffer localInts() { checkType(ElementType.INT); return getLocalBuffer().asIntBuffer(); }
+
+    public LongBuffer localLongs() { checkType(ElementType.LONG); return getLocalBuffer().asLongBuffer(); }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private DHTKey.PartitionDescriptor localPartition() { return dhtManager.getLocalPartition(key); }
+
+    // Positions in indices per segment index, in ascending segment order.
+    private Map<Integer, List<Integer>> groupBySegment(final long[] indices) {
+        final Map<Integer, List<Integer>> positions = new TreeMap<>();
+        for (int i = 0; i < indices.length; ++i) {
+            Preconditions.checkArgument(indices[i] >= 0 && indices[i] < length, "Index " + indices[i] + " out of bounds [0, " + length + ").");
+            positions.computeIfAbsent((int) (indices[i] / elementsPerSegment), k -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+
+    private void checkRange(final long from, final int count) {
+        Preconditions.checkArgument(from >= 0 && count >= 0 && from + count <= length,
+                "Range [" + from + ", " + (from + count) + ") out of bounds [0, " + length + ").");
+    }
+
+    private void checkType(final ElementType type) {
+        Preconditions.checkState(elementType == type, "Array of " + elementType + ", not " + type + ".");
+    }
+
+    private static <T> T await(final CompletableFuture<T> request) {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.tuberlin.pserver.runtime.dht.types;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.dht.DHTKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * DHT value whose partition lives in a direct ByteBuffer outside of the Java heap, so large
+ * models do not add to the GC load. Segments are handed out as views on the partition memory
+ * instead of copies; remote segment requests are serialized straight from this memory into
+ * the outbound network buffer, local gets of the DHT copy them. The memory is released by {@link #free()} when the value is
+ * deleted from the DHT, views must not be used afterwards.
+ */
+public class OffHeapDHTObject extends AbstractBufferedDHTObject {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapDHTObject.class);
+
+    private static final long serialVersionUID = -1;
+
+    // Releases a direct buffer without waiting for the GC, null if not supported by the JVM.
+    private static final Cleaner cleaner = createCleaner();
+
+    protected transient ByteBuffer memory;
+
+    private transient boolean isFreed;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public OffHeapDHTObject(final int partitionSize,
+                            final boolean allocateMemory) {
+
+        super(partitionSize, allocateMemory);
+        if (allocateMemory)
+            memory = ByteBuffer.allocateDirect(partitionSize);
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /** @return the partition memory, positioned at 0. */
+    public ByteBuffer getMemory() {
+        Preconditions.checkState(memory != null, "Value is not allocated or already freed.");
+        return memory.duplicate();
+    }
+
+    // ---------------------------------------------------
+
+    @Override
+    public void compress() {}
+
+    @Override
+    public void decompress() {}
+
+    @Override
+    public void allocateMemory(final int nodeID) {
+        Preconditions.checkState(!allocateMemory && memory == null);
+        memory = ByteBuffer.allocateDirect(Preconditions.checkNotNull(key).getPartitionDescriptor(nodeID).partitionSize);
+    }
+
+    @Override
+    public boolean isAllocated() { return allocateMemory || memory != null; }
+
+    @Override
+    public Segment[] getSegments(final int[] segmentIndices, final int nodeID) {
+        Preconditions.checkNotNull(segmentIndices);
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        final Segment[] segments = new Segment[segmentIndices.length];
+        synchronized (lock) {
+            final ByteBuffer memory = getMemory();
+            int j = 0;
+            for (final int segmentIndex : segmentIndices) {
+                final int offset = (segmentIndex - pd.segmentBaseIndex) * pd.segmentSize;
+                memory.limit(offset + pd.segmentSize).position(offset);
+                segments[j++] = new Segment(segmentIndex, memory.slice(), this);
+                memory.clear();
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public void putSegments(final Segment[] segments, final int nodeID) {
+        Preconditions.checkNotNull(segments);
+        final DHTKey.PartitionDescriptor pd = key.getPartitionDescriptor(nodeID);
+        synchronized (lock) {
+            final ByteBuffer memory = getMemory();
+            for (final Segment segment : segments) {
+                memory.position((segment.segmentIndex - pd.segmentBaseIndex) * pd.segmentSize);
+                memory.put(segment.asByteBuffer());
+            }
+        }
+    }
+
+    // ---------------------------------------------------
+
+    @Override
+    public void free() {
+        synchronized (lock) {
+            if (isFreed)
+                return;
+            isFreed = true;
+            if (memory != null && cleaner != null) {
+                try {
+                    cleaner.clean(memory);
+                } catch (Exception e) {
+                    LOG.warn("Failed to free the memory of DHT value " + internalUID + ".", e);
+                }
+            }
+            memory = null;
+        }
+    }
+
+    @Override
+    public boolean isFreed() { return isFreed; }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static Cleaner createCleaner() {
+        try {
+            // Java 9 and later.
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (NoSuchMethodException e) {
+            // Java 8.
+            try {
+                final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return buffer -> cleanMethod.invoke(cleanerMethod.invoke(buffer));
+            } catch (Exception ex) {
+                LOG.warn("Direct buffers can not be freed explicitly, they are released by the GC.", ex);
+                return null;
+            }
+        } catch (Exception e) {
+            LOG.warn("Direct buffers can not be freed explicitly, they are released by the GC.", e);
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private interface Cleaner {
+
+        void clean(final ByteBuffer buffer) throws Exception;
+    }
+}
@@ -0,0 +1,181 @@
+package de.tuberlin.pserver.runtime.dht.types;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sparse update of a single value segment, applied in place by the storing node instead of
+ * shipping the whole segment. Either overwrites byte runs ({@link Mode#OVERWRITE}) or adds to
+ * single floats ({@link Mode#ADD_FLOAT}). Floats are big-endian, the default order of
+ * {@link ByteBuffer}. Float additions commute, so concurrent gradient pushes to the same
+ * segment need no read-modify-write round trip.
+ */
+public final class SegmentDelta implements Serializable {
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public enum Mode {
+
+        // offsets/lengths describe byte runs, data holds their new content back to back.
+        OVERWRITE,
+
+        // offsets are float indices, values are added to the floats.
+        ADD_FLOAT
+    }
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    // Unchanged bytes between two changed runs up to which they are shipped as one run,
+    // cheaper than the offset and length of an additional run.
+    private static final int MAX_RUN_GAP = 8;
+
+    private static final long serialVersionUID = -1;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final int segmentIndex;
+
+    public final Mode mode;
+
+    public final int[] offsets;
+
+    public final int[] lengths;
+
+    public final byte[] data;
+
+    public final float[] values;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    private SegmentDelta(final int segmentIndex,
+                         final Mode mode,
+                         final int[] offsets,
+                         final int[] lengths,
+                         final byte[] data,
+                         final float[] values) {
+
+        this.segmentIndex   = segmentIndex;
+        this.mode           = Preconditions.checkNotNull(mode);
+        this.offsets        = Preconditions.checkNotNull(offsets);
+        this.lengths        = lengths;
+        this.data           = data;
+        this.values         = values;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return the byte runs in which {@code updated} differs from {@code base}, found by XOR-ing
+     * both segments. The runs carry the new bytes, so applying the delta is idempotent and does
+     * not depend on the version of the segment at the storing node.
+     */
+    public static SegmentDelta diff(final AbstractBufferedDHTObject.Segment base, final AbstractBufferedDHTObject.Segment updated) {
+        Preconditions.checkArgument(base.segmentIndex == updated.segmentIndex);
+        Preconditions.checkArgument(base.size() == updated.size());
+        final ByteBuffer b = base.asByteBuffer(), u = updated.asByteBuffer();
+        final List<Integer> offsets = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+        int dataSize = 0;
+        int runStart = -1, runEnd = -1;
+        for (int i = 0; i < u.limit(); ++i) {
+            if ((b.get(i) ^ u.get(i)) == 0)
+                continue;
+            if (runStart >= 0 && i - runEnd > MAX_RUN_GAP) {
+                offsets.add(runStart);
+                lengths.add(runEnd - runStart);
+                dataSize += runEnd - runStart;
+                runStart = -1;
+            }
+            if (runStart < 0)
+                runStart = i;
+            runEnd = i + 1;
+        }
+        if (runStart >= 0) {
+            offsets.add(runStart);
+            lengths.add(runEnd - runStart);
+            dataSize += runEnd - runStart;
+        }
+        final byte[] data = new byte[dataSize];
+        int pos = 0;
+        for (int r = 0; r < offsets.size(); ++r) {
+            for (int i = 0; i < lengths.get(r); ++i)
+                data[pos++] = u.get(offsets.get(r) + i);
+        }
+        return new SegmentDelta(updated.segmentIndex, Mode.OVERWRITE, Ints.toArray(offsets), Ints.toArray(lengths), data, null);
+    }
+
+    /** @return a delta overwriting the byte runs, {@code data} holds their new content back to back. */
+    public static SegmentDelta overwrite(final int segmentIndex, final int[] offsets, final int[] lengths, final byte[] data) {
+        Preconditions.checkArgument(Preconditions.checkNotNull(offsets).length == Preconditions.checkNotNull(lengths).length);
+        int dataSize = 0;
+        for (final int length : lengths)
+            dataSize += length;
+        Preconditions.checkArgument(dataSize == Preconditions.checkNotNull(data).length);
+        return new SegmentDelta(segmentIndex, Mode.OVERWRITE, offsets, lengths, data, null);
+    }
+
+    /** @return a delta setting the floats at the given float indices of the segment. */
+    public static SegmentDelta set(final int segmentIndex, final int[] floatIndices, final float[] values) {
+        Preconditions.checkArgument(floatIndices.length == values.length);
+        final int[] offsets = new int[floatIndices.length];
+        final int[] lengths = new int[floatIndices.length];
+        final ByteBuffer data = ByteBuffer.allocate(floatIndices.length * Float.BYTES);
+        for (int i = 0; i < floatIndices.length; ++i) {
+            offsets[i] = floatIndices[i] * Float.BYTES;
+            lengths[i] = Float.BYTES;
+            data.putFloat(values[i]);
+        }
+        return new SegmentDelta(segmentIndex, Mode.OVERWRITE, offsets, lengths, data.array(), null);
+    }
+
+    /** @return a delta adding the values to the floats at the given float indices of the segment. */
+    public static SegmentDelta accumulate(final int segmentIndex, final int[] floatIndices, final float[] values) {
+        Preconditions.checkArgument(Preconditions.checkNotNull(floatIndices).length == Preconditions.checkNotNull(values).length);
+        return new SegmentDelta(segmentIndex, Mode.ADD_FLOAT, floatIndices, null, null, values);
+    }
+
+    /** Applies the delta to the segment content, positioned at 0. */
+    public void apply(final ByteBuffer segment) {
+        switch (mode) {
+            case OVERWRITE: {
+                int pos = 0;
+                for (int r = 0; r < offsets.length; ++r) {
+                    for (int i = 0; i < lengths[r]; ++i)
+                        segment.put(offsets[r] + i, data[pos++]);
+                }
+            } break;
+            case ADD_FLOAT: {
+                for (int i = 0; i < offsets.length; ++i) {
+                    final int offset = offsets[i] * Float.BYTES;
+                    segment.putFloat(offset, segment.getFloat(offset) + values[i]);
+                }
+            } break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    public boolean isEmpty() { return offsets.length == 0; }
+
+    /** @return the payload size in bytes, without the segment index and mode. */
+    public int payloadSize() {
+        return mode == Mode.OVERWRITE
+                ? offsets.length * 2 * Integer.BYTES + data.length
+                : offsets.length * (Integer.BYTES + Float.BYTES);
+    }
+}
@@ -13,6 +13,7 @@ import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
 import de.tuberlin.pserver.runtime.core.usercode.UserCodeManager;
 import de.tuberlin.pserver.runtime.events.ProgramSubmissionEvent;
 import de.tuberlin.pserver.runtime.filesystem.typeloader.MatrixLoader;
+import de.tuberlin.pserver.runtime.state.matrix.PagedMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.apache.commons.lang3.ArrayUtils;
@@ -66,6 +67,11 @@ public class ProgramDriver implements Deactivatable {
     }
 
     public void deactivate() {
+        // The spill files of paged state, also on nodes that do not hold a partition.
+        for (final DistributedTypeInfo state : programContext.programTable.getState()) {
+            if (state instanceof PagedMatrix32F)
+                ((PagedMatrix32F) state).free();
+        }
         programContext.deactivate();
     }
 
@@ -3,6 +3,7 @@ package de.tuberlin.pserver.runtime.driver;
 
 import de.tuberlin.pserver.runtime.core.remoteobj.GlobalObject;
 import de.tuberlin.pserver.runtime.state.matrix.rpc.GlobalStateMatrixProxy;
+import de.tuberlin.pserver.runtime.state.matrix.rpc.MatrixBatchOperations;
 import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 import org.apache.commons.lang3.ArrayUtils;
@@ -26,6 +27,9 @@ public final class StateAllocator {
 
                 new GlobalObject<>(programContext.runtimeContext.netManager, stateObj, state.name());
 
+                new GlobalObject<>(programContext.runtimeContext.netManager, new MatrixBatchOperations(stateObj),
+                        state.name() + GlobalStateMatrixProxy.BATCH_OBJECT_SUFFIX);
+
             } else {
 
                 if (state.hasGlobalAccess())
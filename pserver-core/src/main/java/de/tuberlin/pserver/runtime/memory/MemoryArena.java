@@ -37,10 +37,11 @@ public final class MemoryArena {
         this.segmentSize    = segmentSize;
         this.segments       = new ArrayList<>();
         this.activeLocks    = new IntervalTree<>();
-        this.freeList       = new LinkedBlockingQueue<>(segments);
+        this.freeList       = new LinkedBlockingQueue<>();
 
         for (int i = 0; i < numSegments; ++i)
             segments.add(new MemorySegment(this, i, memory, i * segmentSize, segmentSize));
+        freeList.addAll(segments);
     }
 
     // ---------------------------------------------------
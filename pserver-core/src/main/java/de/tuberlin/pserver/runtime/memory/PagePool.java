@@ -0,0 +1,492 @@
+package de.tuberlin.pserver.runtime.memory;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fixed-size pages backed by the segments of a {@link MemoryArena} sized to a heap budget,
+ * allocated with the first page file.
+ * When the arena is exhausted the least recently used unpinned page is spilled to the spill
+ * file of its owner and its segment is reused; spilled pages are reloaded from that file.
+ * Pages must be pinned while their segment is accessed, a pinned page is never evicted.
+ * Pages can be prefetched asynchronously to overlap the reload with computation.
+ * <p>
+ * Spills and reloads are done outside the pool lock, a page in transfer is not handed out
+ * until the transfer finished. The pool owns the page files: a file is closed by its owner,
+ * or by the pool once the owner became unreachable and none of its pages is in use, at the
+ * latest when the pool is deactivated.
+ */
+public final class PagePool implements Deactivatable {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int DEFAULT_PAGE_SIZE = 1024 * 64; // 64K.
+
+    public static final long DEFAULT_HEAP_BUDGET = 1024L * 1024 * 256; // 256M.
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final Logger LOG = LoggerFactory.getLogger(PagePool.class);
+
+    public final int pageSize;
+
+    public final long heapBudget;
+
+    private final File spillDirectory;
+
+    // Allocated with the first page file, guarded by the pool.
+    private MemoryArena arena;
+
+    // Resident pages in access order, the eldest entry is the next eviction candidate.
+    // Pages in transfer are not contained.
+    private final LinkedHashMap<Page, Page> residentPages;
+
+    private final ExecutorService prefetchExecutor;
+
+    // The open page files, reachable until closed.
+    private final Set<OwnerReference> openFiles;
+
+    private final ReferenceQueue<Object> unreachableOwners;
+
+    // Files of unreachable owners that were still in use when last tried to close.
+    private final ConcurrentLinkedQueue<PageFile> unreachableFiles;
+
+    private int numTransfers;
+
+    private long numSpills;
+
+    private long numReloads;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public PagePool(final Config config) {
+        this(config.hasPath("global.memory.pageSize") ? config.getInt("global.memory.pageSize") : DEFAULT_PAGE_SIZE,
+             config.hasPath("global.memory.pagedHeapBudget") ? config.getLong("global.memory.pagedHeapBudget") : DEFAULT_HEAP_BUDGET,
+             config.hasPath("global.memory.spillDirectory") && !config.getString("global.memory.spillDirectory").isEmpty()
+                     ? new File(config.getString("global.memory.spillDirectory"))
+                     : new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    public PagePool(final int pageSize, final long heapBudget, final File spillDirectory) {
+        Preconditions.checkArgument(pageSize > 0 && pageSize % Long.BYTES == 0);
+        Preconditions.checkArgument(heapBudget >= pageSize && heapBudget / pageSize * pageSize <= Integer.MAX_VALUE,
+                "Paged heap budget must hold at least one page and at most 2GB.");
+        this.pageSize           = pageSize;
+        this.heapBudget         = heapBudget;
+        this.spillDirectory     = Preconditions.checkNotNull(spillDirectory);
+        this.residentPages      = new LinkedHashMap<>(16, 0.75f, true);
+        this.openFiles          = ConcurrentHashMap.newKeySet();
+        this.unreachableOwners  = new ReferenceQueue<>();
+        this.unreachableFiles   = new ConcurrentLinkedQueue<>();
+        this.prefetchExecutor   = Executors.newSingleThreadExecutor(r -> {
+            final Thread t = new Thread(r, "page-prefetcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return {@code numPages} zeroed pages, spilled to a new file in the spill directory. The
+     * file is closed by {@link PageFile#close()}, or by the pool once {@code owner} is unreachable.
+     */
+    public PageFile createFile(final String name, final int numPages, final Object owner) {
+        Preconditions.checkArgument(numPages >= 0);
+        Preconditions.checkNotNull(owner);
+        closeUnreachable();
+        synchronized (this) {
+            if (arena == null)
+                arena = new MemoryArena((int) (heapBudget / pageSize), pageSize);
+        }
+        final PageFile file;
+        try {
+            file = new PageFile(File.createTempFile(Preconditions.checkNotNull(name) + "-", ".pages", spillDirectory), numPages);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        file.owner = new OwnerReference(owner, file, unreachableOwners);
+        openFiles.add(file.owner);
+        return file;
+    }
+
+    /** Makes the page resident and protects it from eviction until {@link #unpin}. */
+    public MemorySegment pin(final Page page) { return makeResident(page, true); }
+
+    /** @param modified whether the page content was changed while pinned. */
+    public void unpin(final Page page, final boolean modified) {
+        synchronized (this) {
+            Preconditions.checkState(page.pins > 0);
+            --page.pins;
+            page.isDirty |= modified;
+            // Loads may wait for an evictable page.
+            if (page.pins == 0 && numTransfers > 0)
+                notifyAll();
+        }
+    }
+
+    /** Reloads the page in the background if it is not resident. */
+    public void prefetch(final Page page) {
+        synchronized (this) {
+            if (page.segment != null || page.isPrefetching || page.file.isClosed)
+                return;
+            page.isPrefetching = true;
+        }
+        prefetchExecutor.execute(() -> {
+            synchronized (this) {
+                page.isPrefetching = false;
+                if (page.segment != null || page.isTransferring || page.file.isClosed)
+                    return;
+            }
+            try {
+                makeResident(page, false);
+            } catch (IllegalStateException e) {
+                LOG.debug("Prefetch of page " + page.index + " skipped: " + e.getMessage());
+            }
+        });
+    }
+
+    public synchronized int getNumResidentPages() { return residentPages.size(); }
+
+    public synchronized long getNumSpills() { return numSpills; }
+
+    public synchronized long getNumReloads() { return numReloads; }
+
+    public int getNumOpenFiles() { return openFiles.size(); }
+
+    // ---------------------------------------------------
+
+    @Override
+    public void deactivate() {
+        // Not interrupted, an interrupt during I/O closes the file channel.
+        prefetchExecutor.shutdown();
+        for (final OwnerReference owner : new ArrayList<>(openFiles))
+            owner.file.close();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private MemorySegment makeResident(final Page page, final boolean pin) {
+        synchronized (this) {
+            while (page.isTransferring)
+                awaitTransfer();
+            Preconditions.checkState(!page.file.isClosed, "Page file is closed.");
+            if (page.segment != null) {
+                residentPages.get(page); // touch.
+                if (pin)
+                    ++page.pins;
+                return page.segment;
+            }
+            beginTransfer(page);
+        }
+        MemorySegment segment = null;
+        try {
+            segment = allocate();
+            if (page.isSpilled)
+                read(page, segment);
+            else
+                Arrays.fill(segment.buffer, segment.offset, segment.offset + segment.size, (byte) 0);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (segment != null)
+                    segment.free();
+                endTransfer(page);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (page.isSpilled)
+                ++numReloads;
+            page.segment = segment;
+            page.isDirty = false;
+            residentPages.put(page, page);
+            if (pin)
+                ++page.pins;
+            endTransfer(page);
+            return segment;
+        }
+    }
+
+    // A free segment, or the segment of the evicted least recently used unpinned page.
+    private MemorySegment allocate() {
+        while (true) {
+            final Page victim;
+            synchronized (this) {
+                final MemorySegment segment = arena.allocSegment();
+                if (segment != null)
+                    return segment;
+            }
+            // Pages of unreachable matrices are dropped instead of being spilled.
+            closeUnreachable();
+            synchronized (this) {
+                final MemorySegment segment = arena.allocSegment();
+                if (segment != null)
+                    return segment;
+                victim = selectVictim();
+                if (victim == null) {
+                    // Segments held by transfers become resident pages or are freed.
+                    if (numTransfers > 1) {
+                        awaitTransfer();
+                        continue;
+                    }
+                    throw new IllegalStateException("Paged heap budget exhausted, all "
+                            + residentPages.size() + " resident pages are pinned.");
+                }
+                if (!victim.isDirty && victim.isSpilled)
+                    return release(victim);
+            }
+            try {
+                write(victim);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    residentPages.put(victim, victim);
+                    endTransfer(victim);
+                }
+                throw e;
+            }
+            synchronized (this) {
+                victim.isSpilled = true;
+                ++numSpills;
+                return release(victim);
+            }
+        }
+    }
+
+    private Page selectVictim() {
+        final Iterator<Page> it = residentPages.keySet().iterator();
+        while (it.hasNext()) {
+            final Page page = it.next();
+            if (page.pins > 0)
+                continue;
+            it.remove();
+            beginTransfer(page);
+            return page;
+        }
+        return null;
+    }
+
+    // Takes the segment of an evicted page.
+    private MemorySegment release(final Page victim) {
+        final MemorySegment segment = victim.segment;
+        victim.segment = null;
+        endTransfer(victim);
+        return segment;
+    }
+
+    private void read(final Page page, final MemorySegment segment) {
+        final ByteBuffer content = ByteBuffer.wrap(segment.buffer, segment.offset, segment.size);
+        try {
+            long position = (long) page.index * pageSize;
+            while (content.hasRemaining()) {
+                final int n = page.file.channel.read(content, position);
+                if (n < 0)
+                    throw new IOException("Truncated page file " + page.file.file + ".");
+                position += n;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void write(final Page page) {
+        final ByteBuffer content = ByteBuffer.wrap(page.segment.buffer, page.segment.offset, page.segment.size);
+        try {
+            long position = (long) page.index * pageSize;
+            while (content.hasRemaining())
+                position += page.file.channel.write(content, position);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void beginTransfer(final Page page) {
+        page.isTransferring = true;
+        ++numTransfers;
+    }
+
+    private void endTransfer(final Page page) {
+        page.isTransferring = false;
+        --numTransfers;
+        notifyAll();
+    }
+
+    private void awaitTransfer() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Never waits, a file in use is retried on the next call.
+    private void closeUnreachable() {
+        Reference<?> owner;
+        while ((owner = unreachableOwners.poll()) != null)
+            unreachableFiles.add(((OwnerReference) owner).file);
+        unreachableFiles.removeIf(PageFile::closeIfUnused);
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class OwnerReference extends PhantomReference<Object> {
+
+        final PageFile file;
+
+        OwnerReference(final Object owner, final PageFile file, final ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.file = file;
+        }
+    }
+
+    public final class PageFile {
+
+        private final File file;
+
+        private final FileChannel channel;
+
+        private final Page[] pages;
+
+        private OwnerReference owner;
+
+        private volatile boolean isClosed;
+
+        private PageFile(final File file, final int numPages) throws IOException {
+            this.file       = file;
+            this.channel    = new RandomAccessFile(file, "rw").getChannel();
+            this.pages      = new Page[numPages];
+            for (int i = 0; i < numPages; ++i)
+                pages[i] = new Page(this, i);
+            file.deleteOnExit();
+        }
+
+        public int numPages() { return pages.length; }
+
+        public Page getPage(final int index) { return pages[index]; }
+
+        public PagePool getPool() { return PagePool.this; }
+
+        public boolean isClosed() { return isClosed; }
+
+        /** Releases the resident pages and deletes the spill file. */
+        public void close() {
+            synchronized (PagePool.this) {
+                if (isClosed)
+                    return;
+                while (isTransferring())
+                    awaitTransfer();
+                for (final Page page : pages)
+                    Preconditions.checkState(page.pins == 0, "Page " + page.index + " is still pinned.");
+                release();
+            }
+            delete();
+        }
+
+        // ---------------------------------------------------
+
+        private boolean closeIfUnused() {
+            synchronized (PagePool.this) {
+                if (isClosed)
+                    return true;
+                if (isTransferring())
+                    return false;
+                for (final Page page : pages) {
+                    if (page.pins > 0)
+                        return false;
+                }
+                release();
+            }
+            delete();
+            return true;
+        }
+
+        private boolean isTransferring() {
+            for (final Page page : pages) {
+                if (page.isTransferring)
+                    return true;
+            }
+            return false;
+        }
+
+        private void release() {
+            isClosed = true;
+            for (final Page page : pages) {
+                if (page.segment != null) {
+                    residentPages.remove(page);
+                    page.segment.free();
+                    page.segment = null;
+                }
+            }
+        }
+
+        private void delete() {
+            openFiles.remove(owner);
+            owner.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close page file " + file + ".", e);
+            }
+            if (!file.delete())
+                LOG.warn("Failed to delete page file " + file + ".");
+        }
+    }
+
+    public static final class Page {
+
+        public final PageFile file;
+
+        public final int index;
+
+        // Guarded by the pool.
+        private MemorySegment segment;
+
+        private int pins;
+
+        private boolean isDirty;
+
+        private boolean isSpilled;
+
+        private boolean isPrefetching;
+
+        private boolean isTransferring;
+
+        private Page(final PageFile file, final int index) {
+            this.file   = file;
+            this.index  = index;
+        }
+    }
+}
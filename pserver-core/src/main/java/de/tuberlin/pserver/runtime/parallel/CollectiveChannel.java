@@ -0,0 +1,141 @@
+package de.tuberlin.pserver.runtime.parallel;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.runtime.core.events.IEventHandler;
+import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
+import de.tuberlin.pserver.runtime.core.network.NetEvent;
+import de.tuberlin.pserver.runtime.core.network.NetManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Point-to-point messages of multi-step collective operations. Each message is tagged with
+ * the operation name, a sequence number of the operation and its step, and is buffered until
+ * the receiver asks for exactly that tag. Unlike message listeners, which are registered per
+ * receive, no message is lost when a fast node starts the next step early.
+ */
+public final class CollectiveChannel implements Deactivatable {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final NetManager netManager;
+
+    private final int nodeID;
+
+    private final Map<MailboxKey, CompletableFuture<Object>> mailbox = new ConcurrentHashMap<>();
+
+    private final IEventHandler handler;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public CollectiveChannel(final NetManager netManager, final int nodeID) {
+        this.netManager = Preconditions.checkNotNull(netManager);
+        this.nodeID     = nodeID;
+        this.handler    = event -> {
+            final CollectiveEvent msg = (CollectiveEvent) event;
+            slot(new MailboxKey(msg.name, msg.sequence, msg.step, msg.srcNodeID)).complete(msg.value);
+        };
+        netManager.addEventListener(CollectiveEvent.COLLECTIVE_EVENT, handler);
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public void send(final String name, final long sequence, final int step, final Object value, final int dstNodeID) {
+        final CollectiveEvent msg = new CollectiveEvent(Preconditions.checkNotNull(name), sequence, step, nodeID, value);
+        msg.stripeKey = name;
+        netManager.dispatchEventAt(new int[] {dstNodeID}, msg);
+    }
+
+    /** Blocks until the message of the given tag from {@code srcNodeID} arrived. */
+    public Object receive(final String name, final long sequence, final int step, final int srcNodeID) {
+        final MailboxKey key = new MailboxKey(Preconditions.checkNotNull(name), sequence, step, srcNodeID);
+        try {
+            return slot(key).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mailbox.remove(key);
+        }
+    }
+
+    @Override
+    public void deactivate() {
+        netManager.removeEventListener(CollectiveEvent.COLLECTIVE_EVENT, handler);
+        for (final CompletableFuture<Object> pending : mailbox.values())
+            pending.completeExceptionally(new IllegalStateException("Collective channel deactivated."));
+        mailbox.clear();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private CompletableFuture<Object> slot(final MailboxKey key) { return mailbox.computeIfAbsent(key, k -> new CompletableFuture<>()); }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public static final class CollectiveEvent extends NetEvent {
+
+        public static final String COLLECTIVE_EVENT = "collective_event";
+
+        public final String name;
+
+        public final long sequence;
+
+        public final int step;
+
+        public final int srcNodeID;
+
+        public final Object value;
+
+        public CollectiveEvent() { this(null, -1, -1, -1, null); }
+        public CollectiveEvent(final String name, final long sequence, final int step, final int srcNodeID, final Object value) {
+            super(COLLECTIVE_EVENT);
+            this.name       = name;
+            this.sequence   = sequence;
+            this.step       = step;
+            this.srcNodeID  = srcNodeID;
+            this.value      = value;
+        }
+    }
+
+    private static final class MailboxKey {
+
+        final String name;
+
+        final long sequence;
+
+        final int step;
+
+        final int srcNodeID;
+
+        MailboxKey(final String name, final long sequence, final int step, final int srcNodeID) {
+            this.name       = name;
+            this.sequence   = sequence;
+            this.step       = step;
+            this.srcNodeID  = srcNodeID;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof MailboxKey))
+                return false;
+            final MailboxKey k = (MailboxKey) o;
+            return sequence == k.sequence && step == k.step && srcNodeID == k.srcNodeID && name.equals(k.name);
+        }
+
+        @Override
+        public int hashCode() { return ((name.hashCode() * 31 + Long.hashCode(sequence)) * 31 + step) * 31 + srcNodeID; }
+    }
+}
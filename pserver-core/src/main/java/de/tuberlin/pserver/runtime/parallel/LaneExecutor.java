@@ -0,0 +1,261 @@
+package de.tuberlin.pserver.runtime.parallel;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.diagnostics.LatencyHistogram;
+import de.tuberlin.pserver.diagnostics.MetricsReporter;
+import de.tuberlin.pserver.diagnostics.MetricsSource;
+import de.tuberlin.pserver.runtime.core.lifecycle.Deactivatable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded worker pool of a node for the prepare, combine and apply phases of transactions.
+ * Tasks of a serial lane, keyed by the object they modify, run one after another in submission
+ * order, so concurrent applies to the same object queue here instead of piling up on its lock.
+ * Tasks of the parallel lane run on any free worker. Submissions never block, they come from
+ * the event dispatcher and netty threads that must keep draining the network. Instead, user
+ * threads call {@link #awaitCapacity()} before they start new work, which waits while
+ * {@code maxPendingTasks} or more tasks are queued or running.
+ */
+public final class LaneExecutor implements Deactivatable, MetricsSource {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final String THREADS_CONFIG_KEY = "global.transaction.threads";
+
+    public static final String MAX_PENDING_TASKS_CONFIG_KEY = "global.transaction.maxPendingTasks";
+
+    public static final int DEFAULT_MAX_PENDING_TASKS = 4096;
+
+    // Tasks run by a serial lane before it yields its worker to other lanes.
+    private static final int SERIAL_BATCH_SIZE = 16;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final String name;
+
+    private final ExecutorService workers;
+
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    private final AtomicInteger numWaiters = new AtomicInteger();
+
+    private final Object capacityMonitor = new Object();
+
+    private final int maxPendingTasks;
+
+    private final Map<Object, SerialLane> serialLanes = new ConcurrentHashMap<>();
+
+    private final LaneStats serialStats = new LaneStats();
+
+    private final LaneStats parallelStats = new LaneStats();
+
+    private final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public LaneExecutor(final String name, final Config config) {
+        this(name,
+             config.hasPath(THREADS_CONFIG_KEY) && config.getInt(THREADS_CONFIG_KEY) > 0
+                     ? config.getInt(THREADS_CONFIG_KEY) : Runtime.getRuntime().availableProcessors(),
+             config.hasPath(MAX_PENDING_TASKS_CONFIG_KEY) ? config.getInt(MAX_PENDING_TASKS_CONFIG_KEY) : DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    public LaneExecutor(final String name, final int numThreads, final int maxPendingTasks) {
+        Preconditions.checkArgument(numThreads > 0 && maxPendingTasks > 0);
+        this.name               = Preconditions.checkNotNull(name);
+        this.maxPendingTasks    = maxPendingTasks;
+        final AtomicInteger threadCounter = new AtomicInteger();
+        this.workers            = Executors.newFixedThreadPool(numThreads, r -> {
+            final Thread t = new Thread(() -> {
+                isWorker.set(true);
+                r.run();
+            }, name + "-worker-" + threadCounter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        MetricsReporter.register(this);
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /** Runs the task after all tasks submitted before to the lane of {@code laneKey}. */
+    public <T> CompletableFuture<T> submitSerial(final Object laneKey, final Callable<T> task) {
+        Preconditions.checkNotNull(laneKey);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Runnable r = wrap(task, result, serialStats);
+        serialLanes.computeIfAbsent(laneKey, k -> new SerialLane()).execute(r);
+        return result;
+    }
+
+    /** Runs the task on any free worker. */
+    public <T> CompletableFuture<T> submitParallel(final Callable<T> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        workers.execute(wrap(task, result, parallelStats));
+        return result;
+    }
+
+    /**
+     * Waits until less than {@code maxPendingTasks} tasks are queued or running. Only for user
+     * threads, never call it from a worker, the event dispatcher or a netty thread.
+     */
+    public void awaitCapacity() throws InterruptedException {
+        Preconditions.checkState(!isWorker.get(), "Workers must not wait for capacity.");
+        if (pendingTasks.get() < maxPendingTasks)
+            return;
+        numWaiters.incrementAndGet();
+        try {
+            synchronized (capacityMonitor) {
+                while (pendingTasks.get() >= maxPendingTasks)
+                    capacityMonitor.wait();
+            }
+        } finally {
+            numWaiters.decrementAndGet();
+        }
+    }
+
+    /** @return the number of tasks queued or running in all lanes. */
+    public int getPendingTasks() { return pendingTasks.get(); }
+
+    public int getMaxPendingTasks() { return maxPendingTasks; }
+
+    public LatencyHistogram getSerialLatency() { return serialStats.runLatency; }
+
+    public LatencyHistogram getParallelLatency() { return parallelStats.runLatency; }
+
+    // ---------------------------------------------------
+
+    @Override
+    public String getMetricsName() { return name; }
+
+    @Override
+    public Object getMetricsSnapshot() {
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("pendingTasks", getPendingTasks());
+        snapshot.put("serialLanes", serialLanes.size());
+        snapshot.put("serial", new LaneSnapshot(serialStats));
+        snapshot.put("parallel", new LaneSnapshot(parallelStats));
+        return snapshot;
+    }
+
+    @Override
+    public void deactivate() {
+        MetricsReporter.unregister(this);
+        workers.shutdownNow();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private <T> Runnable wrap(final Callable<T> task, final CompletableFuture<T> result, final LaneStats stats) {
+        Preconditions.checkNotNull(task);
+        if (pendingTasks.incrementAndGet() > maxPendingTasks)
+            stats.overBound.increment();
+        stats.submitted.increment();
+        final long submitNanos = System.nanoTime();
+        return () -> {
+            final long startNanos = System.nanoTime();
+            stats.waitLatency.record(startNanos - submitNanos);
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = task.call();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            stats.runLatency.record(System.nanoTime() - startNanos);
+            // Free the slot first, dependent stages see the capacity of the finished task.
+            taskFinished();
+            if (failure != null)
+                result.completeExceptionally(failure);
+            else
+                result.complete(value);
+        };
+    }
+
+    private void taskFinished() {
+        if (pendingTasks.decrementAndGet() < maxPendingTasks && numWaiters.get() > 0) {
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
+            }
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    // At most one worker drains a lane at a time, the pending counter decides who schedules it.
+    private final class SerialLane implements Runnable {
+
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        final AtomicInteger pending = new AtomicInteger();
+
+        void execute(final Runnable task) {
+            tasks.add(task);
+            if (pending.getAndIncrement() == 0)
+                workers.execute(this);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < SERIAL_BATCH_SIZE; ++i) {
+                tasks.poll().run();
+                if (pending.decrementAndGet() == 0)
+                    return;
+            }
+            workers.execute(this);
+        }
+    }
+
+    private static final class LaneStats {
+
+        final LongAdder submitted = new LongAdder();
+
+        // Submissions that found the executor at or above its bound.
+        final LongAdder overBound = new LongAdder();
+
+        final LatencyHistogram waitLatency = new LatencyHistogram();
+
+        final LatencyHistogram runLatency = new LatencyHistogram();
+    }
+
+    private static final class LaneSnapshot {
+
+        final long submitted;
+
+        final long overBound;
+
+        final LatencyHistogram.Snapshot waitLatency;
+
+        final LatencyHistogram.Snapshot runLatency;
+
+        LaneSnapshot(final LaneStats stats) {
+            this.submitted      = stats.submitted.sum();
+            this.overBound      = stats.overBound.sum();
+            this.waitLatency    = stats.waitLatency.snapshot();
+            this.runLatency     = stats.runLatency.snapshot();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.tuberlin.pserver.runtime.parallel;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Arrays;
+
+/**
+ * K-ary tree over a group of nodes, rooted at a given node. The remaining nodes follow the
+ * root in cyclic node ID order, so trees of different roots place different nodes near the
+ * root. A fanout of one yields a chain from the root through all nodes of the group.
+ */
+public final class ReductionTree {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final int root;
+
+    public final int fanout;
+
+    // Nodes by tree rank, the root has rank 0.
+    private final int[] nodes;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /** @param group the nodes below the root, may contain the root. */
+    public ReductionTree(final int[] group, final int root, final int fanout) {
+        Preconditions.checkNotNull(group);
+        Preconditions.checkArgument(fanout > 0);
+        this.root   = root;
+        this.fanout = fanout;
+        final int[] others = ArrayUtils.removeElements(group, root);
+        Arrays.sort(others);
+        int first = 0;
+        while (first < others.length && others[first] < root)
+            ++first;
+        this.nodes = new int[others.length + 1];
+        this.nodes[0] = root;
+        for (int i = 0; i < others.length; ++i)
+            this.nodes[i + 1] = others[(first + i) % others.length];
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public int size() { return nodes.length; }
+
+    public boolean contains(final int nodeID) { return ArrayUtils.contains(nodes, nodeID); }
+
+    /** @return the parent of the node, or -1 for the root. */
+    public int parent(final int nodeID) {
+        final int rank = rank(nodeID);
+        return rank == 0 ? -1 : nodes[(rank - 1) / fanout];
+    }
+
+    public int[] children(final int nodeID) {
+        final int first = rank(nodeID) * fanout + 1;
+        if (first >= nodes.length)
+            return new int[0];
+        return Arrays.copyOfRange(nodes, first, Math.min(first + fanout, nodes.length));
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private int rank(final int nodeID) {
+        final int rank = ArrayUtils.indexOf(nodes, nodeID);
+        Preconditions.checkArgument(rank >= 0, "Node " + nodeID + " is not part of the tree.");
+        return rank;
+    }
+}
@@ -0,0 +1,787 @@
+package de.tuberlin.pserver.runtime.state.matrix;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.commons.unsafe.UnsafeOp;
+import de.tuberlin.pserver.runtime.memory.MemorySegment;
+import de.tuberlin.pserver.runtime.memory.PagePool;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.operations.BinaryOperator32;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.operations.MatrixAggregation32;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.operations.MatrixElementUnaryOperator32;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.operations.UnaryOperator32;
+import de.tuberlin.pserver.types.matrix.typeinfo.AbstractMatrixTypeInfo;
+import de.tuberlin.pserver.types.typeinfo.properties.DistScheme;
+import de.tuberlin.pserver.types.typeinfo.properties.InternalData;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Dense row-major matrix whose elements live in the fixed-size pages of a {@link PagePool}
+ * instead of one array, so a partition may exceed the heap budget of the pool: cold pages
+ * are spilled to a local file and reloaded on access. Element-wise operations stream over
+ * the matrix one page at a time and never pin more than one page of a matrix at once.
+ * Results of the shape of this matrix are paged matrices in the same pool, rows, columns
+ * and sub-blocks are returned as {@link DenseMatrix32F}. Row iterators prefetch the pages
+ * following the current row. The pages are released by {@link #free()}, or by the pool once
+ * the matrix is unreachable, so intermediate results need not be freed. Paged matrices are
+ * serialized as {@link DenseMatrix32F}, pages are local to a node.
+ */
+public class PagedMatrix32F extends AbstractMatrixTypeInfo implements Matrix32F {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    // Pages ahead of the current row reloaded in the background by row iterators.
+    public static final int PREFETCH_PAGES = 2;
+
+    private static final long serialVersionUID = -1;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final transient PagePool pool;
+
+    private final transient PagePool.PageFile pages;
+
+    private final int floatsPerPage;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public PagedMatrix32F(final PagePool pool, final long rows, final long cols) {
+        this(pool, -1, null, null, null, DistScheme.LOCAL, rows, cols);
+    }
+
+    public PagedMatrix32F(final PagePool pool, final int nodeID, final int[] nodes, final Class<?> type, final String name,
+                          final DistScheme distScheme, final long globalRows, final long globalCols) {
+
+        super(nodeID, nodes, type, name, distScheme, globalRows, globalCols);
+        this.pool           = Preconditions.checkNotNull(pool);
+        this.floatsPerPage  = pool.pageSize / Float.BYTES;
+        final long numPages = (rows() * cols() + floatsPerPage - 1) / floatsPerPage;
+        Preconditions.checkArgument(numPages <= Integer.MAX_VALUE);
+        this.pages          = pool.createFile(name != null ? name : "matrix", (int) numPages, this);
+    }
+
+    // ---------------------------------------------------
+    // Distributed Type Metadata.
+    // ---------------------------------------------------
+
+    @Override public long sizeOf() { return rows() * cols() * Float.BYTES; }
+
+    @Override public long globalSizeOf() { return globalRows * globalCols * Float.BYTES; }
+
+    @SuppressWarnings("unchecked")
+    @Override public InternalData<PagePool.PageFile> internal() { return new InternalData<>(pages); }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /** Copies {@code length} elements starting at the row-major element index {@code offset}. */
+    public void read(final long offset, final float[] dst, final int dstOffset, final int length) {
+        Preconditions.checkArgument(offset >= 0 && offset + length <= rows() * cols());
+        int done = 0;
+        while (done < length) {
+            final long index = offset + done;
+            final PagePool.Page page = pages.getPage((int) (index / floatsPerPage));
+            final int pageOffset = (int) (index % floatsPerPage);
+            final int n = Math.min(length - done, floatsPerPage - pageOffset);
+            final MemorySegment ms = pool.pin(page);
+            try {
+                UnsafeOp.unsafe.copyMemory(ms.buffer, address(ms, pageOffset),
+                        dst, UnsafeOp.FLOAT_ARRAY_OFFSET + (long) (dstOffset + done) * Float.BYTES, (long) n * Float.BYTES);
+            } finally {
+                pool.unpin(page, false);
+            }
+            done += n;
+        }
+    }
+
+    /** Overwrites {@code length} elements starting at the row-major element index {@code offset}. */
+    public void write(final long offset, final float[] src, final int srcOffset, final int length) {
+        Preconditions.checkArgument(offset >= 0 && offset + length <= rows() * cols());
+        int done = 0;
+        while (done < length) {
+            final long index = offset + done;
+            final PagePool.Page page = pages.getPage((int) (index / floatsPerPage));
+            final int pageOffset = (int) (index % floatsPerPage);
+            final int n = Math.min(length - done, floatsPerPage - pageOffset);
+            final MemorySegment ms = pool.pin(page);
+            try {
+                UnsafeOp.unsafe.copyMemory(src, UnsafeOp.FLOAT_ARRAY_OFFSET + (long) (srcOffset + done) * Float.BYTES,
+                        ms.buffer, address(ms, pageOffset), (long) n * Float.BYTES);
+            } finally {
+                pool.unpin(page, true);
+            }
+            done += n;
+        }
+    }
+
+    /** Releases the pages of this matrix and deletes its spill file, the matrix must not be used afterwards. */
+    public void free() { pages.close(); }
+
+    /** @return a heap copy with the same distribution metadata, the matrix must fit into one array. */
+    public DenseMatrix32F toDense() {
+        Preconditions.checkState(rows() * cols() <= Integer.MAX_VALUE, "Paged matrix too large for a dense copy.");
+        final float[] data = new float[(int) (rows() * cols())];
+        read(0, data, 0, data.length);
+        return new DenseMatrix32F(nodeID, nodes, type(), name(), distributionScheme(), globalRows, globalCols, data);
+    }
+
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F copy() {
+        final PagedMatrix32F result = newSameShape();
+        forEachChunk((offset, chunk, length) -> result.write(offset, chunk, 0, length));
+        return result;
+    }
+
+    @Override
+    public Matrix32F copy(final long rows, final long cols) {
+        final PagedMatrix32F result = new PagedMatrix32F(pool, rows, cols);
+        final int n = (int) Math.min(this.cols(), cols);
+        final float[] row = new float[n];
+        for (long r = 0; r < Math.min(this.rows(), rows); ++r) {
+            read(r * this.cols(), row, 0, n);
+            result.write(r * cols, row, 0, n);
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------
+    // SETTER.
+    // ---------------------------------------------------
+
+    @Override
+    public void set(final long r, final long c, final float value) {
+        checkPosition(r, c);
+        final long index = r * cols() + c;
+        final PagePool.Page page = pages.getPage((int) (index / floatsPerPage));
+        final MemorySegment ms = pool.pin(page);
+        try {
+            UnsafeOp.unsafe.putFloat(ms.buffer, address(ms, (int) (index % floatsPerPage)), value);
+        } finally {
+            pool.unpin(page, true);
+        }
+    }
+
+    @Override
+    public Matrix32F setDiagonalsToZero() {
+        return setDiagonalsToZero(this.copy());
+    }
+
+    @Override
+    public Matrix32F setDiagonalsToZero(final Matrix32F B) {
+        for (long diag = 0; diag < rows() && diag < cols(); ++diag)
+            B.set(diag, diag, 0f);
+        return B;
+    }
+
+    // ---------------------------------------------------
+    // GETTER.
+    // ---------------------------------------------------
+
+    @Override
+    public float get(final long index) {
+        Preconditions.checkArgument(index >= 0 && index < rows() * cols());
+        final PagePool.Page page = pages.getPage((int) (index / floatsPerPage));
+        final MemorySegment ms = pool.pin(page);
+        try {
+            return UnsafeOp.unsafe.getFloat(ms.buffer, address(ms, (int) (index % floatsPerPage)));
+        } finally {
+            pool.unpin(page, false);
+        }
+    }
+
+    @Override
+    public float get(final long row, final long col) {
+        checkPosition(row, col);
+        return get(row * cols() + col);
+    }
+
+    @Override
+    public Matrix32F getRow(final long row) {
+        return getRow(row, 0, cols());
+    }
+
+    @Override
+    public Matrix32F getRow(final long row, final long from, final long to) {
+        final float[] data = new float[(int) (to - from)];
+        read(row * cols() + from, data, 0, data.length);
+        return new DenseMatrix32F(1, data.length, data);
+    }
+
+    @Override
+    public Matrix32F getCol(final long col) {
+        return getCol(col, 0, rows());
+    }
+
+    @Override
+    public Matrix32F getCol(final long col, final long from, final long to) {
+        final float[] data = new float[(int) (to - from)];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = get(from + i, col);
+        return new DenseMatrix32F(data.length, 1, data);
+    }
+
+    // ---------------------------------------------------
+    // APPLY ON ELEMENTS.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F applyOnElements(final UnaryOperator32 f) {
+        return applyOnElements(f, newSameShape());
+    }
+
+    @Override
+    public Matrix32F applyOnElements(final UnaryOperator32 f, final Matrix32F B) {
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                chunk[i] = f.apply(chunk[i]);
+            store(B, offset, chunk, length);
+        });
+        return B;
+    }
+
+    @Override
+    public Matrix32F applyOnElements(final Matrix32F B, final BinaryOperator32 f) {
+        return applyOnElements(B, f, newSameShape());
+    }
+
+    @Override
+    public Matrix32F applyOnElements(final Matrix32F B, final BinaryOperator32 f, final Matrix32F C) {
+        final float[] other = new float[floatsPerPage];
+        forEachChunk((offset, chunk, length) -> {
+            load(B, offset, other, length);
+            for (int i = 0; i < length; ++i)
+                chunk[i] = f.apply(chunk[i], other[i]);
+            store(C, offset, chunk, length);
+        });
+        return C;
+    }
+
+    @Override
+    public Matrix32F applyOnElements(final MatrixElementUnaryOperator32 f) {
+        return applyOnElements(f, newSameShape());
+    }
+
+    @Override
+    public Matrix32F applyOnElements(final MatrixElementUnaryOperator32 f, final Matrix32F B) {
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                chunk[i] = f.apply((offset + i) / cols(), (offset + i) % cols(), chunk[i]);
+            store(B, offset, chunk, length);
+        });
+        return B;
+    }
+
+    @Override
+    public Matrix32F applyOnNonZeroElements(final MatrixElementUnaryOperator32 f) {
+        return applyOnNonZeroElements(f, newSameShape());
+    }
+
+    @Override
+    public Matrix32F applyOnNonZeroElements(final MatrixElementUnaryOperator32 f, final Matrix32F B) {
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i) {
+                if (chunk[i] != 0f) {
+                    final float value = f.apply((offset + i) / cols(), (offset + i) % cols(), chunk[i]);
+                    if (value != chunk[i])
+                        B.set((offset + i) / cols(), (offset + i) % cols(), value);
+                }
+            }
+        });
+        return B;
+    }
+
+    // ---------------------------------------------------
+    // ASSIGN.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F assign(final Matrix32F v) {
+        final float[] chunk = new float[floatsPerPage];
+        for (long offset = 0; offset < rows() * cols(); offset += floatsPerPage) {
+            final int length = (int) Math.min(floatsPerPage, rows() * cols() - offset);
+            load(v, offset, chunk, length);
+            write(offset, chunk, 0, length);
+        }
+        return this;
+    }
+
+    @Override
+    public Matrix32F assign(final float v) {
+        final float[] chunk = new float[floatsPerPage];
+        Arrays.fill(chunk, v);
+        for (long offset = 0; offset < rows() * cols(); offset += floatsPerPage)
+            write(offset, chunk, 0, (int) Math.min(floatsPerPage, rows() * cols() - offset));
+        return this;
+    }
+
+    @Override
+    public Matrix32F assignRow(final long row, final Matrix32F v) {
+        final float[] data = new float[(int) cols()];
+        for (int col = 0; col < data.length; ++col)
+            data[col] = v.get(col);
+        write(row * cols(), data, 0, data.length);
+        return this;
+    }
+
+    @Override
+    public Matrix32F assignColumn(final long col, final Matrix32F v) {
+        for (long row = 0; row < rows(); ++row)
+            set(row, col, v.get(row));
+        return this;
+    }
+
+    @Override
+    public Matrix32F assign(final long rowOffset, final long colOffset, final Matrix32F m) {
+        final float[] data = new float[(int) m.cols()];
+        for (long row = 0; row < m.rows(); ++row) {
+            for (int col = 0; col < data.length; ++col)
+                data[col] = m.get(row, col);
+            write((rowOffset + row) * cols() + colOffset, data, 0, data.length);
+        }
+        return this;
+    }
+
+    // ---------------------------------------------------
+    // AGGREGATION.
+    // ---------------------------------------------------
+
+    @Override
+    public float aggregate(final BinaryOperator32 combiner, final UnaryOperator32 mapper, final Matrix32F result) {
+        final float[] acc = new float[1];
+        final boolean[] first = { true };
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i) {
+                acc[0] = first[0] ? mapper.apply(chunk[i]) : combiner.apply(acc[0], mapper.apply(chunk[i]));
+                first[0] = false;
+            }
+        });
+        return acc[0];
+    }
+
+    @Override
+    public Matrix32F aggregateRows(final MatrixAggregation32 f) {
+        return aggregateRows(f, new DenseMatrix32F(rows(), 1));
+    }
+
+    @Override
+    public Matrix32F aggregateRows(final MatrixAggregation32 f, final Matrix32F result) {
+        for (long row = 0; row < rows(); ++row)
+            result.set(row, 0, f.apply(getRow(row)));
+        return result;
+    }
+
+    @Override
+    public float sum() {
+        final float[] sum = new float[1];
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                sum[0] += chunk[i];
+        });
+        return sum[0];
+    }
+
+    // ---------------------------------------------------
+    // ARITHMETIC.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F add(final Matrix32F B) {
+        return add(B, newSameShape());
+    }
+
+    @Override
+    public Matrix32F add(final Matrix32F B, final Matrix32F C) {
+        return applyOnElements(B, (x, y) -> x + y, C);
+    }
+
+    @Override
+    public Matrix32F addVectorToRows(final Matrix32F v) {
+        return addVectorToRows(v, newSameShape());
+    }
+
+    @Override
+    public Matrix32F addVectorToRows(final Matrix32F v, final Matrix32F B) {
+        final float[] vector = new float[(int) cols()];
+        for (int col = 0; col < vector.length; ++col)
+            vector[col] = v.get(col);
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                chunk[i] += vector[(int) ((offset + i) % cols())];
+            store(B, offset, chunk, length);
+        });
+        return B;
+    }
+
+    @Override
+    public Matrix32F addVectorToCols(final Matrix32F v) {
+        return addVectorToCols(v, newSameShape());
+    }
+
+    @Override
+    public Matrix32F addVectorToCols(final Matrix32F v, final Matrix32F B) {
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                chunk[i] += v.get((offset + i) / cols());
+            store(B, offset, chunk, length);
+        });
+        return B;
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public Matrix32F sub(final Matrix32F B) {
+        return sub(B, newSameShape());
+    }
+
+    @Override
+    public Matrix32F sub(final Matrix32F B, final Matrix32F C) {
+        return applyOnElements(B, (x, y) -> x - y, C);
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public Matrix32F mul(final Matrix32F B) {
+        return mul(B, new PagedMatrix32F(pool, rows(), B.cols()));
+    }
+
+    @Override
+    public Matrix32F mul(final Matrix32F B, final Matrix32F C) {
+        Preconditions.checkArgument(cols() == B.rows());
+        final float[] row = new float[(int) cols()];
+        for (long r = 0; r < C.rows(); ++r) {
+            read(r * cols(), row, 0, row.length);
+            for (long c = 0; c < C.cols(); ++c) {
+                float value = 0f;
+                for (int k = 0; k < row.length; ++k)
+                    value += row[k] * B.get(k, c);
+                C.set(r, c, value);
+            }
+        }
+        return C;
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public Matrix32F scale(final float a) {
+        return scale(a, newSameShape());
+    }
+
+    @Override
+    public Matrix32F scale(final float a, final Matrix32F B) {
+        return applyOnElements(x -> x * a, B);
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public Matrix32F transpose() {
+        return transpose(new PagedMatrix32F(pool, cols(), rows()));
+    }
+
+    @Override
+    public Matrix32F transpose(final Matrix32F B) {
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                B.set((offset + i) % cols(), (offset + i) / cols(), chunk[i]);
+        });
+        return B;
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public Matrix32F invert() { return invert(newSameShape()); }
+
+    // Gauss-Jordan elimination with partial pivoting. The inverse of a dense matrix is dense
+    // and every step touches all rows, so it is computed on a heap copy in double precision.
+    @Override
+    public Matrix32F invert(final Matrix32F B) {
+        Preconditions.checkState(rows() == cols(), "Only square matrices can be inverted.");
+        Preconditions.checkState(rows() * cols() <= Integer.MAX_VALUE, "Paged matrix too large to be inverted.");
+        final int n = (int) rows();
+        final float[] row = new float[n];
+        final double[][] a = new double[n][2 * n];
+        for (int r = 0; r < n; ++r) {
+            read((long) r * n, row, 0, n);
+            for (int c = 0; c < n; ++c)
+                a[r][c] = row[c];
+            a[r][n + r] = 1.0;
+        }
+        for (int c = 0; c < n; ++c) {
+            int pivot = c;
+            for (int r = c + 1; r < n; ++r) {
+                if (Math.abs(a[r][c]) > Math.abs(a[pivot][c]))
+                    pivot = r;
+            }
+            if (a[pivot][c] == 0.0)
+                throw new IllegalStateException("Matrix is singular.");
+            final double[] tmp = a[c]; a[c] = a[pivot]; a[pivot] = tmp;
+            final double scale = 1.0 / a[c][c];
+            for (int k = 0; k < 2 * n; ++k)
+                a[c][k] *= scale;
+            for (int r = 0; r < n; ++r) {
+                if (r == c || a[r][c] == 0.0)
+                    continue;
+                final double f = a[r][c];
+                for (int k = 0; k < 2 * n; ++k)
+                    a[r][k] -= f * a[c][k];
+            }
+        }
+        for (int r = 0; r < n; ++r) {
+            for (int c = 0; c < n; ++c)
+                row[c] = (float) a[r][n + c];
+            store(B, (long) r * n, row, n);
+        }
+        return B;
+    }
+
+    // ----------------------------------------
+
+    @Override
+    public float norm(final int p) {
+        final double[] norm = new double[1];
+        forEachChunk((offset, chunk, length) -> {
+            for (int i = 0; i < length; ++i)
+                norm[0] += Math.pow(chunk[i], p);
+        });
+        return (float) Math.pow(norm[0], 1. / p);
+    }
+
+    @Override
+    public float dot(final Matrix32F B) {
+        final float[] other = new float[floatsPerPage];
+        final float[] result = new float[1];
+        forEachChunk((offset, chunk, length) -> {
+            load(B, offset, other, length);
+            for (int i = 0; i < length; ++i)
+                result[0] += chunk[i] * other[i];
+        });
+        return result[0];
+    }
+
+    // ---------------------------------------------------
+    // SLICING.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F subMatrix(final long rowOffset, final long colOffset, final long rows, final long cols) {
+        Preconditions.checkArgument(rowOffset + rows <= rows() && colOffset + cols <= cols());
+        final float[] data = new float[(int) (rows * cols)];
+        for (int row = 0; row < rows; ++row)
+            read((rowOffset + row) * cols() + colOffset, data, (int) (row * cols), (int) cols);
+        return new DenseMatrix32F(rows, cols, data);
+    }
+
+    @Override
+    public Matrix32F concat(final Matrix32F B) {
+        return concat(B, new PagedMatrix32F(pool, rows() + B.rows(), cols()));
+    }
+
+    @Override
+    public Matrix32F concat(final Matrix32F B, final Matrix32F C) {
+        final float[] row = new float[(int) cols()];
+        for (long r = 0; r < C.rows(); ++r) {
+            if (r < rows())
+                read(r * cols(), row, 0, row.length);
+            else {
+                for (int c = 0; c < row.length; ++c)
+                    row[c] = B.get(r - rows(), c);
+            }
+            store(C, r * cols(), row, row.length);
+        }
+        return C;
+    }
+
+    // ---------------------------------------------------
+    // ROW ITERATOR.
+    // ---------------------------------------------------
+
+    @Override
+    public RowIterator rowIterator() {
+        return new RowIterator(this, 0, rows());
+    }
+
+    @Override
+    public RowIterator rowIterator(final long startRow, final long endRow) {
+        return new RowIterator(this, startRow, endRow);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private PagedMatrix32F newSameShape() { return new PagedMatrix32F(pool, rows(), cols()); }
+
+    // Java serialization, see PagedMatrixSerializer in the KryoFactory for Kryo.
+    private Object writeReplace() { return toDense(); }
+
+    private static long address(final MemorySegment ms, final int floatOffset) {
+        return UnsafeOp.BYTE_ARRAY_OFFSET + ms.offset + (long) floatOffset * Float.BYTES;
+    }
+
+    private void checkPosition(final long row, final long col) {
+        if (row < 0 || row >= rows() || col < 0 || col >= cols())
+            throw new IllegalStateException(String.format("Invalid position (%d, %d) in matrix of shape (%d, %d).",
+                    row, col, rows(), cols()));
+    }
+
+    private interface ChunkOp {
+
+        void apply(final long offset, final float[] chunk, final int length);
+    }
+
+    // Streams the matrix page by page, the chunk buffer is reused across pages.
+    private void forEachChunk(final ChunkOp op) {
+        final float[] chunk = new float[floatsPerPage];
+        for (long offset = 0; offset < rows() * cols(); offset += floatsPerPage) {
+            final int length = (int) Math.min(floatsPerPage, rows() * cols() - offset);
+            read(offset, chunk, 0, length);
+            op.apply(offset, chunk, length);
+        }
+    }
+
+    // Reads a row-major run of elements of a matrix of the same number of columns.
+    private void load(final Matrix32F m, final long offset, final float[] dst, final int length) {
+        if (m instanceof PagedMatrix32F)
+            ((PagedMatrix32F) m).read(offset, dst, 0, length);
+        else if (m instanceof DenseMatrix32F)
+            System.arraycopy(((DenseMatrix32F) m).data, (int) offset, dst, 0, length);
+        else {
+            for (int i = 0; i < length; ++i)
+                dst[i] = m.get((offset + i) / cols(), (offset + i) % cols());
+        }
+    }
+
+    // Writes a row-major run of elements into a matrix of the same number of columns.
+    private void store(final Matrix32F m, final long offset, final float[] src, final int length) {
+        if (m instanceof PagedMatrix32F)
+            ((PagedMatrix32F) m).write(offset, src, 0, length);
+        else if (m instanceof DenseMatrix32F)
+            System.arraycopy(src, 0, ((DenseMatrix32F) m).data, (int) offset, length);
+        else {
+            for (int i = 0; i < length; ++i)
+                m.set((offset + i) / cols(), (offset + i) % cols(), src[i]);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class RowIterator implements Matrix32F.RowIterator {
+
+        private final PagedMatrix32F self;
+
+        private final long start;
+
+        private final long end;
+
+        private final long rowsToFetch;
+
+        private final float[] row;
+
+        private final Random rand;
+
+        private long currentRow;
+
+        private long rowsFetched;
+
+        private boolean isRowLoaded;
+
+        private long lastPrefetchPage;
+
+        // ---------------------------------------------------
+
+        public RowIterator(final PagedMatrix32F m, final long startRow, final long endRow) {
+            this.self = Preconditions.checkNotNull(m);
+            Preconditions.checkArgument(startRow >= 0 && startRow < self.rows());
+            Preconditions.checkArgument(endRow >= startRow && endRow <= self.rows());
+            this.start          = startRow;
+            this.end            = endRow;
+            this.rowsToFetch    = endRow - startRow;
+            this.row            = new float[(int) self.cols()];
+            this.rand           = new Random();
+            reset();
+        }
+
+        // ---------------------------------------------------
+
+        @Override
+        public boolean hasNext() { return rowsFetched < rowsToFetch; }
+
+        @Override
+        public void next() {
+            currentRow = (rowsFetched == 0 || currentRow + 1 >= end) ? start : currentRow + 1;
+            ++rowsFetched;
+            isRowLoaded = false;
+            prefetch();
+        }
+
+        @Override
+        public void nextRandom() {
+            ++rowsFetched;
+            currentRow = start + rand.nextInt((int) (end - start));
+            isRowLoaded = false;
+        }
+
+        @Override
+        public float value(final long col) { return currentRow()[(int) col]; }
+
+        @Override
+        public Matrix32F get() { return get(0, self.cols()); }
+
+        @Override
+        public Matrix32F get(final long from, final long size) {
+            return new DenseMatrix32F(1, size, Arrays.copyOfRange(currentRow(), (int) from, (int) (from + size)));
+        }
+
+        @Override
+        public void reset() {
+            rowsFetched = 0;
+            currentRow = start;
+            isRowLoaded = false;
+            lastPrefetchPage = -1;
+        }
+
+        @Override
+        public long size() { return rowsToFetch; }
+
+        @Override
+        public long rowNum() { return currentRow; }
+
+        // ---------------------------------------------------
+
+        private float[] currentRow() {
+            if (!isRowLoaded) {
+                self.read(currentRow * self.cols(), row, 0, row.length);
+                isRowLoaded = true;
+            }
+            return row;
+        }
+
+        // Reloads the pages following the last page of the current row in the background.
+        private void prefetch() {
+            final long lastPage = ((currentRow + 1) * self.cols() - 1) / self.floatsPerPage;
+            if (lastPage == lastPrefetchPage)
+                return;
+            lastPrefetchPage = lastPage;
+            final long endPage = Math.min(self.pages.numPages(), ((end * self.cols() - 1) / self.floatsPerPage) + 1);
+            for (long p = lastPage + 1; p <= lastPage + PREFETCH_PAGES && p < endPage; ++p)
+                self.pool.prefetch(self.pages.getPage((int) p));
+        }
+    }
+}
@@ -2,33 +2,78 @@ package de.tuberlin.pserver.runtime.state.matrix.rpc;
 
 import de.tuberlin.pserver.runtime.core.network.NetManager;
 import de.tuberlin.pserver.runtime.core.remoteobj.MethodInvocationMsg;
+import de.tuberlin.pserver.runtime.core.remoteobj.MethodTable;
+import de.tuberlin.pserver.runtime.core.remoteobj.RemoteCallTable;
 import de.tuberlin.pserver.runtime.driver.ProgramContext;
 import de.tuberlin.pserver.types.typeinfo.DistributedTypeInfo;
 
+import de.tuberlin.pserver.runtime.core.remoteobj.RemoteCalls;
+import de.tuberlin.pserver.types.matrix.implementation.partitioner.MatrixRowPartitioner;
+import de.tuberlin.pserver.types.matrix.typeinfo.MatrixTypeInfo;
+import de.tuberlin.pserver.types.typeinfo.properties.DistScheme;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 
+/**
+ * Remote access to a global state matrix allocated on other nodes. Calls are pipelined:
+ * void calls (e.g. set) do not wait for the remote side and calls issued via
+ * {@link de.tuberlin.pserver.runtime.core.remoteobj.RemoteCalls#async} return futures,
+ * hence many get/set calls can be in flight without a round trip per call.
+ *
+ * The proxy also implements {@link RemoteMatrix32F}, whose bulk operations are served by a
+ * {@link MatrixBatchOperations} object on the owning nodes. On a row partitioned matrix a
+ * bulk operation is split by owning partition and sent as one message per node.
+ */
 public final class GlobalStateMatrixProxy implements InvocationHandler {
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int MAX_CALLS_IN_FLIGHT = 8192;
+
+    private static final long RESPONSE_TIMEOUT = 5000; // in ms
+
+    public static final String BATCH_OBJECT_SUFFIX = "_batch";
+
+    // Matrix calls through the proxy that do not invalidate cached rows.
+    private static final Set<String> READ_ONLY_METHODS = new HashSet<>(Arrays.asList(
+            "get", "getRow", "getCol", "getRows", "getCols", "getBlock", "copy", "sum", "dot", "norm",
+            "rows", "cols", "globalRows", "globalCols", "sizeOf", "globalSizeOf", "name", "nodes", "type"));
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
 
     private final NetManager netManager;
 
-    private final Map<UUID, CountDownLatch> requestLatches;
+    private final MethodTable methodTable;
+
+    private final RemoteCallTable callTable;
 
-    private final Map<UUID, Object> resultObjects;
+    private final MethodTable batchMethodTable;
 
     private final DistributedTypeInfo state;
 
+    private final RowCache rowCache;
+
+    // Set for row partitioned matrices.
+    private final MatrixRowPartitioner rowPartitioner;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -38,55 +83,254 @@ public final class GlobalStateMatrixProxy implements InvocationHandler {
 
         this.netManager     = programContext.runtimeContext.netManager;
         this.state          = state;
-        this.requestLatches = new ConcurrentHashMap<>();
-        this.resultObjects  = new ConcurrentHashMap<>();
+        this.methodTable    = MethodTable.of(state.type());
+        this.batchMethodTable = MethodTable.of(RemoteMatrix32F.class);
+        this.callTable      = new RemoteCallTable(MAX_CALLS_IN_FLIGHT, RESPONSE_TIMEOUT, true);
+        this.rowCache       = new RowCache();
+        this.rowPartitioner = state.distributionScheme() == DistScheme.H_PARTITIONED
+                ? (MatrixRowPartitioner) ((MatrixTypeInfo) state).partitioner() : null;
 
         netManager.addEventListener(MethodInvocationMsg.METHOD_INVOCATION_EVENT + "_" + state.name(), (event) -> {
             MethodInvocationMsg mim = (MethodInvocationMsg)event;
-            if (mim.classID == state.type().hashCode() && requestLatches.containsKey(mim.callID)) {
-                CountDownLatch cdl = requestLatches.remove(mim.callID);
-                if (mim.result != null)
-                    resultObjects.put(mim.callID, mim.result);
-                cdl.countDown();
-            }
+            if (mim.classID == state.type().hashCode())
+                callTable.complete(mim.callID, mim.result);
+        });
+
+        netManager.addEventListener(MethodInvocationMsg.METHOD_INVOCATION_EVENT + "_" + state.name() + BATCH_OBJECT_SUFFIX, (event) -> {
+            MethodInvocationMsg mim = (MethodInvocationMsg)event;
+            if (mim.classID == RemoteMatrix32F.class.hashCode())
+                callTable.complete(mim.callID, mim.result);
         });
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
-        UUID callID = UUID.randomUUID();
-
-        CountDownLatch cdl = new CountDownLatch(1);
-        requestLatches.put(callID, cdl);
-        MethodInvocationMsg invokeMsg = new MethodInvocationMsg(
-                state.name(),
-                callID,
-                state.type().hashCode(),
-                MethodInvocationMsg.getMethodID(method),
-                arguments,
-                null
+        if (method.getDeclaringClass() == RemoteMatrix32F.class)
+            return invokeBatchOperation(method, arguments);
+        if (rowCache.isEnabled() && !READ_ONLY_METHODS.contains(method.getName())) {
+            if ("set".equals(method.getName()) && arguments.length == 3)
+                rowCache.invalidate(new long[] {(Long) arguments[0]});
+            else
+                rowCache.invalidateAll();
+        }
+        final int methodID = methodTable.getMethodID(method);
+        return callTable.invoke(method, callID ->
+                matrixOperationDispatch(method, arguments, new MethodInvocationMsg(
+                        state.name(),
+                        callID,
+                        state.type().hashCode(),
+                        methodID,
+                        arguments,
+                        null
+                ))
         );
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
 
-        matrixOperationDispatch(method, arguments, invokeMsg);
+    private Object invokeBatchOperation(Method method, Object[] arguments) {
+        switch (method.getName()) {
+            case "getRows":
+                return rowCache.isEnabled() ? getCachedRows(method, (long[]) arguments[0]) : invokeRemote(method, arguments, null);
+            case "scatterAdd":
+                if (rowCache.isEnabled())
+                    rowCache.invalidate((long[]) arguments[0]);
+                return invokeRemote(method, arguments, null);
+            case "setRowCacheSize":
+                rowCache.setMaxRows((Integer) arguments[0]);
+                return null;
+            case "invalidateRows":
+                rowCache.invalidate((long[]) arguments[0]);
+                return null;
+            case "invalidateRowCache":
+                rowCache.invalidateAll();
+                return null;
+            default:
+                return invokeRemote(method, arguments, null);
+        }
+    }
 
-        long responseTimeout = 5000;
-        try {
-            if (responseTimeout > 0) {
-                // block the caller thread until we get some response...
-                // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                cdl.await(responseTimeout, TimeUnit.MILLISECONDS);
-            } else {
-                cdl.await();
+    // Fetches only the rows missing in the cache and merges them with the cached rows.
+    private Object getCachedRows(Method method, long[] rows) {
+        final float[][] values = new float[rows.length][];
+        final long[] misses = rowCache.lookup(rows, values);
+        if (misses.length == 0)
+            return RemoteCalls.completed(concat(values));
+        final long generation = rowCache.getGeneration();
+        return invokeRemote(method, new Object[] {misses}, (result) -> {
+            final float[] fetched = (float[]) result;
+            final int numCols = fetched.length / misses.length;
+            final float[][] fetchedRows = new float[misses.length][];
+            final TLongIntHashMap missIndex = new TLongIntHashMap(misses.length);
+            for (int i = 0; i < misses.length; ++i) {
+                fetchedRows[i] = Arrays.copyOfRange(fetched, i * numCols, (i + 1) * numCols);
+                missIndex.put(misses[i], i);
             }
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
+            rowCache.put(misses, fetchedRows, generation);
+            for (int i = 0; i < rows.length; ++i) {
+                if (values[i] == null)
+                    values[i] = fetchedRows[missIndex.get(rows[i])];
+            }
+            return concat(values);
+        });
+    }
+
+    private Object invokeRemote(Method method, Object[] arguments, Function<Object, Object> transform) {
+        final int methodID = batchMethodTable.getMethodID(method);
+        if (rowPartitioner != null)
+            return invokePartitioned(method, methodID, arguments, transform);
+        return callTable.invoke(method, callID -> {
+            final MethodInvocationMsg invokeMsg = new MethodInvocationMsg(
+                    state.name() + BATCH_OBJECT_SUFFIX,
+                    callID,
+                    RemoteMatrix32F.class.hashCode(),
+                    methodID,
+                    arguments,
+                    null
+            );
+            // Reads of a replicated matrix are served by one replica.
+            if (state.distributionScheme() == DistScheme.REPLICATED && method.getReturnType() != void.class) {
+                final int[] nodes = state.nodes();
+                netManager.dispatchEventAt(new int[] {nodes[state.nodeId() % nodes.length]}, invokeMsg);
+            } else
+                matrixOperationDispatch(method, arguments, invokeMsg);
+        }, transform);
+    }
+
+    private Object invokePartitioned(Method method, int methodID, Object[] arguments, Function<Object, Object> transform) {
+        final List<Part> parts = split(method.getName(), arguments);
+        final int[] nodes = state.nodes();
+        final LongConsumer[] senders = new LongConsumer[parts.size()];
+        for (int i = 0; i < senders.length; ++i) {
+            final Part part = parts.get(i);
+            senders[i] = callID -> netManager.dispatchEventAt(new int[] {nodes[part.partition]}, new MethodInvocationMsg(
+                    state.name() + BATCH_OBJECT_SUFFIX,
+                    callID,
+                    RemoteMatrix32F.class.hashCode(),
+                    methodID,
+                    part.arguments,
+                    null
+            ));
         }
+        return callTable.invoke(method, senders, (results) -> {
+            final Object result = merge(method.getName(), arguments, parts, results);
+            return transform != null ? transform.apply(result) : result;
+        });
+    }
 
-        Object res = resultObjects.remove(callID);
-        if (res instanceof Throwable)
-            throw new IllegalStateException((Throwable) res);
+    // Splits the arguments of a bulk operation by the row partitions they access, in partition order.
+    private List<Part> split(String methodName, Object[] arguments) {
+        final int numPartitions = state.nodes().length;
+        final List<Part> parts = new ArrayList<>();
+        switch (methodName) {
+            case "getRows":
+            case "scatterAdd": {
+                final long[] rows = (long[]) arguments[0];
+                final TIntArrayList[] positions = new TIntArrayList[numPartitions];
+                for (int i = 0; i < rows.length; ++i) {
+                    final int partition = rowPartitioner.getRowPartition(rows[i]);
+                    if (positions[partition] == null)
+                        positions[partition] = new TIntArrayList();
+                    positions[partition].add(i);
+                }
+                for (int partition = 0; partition < numPartitions; ++partition) {
+                    if (positions[partition] == null)
+                        continue;
+                    final int[] pos = positions[partition].toArray();
+                    final TLongArrayList partRows = new TLongArrayList(pos.length);
+                    for (final int i : pos)
+                        partRows.add(rows[i]);
+                    if ("getRows".equals(methodName)) {
+                        parts.add(new Part(partition, new Object[] {partRows.toArray()}, pos));
+                    } else {
+                        final long[] cols = (long[]) arguments[1];
+                        final float[] deltas = (float[]) arguments[2];
+                        final TLongArrayList partCols = new TLongArrayList(pos.length);
+                        final TFloatArrayList partDeltas = new TFloatArrayList(pos.length);
+                        for (final int i : pos) {
+                            partCols.add(cols[i]);
+                            partDeltas.add(deltas[i]);
+                        }
+                        parts.add(new Part(partition, new Object[] {partRows.toArray(), partCols.toArray(), partDeltas.toArray()}, pos));
+                    }
+                }
+            } break;
+            case "getCols":
+                for (int partition = 0; partition < numPartitions; ++partition)
+                    parts.add(new Part(partition, arguments, null));
+                break;
+            case "getBlock": {
+                final long rowOffset = (Long) arguments[0], rows = (Long) arguments[2];
+                if (rows <= 0)
+                    break;
+                final int last = rowPartitioner.getRowPartition(rowOffset + rows - 1);
+                for (int partition = rowPartitioner.getRowPartition(rowOffset); partition <= last; ++partition) {
+                    final long from = Math.max(rowOffset, rowPartitioner.getFirstRow(partition));
+                    final long to = Math.min(rowOffset + rows, rowPartitioner.getFirstRow(partition + 1));
+                    if (from < to)
+                        parts.add(new Part(partition, new Object[] {from, arguments[1], to - from, arguments[3]}, null));
+                }
+            } break;
+            default:
+                throw new IllegalStateException("Unknown batch operation: " + methodName);
+        }
+        return parts;
+    }
 
-        return res;
+    // Merges the results of the partition calls into the result of the whole operation.
+    private Object merge(String methodName, Object[] arguments, List<Part> parts, Object[] results) {
+        switch (methodName) {
+            case "getRows": {
+                final int numCols = (int) ((MatrixTypeInfo) state).globalCols();
+                final float[] values = new float[((long[]) arguments[0]).length * numCols];
+                for (int p = 0; p < results.length; ++p) {
+                    final float[] partValues = (float[]) results[p];
+                    final int[] pos = parts.get(p).positions;
+                    for (int i = 0; i < pos.length; ++i)
+                        System.arraycopy(partValues, i * numCols, values, pos[i] * numCols, numCols);
+                }
+                return values;
+            }
+            case "getCols": {
+                // Column-major, each partition holds a contiguous range of rows of each column.
+                final int numCols = ((long[]) arguments[0]).length;
+                final int numRows = (int) ((MatrixTypeInfo) state).globalRows();
+                final float[] values = new float[numCols * numRows];
+                if (numCols == 0)
+                    return values;
+                for (int p = 0; p < results.length; ++p) {
+                    final float[] partValues = (float[]) results[p];
+                    final int partRows = partValues.length / numCols;
+                    final int firstRow = (int) rowPartitioner.getFirstRow(parts.get(p).partition);
+                    for (int col = 0; col < numCols; ++col)
+                        System.arraycopy(partValues, col * partRows, values, col * numRows + firstRow, partRows);
+                }
+                return values;
+            }
+            case "getBlock": {
+                final float[][] blocks = new float[results.length][];
+                for (int p = 0; p < results.length; ++p)
+                    blocks[p] = (float[]) results[p];
+                return concat(blocks);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static float[] concat(float[][] rows) {
+        int length = 0;
+        for (final float[] row : rows)
+            length += row.length;
+        final float[] values = new float[length];
+        int offset = 0;
+        for (final float[] row : rows) {
+            System.arraycopy(row, 0, values, offset, row.length);
+            offset += row.length;
+        }
+        return values;
     }
 
     private void matrixOperationDispatch(Method method, Object[] arguments, MethodInvocationMsg invokeMsg) {
@@ -113,11 +357,13 @@ public final class GlobalStateMatrixProxy implements InvocationHandler {
                 netManager.dispatchEventAt(state.nodes(), invokeMsg);
                 break;
             case H_PARTITIONED:
-                throw new UnsupportedOperationException();
+                // Rows are only addressed by the RemoteMatrix32F operations, see invokePartitioned.
+                throw new IllegalStateException("Remote access to the row partitioned matrix " + state.name()
+                        + " is only supported through the " + RemoteMatrix32F.class.getSimpleName() + " operations.");
             case V_PARTITIONED:
-                throw new UnsupportedOperationException();
             case B_PARTITIONED:
-                throw new UnsupportedOperationException();
+                // The column and block partitioners are not implemented (see MatrixColumnPartitioner).
+                throw new IllegalStateException("Remote access to " + state.distributionScheme() + " matrices is not supported.");
         }
     }
 
@@ -125,8 +371,29 @@ public final class GlobalStateMatrixProxy implements InvocationHandler {
     public static <T> T create(ProgramContext programContext, DistributedTypeInfo state) throws Exception {
         return (T) Proxy.newProxyInstance(
                 state.type().getClassLoader(),
-                new Class<?>[]{state.type()},
+                new Class<?>[]{state.type(), RemoteMatrix32F.class},
                 new GlobalStateMatrixProxy(programContext, state)
         );
     }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    // The share of a bulk operation sent to the node of one row partition.
+    private static final class Part {
+
+        final int partition;
+
+        final Object[] arguments;
+
+        // Indices of the requested rows of getRows in the whole request.
+        final int[] positions;
+
+        Part(final int partition, final Object[] arguments, final int[] positions) {
+            this.partition  = partition;
+            this.arguments  = arguments;
+            this.positions  = positions;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package de.tuberlin.pserver.runtime.state.matrix.rpc;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DirtyTrackingMatrix32F;
+import de.tuberlin.pserver.types.typeinfo.properties.DistScheme;
+
+/**
+ * Owner side of the {@link RemoteMatrix32F} operations. It is registered as global object
+ * next to the matrix and serves the bulk requests of remote proxies. Requests carry global
+ * row indices; a node holding a row partition only receives the rows of its partition.
+ * Dense matrices are read and written directly on their row-major data, under the matrix lock.
+ */
+public final class MatrixBatchOperations {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final Matrix32F matrix;
+
+    // Global index of the first local row.
+    private final long rowOffset;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public MatrixBatchOperations(final Matrix32F matrix) {
+        this.matrix = Preconditions.checkNotNull(matrix);
+        this.rowOffset = matrix.distributionScheme() == DistScheme.H_PARTITIONED
+                ? matrix.partitioner().matrixPartitionShape().rowOffset : 0;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public float[] getRows(final long[] rows) {
+        final int numCols = (int) matrix.cols();
+        final float[] values = new float[rows.length * numCols];
+        matrix.lock();
+        try {
+            if (matrix instanceof DenseMatrix32F) {
+                final float[] data = ((DenseMatrix32F) matrix).data;
+                for (int i = 0; i < rows.length; ++i)
+                    System.arraycopy(data, (int) (localRow(rows[i]) * numCols), values, i * numCols, numCols);
+            } else {
+                int i = 0;
+                for (final long row : rows) {
+                    final long localRow = localRow(row);
+                    for (long col = 0; col < numCols; ++col)
+                        values[i++] = matrix.get(localRow, col);
+                }
+            }
+        } finally {
+            matrix.unlock();
+        }
+        return values;
+    }
+
+    /** @return the local rows of the given columns, column-major packed. */
+    public float[] getCols(final long[] cols) {
+        final int numRows = (int) matrix.rows();
+        final float[] values = new float[cols.length * numRows];
+        matrix.lock();
+        try {
+            if (matrix instanceof DenseMatrix32F) {
+                // Row by row, so the matrix data is read sequentially.
+                final float[] data = ((DenseMatrix32F) matrix).data;
+                final int numCols = (int) matrix.cols();
+                for (int row = 0; row < numRows; ++row) {
+                    final int base = row * numCols;
+                    for (int i = 0; i < cols.length; ++i)
+                        values[i * numRows + row] = data[base + (int) cols[i]];
+                }
+            } else {
+                int i = 0;
+                for (final long col : cols) {
+                    for (long row = 0; row < numRows; ++row)
+                        values[i++] = matrix.get(row, col);
+                }
+            }
+        } finally {
+            matrix.unlock();
+        }
+        return values;
+    }
+
+    public float[] getBlock(final long rowOffset, final long colOffset, final long rows, final long cols) {
+        final long firstRow = localRow(rowOffset);
+        Preconditions.checkArgument(firstRow + rows <= matrix.rows() && colOffset + cols <= matrix.cols());
+        final float[] values = new float[(int) (rows * cols)];
+        matrix.lock();
+        try {
+            if (matrix instanceof DenseMatrix32F) {
+                final float[] data = ((DenseMatrix32F) matrix).data;
+                final long numCols = matrix.cols();
+                for (int i = 0; i < rows; ++i)
+                    System.arraycopy(data, (int) ((firstRow + i) * numCols + colOffset), values, (int) (i * cols), (int) cols);
+            } else {
+                int i = 0;
+                for (long row = firstRow; row < firstRow + rows; ++row) {
+                    for (long col = colOffset; col < colOffset + cols; ++col)
+                        values[i++] = matrix.get(row, col);
+                }
+            }
+        } finally {
+            matrix.unlock();
+        }
+        return values;
+    }
+
+    public void scatterAdd(final long[] rows, final long[] cols, final float[] deltas) {
+        Preconditions.checkArgument(rows.length == cols.length && cols.length == deltas.length);
+        matrix.lock();
+        try {
+            if (matrix instanceof DenseMatrix32F) {
+                final float[] data = ((DenseMatrix32F) matrix).data;
+                final long numCols = matrix.cols();
+                for (int i = 0; i < deltas.length; ++i)
+                    data[(int) (localRow(rows[i]) * numCols + cols[i])] += deltas[i];
+                if (matrix instanceof DirtyTrackingMatrix32F) {
+                    final DirtyTrackingMatrix32F m = (DirtyTrackingMatrix32F) matrix;
+                    for (int i = 0; i < deltas.length; ++i)
+                        m.markDirty(localRow(rows[i]), cols[i]);
+                }
+            } else {
+                for (int i = 0; i < deltas.length; ++i) {
+                    final long row = localRow(rows[i]);
+                    matrix.set(row, cols[i], matrix.get(row, cols[i]) + deltas[i]);
+                }
+            }
+        } finally {
+            matrix.unlock();
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private long localRow(final long row) {
+        final long localRow = row - rowOffset;
+        Preconditions.checkArgument(localRow >= 0 && localRow < matrix.rows(),
+                "Row %s is not held by this node, local rows are [%s, %s).", row, rowOffset, rowOffset + matrix.rows());
+        return localRow;
+    }
+}
@@ -0,0 +1,44 @@
+package de.tuberlin.pserver.runtime.state.matrix.rpc;
+
+/**
+ * Bulk access to a global state matrix held by other nodes. Each operation is sent as one
+ * message per owning node instead of a round trip per element. Proxies returned for
+ * matrices with global access implement this interface next to the matrix type:
+ *
+ * <pre>
+ *     final float[] w = ((RemoteMatrix32F) weights).getRows(featureIDs);
+ * </pre>
+ *
+ * Rows fetched via {@link #getRows} can be cached on the calling node. Updates through the
+ * same proxy invalidate the affected rows; updates by other nodes must be signaled with
+ * {@link #invalidateRows} or {@link #invalidateRowCache}.
+ */
+public interface RemoteMatrix32F {
+
+    // ---------------------------------------------------
+    // Remote Operations.
+    // ---------------------------------------------------
+
+    /** @return the given rows, row-major packed into one array. */
+    float[] getRows(final long[] rows);
+
+    /** @return the given columns, column-major packed into one array. */
+    float[] getCols(final long[] cols);
+
+    /** @return the sub-block starting at the given offset, row-major packed. */
+    float[] getBlock(final long rowOffset, final long colOffset, final long rows, final long cols);
+
+    /** Adds {@code deltas[i]} to the element ({@code rows[i]}, {@code cols[i]}). */
+    void scatterAdd(final long[] rows, final long[] cols, final float[] deltas);
+
+    // ---------------------------------------------------
+    // Local Row Cache.
+    // ---------------------------------------------------
+
+    /** Caches up to {@code maxRows} rows fetched via {@link #getRows}, 0 disables the cache. */
+    void setRowCacheSize(final int maxRows);
+
+    void invalidateRows(final long... rows);
+
+    void invalidateRowCache();
+}
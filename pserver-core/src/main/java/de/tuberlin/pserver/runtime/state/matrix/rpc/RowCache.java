@@ -0,0 +1,79 @@
+package de.tuberlin.pserver.runtime.state.matrix.rpc;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of matrix rows on the calling node. Rows fetched before an invalidation are
+ * not inserted afterwards (checked via a generation counter).
+ */
+final class RowCache {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final LinkedHashMap<Long, float[]> rows;
+
+    private int maxRows;
+
+    private long generation;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    RowCache() {
+        this.rows = new LinkedHashMap<Long, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, float[]> eldest) {
+                return size() > maxRows;
+            }
+        };
+    }
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    synchronized boolean isEnabled() { return maxRows > 0; }
+
+    synchronized void setMaxRows(final int maxRows) {
+        this.maxRows = maxRows;
+        if (maxRows == 0)
+            invalidateAll();
+    }
+
+    synchronized long getGeneration() { return generation; }
+
+    // Fills the cached rows into 'values' and returns the distinct missing rows.
+    synchronized long[] lookup(final long[] keys, final float[][] values) {
+        final TLongHashSet misses = new TLongHashSet();
+        for (int i = 0; i < keys.length; ++i) {
+            values[i] = rows.get(keys[i]);
+            if (values[i] == null)
+                misses.add(keys[i]);
+        }
+        return misses.toArray();
+    }
+
+    synchronized void put(final long[] keys, final float[][] values, final long fetchGeneration) {
+        if (fetchGeneration != generation)
+            return;
+        for (int i = 0; i < keys.length; ++i)
+            rows.put(keys[i], values[i]);
+    }
+
+    synchronized void invalidate(final long[] keys) {
+        ++generation;
+        for (final long key : keys)
+            rows.remove(key);
+    }
+
+    synchronized void invalidateAll() {
+        ++generation;
+        rows.clear();
+    }
+}
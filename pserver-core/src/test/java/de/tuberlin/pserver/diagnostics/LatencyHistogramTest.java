@@ -0,0 +1,94 @@
+package de.tuberlin.pserver.diagnostics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < LatencyHistogram.SUB_BUCKETS; ++value) {
+            histogram.reset();
+            histogram.record(value);
+            assertEquals(value, histogram.getPercentile(1.0));
+        }
+    }
+
+    @Test
+    public void testBucketBoundsHaveBoundedRelativeError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Random random = new Random(1);
+        for (int i = 0; i < 10000; ++i) {
+            // Values spread over all exponents.
+            final long value = random.nextLong() >>> (1 + random.nextInt(63));
+            histogram.reset();
+            histogram.record(value);
+            final long upper = histogram.getPercentile(1.0);
+            assertTrue(value + " > " + upper, upper >= value);
+            assertTrue(value + " -> " + upper, upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    public void testBucketBoundariesArePowersOfTwo() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int exponent = LatencyHistogram.SUB_BUCKET_BITS; exponent < 63; ++exponent) {
+            histogram.reset();
+            histogram.record(1L << exponent);
+            // The first sub-bucket of a power of two spans 1 / SUB_BUCKETS of it.
+            assertEquals((1L << exponent) + (1L << (exponent - LatencyHistogram.SUB_BUCKET_BITS)) - 1, histogram.getPercentile(1.0));
+        }
+    }
+
+    @Test
+    public void testLargestValueFitsTheLastBucket() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; ++value)
+            histogram.record(value);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 1e-9);
+        assertWithin(500, histogram.getPercentile(0.5));
+        assertWithin(990, histogram.getPercentile(0.99));
+        assertWithin(1000, histogram.getPercentile(1.0));
+        assertEquals(1, histogram.getPercentile(0.0));
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(histogram.getPercentile(0.5), snapshot.p50);
+        assertEquals(histogram.getPercentile(1.0), snapshot.max);
+    }
+
+    @Test
+    public void testEmptyAndNegative() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals(0, histogram.getMean(), 0);
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(1.0));
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue(expected + " -> " + actual, actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
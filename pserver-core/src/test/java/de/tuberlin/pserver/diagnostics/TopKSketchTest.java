@@ -0,0 +1,83 @@
+package de.tuberlin.pserver.diagnostics;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopKSketchTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int K = 5;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testFindsHeavyHitters() {
+        final TopKSketch<Integer> sketch = new TopKSketch<>(K);
+        final Map<Integer, Long> exact = new HashMap<>();
+        final Random random = new Random(1);
+        for (int i = 0; i < 100000; ++i) {
+            // Keys 0..K-1 take half of the stream, the rest is spread over 10000 keys.
+            final int key = random.nextBoolean() ? random.nextInt(K) : K + random.nextInt(10000);
+            sketch.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        final List<Map.Entry<Integer, Long>> top = sketch.getTopK();
+        assertEquals(K, top.size());
+        final Set<Integer> keys = new HashSet<>();
+        for (final Map.Entry<Integer, Long> e : top) {
+            keys.add(e.getKey());
+            // Estimates never undercount.
+            assertTrue(e.getValue() >= exact.get(e.getKey()));
+        }
+        for (int key = 0; key < K; ++key)
+            assertTrue("Missing heavy hitter " + key + " in " + top, keys.contains(key));
+        for (int i = 1; i < top.size(); ++i)
+            assertTrue(top.get(i - 1).getValue() >= top.get(i).getValue());
+    }
+
+    @Test
+    public void testIncrements() {
+        final TopKSketch<String> sketch = new TopKSketch<>(2);
+        sketch.add("a", 10);
+        sketch.add("b", 3);
+        sketch.add("c", 5);
+        sketch.add("b", 4);
+        final List<Map.Entry<String, Long>> top = sketch.getTopK();
+        assertEquals(2, top.size());
+        assertEquals("a", top.get(0).getKey());
+        assertEquals(10L, (long) top.get(0).getValue());
+        assertEquals("b", top.get(1).getKey());
+        assertEquals(7L, (long) top.get(1).getValue());
+    }
+
+    @Test
+    public void testReset() {
+        final TopKSketch<String> sketch = new TopKSketch<>(K);
+        sketch.add("a", 100);
+        sketch.reset();
+        assertTrue(sketch.getTopK().isEmpty());
+        sketch.add("b");
+        assertEquals(1, sketch.getTopK().size());
+        assertEquals(1L, (long) sketch.getTopK().get(0).getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyK() {
+        new TopKSketch<String>(0);
+    }
+}
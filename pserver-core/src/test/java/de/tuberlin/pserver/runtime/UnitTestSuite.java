@@ -0,0 +1,37 @@
+package de.tuberlin.pserver.runtime;
+
+import de.tuberlin.pserver.diagnostics.LatencyHistogramTest;
+import de.tuberlin.pserver.diagnostics.TopKSketchTest;
+import de.tuberlin.pserver.runtime.core.events.EventDispatcherTest;
+import de.tuberlin.pserver.runtime.core.network.NetFrameCompressionTest;
+import de.tuberlin.pserver.runtime.core.network.NetKryoByteBufEncoderTest;
+import de.tuberlin.pserver.runtime.core.remoteobj.MethodTableTest;
+import de.tuberlin.pserver.runtime.dht.ConsistentHashPlacementTest;
+import de.tuberlin.pserver.runtime.dht.types.SegmentDeltaTest;
+import de.tuberlin.pserver.runtime.parallel.LaneExecutorTest;
+import de.tuberlin.pserver.runtime.parallel.ReductionTreeTest;
+import de.tuberlin.pserver.runtime.state.matrix.PagedMatrix32FTest;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.MatrixDelta32FTest;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Unit tests of the runtime that do not need a cluster, see the IntegrationTestSuite of
+ * pserver-test for the tests running jobs.
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        NetFrameCompressionTest.class,
+        ConsistentHashPlacementTest.class,
+        SegmentDeltaTest.class,
+        LatencyHistogramTest.class,
+        TopKSketchTest.class,
+        PagedMatrix32FTest.class,
+        LaneExecutorTest.class,
+        ReductionTreeTest.class,
+        MatrixDelta32FTest.class,
+        MethodTableTest.class,
+        NetKryoByteBufEncoderTest.class,
+        EventDispatcherTest.class
+})
+public class UnitTestSuite {}
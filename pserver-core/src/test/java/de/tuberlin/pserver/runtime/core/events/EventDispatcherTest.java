@@ -0,0 +1,111 @@
+package de.tuberlin.pserver.runtime.core.events;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventDispatcherTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int NUM_SOURCES = 8;
+
+    private static final int NUM_EVENTS = 1000;
+
+    private static final String[] TYPES = { "event_a", "event_b", "event_c" };
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private EventDispatcher dispatcher;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @After
+    public void tearDown() {
+        dispatcher.deactivate();
+        dispatcher.joinDispatcherThread();
+    }
+
+    @Test
+    public void testEventsOfOneSourceStayInOrderAcrossTypes() throws Exception {
+        // Shards by the source of the event, as the NetManager does by peer.
+        dispatcher = new EventDispatcher(4, "dispatcher") {
+            @Override
+            protected Object shardKey(final Event event) { return ((SourceEvent) event).source; }
+        };
+        final Map<Integer, List<Integer>> received = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(NUM_SOURCES * NUM_EVENTS);
+        for (final String type : TYPES) {
+            dispatcher.addEventListener(type, event -> {
+                final SourceEvent e = (SourceEvent) event;
+                received.computeIfAbsent(e.source, s -> Collections.synchronizedList(new ArrayList<>())).add(e.sequenceNumber);
+                done.countDown();
+            });
+        }
+        for (int i = 0; i < NUM_EVENTS; ++i)
+            for (int source = 0; source < NUM_SOURCES; ++source)
+                dispatcher.dispatchEvent(new SourceEvent(TYPES[(i + source) % TYPES.length], source, i));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int source = 0; source < NUM_SOURCES; ++source) {
+            final List<Integer> sequence = received.get(source);
+            assertEquals(NUM_EVENTS, sequence.size());
+            for (int i = 0; i < NUM_EVENTS; ++i)
+                assertEquals(i, (int) sequence.get(i));
+        }
+    }
+
+    @Test
+    public void testEventsOfOneOrderingKeyStayInOrder() throws Exception {
+        dispatcher = new EventDispatcher(4, "dispatcher");
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(NUM_EVENTS);
+        for (final String type : TYPES) {
+            dispatcher.addEventListener(type, event -> {
+                received.add(((SourceEvent) event).sequenceNumber);
+                done.countDown();
+            });
+        }
+        final Object key = new Object();
+        for (int i = 0; i < NUM_EVENTS; ++i) {
+            final Event event = new SourceEvent(TYPES[i % TYPES.length], 0, i);
+            event.orderingKey = key;
+            dispatcher.dispatchEvent(event);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < NUM_EVENTS; ++i)
+            assertEquals(i, (int) received.get(i));
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class SourceEvent extends Event {
+
+        final int source;
+
+        final int sequenceNumber;
+
+        SourceEvent(final String type, final int source, final int sequenceNumber) {
+            super(type);
+            this.source = source;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
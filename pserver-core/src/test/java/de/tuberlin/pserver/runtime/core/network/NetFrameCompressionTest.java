@@ -0,0 +1,179 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetFrameCompressionTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int MIN_FRAME_BYTES = 1024;
+
+    private static final double MAX_RATIO = 0.8;
+
+    private static final int SAMPLE_INTERVAL = 4;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private EmbeddedChannel sender;
+
+    private EmbeddedChannel receiver;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @After
+    public void tearDown() {
+        close(sender);
+        close(receiver);
+    }
+
+    @Test
+    public void testCompressedFrameRoundTrip() throws Exception {
+        final NetFrameCompression out = connect(true, true);
+        final float[] payload = new float[4096]; // zeros compress well
+        payload[7] = 1f;
+
+        final ByteBuf frame = send(new NetEvent("test", payload));
+        assertTrue(isCompressed(frame));
+        final float[] received = (float[]) ((NetEvent) receive(frame)).getPayload();
+
+        assertArrayEquals(payload, received, 0f);
+        assertEquals(1, out.getCompressedFramesOut());
+        assertTrue(out.getWireBytesOut() < out.getRawBytesOut() * MAX_RATIO);
+        assertEquals(1, receiverCompression().getCompressedFramesIn());
+        assertEquals(out.getRawBytesOut(), receiverCompression().getRawBytesIn());
+    }
+
+    @Test
+    public void testSmallFramesAreNotCompressed() throws Exception {
+        final NetFrameCompression out = connect(true, true);
+        final ByteBuf frame = send(new NetEvent("test", new float[16]));
+        assertFalse(isCompressed(frame));
+        receive(frame);
+        assertEquals(0, out.getCompressedFramesOut());
+        assertEquals(out.getRawBytesOut(), out.getWireBytesOut());
+    }
+
+    @Test
+    public void testIncompressibleFramesFallBackToRaw() throws Exception {
+        final NetFrameCompression out = connect(true, true);
+        final Random random = new Random(42);
+        final float[] payload = new float[4096];
+        for (int i = 0; i < payload.length; ++i)
+            payload[i] = random.nextFloat();
+
+        // The first frame is sampled and sent raw, the next SAMPLE_INTERVAL frames are skipped.
+        for (int i = 0; i <= SAMPLE_INTERVAL; ++i) {
+            final ByteBuf frame = send(new NetEvent("test", payload));
+            assertFalse(isCompressed(frame));
+            assertArrayEquals(payload, (float[]) ((NetEvent) receive(frame)).getPayload(), 0f);
+        }
+        assertEquals(0, out.getCompressedFramesOut());
+        assertEquals(out.getRawBytesOut(), out.getWireBytesOut());
+
+        // Other event types are sampled separately.
+        final ByteBuf frame = send(new NetEvent("other", new float[4096]));
+        assertTrue(isCompressed(frame));
+        receive(frame);
+    }
+
+    @Test
+    public void testNoCompressionWithoutPeerSupport() throws Exception {
+        final NetFrameCompression out = connect(true, false);
+        assertFalse(out.isNegotiated());
+        final ByteBuf frame = send(new NetEvent("test", new float[4096]));
+        assertFalse(isCompressed(frame));
+        receive(frame);
+        assertEquals(0, out.getCompressedFramesOut());
+    }
+
+    @Test
+    public void testNoCompressionWhenDisabledLocally() throws Exception {
+        final NetFrameCompression out = connect(false, true);
+        assertFalse(out.isNegotiated());
+        final ByteBuf frame = send(new NetEvent("test", new float[4096]));
+        assertFalse(isCompressed(frame));
+        receive(frame);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompressedFrameOnConnectionWithoutCompression() throws Throwable {
+        connect(true, true);
+        final ByteBuf frame = send(new NetEvent("test", new float[4096]));
+        assertTrue(isCompressed(frame));
+        final EmbeddedChannel plain = new EmbeddedChannel(new NetKryoByteBufDecoder());
+        try {
+            plain.writeInbound(frame);
+            plain.finish();
+        } catch (DecoderException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    // Sets up the sending side of a connection whose peer announced the given compression support.
+    private NetFrameCompression connect(final boolean enabled, final boolean peerSupportsCompression) throws Exception {
+        final NetFrameCompression out = new NetFrameCompression(enabled, MIN_FRAME_BYTES, MAX_RATIO, SAMPLE_INTERVAL);
+        sender = new EmbeddedChannel(new NetKryoByteBufEncoder(out), new NetKryoByteBufDecoder(out));
+        receiver = new EmbeddedChannel(new NetKryoByteBufDecoder(
+                new NetFrameCompression(peerSupportsCompression, MIN_FRAME_BYTES, MAX_RATIO, SAMPLE_INTERVAL)));
+        // The handshake of the peer, received by the sending side.
+        final EmbeddedChannel peer = new EmbeddedChannel(new NetKryoByteBufEncoder());
+        final MachineDescriptor machine = new MachineDescriptor(UUID.randomUUID(), InetAddress.getLoopbackAddress(), 0, "localhost");
+        peer.writeOutbound(new NetHandshake(machine, 0, new String[0], peerSupportsCompression));
+        sender.writeInbound((Object) peer.readOutbound());
+        assertTrue(sender.readInbound() instanceof NetHandshake);
+        close(peer);
+        return out;
+    }
+
+    private ByteBuf send(final Object msg) {
+        sender.writeOutbound(msg);
+        return (ByteBuf) sender.readOutbound();
+    }
+
+    private Object receive(final ByteBuf frame) {
+        receiver.writeInbound(frame);
+        return receiver.readInbound();
+    }
+
+    private NetFrameCompression receiverCompression() {
+        return receiver.pipeline().get(NetKryoByteBufDecoder.class).getCompression();
+    }
+
+    private static void close(final EmbeddedChannel channel) {
+        if (channel == null)
+            return;
+        channel.finish();
+        for (Object msg; (msg = channel.readInbound()) != null; )
+            ReferenceCountUtil.release(msg);
+        for (Object msg; (msg = channel.readOutbound()) != null; )
+            ReferenceCountUtil.release(msg);
+    }
+
+    private static boolean isCompressed(final ByteBuf frame) {
+        return (frame.getInt(frame.readerIndex()) & NetFrameCompression.COMPRESSED_FLAG) != 0;
+    }
+}
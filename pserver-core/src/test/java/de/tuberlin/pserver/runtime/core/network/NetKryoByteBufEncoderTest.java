@@ -0,0 +1,67 @@
+package de.tuberlin.pserver.runtime.core.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetKryoByteBufEncoderTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int FLUSH_BYTES = 1024;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private EmbeddedChannel channel;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @After
+    public void tearDown() {
+        channel.finish();
+        for (Object msg; (msg = channel.readOutbound()) != null; )
+            ReferenceCountUtil.release(msg);
+    }
+
+    @Test
+    public void testFlushOnceFlushBytesAreEncoded() {
+        channel = new EmbeddedChannel(new NetKryoByteBufEncoder(null, FLUSH_BYTES));
+        // About 400 bytes per frame, the third frame crosses the threshold.
+        channel.write(new NetEvent("test", new float[100]));
+        channel.write(new NetEvent("test", new float[100]));
+        assertTrue(channel.outboundMessages().isEmpty());
+        channel.write(new NetEvent("test", new float[100]));
+        assertEquals(3, channel.outboundMessages().size());
+        long bytes = 0;
+        for (final Object frame : channel.outboundMessages())
+            bytes += ((ByteBuf) frame).readableBytes();
+        assertTrue(bytes >= FLUSH_BYTES);
+
+        // The count starts over after the flush.
+        channel.write(new NetEvent("test", new float[100]));
+        assertEquals(3, channel.outboundMessages().size());
+        channel.flush();
+        assertEquals(4, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void testNoThresholdOnlyExplicitFlushes() {
+        channel = new EmbeddedChannel(new NetKryoByteBufEncoder(null, 0));
+        for (int i = 0; i < 8; ++i)
+            channel.write(new NetEvent("test", new float[1000]));
+        assertTrue(channel.outboundMessages().isEmpty());
+        channel.flush();
+        assertEquals(8, channel.outboundMessages().size());
+    }
+}
@@ -0,0 +1,55 @@
+package de.tuberlin.pserver.runtime.core.remoteobj;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MethodTableTest {
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testOverloadsWithSameSimpleTypeNames() throws Exception {
+        final MethodTable table = MethodTable.of(Overloads.class);
+        final Method utilDate = Overloads.class.getMethod("at", java.util.Date.class);
+        final Method sqlDate = Overloads.class.getMethod("at", java.sql.Date.class);
+        assertNotEquals(table.getMethodID(utilDate), table.getMethodID(sqlDate));
+        assertEquals(utilDate, table.getMethod(table.getMethodID(utilDate)));
+        assertEquals(sqlDate, table.getMethod(table.getMethodID(sqlDate)));
+    }
+
+    @Test
+    public void testCovariantOverrideKeepsTheDeclaredMethod() throws Exception {
+        final MethodTable table = MethodTable.of(Covariant.class);
+        final Method declared = Covariant.class.getMethod("get");
+        assertEquals(declared, table.getMethod(table.getMethodID(declared)));
+        assertEquals(table.getMethodID(declared), MethodTable.computeMethodID(Base.class.getMethod("get")));
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public interface Overloads {
+
+        void at(final java.util.Date date);
+
+        void at(final java.sql.Date date);
+    }
+
+    public interface Base {
+
+        Object get();
+    }
+
+    public static class Covariant implements Base {
+
+        @Override
+        public String get() { return ""; }
+    }
+}
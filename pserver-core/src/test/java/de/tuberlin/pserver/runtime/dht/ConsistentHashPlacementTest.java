@@ -0,0 +1,142 @@
+package de.tuberlin.pserver.runtime.dht;
+
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashPlacementTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int NUM_MACHINES = 8;
+
+    private static final int NUM_KEYS = 80000;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testKeysAreSpreadEvenly() {
+        final Random random = new Random(1);
+        final List<MachineDescriptor> machines = machines(random, NUM_MACHINES);
+        final ConsistentHashPlacement placement = new ConsistentHashPlacement();
+        placement.setMachines(machines);
+
+        final Map<MachineDescriptor, Integer> load = new HashMap<>();
+        for (final UUID key : keys(random, NUM_KEYS))
+            load.merge(placement.select(key), 1, Integer::sum);
+
+        assertEquals(NUM_MACHINES, load.size());
+        final double mean = (double) NUM_KEYS / NUM_MACHINES;
+        for (final int numKeys : load.values())
+            assertTrue("Unbalanced load: " + load.values(), Math.abs(numKeys - mean) < 0.25 * mean);
+    }
+
+    @Test
+    public void testPlacementIsIndependentOfMachineOrder() {
+        final Random random = new Random(2);
+        final List<MachineDescriptor> machines = machines(random, NUM_MACHINES);
+        final ConsistentHashPlacement a = new ConsistentHashPlacement();
+        a.setMachines(machines);
+        final List<MachineDescriptor> shuffled = new ArrayList<>(machines);
+        Collections.shuffle(shuffled, random);
+        final ConsistentHashPlacement b = new ConsistentHashPlacement();
+        b.setMachines(shuffled);
+
+        for (final UUID key : keys(random, 1000))
+            assertSame(a.select(key), b.select(key));
+    }
+
+    @Test
+    public void testAddingANodeOnlyMovesKeysToIt() {
+        final Random random = new Random(3);
+        final List<MachineDescriptor> machines = machines(random, NUM_MACHINES);
+        final List<UUID> keys = keys(random, NUM_KEYS);
+        final ConsistentHashPlacement placement = new ConsistentHashPlacement();
+        placement.setMachines(machines);
+        final Map<UUID, MachineDescriptor> before = new HashMap<>();
+        for (final UUID key : keys)
+            before.put(key, placement.select(key));
+
+        final MachineDescriptor added = machine(random);
+        machines.add(added);
+        placement.setMachines(machines);
+
+        int numMoved = 0;
+        for (final UUID key : keys) {
+            final MachineDescriptor md = placement.select(key);
+            if (md != before.get(key)) {
+                assertSame(added, md);
+                ++numMoved;
+            }
+        }
+        // Ideally 1/9 of the keys.
+        final double expected = (double) NUM_KEYS / (NUM_MACHINES + 1);
+        assertTrue("Moved " + numMoved + " keys.", numMoved > 0.75 * expected && numMoved < 1.25 * expected);
+    }
+
+    @Test
+    public void testRemovingANodeOnlyMovesItsKeys() {
+        final Random random = new Random(4);
+        final List<MachineDescriptor> machines = machines(random, NUM_MACHINES);
+        final List<UUID> keys = keys(random, NUM_KEYS);
+        final ConsistentHashPlacement placement = new ConsistentHashPlacement();
+        placement.setMachines(machines);
+        final Map<UUID, MachineDescriptor> before = new HashMap<>();
+        for (final UUID key : keys)
+            before.put(key, placement.select(key));
+
+        final MachineDescriptor removed = machines.remove(3);
+        placement.setMachines(machines);
+
+        for (final UUID key : keys) {
+            final MachineDescriptor md = placement.select(key);
+            if (before.get(key) == removed)
+                assertTrue(machines.contains(md));
+            else
+                assertSame(before.get(key), md);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSelectWithoutMachines() {
+        new ConsistentHashPlacement().select(UUID.randomUUID());
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static List<MachineDescriptor> machines(final Random random, final int numMachines) {
+        final List<MachineDescriptor> machines = new ArrayList<>();
+        for (int i = 0; i < numMachines; ++i)
+            machines.add(machine(random));
+        return machines;
+    }
+
+    private static MachineDescriptor machine(final Random random) {
+        return new MachineDescriptor(new UUID(random.nextLong(), random.nextLong()), InetAddress.getLoopbackAddress(), 0, "localhost");
+    }
+
+    private static List<UUID> keys(final Random random, final int numKeys) {
+        final List<UUID> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; ++i)
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        return keys;
+    }
+}
@@ -0,0 +1,148 @@
+package de.tuberlin.pserver.runtime.dht.types;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentDeltaTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int SEGMENT_SIZE = 256;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testDiffOfEqualSegmentsIsEmpty() {
+        final byte[] base = random(1);
+        final SegmentDelta delta = SegmentDelta.diff(segment(base), segment(base.clone()));
+        assertTrue(delta.isEmpty());
+        assertEquals(0, delta.payloadSize());
+    }
+
+    @Test
+    public void testDiffAppliedToBaseGivesUpdated() {
+        final byte[] base = random(2);
+        final byte[] updated = base.clone();
+        // A first and last byte, two runs close enough to be merged, and one far apart.
+        updated[0] ^= 1;
+        updated[40] ^= 1;
+        updated[45] ^= 1;
+        updated[100] ^= 1;
+        updated[SEGMENT_SIZE - 1] ^= 1;
+
+        final SegmentDelta delta = SegmentDelta.diff(segment(base), segment(updated));
+        assertEquals(SegmentDelta.Mode.OVERWRITE, delta.mode);
+        assertArrayEquals(new int[] { 0, 40, 100, SEGMENT_SIZE - 1 }, delta.offsets);
+        assertArrayEquals(new int[] { 1, 6, 1, 1 }, delta.lengths);
+
+        final byte[] target = base.clone();
+        delta.apply(ByteBuffer.wrap(target));
+        assertArrayEquals(updated, target);
+
+        // The runs carry the new bytes, applying the delta again changes nothing.
+        delta.apply(ByteBuffer.wrap(target));
+        assertArrayEquals(updated, target);
+    }
+
+    @Test
+    public void testOverwrite() {
+        final byte[] target = new byte[SEGMENT_SIZE];
+        SegmentDelta.overwrite(0, new int[] { 3, 10 }, new int[] { 2, 1 }, new byte[] { 1, 2, 3 }).apply(ByteBuffer.wrap(target));
+        final byte[] expected = new byte[SEGMENT_SIZE];
+        expected[3] = 1;
+        expected[4] = 2;
+        expected[10] = 3;
+        assertArrayEquals(expected, target);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverwriteRejectsDataOfWrongSize() {
+        SegmentDelta.overwrite(0, new int[] { 0 }, new int[] { 4 }, new byte[3]);
+    }
+
+    @Test
+    public void testSetFloats() {
+        final ByteBuffer target = ByteBuffer.allocate(SEGMENT_SIZE);
+        target.putFloat(4 * Float.BYTES, 7f);
+        SegmentDelta.set(0, new int[] { 1, 4 }, new float[] { 1.5f, -2f }).apply(target);
+        assertEquals(1.5f, target.getFloat(Float.BYTES), 0f);
+        assertEquals(-2f, target.getFloat(4 * Float.BYTES), 0f);
+        assertEquals(0f, target.getFloat(0), 0f);
+    }
+
+    @Test
+    public void testAccumulateAddsOnEveryApply() {
+        final ByteBuffer target = ByteBuffer.allocate(SEGMENT_SIZE);
+        target.putFloat(2 * Float.BYTES, 1f);
+        final SegmentDelta delta = SegmentDelta.accumulate(0, new int[] { 2, 5 }, new float[] { 0.5f, 3f });
+        assertEquals(SegmentDelta.Mode.ADD_FLOAT, delta.mode);
+        assertEquals(2 * (Integer.BYTES + Float.BYTES), delta.payloadSize());
+
+        delta.apply(target);
+        delta.apply(target);
+        assertEquals(2f, target.getFloat(2 * Float.BYTES), 0f);
+        assertEquals(6f, target.getFloat(5 * Float.BYTES), 0f);
+        assertEquals(0f, target.getFloat(0), 0f);
+    }
+
+    @Test
+    public void testAccumulatesCommute() {
+        final SegmentDelta a = SegmentDelta.accumulate(0, new int[] { 0, 1 }, new float[] { 1f, 2f });
+        final SegmentDelta b = SegmentDelta.accumulate(0, new int[] { 1 }, new float[] { 4f });
+        final byte[] ab = new byte[SEGMENT_SIZE], ba = new byte[SEGMENT_SIZE];
+        a.apply(ByteBuffer.wrap(ab));
+        b.apply(ByteBuffer.wrap(ab));
+        b.apply(ByteBuffer.wrap(ba));
+        a.apply(ByteBuffer.wrap(ba));
+        assertTrue(Arrays.equals(ab, ba));
+        assertEquals(6f, ByteBuffer.wrap(ab).getFloat(Float.BYTES), 0f);
+    }
+
+    @Test
+    public void testCopyOfAViewIsDetached() {
+        final OffHeapDHTObject owner = new OffHeapDHTObject(SEGMENT_SIZE, true);
+        owner.getMemory().put(random(4));
+        final AbstractBufferedDHTObject.Segment view = new AbstractBufferedDHTObject.Segment(0, owner.getMemory(), owner);
+        final AbstractBufferedDHTObject.Segment copy = view.copy();
+        assertTrue(!copy.isView());
+        assertArrayEquals(random(4), copy.data);
+        owner.getMemory().put(0, (byte) (copy.data[0] + 1));
+        owner.free();
+        assertArrayEquals(random(4), copy.data);
+        final AbstractBufferedDHTObject.Segment heap = segment(random(5));
+        assertTrue(heap.copy() == heap);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCopyOfAFreedView() {
+        final OffHeapDHTObject owner = new OffHeapDHTObject(SEGMENT_SIZE, true);
+        final AbstractBufferedDHTObject.Segment view = new AbstractBufferedDHTObject.Segment(0, owner.getMemory(), owner);
+        owner.free();
+        view.copy();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static AbstractBufferedDHTObject.Segment segment(final byte[] data) {
+        return new AbstractBufferedDHTObject.Segment(0, data);
+    }
+
+    private static byte[] random(final long seed) {
+        final byte[] data = new byte[SEGMENT_SIZE];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,128 @@
+package de.tuberlin.pserver.runtime.parallel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LaneExecutorTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int NUM_THREADS = 4;
+
+    private static final int MAX_PENDING_TASKS = 8;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private LaneExecutor executor;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Before
+    public void setUp() {
+        executor = new LaneExecutor("test", NUM_THREADS, MAX_PENDING_TASKS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.deactivate();
+    }
+
+    @Test
+    public void testSerialLanesKeepSubmissionOrder() throws Exception {
+        final int numLanes = 3, numTasks = 1000;
+        final List<List<Integer>> order = new ArrayList<>();
+        final List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int lane = 0; lane < numLanes; ++lane)
+            order.add(Collections.synchronizedList(new ArrayList<>()));
+        for (int i = 0; i < numTasks; ++i) {
+            for (int lane = 0; lane < numLanes; ++lane) {
+                final List<Integer> laneOrder = order.get(lane);
+                final int task = i;
+                done.add(executor.submitSerial(lane, () -> {
+                    laneOrder.add(task);
+                    return null;
+                }));
+            }
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[done.size()])).get(10, TimeUnit.SECONDS);
+        for (final List<Integer> laneOrder : order) {
+            assertEquals(numTasks, laneOrder.size());
+            for (int i = 0; i < numTasks; ++i)
+                assertEquals(i, (int) laneOrder.get(i));
+        }
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    @Test
+    public void testFailuresCompleteTheFuture() throws Exception {
+        final CompletableFuture<Object> failed = executor.submitSerial("lane", () -> { throw new IllegalStateException(); });
+        final CompletableFuture<Integer> next = executor.submitSerial("lane", () -> 1);
+        assertEquals(1, (int) next.get(10, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testSubmissionsBeyondTheBoundDoNotBlock() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<CompletableFuture<Void>> blocked = new ArrayList<>();
+        // Submitted from this non-worker thread, twice the bound must be accepted without blocking.
+        for (int i = 0; i < 2 * MAX_PENDING_TASKS; ++i) {
+            blocked.add(executor.submitParallel(() -> {
+                release.await();
+                return null;
+            }));
+        }
+        assertEquals(2 * MAX_PENDING_TASKS, executor.getPendingTasks());
+
+        final CountDownLatch waited = new CountDownLatch(1);
+        final Thread user = new Thread(() -> {
+            try {
+                executor.awaitCapacity();
+                waited.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        user.start();
+        assertFalse(waited.await(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(waited.await(10, TimeUnit.SECONDS));
+        CompletableFuture.allOf(blocked.toArray(new CompletableFuture[blocked.size()])).get(10, TimeUnit.SECONDS);
+        assertEquals(0, executor.getPendingTasks());
+        // Returns at once below the bound.
+        executor.awaitCapacity();
+        user.join();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWorkersMustNotWaitForCapacity() throws Throwable {
+        try {
+            executor.submitParallel(() -> {
+                executor.awaitCapacity();
+                return null;
+            }).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.tuberlin.pserver.runtime.parallel;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReductionTreeTest {
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testFanoutOneIsAChain() {
+        // The others follow the root in cyclic node ID order.
+        final ReductionTree chain = new ReductionTree(new int[] { 3, 0, 4, 1, 2 }, 2, 1);
+        assertEquals(5, chain.size());
+        assertEquals(-1, chain.parent(2));
+        assertArrayEquals(new int[] { 3 }, chain.children(2));
+        assertEquals(2, chain.parent(3));
+        assertArrayEquals(new int[] { 4 }, chain.children(3));
+        assertEquals(3, chain.parent(4));
+        assertArrayEquals(new int[] { 0 }, chain.children(4));
+        assertEquals(4, chain.parent(0));
+        assertArrayEquals(new int[] { 1 }, chain.children(0));
+        assertEquals(0, chain.parent(1));
+        assertArrayEquals(new int[0], chain.children(1));
+    }
+
+    @Test
+    public void testKaryTree() {
+        final ReductionTree tree = new ReductionTree(new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, 0, 3);
+        assertArrayEquals(new int[] { 1, 2, 3 }, tree.children(0));
+        assertArrayEquals(new int[] { 4, 5, 6 }, tree.children(1));
+        assertArrayEquals(new int[] { 7 }, tree.children(2));
+        assertArrayEquals(new int[0], tree.children(3));
+        assertEquals(-1, tree.parent(0));
+        assertEquals(0, tree.parent(3));
+        assertEquals(1, tree.parent(6));
+        assertEquals(2, tree.parent(7));
+    }
+
+    @Test
+    public void testParentsAndChildrenAgree() {
+        final int[] group = new int[] { 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+        for (int fanout = 1; fanout <= group.length; ++fanout) {
+            for (final int root : group) {
+                final ReductionTree tree = new ReductionTree(group, root, fanout);
+                final Set<Integer> reached = new HashSet<>();
+                reached.add(root);
+                for (final int node : group) {
+                    final int[] children = tree.children(node);
+                    assertTrue(children.length <= fanout);
+                    for (final int child : children) {
+                        assertEquals(node, tree.parent(child));
+                        assertTrue("Node " + child + " has two parents.", reached.add(child));
+                    }
+                }
+                assertEquals(group.length, reached.size());
+            }
+        }
+    }
+
+    @Test
+    public void testRootOutsideOfTheGroup() {
+        final ReductionTree tree = new ReductionTree(new int[] { 1, 2 }, 0, 2);
+        assertEquals(3, tree.size());
+        assertTrue(tree.contains(0));
+        assertArrayEquals(new int[] { 1, 2 }, tree.children(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNode() {
+        new ReductionTree(new int[] { 0, 1 }, 0, 2).parent(5);
+    }
+}
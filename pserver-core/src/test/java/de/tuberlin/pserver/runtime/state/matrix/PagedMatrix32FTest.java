@@ -0,0 +1,156 @@
+package de.tuberlin.pserver.runtime.state.matrix;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import de.tuberlin.pserver.runtime.core.serializer.KryoFactory;
+import de.tuberlin.pserver.runtime.memory.PagePool;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PagedMatrix32FTest {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int PAGE_SIZE = 1024; // 256 floats.
+
+    private static final int NUM_PAGES = 4;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private PagePool pool;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Before
+    public void setUp() {
+        pool = new PagePool(PAGE_SIZE, NUM_PAGES * PAGE_SIZE, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    @After
+    public void tearDown() {
+        pool.deactivate();
+        assertEquals(0, pool.getNumOpenFiles());
+    }
+
+    @Test
+    public void testSpillAndReload() {
+        // 16 pages in a pool of 4.
+        final PagedMatrix32F m = new PagedMatrix32F(pool, 64, 64);
+        for (long row = 0; row < m.rows(); ++row) {
+            for (long col = 0; col < m.cols(); ++col)
+                m.set(row, col, row * 64 + col);
+        }
+        assertTrue(pool.getNumSpills() >= 12);
+        assertTrue(pool.getNumResidentPages() <= NUM_PAGES);
+        for (long row = 0; row < m.rows(); ++row) {
+            for (long col = 0; col < m.cols(); ++col)
+                assertEquals(row * 64 + col, m.get(row, col), 0f);
+        }
+        assertTrue(pool.getNumReloads() > 0);
+        m.free();
+        assertEquals(0, pool.getNumResidentPages());
+    }
+
+    @Test
+    public void testDerivedResultsShareThePool() {
+        final PagedMatrix32F m = new PagedMatrix32F(pool, 32, 32);
+        m.assign(2f);
+        final Matrix32F sum = m.add(m);
+        assertTrue(sum instanceof PagedMatrix32F);
+        assertEquals(4f * 32 * 32, sum.sum(), 0f);
+        assertEquals(2, pool.getNumOpenFiles());
+        ((PagedMatrix32F) sum).free();
+        m.free();
+        assertEquals(0, pool.getNumOpenFiles());
+    }
+
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        final List<PagedMatrix32F> matrices = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            final PagedMatrix32F m = new PagedMatrix32F(pool, 32, 32);
+            m.assign(i + 1);
+            matrices.add(m);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(matrices.size());
+        try {
+            final List<Future<Float>> sums = new ArrayList<>();
+            for (int round = 0; round < 10; ++round) {
+                for (final PagedMatrix32F m : matrices)
+                    sums.add(executor.submit((Callable<Float>) m::sum));
+            }
+            for (int i = 0; i < sums.size(); ++i)
+                assertEquals((i % matrices.size() + 1) * 32f * 32, sums.get(i).get(), 0f);
+        } finally {
+            executor.shutdown();
+        }
+        for (final PagedMatrix32F m : matrices)
+            m.free();
+    }
+
+    @Test
+    public void testInvert() {
+        final PagedMatrix32F m = new PagedMatrix32F(pool, 3, 3);
+        final float[] values = { 4, 7, 2, 3, 6, 1, 2, 5, 3 };
+        m.write(0, values, 0, values.length);
+        final Matrix32F inverse = m.invert();
+        final Matrix32F identity = m.mul(inverse, new DenseMatrix32F(3, 3));
+        for (long row = 0; row < 3; ++row) {
+            for (long col = 0; col < 3; ++col)
+                assertEquals(row == col ? 1f : 0f, identity.get(row, col), 1e-5f);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvertSingular() {
+        new PagedMatrix32F(pool, 2, 2).invert();
+    }
+
+    @Test
+    public void testSerializedAsDense() {
+        final PagedMatrix32F m = new PagedMatrix32F(pool, 16, 16);
+        for (long i = 0; i < 16 * 16; ++i)
+            m.set(i / 16, i % 16, i);
+
+        final Kryo kryo = KryoFactory.INSTANCE.create();
+        final Output output = new Output(4096, -1);
+        kryo.writeClassAndObject(output, m);
+        final Object kryoCopy = kryo.readClassAndObject(new Input(output.toBytes()));
+        assertDenseCopy(m, kryoCopy);
+        m.free();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void assertDenseCopy(final PagedMatrix32F expected, final Object copy) {
+        assertEquals(DenseMatrix32F.class, copy.getClass());
+        final DenseMatrix32F dense = (DenseMatrix32F) copy;
+        assertEquals(expected.rows(), dense.rows());
+        assertEquals(expected.cols(), dense.cols());
+        for (long i = 0; i < expected.rows() * expected.cols(); ++i)
+            assertEquals(expected.get(i), dense.data[(int) i], 0f);
+    }
+}
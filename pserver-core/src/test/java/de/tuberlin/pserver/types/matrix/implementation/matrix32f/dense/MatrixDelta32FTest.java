@@ -0,0 +1,173 @@
+package de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense;
+
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.SparseMatrix32F;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MatrixDelta32FTest {
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    @Test
+    public void testNewMatrixIsAllDirty() {
+        // 3x5 with blocks of 4 elements, the last block holds 3.
+        final DirtyTrackingMatrix32F m = new DirtyTrackingMatrix32F(3, 5, new float[15], 4);
+        assertEquals(4, m.numBlocks());
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, m.takeDirtyBlocks());
+        assertEquals(0, m.numDirtyBlocks());
+        assertArrayEquals(new int[0], m.takeDirtyBlocks());
+    }
+
+    @Test
+    public void testTakeDirtyBlocks() {
+        final DirtyTrackingMatrix32F m = new DirtyTrackingMatrix32F(3, 5, new float[15], 4);
+        m.clearDirty();
+        m.set(0, 1, 1f);    // element 1, block 0
+        m.set(0, 2, 1f);    // element 2, block 0
+        m.set(2, 4, 1f);    // element 14, block 3
+        assertTrue(m.isDirty(0));
+        assertTrue(!m.isDirty(1));
+        assertEquals(2, m.numDirtyBlocks());
+        assertArrayEquals(new int[] { 0, 3 }, m.takeDirtyBlocks());
+        assertEquals(0, m.numDirtyBlocks());
+    }
+
+    @Test
+    public void testManyBlocksSpanSeveralWords() {
+        final DirtyTrackingMatrix32F m = new DirtyTrackingMatrix32F(200, 1, new float[200], 1);
+        m.clearDirty();
+        m.set(0, 0, 1f);
+        m.set(63, 0, 1f);
+        m.set(64, 0, 1f);
+        m.set(199, 0, 1f);
+        assertArrayEquals(new int[] { 0, 63, 64, 199 }, m.takeDirtyBlocks());
+    }
+
+    @Test
+    public void testApplyRoundTripWithPartialLastBlock() {
+        final DirtyTrackingMatrix32F src = new DirtyTrackingMatrix32F(3, 5, values(15, 0f), 4);
+        src.clearDirty();
+        src.set(0, 0, 100f);
+        src.set(2, 4, 200f);
+
+        final MatrixDelta32F delta = MatrixDelta32F.encode(src);
+        assertArrayEquals(new int[] { 0, 3 }, delta.blocks);
+        // A full block of 4 and the last block of 3.
+        assertEquals(7, delta.values.length);
+        assertEquals(2 * Integer.BYTES + 7 * Float.BYTES, delta.payloadSize());
+
+        final DenseMatrix32F dst = new DenseMatrix32F(3, 5, values(15, 1000f));
+        delta.apply(dst);
+        for (int i = 0; i < 15; ++i)
+            assertEquals((i < 4 || i >= 12) ? src.data[i] : 1000f + i, dst.data[i], 0f);
+
+        // Applying twice changes nothing, applying to a non-dense target writes the same.
+        delta.apply(dst);
+        final SparseMatrix32F sparse = new SparseMatrix32F(3, 5);
+        delta.apply(sparse);
+        assertEquals(100f, sparse.get(0, 0), 0f);
+        assertEquals(200f, sparse.get(2, 4), 0f);
+        assertEquals(src.data[13], sparse.get(2, 3), 0f);
+        assertEquals(0f, sparse.get(1, 0), 0f);
+    }
+
+    @Test
+    public void testApplyDoesNotMarkTheTarget() {
+        final DirtyTrackingMatrix32F src = new DirtyTrackingMatrix32F(2, 3, values(6, 0f), 0);
+        final DirtyTrackingMatrix32F dst = new DirtyTrackingMatrix32F(2, 3, new float[6], 0);
+        dst.clearDirty();
+        MatrixDelta32F.encode(src).apply(dst);
+        assertArrayEquals(src.data, dst.data, 0f);
+        assertEquals(0, dst.numDirtyBlocks());
+    }
+
+    @Test
+    public void testAddTo() {
+        final DirtyTrackingMatrix32F increments = new DirtyTrackingMatrix32F(2, 5, new float[10], 3);
+        increments.clearDirty();
+        increments.set(1, 4, 2f);   // element 9, block 3 holds just it
+        increments.set(0, 1, 1f);   // element 1, block 0
+
+        final MatrixDelta32F delta = MatrixDelta32F.encode(increments);
+        final DenseMatrix32F dst = new DenseMatrix32F(2, 5, values(10, 10f));
+        delta.addTo(dst);
+        delta.addTo(dst);
+        for (int i = 0; i < 10; ++i)
+            assertEquals(10f + i + (i == 9 ? 4f : i == 1 ? 2f : 0f), dst.data[i], 0f);
+    }
+
+    @Test
+    public void testEmptyDelta() {
+        final DirtyTrackingMatrix32F m = new DirtyTrackingMatrix32F(2, 2, values(4, 0f), 0);
+        m.clearDirty();
+        final MatrixDelta32F delta = MatrixDelta32F.encode(m);
+        assertTrue(delta.isEmpty());
+        assertEquals(0, delta.payloadSize());
+        final DenseMatrix32F dst = new DenseMatrix32F(2, 2, values(4, 5f));
+        delta.apply(dst);
+        delta.addTo(dst);
+        assertArrayEquals(values(4, 5f), dst.data, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShapeMismatch() {
+        MatrixDelta32F.encode(new DirtyTrackingMatrix32F(2, 2)).apply(new DenseMatrix32F(2, 3));
+    }
+
+    @Test
+    public void testDenseArithmeticMarksDirtyResults() {
+        final DenseMatrix32F a = new DenseMatrix32F(2, 3, values(6, 10f));
+        final DirtyTrackingMatrix32F b = new DirtyTrackingMatrix32F(2, 3, values(6, 0f), 0);
+        final DirtyTrackingMatrix32F c = new DirtyTrackingMatrix32F(2, 3, new float[6], 0);
+
+        c.clearDirty();
+        a.sub(b, c);
+        assertArrayEquals(values(6, 10f - 0f, 0f), c.data, 0f);
+        assertEquals(c.numBlocks(), c.numDirtyBlocks());
+
+        c.clearDirty();
+        assertTrue(a.add(b, c) == c);
+        for (int i = 0; i < 6; ++i)
+            assertEquals(10f + 2 * i, c.data[i], 0f);
+        assertEquals(c.numBlocks(), c.numDirtyBlocks());
+    }
+
+    @Test
+    public void testSparseIncrementsMarkOnlyTheirBlocks() {
+        final DirtyTrackingMatrix32F m = new DirtyTrackingMatrix32F(3, 2, new float[6], 0);
+        m.clearDirty();
+        final SparseMatrix32F increments = new SparseMatrix32F(3, 2);
+        increments.set(2, 1, 5f);
+        m.add(increments, m);
+        assertEquals(5f, m.get(2, 1), 0f);
+        assertArrayEquals(new int[] { 2 }, m.takeDirtyBlocks());
+
+        // Into another result, every element of it is written.
+        final DenseMatrix32F a = new DenseMatrix32F(3, 2, values(6, 1f));
+        a.sub(increments, m);
+        for (int i = 0; i < 6; ++i)
+            assertEquals(1f + i - (i == 5 ? 5f : 0f), m.data[i], 0f);
+        assertEquals(m.numBlocks(), m.numDirtyBlocks());
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    // offset, offset + 1, ...
+    private static float[] values(final int n, final float offset) {
+        return values(n, offset, 1f);
+    }
+
+    private static float[] values(final int n, final float offset, final float step) {
+        final float[] values = new float[n];
+        for (int i = 0; i < n; ++i)
+            values[i] = offset + step * i;
+        return values;
+    }
+}
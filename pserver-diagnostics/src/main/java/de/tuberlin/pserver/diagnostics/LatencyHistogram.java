@@ -0,0 +1,127 @@
+package de.tuberlin.pserver.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of durations in ns, in the style of HdrHistogram: every
+ * power of two is split into {@link #SUB_BUCKETS} linear buckets, so recorded values are
+ * kept with a relative error below 1 / SUB_BUCKETS over the whole range of long.
+ */
+public final class LatencyHistogram {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final int SUB_BUCKET_BITS = 3;
+
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    public static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long getCount() { return count.sum(); }
+
+    public double getMean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // Upper bound of the bucket that contains the percentile, p in [0, 1].
+    public long getPercentile(final double p) {
+        final long[] values = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; ++i)
+            total += (values[i] = buckets.get(i));
+        if (total == 0)
+            return 0;
+        final long rank = Math.max(1, (long) Math.ceil(p * total));
+        long n = 0;
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            n += values[i];
+            if (n >= rank)
+                return upperBound(i);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; ++i)
+            buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+    }
+
+    public Snapshot snapshot() { return new Snapshot(this); }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    // Values below SUB_BUCKETS get an exact bucket, above the top SUB_BUCKET_BITS + 1 bits select the bucket.
+    private static int bucket(final long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /** Summary of a histogram, in ns. */
+    public static final class Snapshot {
+
+        public final long count;
+
+        public final double mean;
+
+        public final long p50;
+
+        public final long p99;
+
+        public final long p999;
+
+        public final long max;
+
+        private Snapshot(final LatencyHistogram histogram) {
+            this.count  = histogram.getCount();
+            this.mean   = histogram.getMean();
+            this.p50    = histogram.getPercentile(0.5);
+            this.p99    = histogram.getPercentile(0.99);
+            this.p999   = histogram.getPercentile(0.999);
+            this.max    = histogram.getPercentile(1.0);
+        }
+    }
+}
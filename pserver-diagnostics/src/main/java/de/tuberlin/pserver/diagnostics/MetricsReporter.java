@@ -0,0 +1,101 @@
+package de.tuberlin.pserver.diagnostics;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import de.tuberlin.pserver.commons.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the {@link MetricsSource}s of a node. Dumps their snapshots as JSON on demand
+ * or, if {@code global.debug.metricsInterval} is positive, periodically to the log.
+ */
+public final class MetricsReporter {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    public static final String CONFIG_METRICS_INTERVAL = "global.debug.metricsInterval";
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    private static final Map<String, MetricsSource> sources = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService scheduler;
+
+    private static ScheduledFuture<?> polling;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    private MetricsReporter() {}
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public static void register(final MetricsSource source) {
+        sources.put(Preconditions.checkNotNull(source).getMetricsName(), source);
+    }
+
+    public static void unregister(final MetricsSource source) {
+        sources.remove(Preconditions.checkNotNull(source).getMetricsName(), source);
+    }
+
+    /** Starts the periodic dump if the configured interval (in ms) is positive. */
+    public static void setConfig(final Config config) {
+        final long interval = config.hasPath(CONFIG_METRICS_INTERVAL) ? config.getLong(CONFIG_METRICS_INTERVAL) : 0;
+        if (interval > 0)
+            startPolling(interval);
+    }
+
+    public static synchronized void startPolling(final long intervalMillis) {
+        Preconditions.checkArgument(intervalMillis > 0);
+        stopPolling();
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "metrics-reporter");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        polling = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                LOG.info("metrics: " + dump());
+            } catch (Throwable t) {
+                LOG.warn("Failed to dump metrics.", t);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopPolling() {
+        if (polling != null)
+            polling.cancel(false);
+        polling = null;
+    }
+
+    /** @return the snapshots of all registered sources as JSON object, keyed by source name. */
+    public static String dump() {
+        final Map<String, Object> snapshots = new TreeMap<>();
+        for (final MetricsSource source : sources.values())
+            snapshots.put(source.getMetricsName(), source.getMetricsSnapshot());
+        return gson.toJson(snapshots);
+    }
+}
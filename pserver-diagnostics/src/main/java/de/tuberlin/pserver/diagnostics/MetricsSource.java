@@ -0,0 +1,12 @@
+package de.tuberlin.pserver.diagnostics;
+
+/**
+ * A component exposing runtime metrics to the {@link MetricsReporter}. Snapshots are
+ * serialized field by field to JSON.
+ */
+public interface MetricsSource {
+
+    String getMetricsName();
+
+    Object getMetricsSnapshot();
+}
@@ -0,0 +1,112 @@
+package de.tuberlin.pserver.diagnostics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate top-k of a stream of keys. Frequencies are estimated by a lock-free count-min
+ * sketch; a key enters the candidate set only if its estimate exceeds the smallest candidate,
+ * so the lock is taken for a small fraction of the updates once the set is filled. Estimates
+ * never undercount and overcount by at most the collisions in the sketch.
+ */
+public final class TopKSketch<K> {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 1 << 12;
+
+    private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final int k;
+
+    private final AtomicLongArray counts = new AtomicLongArray(DEPTH * WIDTH);
+
+    private final Map<K, Long> candidates = new HashMap<>();
+
+    private volatile long minCandidate;
+
+    // ---------------------------------------------------
+    // Constructor.
+    // ---------------------------------------------------
+
+    public TopKSketch(final int k) {
+        Preconditions.checkArgument(k > 0);
+        this.k = k;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    public void add(final K key) { add(key, 1); }
+    public void add(final K key, final long increment) {
+        final int hash = Preconditions.checkNotNull(key).hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int d = 0; d < DEPTH; ++d)
+            estimate = Math.min(estimate, counts.addAndGet(d * WIDTH + index(hash, d), increment));
+        if (estimate > minCandidate)
+            offer(key, estimate);
+    }
+
+    /** @return the candidates with their estimated counts, most frequent first. */
+    public synchronized List<Map.Entry<K, Long>> getTopK() {
+        final List<Map.Entry<K, Long>> top = new ArrayList<>(candidates.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return top;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length(); ++i)
+            counts.set(i, 0);
+        candidates.clear();
+        minCandidate = 0;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private synchronized void offer(final K key, final long estimate) {
+        if (candidates.containsKey(key) || candidates.size() < k) {
+            candidates.put(key, estimate);
+        } else {
+            K minKey = null;
+            long min = Long.MAX_VALUE;
+            for (final Map.Entry<K, Long> e : candidates.entrySet())
+                if (e.getValue() < min) {
+                    min = e.getValue();
+                    minKey = e.getKey();
+                }
+            if (estimate <= min)
+                return;
+            candidates.remove(minKey);
+            candidates.put(key, estimate);
+        }
+        if (candidates.size() >= k) {
+            long min = Long.MAX_VALUE;
+            for (final long v : candidates.values())
+                min = Math.min(min, v);
+            minCandidate = min;
+        }
+    }
+
+    private static int index(final int hash, final int d) {
+        long z = (hash + SEEDS[d]);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) ((z ^ (z >>> 31)) & (WIDTH - 1));
+    }
+}
@@ -0,0 +1,140 @@
+package de.tuberlin.pserver.examples.experiments.micro_benchmarks;
+
+
+import de.tuberlin.pserver.runtime.core.network.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the array staging Kryo codec (NetKryoEncoder/NetKryoDecoder) with the
+ * zero-copy codec (NetKryoByteBufEncoder/NetKryoByteBufDecoder) on a NetEvent carrying
+ * a float[] payload. Both pipelines use the pooled NetBufferAllocator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class KryoCodecBenchmark {
+
+    // ---------------------------------------------------
+    // Parameters.
+    // ---------------------------------------------------
+
+    @Param({"256", "262144", "4194304"}) // 1KB, 1MB, 16MB
+    public int numFloats;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private NetEvent event;
+
+    private byte[] arrayFrame;
+
+    private byte[] zeroCopyFrame;
+
+    private EmbeddedChannel arrayChannel;
+
+    private EmbeddedChannel zeroCopyChannel;
+
+    // ---------------------------------------------------
+    // Setup.
+    // ---------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random rand = new Random(42);
+        final float[] payload = new float[numFloats];
+        for (int i = 0; i < numFloats; ++i)
+            payload[i] = rand.nextFloat();
+        event = new NetEvent(NetEvent.NetEventTypes.ECHO_REQUEST, payload);
+
+        final ByteBufAllocator allocator = NetBufferAllocator.create();
+        arrayChannel    = createChannel(allocator, new NetKryoEncoder(), new NetKryoDecoder());
+        zeroCopyChannel = createChannel(allocator, new NetKryoByteBufEncoder(), new NetKryoByteBufDecoder());
+
+        // The array codec writes native byte order, the zero-copy codec big endian.
+        arrayFrame      = encodeFrame(arrayChannel);
+        zeroCopyFrame   = encodeFrame(zeroCopyChannel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        arrayChannel.finish();
+        zeroCopyChannel.finish();
+    }
+
+    // ---------------------------------------------------
+    // Benchmarks.
+    // ---------------------------------------------------
+
+    @Benchmark
+    public int encodeArray() { return encode(arrayChannel); }
+
+    @Benchmark
+    public int encodeZeroCopy() { return encode(zeroCopyChannel); }
+
+    @Benchmark
+    public Object decodeArray() { return decode(arrayChannel, arrayFrame); }
+
+    @Benchmark
+    public Object decodeZeroCopy() { return decode(zeroCopyChannel, zeroCopyFrame); }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private int encode(final EmbeddedChannel channel) {
+        channel.writeOutbound(event);
+        final ByteBuf out = (ByteBuf) channel.readOutbound();
+        final int len = out.readableBytes();
+        out.release();
+        return len;
+    }
+
+    private byte[] encodeFrame(final EmbeddedChannel channel) {
+        channel.writeOutbound(event);
+        final ByteBuf encoded = (ByteBuf) channel.readOutbound();
+        final byte[] frame = new byte[encoded.readableBytes()];
+        encoded.readBytes(frame);
+        encoded.release();
+        return frame;
+    }
+
+    private Object decode(final EmbeddedChannel channel, final byte[] frame) {
+        final ByteBuf in = channel.alloc().directBuffer(frame.length);
+        in.writeBytes(frame);
+        channel.writeInbound(in);
+        return channel.readInbound();
+    }
+
+    private static EmbeddedChannel createChannel(final ByteBufAllocator allocator,
+                                                 final ChannelHandler encoder,
+                                                 final ChannelHandler decoder) {
+        final EmbeddedChannel channel = new EmbeddedChannel(encoder, decoder);
+        channel.config().setAllocator(allocator);
+        return channel;
+    }
+
+    // ---------------------------------------------------
+    // Entry Point.
+    // ---------------------------------------------------
+
+    public static void main(final String[] args) throws Exception {
+        final Options opt = new OptionsBuilder()
+                .include(KryoCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
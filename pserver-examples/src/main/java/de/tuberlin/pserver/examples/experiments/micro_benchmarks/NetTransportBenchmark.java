@@ -0,0 +1,145 @@
+package de.tuberlin.pserver.examples.experiments.micro_benchmarks;
+
+
+import de.tuberlin.pserver.commons.config.Config;
+import de.tuberlin.pserver.commons.config.ConfigLoader;
+import de.tuberlin.pserver.runtime.core.infra.InetHelper;
+import de.tuberlin.pserver.runtime.core.infra.InfrastructureManager;
+import de.tuberlin.pserver.runtime.core.network.MachineDescriptor;
+import de.tuberlin.pserver.runtime.core.network.NetEvent;
+import de.tuberlin.pserver.runtime.core.network.NetManager;
+import de.tuberlin.pserver.runtime.core.network.NetTransport;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECHO_REQUEST/ECHO_RESPONSE ping-pong between two NetManagers over loopback,
+ * once with the NIO and once with the native epoll transport. Reports the round
+ * trip latency of sequential requests and the throughput of pipelined requests.
+ *
+ * Run with -Dglobal.net.encoderThreads=N to offload the outbound encoding and with
+ * -Dglobal.net.dispatchThreads=N to shard the event dispatch.
+ */
+public class NetTransportBenchmark {
+
+    private static final int NUM_WARMUP = 10000;
+
+    private static final int NUM_ROUND_TRIPS = 100000;
+
+    private static final int NUM_PIPELINED = 1000000;
+
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    public static void main(final String[] args) throws Exception {
+
+        for (final NetTransport transport : NetTransport.values()) {
+
+            System.setProperty(NetManager.NET_TRANSPORT, transport.name());
+
+            final Config config = ConfigLoader.loadResource("local.conf");
+
+            final NetManager server = createNetManager(config);
+
+            final NetManager client = createNetManager(config);
+
+            if (client.getTransport() != transport) {
+                System.out.println(transport + " : not available.");
+                client.deactivate();
+                server.deactivate();
+                continue;
+            }
+
+            // -------------------------------------------------
+
+            server.addEventListener(NetEvent.NetEventTypes.ECHO_REQUEST, event -> {
+                final MachineDescriptor md = (MachineDescriptor) event.getPayload();
+                server.dispatchEventAt(md, new NetEvent(NetEvent.NetEventTypes.ECHO_RESPONSE));
+            });
+
+            final MachineDescriptor serverMachine = server.getMachineDescriptor();
+
+            final MachineDescriptor clientMachine = client.getMachineDescriptor();
+
+            client.connect(serverMachine);
+
+            final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+            final CountDownLatch[] responses = new CountDownLatch[1];
+
+            client.addEventListener(NetEvent.NetEventTypes.ECHO_RESPONSE, event -> {
+                inFlight.release();
+                responses[0].countDown();
+            });
+
+            // -------------------------------------------------
+            // Latency.
+            // -------------------------------------------------
+
+            final long[] rtt = new long[NUM_ROUND_TRIPS];
+
+            for (int i = 0; i < NUM_WARMUP + NUM_ROUND_TRIPS; ++i) {
+                responses[0] = new CountDownLatch(1);
+                // Every response releases a permit, so the sequential requests take one as well.
+                inFlight.acquire();
+                final long start = System.nanoTime();
+                client.dispatchEventAt(serverMachine, new NetEvent(NetEvent.NetEventTypes.ECHO_REQUEST, clientMachine));
+                responses[0].await();
+                if (i >= NUM_WARMUP)
+                    rtt[i - NUM_WARMUP] = System.nanoTime() - start;
+            }
+
+            Arrays.sort(rtt);
+
+            System.out.println(transport + " : rtt median = " + TimeUnit.NANOSECONDS.toMicros(rtt[rtt.length / 2]) + "us"
+                    + ", p99 = " + TimeUnit.NANOSECONDS.toMicros(rtt[(int) (rtt.length * 0.99)]) + "us");
+
+            // -------------------------------------------------
+            // Throughput.
+            // -------------------------------------------------
+
+            responses[0] = new CountDownLatch(NUM_PIPELINED);
+
+            final long start = System.nanoTime();
+
+            for (int i = 0; i < NUM_PIPELINED; ++i) {
+                inFlight.acquire();
+                client.dispatchEventAt(serverMachine, new NetEvent(NetEvent.NetEventTypes.ECHO_REQUEST, clientMachine));
+            }
+
+            responses[0].await();
+
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(transport + " : throughput = " + (long) (NUM_PIPELINED / seconds) + " round trips/s");
+
+            server.getEventTypeStats().values().forEach(stats -> System.out.println(transport + " : server " + stats));
+
+            // -------------------------------------------------
+
+            client.deactivate();
+
+            server.deactivate();
+        }
+
+        System.exit(0);
+    }
+
+    private static NetManager createNetManager(final Config config) throws Exception {
+        final MachineDescriptor machine = new MachineDescriptor(
+                UUID.randomUUID(),
+                InetAddress.getLoopbackAddress(),
+                InetHelper.getFreePort(),
+                "localhost"
+        );
+        // The infrastructure manager is not started, channels are addressed via machine descriptors.
+        final InfrastructureManager infraManager = new InfrastructureManager(machine, config, false);
+        final NetManager netManager = new NetManager(config, infraManager, machine);
+        netManager.start();
+        return netManager;
+    }
+}
@@ -6,7 +6,7 @@ import de.tuberlin.pserver.dsl.transaction.TransactionDefinition;
 import de.tuberlin.pserver.dsl.transaction.TransactionMng;
 import de.tuberlin.pserver.dsl.transaction.annotations.Transaction;
 import de.tuberlin.pserver.dsl.transaction.annotations.TransactionType;
-import de.tuberlin.pserver.dsl.transaction.phases.Combine;
+import de.tuberlin.pserver.dsl.transaction.phases.IncrementalCombine;
 import de.tuberlin.pserver.dsl.transaction.phases.Update;
 import de.tuberlin.pserver.dsl.unit.annotations.Unit;
 import de.tuberlin.pserver.dsl.unit.controlflow.lifecycle.Lifecycle;
@@ -31,13 +31,7 @@ public class DataParallelJob extends Program {
     @Transaction(state = "model", type = TransactionType.PUSH)
     public final TransactionDefinition syncModel = new TransactionDefinition(
 
-            (Combine<Matrix32F>) (requestObj, gradients) -> {
-                Matrix32F combinedGradient = gradients.get(0);
-                for (int i = 1; i < gradients.size(); ++i) {
-                    combinedGradient.add(gradients.get(i), combinedGradient);
-                }
-                return combinedGradient;
-            },
+            (IncrementalCombine<Matrix32F>) (combinedGradient, gradient) -> combinedGradient.add(gradient, combinedGradient),
 
             (Update<Matrix32F>) (requestObj, remoteModels, localModel) -> {
                 StringBuilder strBuilder = new StringBuilder();
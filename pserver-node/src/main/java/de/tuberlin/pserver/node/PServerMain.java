@@ -1,6 +1,7 @@
 package de.tuberlin.pserver.node;
 
 import de.tuberlin.pserver.diagnostics.MemoryTracer;
+import de.tuberlin.pserver.diagnostics.MetricsReporter;
 import de.tuberlin.pserver.commons.config.Config;
 import de.tuberlin.pserver.commons.config.ConfigLoader;
 
@@ -18,6 +19,7 @@ public final class PServerMain {
         Config config = ConfigLoader.loadResource(args[0]);
         MemoryTracer.setConfig(config);
         MemoryTracer.printTrace("Initial");
+        MetricsReporter.setConfig(config);
         PServerNodeFactory.createNode(config);
     }
 }
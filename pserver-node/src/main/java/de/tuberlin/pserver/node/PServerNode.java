@@ -58,6 +58,8 @@ public final class PServerNode extends EventDispatcher {
 
     @Override
     public void deactivate() {
+        runtimeContext.laneExecutor.deactivate();
+        runtimeContext.pagePool.deactivate();
         runtimeManager.deactivate();
         netManager.deactivate();
         infraManager.deactivate();
@@ -78,7 +80,8 @@ public final class PServerNode extends EventDispatcher {
                 new Thread(() -> {
                     try {
                         ParallelRuntime.INSTANCE.create(runtimeContext.numOfCores);
-                        ParallelRuntime.INSTANCE.addPrimaryThread(netManager.getDispatcherThread().getId());
+                        for (final Thread dispatcherThread : netManager.getDispatcherThreads())
+                            ParallelRuntime.INSTANCE.addPrimaryThread(dispatcherThread.getId());
                         driver.executeProgram();
                         final List<Serializable> results = instance.programContext.getResults();
                         final ProgramResultEvent jre = new ProgramResultEvent(
@@ -15,6 +15,8 @@ import de.tuberlin.pserver.runtime.core.usercode.UserCodeManager;
 import de.tuberlin.pserver.runtime.dht.DHTManager;
 import de.tuberlin.pserver.runtime.filesystem.FileSystemManager;
 import de.tuberlin.pserver.runtime.memory.MemoryManager;
+import de.tuberlin.pserver.runtime.memory.PagePool;
+import de.tuberlin.pserver.runtime.parallel.LaneExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +66,7 @@ public final class PServerNodeFactory {
             this.infraManager = new InfrastructureManager(machine, config, false);
 
             MemoryTracer.printTrace("Initialized_InfraStructureManager");
-            this.netManager = new NetManager(infraManager, machine, 16);
+            this.netManager = new NetManager(config, infraManager, machine);
             this.netManager.start();
 
             MemoryTracer.printTrace("Initialized_NetManager");
@@ -95,7 +97,9 @@ public final class PServerNodeFactory {
                     dhtManager,
                     fileManager,
                     runtimeManager,
-                    infraManager
+                    infraManager,
+                    new LaneExecutor("lanes@" + infraManager.getNodeID(), config),
+                    new PagePool(config)
             );
             netManager.addEventListener(NetEvent.NetEventTypes.ECHO_REQUEST, event -> {
                 MachineDescriptor clmd = (MachineDescriptor) event.getPayload();
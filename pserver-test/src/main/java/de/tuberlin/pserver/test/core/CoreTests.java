@@ -58,6 +58,12 @@ public class CoreTests {
     @Test
     public void testAsymmetricAggregator() { assert client.execute(ASymAggregatorTestJob.class) != null; }
 
+    @Test
+    public void testTreeAggregator() { assert client.execute(TreeAggregatorTestJob.class) != null; }
+
+    @Test
+    public void testRingAggregator() { assert client.execute(RingAggregatorTestJob.class) != null; }
+
     //@Test
     //public void testMatrixDenseLoadingRowColVal() { assert client.execute(MatrixDenseLoadingRowColValTestJob.class) != null; }
 
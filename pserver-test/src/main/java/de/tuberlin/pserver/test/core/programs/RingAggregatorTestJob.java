@@ -0,0 +1,34 @@
+package de.tuberlin.pserver.test.core.programs;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.compiler.Program;
+import de.tuberlin.pserver.dsl.transaction.aggregators.Aggregator;
+import de.tuberlin.pserver.dsl.unit.annotations.Unit;
+import de.tuberlin.pserver.dsl.unit.controlflow.lifecycle.Lifecycle;
+
+import java.util.Arrays;
+
+
+public class RingAggregatorTestJob extends Program {
+
+    @Unit
+    public void main(final Lifecycle lifecycle) {
+
+        lifecycle.process(() -> {
+
+            final double[] partialAgg = new double[10];
+            Arrays.fill(partialAgg, programContext.nodeID * 1000);
+
+            final double[] globalAgg = new Aggregator<>(programContext, partialAgg, Aggregator.doubleArrayChunks())
+                    .apply(pa -> {
+                        final double[] sum = new double[pa.get(0).length];
+                        for (final double[] p : pa)
+                            for (int i = 0; i < sum.length; ++i)
+                                sum[i] += p[i];
+                        return sum;
+                    });
+
+            Preconditions.checkState(Arrays.stream(globalAgg).allMatch(v -> v == 6000));
+        });
+    }
+}
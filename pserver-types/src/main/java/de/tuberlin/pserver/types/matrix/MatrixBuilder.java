@@ -7,6 +7,7 @@ import de.tuberlin.pserver.types.AbstractBuilder;
 import de.tuberlin.pserver.types.matrix.annotations.Matrix;
 import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DirtyTrackingMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.CSRMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.SparseMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.properties.ElementType;
@@ -27,10 +28,11 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
 
     static {
         registeredMatrixTypes = new HashMap<>();
-        registeredMatrixTypes.put(Matrix32F.class,          Triple.of(DenseMatrix32F.class,     MatrixType.DENSE_FORMAT,    ElementType.FLOAT_MATRIX));
-        registeredMatrixTypes.put(DenseMatrix32F.class,     Triple.of(DenseMatrix32F.class,     MatrixType.DENSE_FORMAT,    ElementType.FLOAT_MATRIX));
-        registeredMatrixTypes.put(SparseMatrix32F.class,    Triple.of(SparseMatrix32F.class,    MatrixType.SPARSE_FORMAT,   ElementType.FLOAT_MATRIX));
-        registeredMatrixTypes.put(CSRMatrix32F.class,       Triple.of(CSRMatrix32F.class,       MatrixType.CSR_FORMAT,      ElementType.FLOAT_MATRIX));
+        registeredMatrixTypes.put(Matrix32F.class,               Triple.of(DenseMatrix32F.class,          MatrixType.DENSE_FORMAT,    ElementType.FLOAT_MATRIX));
+        registeredMatrixTypes.put(DenseMatrix32F.class,          Triple.of(DenseMatrix32F.class,          MatrixType.DENSE_FORMAT,    ElementType.FLOAT_MATRIX));
+        registeredMatrixTypes.put(DirtyTrackingMatrix32F.class,  Triple.of(DirtyTrackingMatrix32F.class,  MatrixType.DENSE_FORMAT,    ElementType.FLOAT_MATRIX));
+        registeredMatrixTypes.put(SparseMatrix32F.class,         Triple.of(SparseMatrix32F.class,         MatrixType.SPARSE_FORMAT,   ElementType.FLOAT_MATRIX));
+        registeredMatrixTypes.put(CSRMatrix32F.class,            Triple.of(CSRMatrix32F.class,            MatrixType.CSR_FORMAT,      ElementType.FLOAT_MATRIX));
     }
 
     // ---------------------------------------------------
@@ -45,6 +47,10 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
 
     private ElementType elementType;
 
+    private Class<?> implType;
+
+    private int dirtyBlockSize;
+
     // ---------------------------------------------------
     // Constructor.
     // ---------------------------------------------------
@@ -76,8 +82,14 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
         return this;
     }
 
+    public MatrixBuilder dirtyBlockSize(final int dirtyBlockSize) {
+        this.dirtyBlockSize = dirtyBlockSize;
+        return this;
+    }
+
     public MatrixBuilder inferMatrixType(final Class<?> type) {
         Triple<Class<?>, MatrixType, ElementType> inferedType = registeredMatrixTypes.get(type);
+        this.implType       = inferedType.getLeft();
         this.matrixType     = inferedType.getMiddle();
         this.elementType    = inferedType.getRight();
         return this;
@@ -89,6 +101,7 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
     public Matrix32F build(int nodeID, int[] allNodes, Class<?> type, String name, Matrix annotation) {
         distributionScheme(annotation.scheme());
         dimension(annotation.rows(), annotation.cols());
+        dirtyBlockSize(annotation.dirtyBlockSize());
         inferMatrixType(type);
         int[] nodes = "".equals(annotation.at()) ? allNodes : ParseUtils.parseNodeRanges(annotation.at());
         return build(nodeID, nodes, type, name);
@@ -106,7 +119,9 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
                 } break;
             case DENSE_FORMAT:
                 switch (elementType) {
-                    case FLOAT_MATRIX: matrix = new DenseMatrix32F(nodeID, nodes, type, name, distScheme, rows, cols, null); break;
+                    case FLOAT_MATRIX: matrix = (implType == DirtyTrackingMatrix32F.class)
+                            ? new DirtyTrackingMatrix32F(nodeID, nodes, type, name, distScheme, rows, cols, null, dirtyBlockSize)
+                            : new DenseMatrix32F(nodeID, nodes, type, name, distScheme, rows, cols, null); break;
                     case DOUBLE_MATRIX: throw new IllegalStateException();
                     default: throw new IllegalStateException();
                 } break;
@@ -132,5 +147,7 @@ public final class MatrixBuilder extends AbstractBuilder<Matrix32F, Matrix> {
         this.cols = -1;
         this.matrixType = MatrixType.DENSE_FORMAT;
         this.elementType = ElementType.FLOAT_MATRIX;
+        this.implType = null;
+        this.dirtyBlockSize = 0;
     }
 }
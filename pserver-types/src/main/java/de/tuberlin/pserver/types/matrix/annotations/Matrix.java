@@ -18,4 +18,11 @@ public @interface Matrix {
     long rows() default 0;
 
     long cols() default 0;
+
+    // Elements per dirty block of a DirtyTrackingMatrix32F, 0 for one block per row.
+    int dirtyBlockSize() default 0;
+
+    // Keeps a dense float matrix in the pages of the node's page pool (see global.memory),
+    // so the partition may exceed the heap. Requires a Matrix32F field.
+    boolean paged() default false;
 }
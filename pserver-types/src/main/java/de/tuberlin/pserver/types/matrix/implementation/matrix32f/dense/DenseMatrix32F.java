@@ -328,25 +328,7 @@ public class DenseMatrix32F extends AbstractMatrixTypeInfo implements Matrix32F
 
     @Override
     public Matrix32F add(final Matrix32F B, final Matrix32F C) {
-        //Utils.checkShapeEqual(this, B, C);
-        //return this.applyOnElements(B, (x, y) -> x + y, C);
-        if (B.getClass() == Matrix32F.class && C.getClass() == Matrix32F.class) {
-            DenseMatrix32F b = (DenseMatrix32F) B;
-            DenseMatrix32F c = (DenseMatrix32F) C;
-            for (int i = 0; i < data.length; ++i) {
-                c.data[i] = data[i] + b.data[i];
-            }
-        }
-        if (B.getClass() == SparseMatrix32F.class && C.getClass() == DenseMatrix32F.class) {
-            SparseMatrix32F b = (SparseMatrix32F) B;
-            DenseMatrix32F c = (DenseMatrix32F) C;
-            b.data.forEachEntry((k,v) -> {
-                c.data[(int)k] = data[(int)k] + v;
-                return true;
-            });
-            //applyOnElements(B, (x, y) -> x + y, C);
-        }
-        return this;
+        return addScaled(B, 1f, C);
     }
 
     @Override
@@ -388,23 +370,7 @@ public class DenseMatrix32F extends AbstractMatrixTypeInfo implements Matrix32F
 
     @Override
     public Matrix32F sub(final Matrix32F B, final Matrix32F C) {
-        if (B.getClass() == DenseMatrix32F.class && C.getClass() == DenseMatrix32F.class) {
-            DenseMatrix32F b = (DenseMatrix32F) B;
-            DenseMatrix32F c = (DenseMatrix32F) C;
-            for (int i = 0; i < data.length; ++i) {
-                c.data[i] = data[i] - b.data[i];
-            }
-        }
-        if (B.getClass() == SparseMatrix32F.class && C.getClass() == DenseMatrix32F.class) {
-            SparseMatrix32F b = (SparseMatrix32F) B;
-            DenseMatrix32F c = (DenseMatrix32F) C;
-            b.data.forEachEntry((k,v) -> {
-                c.data[(int)k] = data[(int)k] - v;
-                return true;
-            });
-            //applyOnElements(B, (x, y) -> x + y, C);
-        }
-        return this;
+        return addScaled(B, -1f, C);
     }
 
     // ----------------------------------------
@@ -593,6 +559,43 @@ public class DenseMatrix32F extends AbstractMatrixTypeInfo implements Matrix32F
         return new RowIterator(this, startRow, endRow);
     }
 
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    // C = this + sign * B. Writes into dense results directly, subclasses included, so their
+    // dirty blocks are marked here.
+    private Matrix32F addScaled(final Matrix32F B, final float sign, final Matrix32F C) {
+        if (B instanceof DenseMatrix32F && C instanceof DenseMatrix32F) {
+            final float[] b = ((DenseMatrix32F) B).data, c = ((DenseMatrix32F) C).data;
+            for (int i = 0; i < data.length; ++i)
+                c[i] = data[i] + sign * b[i];
+            if (C instanceof DirtyTrackingMatrix32F)
+                ((DirtyTrackingMatrix32F) C).markAllDirty();
+        } else if (B instanceof SparseMatrix32F && C instanceof DenseMatrix32F) {
+            final DenseMatrix32F c = (DenseMatrix32F) C;
+            if (c != this)
+                System.arraycopy(data, 0, c.data, 0, data.length);
+            ((SparseMatrix32F) B).data.forEachEntry((k, v) -> {
+                c.data[(int) k] = data[(int) k] + sign * v;
+                return true;
+            });
+            if (C instanceof DirtyTrackingMatrix32F) {
+                final DirtyTrackingMatrix32F d = (DirtyTrackingMatrix32F) C;
+                if (d != this)
+                    d.markAllDirty();
+                else
+                    ((SparseMatrix32F) B).data.forEachKey(k -> { d.markDirty(k / cols(), k % cols()); return true; });
+            }
+        } else {
+            for (long row = 0; row < rows(); ++row) {
+                for (long col = 0; col < cols(); ++col)
+                    C.set(row, col, get(row, col) + sign * B.get(row, col));
+            }
+        }
+        return C;
+    }
+
     // ---------------------------------------------------
 
     private static final class RowIterator implements Matrix32F.RowIterator {
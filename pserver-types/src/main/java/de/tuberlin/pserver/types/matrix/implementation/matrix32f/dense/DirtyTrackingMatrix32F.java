@@ -0,0 +1,202 @@
+package de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
+import de.tuberlin.pserver.types.typeinfo.properties.DistScheme;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dense matrix that records which blocks of its row-major data changed since the dirty set was
+ * last taken, so pushes can ship only those blocks as {@link MatrixDelta32F}. A block spans
+ * {@code blockSize} consecutive elements, by default one row. Writes through this matrix mark
+ * their blocks, as do dense matrix operations that write into it as result matrix. Other writes
+ * into {@link #data} from outside must be followed by {@link #markDirty(long, long)}. A new (or
+ * deserialized) matrix starts with all blocks dirty.
+ */
+public class DirtyTrackingMatrix32F extends DenseMatrix32F {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public int blockSize;
+
+    // One bit per block, not serialized.
+    private transient volatile AtomicLongArray dirtyBits;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public DirtyTrackingMatrix32F() {}
+
+    public DirtyTrackingMatrix32F(long globalRows, long globalCols) {
+        this(-1, null, null, null, DistScheme.LOCAL, globalRows, globalCols, null, 0);
+    }
+
+    public DirtyTrackingMatrix32F(long globalRows, long globalCols, final float[] data, final int blockSize) {
+        this(-1, null, null, null, DistScheme.LOCAL, globalRows, globalCols, data, blockSize);
+    }
+
+    /** @param blockSize elements per dirty block, 0 for one block per row. */
+    public DirtyTrackingMatrix32F(int nodeID, int[] nodes, Class<?> type, String name, DistScheme distScheme,
+                                  long globalRows, long globalCols, final float[] data, final int blockSize) {
+        super(nodeID, nodes, type, name, distScheme, globalRows, globalCols, data);
+        Preconditions.checkArgument(blockSize >= 0);
+        this.blockSize = (blockSize == 0) ? (int) Math.max(cols(), 1) : blockSize;
+    }
+
+    // ---------------------------------------------------
+    // Dirty Tracking.
+    // ---------------------------------------------------
+
+    public int numBlocks() { return (data.length + blockSize - 1) / blockSize; }
+
+    public void markDirty(final long row, final long col) { markBlock((int) ((row * cols() + col) / blockSize)); }
+
+    public void markRowsDirty(final long fromRow, final long toRow) {
+        markRange((int) (fromRow * cols()), (int) (toRow * cols()));
+    }
+
+    public void markAllDirty() { markRange(0, data.length); }
+
+    public boolean isDirty(final int block) {
+        return (dirtyBits().get(block >>> 6) & (1L << block)) != 0;
+    }
+
+    public int numDirtyBlocks() {
+        final AtomicLongArray bits = dirtyBits();
+        int count = 0;
+        for (int w = 0; w < bits.length(); ++w)
+            count += Long.bitCount(bits.get(w));
+        return count;
+    }
+
+    /**
+     * @return the dirty blocks in ascending order, which are clean afterwards. Writers mark a
+     * block after writing it, so a write racing with this call is shipped now or next time.
+     */
+    public int[] takeDirtyBlocks() {
+        final AtomicLongArray bits = dirtyBits();
+        final long[] words = new long[bits.length()];
+        int count = 0;
+        for (int w = 0; w < words.length; ++w) {
+            words[w] = bits.getAndSet(w, 0L);
+            count += Long.bitCount(words[w]);
+        }
+        final int[] blocks = new int[count];
+        int i = 0;
+        for (int w = 0; w < words.length; ++w) {
+            for (long word = words[w]; word != 0; word &= word - 1)
+                blocks[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return blocks;
+    }
+
+    public void clearDirty() {
+        final AtomicLongArray bits = dirtyBits();
+        for (int w = 0; w < bits.length(); ++w)
+            bits.set(w, 0L);
+    }
+
+    // ---------------------------------------------------
+    // SETTER.
+    // ---------------------------------------------------
+
+    @Override
+    public void set(final long r, final long c, final float value) {
+        super.set(r, c, value);
+        markDirty(r, c);
+    }
+
+    // ---------------------------------------------------
+    // ASSIGN.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F assign(final Matrix32F v) {
+        super.assign(v);
+        markAllDirty();
+        return this;
+    }
+
+    @Override
+    public Matrix32F assign(final float v) {
+        super.assign(v);
+        markAllDirty();
+        return this;
+    }
+
+    @Override
+    public Matrix32F assignRow(final long row, final Matrix32F v) {
+        super.assignRow(row, v);
+        markRowsDirty(row, row + 1);
+        return this;
+    }
+
+    @Override
+    public Matrix32F assignColumn(final long col, final Matrix32F v) {
+        super.assignColumn(col, v);
+        markAllDirty();
+        return this;
+    }
+
+    @Override
+    public Matrix32F assign(final long rowOffset, final long colOffset, final Matrix32F m) {
+        final Matrix32F result = super.assign(rowOffset, colOffset, m);
+        final int offset = (int) (rowOffset * cols() + colOffset);
+        markRange(offset, offset + ((DenseMatrix32F) m).data.length);
+        return result;
+    }
+
+    // ---------------------------------------------------
+    // ARITHMETIC.
+    // ---------------------------------------------------
+
+    @Override
+    public Matrix32F scale(final float a, final Matrix32F B) {
+        super.scale(a, B);
+        markAllDirty();
+        return this;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void markRange(final int from, final int to) {
+        if (to <= from)
+            return;
+        for (int block = from / blockSize; block <= (to - 1) / blockSize; ++block)
+            markBlock(block);
+    }
+
+    private void markBlock(final int block) {
+        final AtomicLongArray bits = dirtyBits();
+        final int w = block >>> 6;
+        final long mask = 1L << block;
+        long word;
+        while (((word = bits.get(w)) & mask) == 0) {
+            if (bits.compareAndSet(w, word, word | mask))
+                return;
+        }
+    }
+
+    private AtomicLongArray dirtyBits() {
+        AtomicLongArray bits = dirtyBits;
+        if (bits == null) {
+            synchronized (this) {
+                bits = dirtyBits;
+                if (bits == null) {
+                    final int numBlocks = numBlocks();
+                    bits = new AtomicLongArray((numBlocks + 63) >>> 6);
+                    for (int block = 0; block < numBlocks; ++block)
+                        bits.set(block >>> 6, bits.get(block >>> 6) | (1L << block));
+                    dirtyBits = bits;
+                }
+            }
+        }
+        return bits;
+    }
+}
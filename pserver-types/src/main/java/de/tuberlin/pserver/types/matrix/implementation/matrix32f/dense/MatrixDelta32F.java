@@ -0,0 +1,122 @@
+package de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense;
+
+import com.google.common.base.Preconditions;
+import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
+
+import java.io.Serializable;
+
+/**
+ * The dirty blocks of a {@link DirtyTrackingMatrix32F}, shipped instead of the whole matrix.
+ * Blocks are runs of {@code blockSize} consecutive elements of the row-major data, by default
+ * one row each; {@code values} holds their content back to back, the last block of the
+ * matrix may be shorter. The blocks carry the new values, so applying a delta is idempotent.
+ */
+public final class MatrixDelta32F implements Serializable {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final long serialVersionUID = -1;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    public final long rows;
+
+    public final long cols;
+
+    public final int blockSize;
+
+    public final int[] blocks;
+
+    public final float[] values;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public MatrixDelta32F(final long rows, final long cols, final int blockSize, final int[] blocks, final float[] values) {
+        Preconditions.checkArgument(blockSize > 0);
+        this.rows       = rows;
+        this.cols       = cols;
+        this.blockSize  = blockSize;
+        this.blocks     = Preconditions.checkNotNull(blocks);
+        this.values     = Preconditions.checkNotNull(values);
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /** @return the blocks of {@code m} written since the last call, which are clean afterwards. */
+    public static MatrixDelta32F encode(final DirtyTrackingMatrix32F m) {
+        final int[] blocks = m.takeDirtyBlocks();
+        final int length = m.data.length;
+        int size = 0;
+        for (final int block : blocks)
+            size += Math.min(m.blockSize, length - block * m.blockSize);
+        final float[] values = new float[size];
+        int pos = 0;
+        for (final int block : blocks) {
+            final int n = Math.min(m.blockSize, length - block * m.blockSize);
+            System.arraycopy(m.data, block * m.blockSize, values, pos, n);
+            pos += n;
+        }
+        return new MatrixDelta32F(m.rows(), m.cols(), m.blockSize, blocks, values);
+    }
+
+    /**
+     * Overwrites the blocks in {@code dst}. Dense targets are written without marking their
+     * blocks dirty, so a replica receiving the delta does not ship the values back.
+     */
+    public Matrix32F apply(final Matrix32F dst) {
+        checkShape(dst);
+        if (dst instanceof DenseMatrix32F) {
+            final float[] data = ((DenseMatrix32F) dst).data;
+            int pos = 0;
+            for (final int block : blocks) {
+                final int n = Math.min(blockSize, data.length - block * blockSize);
+                System.arraycopy(values, pos, data, block * blockSize, n);
+                pos += n;
+            }
+        } else {
+            int pos = 0;
+            for (final int block : blocks) {
+                final long end = Math.min((long) (block + 1) * blockSize, rows * cols);
+                for (long i = (long) block * blockSize; i < end; ++i)
+                    dst.set(i / cols, i % cols, values[pos++]);
+            }
+        }
+        return dst;
+    }
+
+    /** Adds the block values to {@code dst}, for deltas of matrices holding increments. */
+    public Matrix32F addTo(final Matrix32F dst) {
+        checkShape(dst);
+        int pos = 0;
+        for (final int block : blocks) {
+            final long end = Math.min((long) (block + 1) * blockSize, rows * cols);
+            for (long i = (long) block * blockSize; i < end; ++i) {
+                final long row = i / cols, col = i % cols;
+                dst.set(row, col, dst.get(row, col) + values[pos++]);
+            }
+        }
+        return dst;
+    }
+
+    public boolean isEmpty() { return blocks.length == 0; }
+
+    /** @return the payload size in bytes, without the shape. */
+    public int payloadSize() { return blocks.length * Integer.BYTES + values.length * Float.BYTES; }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void checkShape(final Matrix32F dst) {
+        Preconditions.checkArgument(dst.rows() == rows && dst.cols() == cols,
+                "Delta of a %sx%s matrix applied to a %sx%s matrix.", rows, cols, dst.rows(), dst.cols());
+    }
+}
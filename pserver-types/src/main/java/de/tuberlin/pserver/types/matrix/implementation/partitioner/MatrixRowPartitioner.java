@@ -20,13 +20,26 @@ public class MatrixRowPartitioner extends AbstractMatrixPartitioner {
 
     @Override
     public int getPartitionOfEntry(long row, long col) {
-        double numOfRowsPerInstance = (double) distributedMatrixType.rows() / distributedMatrixType.nodes().length;
-        int partition = (int) (row / numOfRowsPerInstance);
-        if(partition >= distributedMatrixType.nodes().length) {
-            throw new IllegalStateException("The calculated partition id (row = " + row + ", distributedMatrixType.rows() = "
-                    + distributedMatrixType.rows() +", numNodes = " + distributedMatrixType.nodes().length +") -> " + partition + " must not exceed numNodes.");
-        }
-        return distributedMatrixType.nodes()[partition];
+        return distributedMatrixType.nodes()[getRowPartition(row)];
+    }
+
+    /** @return the index of the partition holding the given global row. */
+    public int getRowPartition(long row) {
+        final int numPartitions = distributedMatrixType.nodes().length;
+        if (row < 0 || row >= distributedMatrixType.globalRows())
+            throw new IllegalStateException("Row " + row + " is not in the range [0, " + distributedMatrixType.globalRows() + ").");
+        int partition = (int) Math.min(row / rowsPerPartition(), numPartitions - 1);
+        // Guard against rounding, the partition bounds are rounded up.
+        while (getFirstRow(partition) > row)
+            --partition;
+        while (partition + 1 < numPartitions && getFirstRow(partition + 1) <= row)
+            ++partition;
+        return partition;
+    }
+
+    /** @return the first global row of the given partition, for {@code numPartitions} the number of rows. */
+    public long getFirstRow(int partition) {
+        return (long) Math.ceil(rowsPerPartition() * partition);
     }
 
     @Override
@@ -67,9 +80,16 @@ public class MatrixRowPartitioner extends AbstractMatrixPartitioner {
         if (distributedMatrixType.nodes() == null)
             return null;
         
-        double rowsPerNode = (double) distributedMatrixType.globalRows() / distributedMatrixType.nodes().length;
-        long rowOffset = (int) Math.ceil(rowsPerNode * distributedMatrixType.nodeId());
-        long numRows = (int) (Math.ceil(rowsPerNode * (distributedMatrixType.nodeId() + 1)) - rowOffset);
+        long rowOffset = getFirstRow(distributedMatrixType.nodeId());
+        long numRows = getFirstRow(distributedMatrixType.nodeId() + 1) - rowOffset;
         return new MatrixPartitionShape(numRows, distributedMatrixType.globalCols(), rowOffset, 0);
     }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private double rowsPerPartition() {
+        return (double) distributedMatrixType.globalRows() / distributedMatrixType.nodes().length;
+    }
 }
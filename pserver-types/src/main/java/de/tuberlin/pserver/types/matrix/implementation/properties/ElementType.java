@@ -2,6 +2,7 @@ package de.tuberlin.pserver.types.matrix.implementation.properties;
 
 import de.tuberlin.pserver.types.matrix.implementation.Matrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DenseMatrix32F;
+import de.tuberlin.pserver.types.matrix.implementation.matrix32f.dense.DirtyTrackingMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.CSRMatrix32F;
 import de.tuberlin.pserver.types.matrix.implementation.matrix32f.sparse.SparseMatrix32F;
 
@@ -15,6 +16,7 @@ public enum ElementType {
         if (clazz == Matrix32F.class
                 || clazz == SparseMatrix32F.class
                 || clazz == DenseMatrix32F.class
+                || clazz == DirtyTrackingMatrix32F.class
                 || clazz == CSRMatrix32F.class)
             return FLOAT_MATRIX;
         else